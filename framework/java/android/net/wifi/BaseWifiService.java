@@ -245,7 +245,7 @@ public class BaseWifiService extends IWifiManager.Stub {
     }
 
     @Override
-    public List<ScanResult> getScanResults(String callingPackage, String callingFeatureId) {
+    public ParceledListSlice getScanResults(String callingPackage, String callingFeatureId) {
         throw new UnsupportedOperationException();
     }
 
@@ -310,6 +310,11 @@ public class BaseWifiService extends IWifiManager.Stub {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void addWifiStateListener(IWifiStateListener listener) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public void registerDriverCountryCodeChangedListener(
             @NonNull IOnWifiDriverCountryCodeChangedListener listener,
@@ -794,6 +799,16 @@ public class BaseWifiService extends IWifiManager.Stub {
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void registerScanResultsDeltaCallback(IScanResultsDeltaCallback callback) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void unregisterScanResultsDeltaCallback(IScanResultsDeltaCallback callback) {
+        throw new UnsupportedOperationException();
+    }
+
     @Override
     public void registerSuggestionConnectionStatusListener(
             ISuggestionConnectionStatusListener listener, String packageName, String featureId) {
@@ -41,7 +41,10 @@ import android.app.admin.WifiSsidPolicy;
 import android.compat.annotation.ChangeId;
 import android.compat.annotation.EnabledAfter;
 import android.compat.annotation.UnsupportedAppUsage;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.net.ConnectivityManager;
 import android.net.ConnectivityManager.NetworkCallback;
 import android.net.DhcpInfo;
@@ -67,6 +70,7 @@ import android.os.IBinder;
 import android.os.Looper;
 import android.os.Parcel;
 import android.os.Parcelable;
+import android.os.Process;
 import android.os.RemoteException;
 import android.os.WorkSource;
 import android.os.connectivity.WifiActivityEnergyInfo;
@@ -103,6 +107,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -1056,6 +1061,14 @@ public class WifiManager {
      * @see #EXTRA_WIFI_STATE
      */
     public static final String EXTRA_PREVIOUS_WIFI_STATE = "previous_wifi_state";
+    /**
+     * Sequence number of the Wi-Fi state, bumped every time the state changes. Used to order
+     * the broadcast against the updates of the Wi-Fi state cached by {@link #getWifiState()}.
+     *
+     * @hide
+     */
+    public static final String EXTRA_WIFI_STATE_SEQUENCE_NUMBER =
+            "android.net.wifi.extra.WIFI_STATE_SEQUENCE_NUMBER";
 
     /**
      * Wi-Fi is currently being disabled. The state will change to {@link #WIFI_STATE_DISABLED} if
@@ -2036,6 +2049,22 @@ public class WifiManager {
     private static final SparseArray<IWifiLowLatencyLockListener>
             sWifiLowLatencyLockListenerMap = new SparseArray<>();
 
+    private static final Object sWifiStateCacheLock = new Object();
+    // Listener registered once per process, which keeps sCachedWifiState current along with a
+    // receiver of WIFI_STATE_CHANGED_ACTION. Only written while holding sWifiStateCacheLock.
+    private static volatile IWifiStateListener sWifiStateCacheListener;
+    // Set if the receiver can't be registered in this process, so the state is never cached.
+    private static volatile boolean sWifiStateCacheUnavailable = false;
+    // Newest Wi-Fi state received by the listener or the receiver, WIFI_STATE_UNKNOWN until
+    // either receives one. Only written while holding sWifiStateCacheLock.
+    private static volatile int sCachedWifiState = WIFI_STATE_UNKNOWN;
+    @GuardedBy("sWifiStateCacheLock")
+    private static long sCachedWifiStateSequenceNumber = -1;
+    @VisibleForTesting
+    static final AtomicLong sWifiStateCacheHitCount = new AtomicLong();
+    @VisibleForTesting
+    static final AtomicLong sWifiStateCacheMissCount = new AtomicLong();
+
     /**
      * Multi-link operation (MLO) will allow Wi-Fi devices to operate on multiple links at the same
      * time through a single connection, aiming to support applications that require lower latency,
@@ -4384,8 +4413,12 @@ public class WifiManager {
     @RequiresPermission(allOf = {ACCESS_WIFI_STATE, ACCESS_FINE_LOCATION})
     public List<ScanResult> getScanResults() {
         try {
-            return mService.getScanResults(mContext.getOpPackageName(),
-                    mContext.getAttributionTag());
+            ParceledListSlice<ScanResult> parceledList = mService.getScanResults(
+                    mContext.getOpPackageName(), mContext.getAttributionTag());
+            if (parceledList == null) {
+                return Collections.emptyList();
+            }
+            return parceledList.getList();
         } catch (RemoteException e) {
             throw e.rethrowFromSystemServer();
         }
@@ -5190,6 +5223,14 @@ public class WifiManager {
      * @see #isWifiEnabled()
      */
     public int getWifiState() {
+        int state = getCachedWifiState();
+        // Transitional states are always queried, since on pre-T devices the service waits for
+        // Wi-Fi to be enabled before returning the enabling state.
+        if (state == WIFI_STATE_ENABLED || state == WIFI_STATE_DISABLED) {
+            sWifiStateCacheHitCount.incrementAndGet();
+            return state;
+        }
+        sWifiStateCacheMissCount.incrementAndGet();
         try {
             return mService.getWifiEnabledState();
         } catch (RemoteException e) {
@@ -5197,6 +5238,106 @@ public class WifiManager {
         }
     }
 
+    /**
+     * Get the newest Wi-Fi state received by this process, registering the listener and the
+     * receiver which keep it current on first use.
+     */
+    private int getCachedWifiState() {
+        if (sWifiStateCacheListener == null && !sWifiStateCacheUnavailable) {
+            synchronized (sWifiStateCacheLock) {
+                if (sWifiStateCacheListener == null && !sWifiStateCacheUnavailable) {
+                    registerWifiStateCache();
+                }
+            }
+        }
+        return sCachedWifiState;
+    }
+
+    /**
+     * Register the listener of the Wi-Fi state, and a receiver of
+     * {@link #WIFI_STATE_CHANGED_ACTION}. The oneway listener call isn't ordered against the
+     * broadcast, so both carry the sequence number of the state and the newest one wins: an app
+     * handling the broadcast doesn't read the previous state from the cache once the receiver
+     * got it. Processes which can't register receivers don't cache the state and keep querying
+     * the service.
+     */
+    @GuardedBy("sWifiStateCacheLock")
+    private void registerWifiStateCache() {
+        if (Process.isIsolated()) {
+            sWifiStateCacheUnavailable = true;
+            return;
+        }
+        IWifiStateListener listener = new IWifiStateListener.Stub() {
+            @Override
+            public void onWifiStateChanged(int state, long sequenceNumber) {
+                updateCachedWifiState(this, state, sequenceNumber);
+            }
+        };
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                long sequenceNumber = intent.getLongExtra(EXTRA_WIFI_STATE_SEQUENCE_NUMBER, -1);
+                if (sequenceNumber >= 0) {
+                    updateCachedWifiState(listener,
+                            intent.getIntExtra(EXTRA_WIFI_STATE, WIFI_STATE_UNKNOWN),
+                            sequenceNumber);
+                }
+            }
+        };
+        Context context = mContext.getApplicationContext();
+        if (context == null) {
+            context = mContext;
+        }
+        try {
+            context.registerReceiver(receiver, new IntentFilter(WIFI_STATE_CHANGED_ACTION));
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Not caching the Wi-Fi state, cannot register a receiver: " + e);
+            sWifiStateCacheUnavailable = true;
+            return;
+        }
+        // Set before registering, since the first state may arrive before the registration call
+        // returns.
+        sWifiStateCacheListener = listener;
+        boolean registered = false;
+        try {
+            mService.addWifiStateListener(listener);
+            registered = true;
+        } catch (RemoteException e) {
+            throw e.rethrowFromSystemServer();
+        } finally {
+            if (!registered) {
+                sWifiStateCacheListener = null;
+                context.unregisterReceiver(receiver);
+            }
+        }
+    }
+
+    private static void updateCachedWifiState(IWifiStateListener listener, int state,
+            long sequenceNumber) {
+        synchronized (sWifiStateCacheLock) {
+            if (sWifiStateCacheListener == listener
+                    && sequenceNumber > sCachedWifiStateSequenceNumber) {
+                sCachedWifiState = state;
+                sCachedWifiStateSequenceNumber = sequenceNumber;
+            }
+        }
+    }
+
+    /**
+     * Forget the cached Wi-Fi state and its listener, so the next call registers a new one.
+     */
+    @VisibleForTesting
+    static void resetWifiStateCache() {
+        synchronized (sWifiStateCacheLock) {
+            sWifiStateCacheListener = null;
+            sWifiStateCacheUnavailable = false;
+            sCachedWifiState = WIFI_STATE_UNKNOWN;
+            sCachedWifiStateSequenceNumber = -1;
+            sWifiStateCacheHitCount.set(0);
+            sWifiStateCacheMissCount.set(0);
+        }
+    }
+
     /**
      * Return whether Wi-Fi is enabled or disabled.
      * @return {@code true} if Wi-Fi is enabled
@@ -89,7 +89,10 @@ import static org.mockito.Mockito.when;
 import android.annotation.NonNull;
 import android.app.ActivityManager;
 import android.content.AttributionSource;
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.pm.ApplicationInfo;
 import android.net.DhcpInfo;
 import android.net.DhcpOption;
@@ -1213,6 +1216,117 @@ public class WifiManagerTest {
         }
     }
 
+    /**
+     * Verify that getWifiState registers a listener once, and returns the stable states it
+     * receives without calling WifiServiceImpl.
+     */
+    @Test
+    public void testGetWifiStateUsesStateFromListener() throws Exception {
+        WifiManager.resetWifiStateCache();
+        when(mWifiService.getWifiEnabledState()).thenReturn(WifiManager.WIFI_STATE_ENABLING);
+        ArgumentCaptor<IWifiStateListener> listenerCaptor =
+                ArgumentCaptor.forClass(IWifiStateListener.class);
+
+        // Nothing received yet.
+        assertEquals(WifiManager.WIFI_STATE_ENABLING, mWifiManager.getWifiState());
+        verify(mWifiService).addWifiStateListener(listenerCaptor.capture());
+        IWifiStateListener listener = listenerCaptor.getValue();
+
+        listener.onWifiStateChanged(WifiManager.WIFI_STATE_ENABLING, 1);
+        assertEquals(WifiManager.WIFI_STATE_ENABLING, mWifiManager.getWifiState());
+        verify(mWifiService, times(2)).getWifiEnabledState();
+
+        listener.onWifiStateChanged(WifiManager.WIFI_STATE_ENABLED, 2);
+        WifiManager otherWifiManager =
+                new WifiManager(mContext, mWifiService, mLooper.getLooper());
+        for (int i = 0; i < 100; i++) {
+            assertTrue(mWifiManager.isWifiEnabled());
+            assertEquals(WifiManager.WIFI_STATE_ENABLED, otherWifiManager.getWifiState());
+        }
+        listener.onWifiStateChanged(WifiManager.WIFI_STATE_DISABLED, 3);
+        assertFalse(mWifiManager.isWifiEnabled());
+
+        verify(mWifiService).addWifiStateListener(any());
+        verify(mWifiService, times(2)).getWifiEnabledState();
+        assertEquals(201, WifiManager.sWifiStateCacheHitCount.get());
+        assertEquals(2, WifiManager.sWifiStateCacheMissCount.get());
+        WifiManager.resetWifiStateCache();
+    }
+
+    /**
+     * Verify that the newest of the states received by the listener and by the state broadcast
+     * is cached, whichever arrives first.
+     */
+    @Test
+    public void testGetWifiStateUsesNewestOfListenerAndBroadcast() throws Exception {
+        WifiManager.resetWifiStateCache();
+        ArgumentCaptor<IWifiStateListener> listenerCaptor =
+                ArgumentCaptor.forClass(IWifiStateListener.class);
+        ArgumentCaptor<BroadcastReceiver> receiverCaptor =
+                ArgumentCaptor.forClass(BroadcastReceiver.class);
+        when(mWifiService.getWifiEnabledState()).thenReturn(WifiManager.WIFI_STATE_DISABLING);
+        mWifiManager.getWifiState();
+        verify(mWifiService).addWifiStateListener(listenerCaptor.capture());
+        verify(mContext).registerReceiver(receiverCaptor.capture(),
+                argThat((IntentFilter filter) ->
+                        filter.hasAction(WifiManager.WIFI_STATE_CHANGED_ACTION)));
+        IWifiStateListener listener = listenerCaptor.getValue();
+        BroadcastReceiver receiver = receiverCaptor.getValue();
+
+        listener.onWifiStateChanged(WifiManager.WIFI_STATE_ENABLED, 1);
+        assertEquals(WifiManager.WIFI_STATE_ENABLED, mWifiManager.getWifiState());
+
+        // Broadcasts ahead of the listener updates.
+        receiver.onReceive(mContext, createWifiStateChangedIntent(
+                WifiManager.WIFI_STATE_DISABLING, 2));
+        assertEquals(WifiManager.WIFI_STATE_DISABLING, mWifiManager.getWifiState());
+        receiver.onReceive(mContext, createWifiStateChangedIntent(
+                WifiManager.WIFI_STATE_DISABLED, 3));
+        assertEquals(WifiManager.WIFI_STATE_DISABLED, mWifiManager.getWifiState());
+
+        // Late listener updates and stale broadcasts are ignored.
+        listener.onWifiStateChanged(WifiManager.WIFI_STATE_DISABLING, 2);
+        receiver.onReceive(mContext, createWifiStateChangedIntent(
+                WifiManager.WIFI_STATE_ENABLED, 1));
+        assertEquals(WifiManager.WIFI_STATE_DISABLED, mWifiManager.getWifiState());
+        listener.onWifiStateChanged(WifiManager.WIFI_STATE_DISABLED, 3);
+        assertEquals(WifiManager.WIFI_STATE_DISABLED, mWifiManager.getWifiState());
+
+        // Broadcasts without a sequence number are ignored.
+        Intent intent = new Intent(WifiManager.WIFI_STATE_CHANGED_ACTION);
+        intent.putExtra(WifiManager.EXTRA_WIFI_STATE, WifiManager.WIFI_STATE_ENABLED);
+        receiver.onReceive(mContext, intent);
+        assertEquals(WifiManager.WIFI_STATE_DISABLED, mWifiManager.getWifiState());
+
+        verify(mWifiService, times(2)).getWifiEnabledState();
+        WifiManager.resetWifiStateCache();
+    }
+
+    private static Intent createWifiStateChangedIntent(int state, long sequenceNumber) {
+        Intent intent = new Intent(WifiManager.WIFI_STATE_CHANGED_ACTION);
+        intent.putExtra(WifiManager.EXTRA_WIFI_STATE, state);
+        intent.putExtra(WifiManager.EXTRA_WIFI_STATE_SEQUENCE_NUMBER, sequenceNumber);
+        return intent;
+    }
+
+    /**
+     * Verify that the Wi-Fi state is not cached when the receiver can't be registered, and
+     * getWifiState keeps querying WifiServiceImpl.
+     */
+    @Test
+    public void testGetWifiStateQueriesServiceWhenReceiverNotAllowed() throws Exception {
+        WifiManager.resetWifiStateCache();
+        when(mContext.registerReceiver(any(), any())).thenThrow(new SecurityException());
+        when(mWifiService.getWifiEnabledState()).thenReturn(WifiManager.WIFI_STATE_ENABLED);
+
+        assertEquals(WifiManager.WIFI_STATE_ENABLED, mWifiManager.getWifiState());
+        assertEquals(WifiManager.WIFI_STATE_ENABLED, mWifiManager.getWifiState());
+        verify(mContext).registerReceiver(any(), any());
+        verify(mWifiService, never()).addWifiStateListener(any());
+        verify(mWifiService, times(2)).getWifiEnabledState();
+        WifiManager.resetWifiStateCache();
+    }
+
     /**
      * Verify an IllegalArgumentException is thrown if callback is not provided.
      */
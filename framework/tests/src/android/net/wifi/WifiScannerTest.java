@@ -49,6 +49,7 @@ import android.os.test.TestLooper;
 
 import androidx.test.filters.SmallTest;
 
+import com.android.modules.utils.ParceledListSlice;
 import com.android.modules.utils.build.SdkLevel;
 
 import org.junit.After;
@@ -300,8 +301,8 @@ public class WifiScannerTest {
         ScanResult[] scanResults = {scanResult};
 
         doAnswer(new MockAnswerUtil.AnswerWithArguments() {
-            public List<ScanResult> answer(String packageName, String featureId) {
-                return new ArrayList<>(Arrays.asList(scanResults));
+            public ParceledListSlice<ScanResult> answer(String packageName, String featureId) {
+                return new ParceledListSlice<>(new ArrayList<>(Arrays.asList(scanResults)));
             }
         }).when(mService).getSingleScanResults(any(), any());
 
@@ -317,8 +318,8 @@ public class WifiScannerTest {
     @Test
     public void testGetSingleScanResultsIncorrectResponse() throws Exception {
         doAnswer(new MockAnswerUtil.AnswerWithArguments() {
-            public List<ScanResult> answer(String packageName, String featureId) {
-                return new ArrayList<>();
+            public ParceledListSlice<ScanResult> answer(String packageName, String featureId) {
+                return new ParceledListSlice<>(new ArrayList<>());
             }
         }).when(mService).getSingleScanResults(any(), any());
         List<ScanResult> results = mWifiScanner.getSingleScanResults();
@@ -45,6 +45,7 @@ import android.net.Network;
 import android.net.wifi.ISubsystemRestartCallback;
 import android.net.wifi.IWifiConnectedNetworkScorer;
 import android.net.wifi.IWifiNetworkStateChangedListener;
+import android.net.wifi.IWifiStateListener;
 import android.net.wifi.SoftApCapability;
 import android.net.wifi.SoftApConfiguration;
 import android.net.wifi.WifiConfiguration;
@@ -147,6 +148,8 @@ public class ActiveModeWarden {
             new RemoteCallbackList<>();
     private final RemoteCallbackList<IWifiNetworkStateChangedListener>
             mWifiNetworkStateChangedListeners = new RemoteCallbackList<>();
+    private final RemoteCallbackList<IWifiStateListener> mWifiStateListeners =
+            new RemoteCallbackList<>();
 
     private boolean mIsMultiplePrimaryBugreportTaken = false;
     private boolean mIsShuttingdown = false;
@@ -172,6 +175,8 @@ public class ActiveModeWarden {
     private Network mCurrentNetwork;
     @GuardedBy("mServiceApiLock")
     private WifiInfo mCurrentConnectionInfo = new WifiInfo();
+    @GuardedBy("mServiceApiLock")
+    private boolean mHasSecondaryClientModeManager = false;
 
     /**
      * One of  {@link WifiManager#WIFI_STATE_DISABLED},
@@ -181,6 +186,8 @@ public class ActiveModeWarden {
      * {@link WifiManager#WIFI_STATE_UNKNOWN}
      */
     private final AtomicInteger mWifiState = new AtomicInteger(WIFI_STATE_DISABLED);
+    // Bumped on every change of mWifiState, on the wifi thread.
+    private long mWifiStateSequenceNumber = 0;
 
     private ContentObserver mSatelliteModeContentObserver;
 
@@ -200,7 +207,10 @@ public class ActiveModeWarden {
                 if (mVerboseLoggingEnabled) {
                     Log.d(TAG, "setting wifi state to: " + newState);
                 }
-                mWifiState.set(newState);
+                if (mWifiState.getAndSet(newState) != newState) {
+                    mWifiStateSequenceNumber++;
+                    notifyWifiStateListeners(newState);
+                }
                 break;
             default:
                 Log.d(TAG, "attempted to set an invalid state: " + newState);
@@ -225,6 +235,53 @@ public class ActiveModeWarden {
         }
     }
 
+    /**
+     * Get the sequence number of the wifi state for API calls, which is bumped every time the
+     * state changes. Must be called on the wifi thread.
+     */
+    public long getWifiStateSequenceNumber() {
+        return mWifiStateSequenceNumber;
+    }
+
+    /**
+     * Add a listener to get the state of Wifi for API calls. The listener is sent the current
+     * state, then every new state, along with its sequence number. Only one listener is kept per
+     * process, later ones are ignored and never sent a state, so their callers keep querying the
+     * state instead.
+     * @param listener listener to add.
+     * @param pid pid of the process adding the listener.
+     */
+    public void addWifiStateListener(@NonNull IWifiStateListener listener, int pid) {
+        int numListeners = mWifiStateListeners.getRegisteredCallbackCount();
+        for (int i = 0; i < numListeners; i++) {
+            if ((int) mWifiStateListeners.getRegisteredCallbackCookie(i) == pid) {
+                Log.w(TAG, "Ignoring wifi state listener, pid " + pid + " already has one");
+                return;
+            }
+        }
+        if (!mWifiStateListeners.register(listener, pid)) {
+            return;
+        }
+        try {
+            listener.onWifiStateChanged(mWifiState.get(), mWifiStateSequenceNumber);
+        } catch (RemoteException e) {
+            Log.e(TAG, "Failure sending the wifi state to a listener" + e);
+        }
+    }
+
+    private void notifyWifiStateListeners(int state) {
+        int numListeners = mWifiStateListeners.beginBroadcast();
+        for (int i = 0; i < numListeners; i++) {
+            try {
+                mWifiStateListeners.getBroadcastItem(i).onWifiStateChanged(state,
+                        mWifiStateSequenceNumber);
+            } catch (RemoteException e) {
+                Log.e(TAG, "Failure sending the wifi state to a listener" + e);
+            }
+        }
+        mWifiStateListeners.finishBroadcast();
+    }
+
     /**
      * Method used by WifiServiceImpl to get the current state of Wifi for API calls.
      * The Wifi state is a global state of the device, which equals to the state of the primary STA.
@@ -446,6 +503,7 @@ public class ActiveModeWarden {
                     + " to " + newPrimaryClientModeManager);
         }
 
+        updateCurrentConnectionInfo();
         for (PrimaryClientModeManagerChangedCallback callback : mPrimaryChangedCallbacks) {
             callback.onChange(prevPrimaryClientModeManager, newPrimaryClientModeManager);
         }
@@ -1610,6 +1668,7 @@ public class ActiveModeWarden {
         @Override
         public void onStarted(@NonNull ConcreteClientModeManager clientModeManager) {
             onStartedOrRoleChanged(clientModeManager);
+            updateHasSecondaryClientModeManager();
             invokeOnAddedCallbacks(clientModeManager);
             // invoke "added" callbacks before primary changed
             onPrimaryChangedDueToStartedOrRoleChanged(clientModeManager);
@@ -1618,6 +1677,7 @@ public class ActiveModeWarden {
         @Override
         public void onRoleChanged(@NonNull ConcreteClientModeManager clientModeManager) {
             onStartedOrRoleChanged(clientModeManager);
+            updateHasSecondaryClientModeManager();
             invokeOnRoleChangedCallbacks(clientModeManager);
             onPrimaryChangedDueToStartedOrRoleChanged(clientModeManager);
         }
@@ -1625,6 +1685,7 @@ public class ActiveModeWarden {
         private void onStoppedOrStartFailure(ConcreteClientModeManager clientModeManager) {
             mClientModeManagers.remove(clientModeManager);
             mGraveyard.inter(clientModeManager);
+            updateHasSecondaryClientModeManager();
             updateClientScanMode();
             updateBatteryStats();
             if (clientModeManager == mLastPrimaryClientModeManager) {
@@ -2735,6 +2796,20 @@ public class ActiveModeWarden {
         }
     }
 
+    /**
+     * Get the current Wifi network connection info, if there is no local only or secondary long
+     * lived ClientModeManager which some apps may be given the connection info of instead.
+     *
+     * Unlike {@link ClientModeManager#getConnectionInfo()}, this may be called from any thread.
+     * @return the default Wifi network connection info, or null if there is a secondary
+     *         ClientModeManager.
+     */
+    public @Nullable WifiInfo getConnectionInfoIfNoSecondaryClientModeManager() {
+        synchronized (mServiceApiLock) {
+            return mHasSecondaryClientModeManager ? null : mCurrentConnectionInfo;
+        }
+    }
+
     /**
      * Update the current connection information.
      */
@@ -2744,6 +2819,14 @@ public class ActiveModeWarden {
         }
     }
 
+    private void updateHasSecondaryClientModeManager() {
+        boolean hasSecondaryClientModeManager = !getClientModeManagersInRoles(
+                ROLE_CLIENT_LOCAL_ONLY, ROLE_CLIENT_SECONDARY_LONG_LIVED).isEmpty();
+        synchronized (mServiceApiLock) {
+            mHasSecondaryClientModeManager = hasSecondaryClientModeManager;
+        }
+    }
+
     /**
      * Save the supported bands for STA from WiFi HAL to config store.
      * @param bands bands supported
@@ -679,7 +679,8 @@ public class ConcreteClientModeManager implements ClientModeManager {
             return;
         }
         // TODO(b/186881160): May need to restore per STA state for Battery state reported.
-        mWifiInjector.getActiveModeWarden().setWifiStateForApiCalls(newState);
+        ActiveModeWarden activeModeWarden = mWifiInjector.getActiveModeWarden();
+        activeModeWarden.setWifiStateForApiCalls(newState);
         if (newState == WifiManager.WIFI_STATE_UNKNOWN) {
             // do not need to broadcast failure to system
             return;
@@ -691,6 +692,8 @@ public class ConcreteClientModeManager implements ClientModeManager {
         intent.addFlags(Intent.FLAG_RECEIVER_REGISTERED_ONLY_BEFORE_BOOT);
         intent.putExtra(WifiManager.EXTRA_WIFI_STATE, newState);
         intent.putExtra(WifiManager.EXTRA_PREVIOUS_WIFI_STATE, currentState);
+        intent.putExtra(WifiManager.EXTRA_WIFI_STATE_SEQUENCE_NUMBER,
+                activeModeWarden.getWifiStateSequenceNumber());
         String summary = "broadcast=WIFI_STATE_CHANGED_ACTION"
                 + " EXTRA_WIFI_STATE=" + newState
                 + " EXTRA_PREVIOUS_WIFI_STATE=" + currentState;
@@ -19,7 +19,6 @@ package com.android.server.wifi;
 import android.net.wifi.ScanResult;
 import android.net.wifi.WifiConfiguration;
 import android.os.UserHandle;
-import android.text.TextUtils;
 
 import androidx.annotation.NonNull;
 
@@ -32,12 +31,29 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 
+/**
+ * Map of the network configurations, by network ID and by profile key.
+ *
+ * The profile key of a configuration is computed when it is put in the map, so a configuration
+ * must be put again after any change to the fields its profile key is built from.
+ *
+ * The map has a generation, which changes whenever the map is modified or hands out one of its
+ * configurations, since the caller may then modify it. The {@code peek} methods hand out
+ * configurations without changing the generation, and their callers must not modify them.
+ */
 public class ConfigurationMap {
     private final Map<Integer, WifiConfiguration> mPerID = new HashMap<>();
 
     private final Map<Integer, WifiConfiguration> mPerIDForCurrentUser = new HashMap<>();
     private final Map<ScanResultMatchInfo, WifiConfiguration>
             mScanResultMatchInfoMapForCurrentUser = new HashMap<>();
+    // Profile keys of the configurations of the current user, computed when they were put.
+    private final Map<Integer, String> mProfileKeyPerIDForCurrentUser = new HashMap<>();
+    private final Map<String, WifiConfiguration> mPerProfileKeyForCurrentUser = new HashMap<>();
+    // Whether several configurations of the current user ever had the same profile key, in
+    // which case the configuration with the lowest network ID is indexed.
+    private boolean mHasDuplicateProfileKeys = false;
+    private long mGeneration = 0;
 
     @NonNull private final WifiPermissionsUtil mWifiPermissionsUtil;
 
@@ -53,15 +69,26 @@ public class ConfigurationMap {
         pw.println("mPerIDForCurrentUser=" + mPerIDForCurrentUser);
         pw.println("mScanResultMatchInfoMapForCurrentUser="
                 + mScanResultMatchInfoMapForCurrentUser);
+        pw.println("mPerProfileKeyForCurrentUser=" + mPerProfileKeyForCurrentUser.keySet());
         pw.println("mCurrentUserId=" + mCurrentUserId);
     }
 
+    /**
+     * @return the generation of the map, see the class documentation.
+     */
+    public long getGeneration() {
+        return mGeneration;
+    }
+
     // RW methods:
     public WifiConfiguration put(WifiConfiguration config) {
+        mGeneration++;
         final WifiConfiguration current = mPerID.put(config.networkId, config);
         if (config.shared || mWifiPermissionsUtil
                 .doesUidBelongToCurrentUserOrDeviceOwner(config.creatorUid)) {
             mPerIDForCurrentUser.put(config.networkId, config);
+            removeFromProfileKeyIndex(config.networkId);
+            addToProfileKeyIndex(config);
             // TODO (b/142035508): Add a more generic fix. This cache should only hold saved
             // networks.
             if (!config.fromWifiNetworkSpecifier && !config.fromWifiNetworkSuggestion
@@ -74,12 +101,14 @@ public class ConfigurationMap {
     }
 
     public WifiConfiguration remove(int netID) {
+        mGeneration++;
         WifiConfiguration config = mPerID.remove(netID);
         if (config == null) {
             return null;
         }
 
         mPerIDForCurrentUser.remove(netID);
+        removeFromProfileKeyIndex(netID);
 
         Iterator<Map.Entry<ScanResultMatchInfo, WifiConfiguration>> scanResultMatchInfoEntries =
                 mScanResultMatchInfoMapForCurrentUser.entrySet().iterator();
@@ -93,9 +122,52 @@ public class ConfigurationMap {
     }
 
     public void clear() {
+        mGeneration++;
         mPerID.clear();
         mPerIDForCurrentUser.clear();
         mScanResultMatchInfoMapForCurrentUser.clear();
+        mProfileKeyPerIDForCurrentUser.clear();
+        mPerProfileKeyForCurrentUser.clear();
+        mHasDuplicateProfileKeys = false;
+    }
+
+    private void addToProfileKeyIndex(WifiConfiguration config) {
+        String key = config.getProfileKey();
+        mProfileKeyPerIDForCurrentUser.put(config.networkId, key);
+        WifiConfiguration indexedConfig = mPerProfileKeyForCurrentUser.get(key);
+        if (indexedConfig != null) {
+            mHasDuplicateProfileKeys = true;
+            if (indexedConfig.networkId < config.networkId) {
+                return;
+            }
+        }
+        mPerProfileKeyForCurrentUser.put(key, config);
+    }
+
+    private void removeFromProfileKeyIndex(int netID) {
+        String key = mProfileKeyPerIDForCurrentUser.remove(netID);
+        if (key == null) {
+            return;
+        }
+        WifiConfiguration indexedConfig = mPerProfileKeyForCurrentUser.get(key);
+        if (indexedConfig == null || indexedConfig.networkId != netID) {
+            return;
+        }
+        mPerProfileKeyForCurrentUser.remove(key);
+        if (!mHasDuplicateProfileKeys) {
+            return;
+        }
+        // Index the next configuration with the same profile key, if any.
+        WifiConfiguration nextConfig = null;
+        for (Map.Entry<Integer, String> entry : mProfileKeyPerIDForCurrentUser.entrySet()) {
+            if (key.equals(entry.getValue())
+                    && (nextConfig == null || entry.getKey() < nextConfig.networkId)) {
+                nextConfig = mPerIDForCurrentUser.get(entry.getKey());
+            }
+        }
+        if (nextConfig != null) {
+            mPerProfileKeyForCurrentUser.put(key, nextConfig);
+        }
     }
 
     /**
@@ -104,15 +176,26 @@ public class ConfigurationMap {
      * @param userId the id of the new foreground user
      */
     public void setNewUser(int userId) {
+        mGeneration++;
         mCurrentUserId = userId;
     }
 
     // RO methods:
     public WifiConfiguration getForAllUsers(int netid) {
+        mGeneration++;
         return mPerID.get(netid);
     }
 
     public WifiConfiguration getForCurrentUser(int netid) {
+        mGeneration++;
+        return mPerIDForCurrentUser.get(netid);
+    }
+
+    /**
+     * Same as {@link #getForCurrentUser(int)}, for a caller which does not modify the returned
+     * configuration.
+     */
+    public WifiConfiguration peekForCurrentUser(int netid) {
         return mPerIDForCurrentUser.get(netid);
     }
 
@@ -125,15 +208,19 @@ public class ConfigurationMap {
     }
 
     public WifiConfiguration getByConfigKeyForCurrentUser(String key) {
+        mGeneration++;
+        return peekByConfigKeyForCurrentUser(key);
+    }
+
+    /**
+     * Same as {@link #getByConfigKeyForCurrentUser(String)}, for a caller which does not modify
+     * the returned configuration.
+     */
+    public WifiConfiguration peekByConfigKeyForCurrentUser(String key) {
         if (key == null) {
             return null;
         }
-        for (WifiConfiguration config : mPerIDForCurrentUser.values()) {
-            if (TextUtils.equals(config.getProfileKey(), key)) {
-                return config;
-            }
-        }
-        return null;
+        return mPerProfileKeyForCurrentUser.get(key);
     }
 
     /**
@@ -142,15 +229,35 @@ public class ConfigurationMap {
      * Essentially checks if network config and scan result have the same SSID and encryption type.
      */
     public WifiConfiguration getByScanResultForCurrentUser(ScanResult scanResult) {
-        return mScanResultMatchInfoMapForCurrentUser.get(
+        return getByScanResultMatchInfoForCurrentUser(
                 ScanResultMatchInfo.fromScanResult(scanResult));
     }
 
+    /**
+     * Retrieves the |WifiConfiguration| object matching the provided |scanResultMatchInfo| of a
+     * scan result from the internal map.
+     */
+    public WifiConfiguration getByScanResultMatchInfoForCurrentUser(
+            ScanResultMatchInfo scanResultMatchInfo) {
+        mGeneration++;
+        return mScanResultMatchInfoMapForCurrentUser.get(scanResultMatchInfo);
+    }
+
     public Collection<WifiConfiguration> valuesForAllUsers() {
+        mGeneration++;
         return mPerID.values();
     }
 
     public Collection<WifiConfiguration> valuesForCurrentUser() {
+        mGeneration++;
+        return mPerIDForCurrentUser.values();
+    }
+
+    /**
+     * Same as {@link #valuesForCurrentUser()}, for a caller which does not modify the returned
+     * configurations.
+     */
+    public Collection<WifiConfiguration> peekValuesForCurrentUser() {
         return mPerIDForCurrentUser.values();
     }
 }
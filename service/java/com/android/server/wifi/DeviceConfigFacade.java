@@ -218,6 +218,11 @@ public class DeviceConfigFacade {
     private boolean mSoftwarePnoEnabled;
     private boolean mIncludePasspointSsidsInPnoScans;
     private boolean mHandleRssiOrganicKernelFailuresEnabled;
+    private boolean mConfigStoreWriteCoalescingEnabled;
+    private boolean mConfigStoreBinaryFormatEnabled;
+    private boolean mConfigStoreLazyLoadingEnabled;
+    private boolean mAnqpCachePersistenceEnabled;
+    private boolean mPasspointMatchIndexEnabled;
 
     private final Handler mWifiHandler;
 
@@ -418,6 +423,16 @@ public class DeviceConfigFacade {
                 "include_passpoint_ssids_in_pno_scans", false);
         mHandleRssiOrganicKernelFailuresEnabled = DeviceConfig.getBoolean(NAMESPACE,
                 "handle_rssi_organic_kernel_failures_enabled", true);
+        mConfigStoreWriteCoalescingEnabled = DeviceConfig.getBoolean(NAMESPACE,
+                "config_store_write_coalescing_enabled", false);
+        mConfigStoreBinaryFormatEnabled = DeviceConfig.getBoolean(NAMESPACE,
+                "config_store_binary_format_enabled", false);
+        mConfigStoreLazyLoadingEnabled = DeviceConfig.getBoolean(NAMESPACE,
+                "config_store_lazy_loading_enabled", false);
+        mAnqpCachePersistenceEnabled = DeviceConfig.getBoolean(NAMESPACE,
+                "anqp_cache_persistence_enabled", false);
+        mPasspointMatchIndexEnabled = DeviceConfig.getBoolean(NAMESPACE,
+                "passpoint_match_index_enabled", false);
     }
 
     private Set<String> getUnmodifiableSetQuoted(String key) {
@@ -906,6 +921,41 @@ public class DeviceConfigFacade {
         return mHandleRssiOrganicKernelFailuresEnabled;
     }
 
+    /**
+     * Gets the feature flag for coalescing forced writes to the config store.
+     */
+    public boolean isConfigStoreWriteCoalescingEnabled() {
+        return mConfigStoreWriteCoalescingEnabled;
+    }
+
+    /**
+     * Gets the feature flag for mirroring the config store files in the binary format.
+     */
+    public boolean isConfigStoreBinaryFormatEnabled() {
+        return mConfigStoreBinaryFormatEnabled;
+    }
+
+    /**
+     * Gets the feature flag for deferring the deserialization of config store data.
+     */
+    public boolean isConfigStoreLazyLoadingEnabled() {
+        return mConfigStoreLazyLoadingEnabled;
+    }
+
+    /**
+     * Gets the feature flag for persisting the Passpoint ANQP cache across restarts.
+     */
+    public boolean isAnqpCachePersistenceEnabled() {
+        return mAnqpCachePersistenceEnabled;
+    }
+
+    /**
+     * Gets the feature flag for matching Passpoint providers through a precompiled index.
+     */
+    public boolean isPasspointMatchIndexEnabled() {
+        return mPasspointMatchIndexEnabled;
+    }
+
     /*
      * Sets the listener to be notified when the OOB Pseudonym feature is enabled;
      * Only 1 listener is accepted.
@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.net.MacAddress;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiSsid;
+import android.net.wifi.nl80211.NativeScanResult;
+import android.util.Log;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.wifi.hotspot2.NetworkDetail;
+import com.android.server.wifi.util.InformationElementUtil;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses the information elements of the scan results returned by wificond.
+ *
+ * The parsing of each result is independent of the others, so large batches are split into
+ * contiguous chunks which are parsed concurrently by a small bounded pool of worker threads
+ * (the calling thread parses one of the chunks). Small batches are parsed on the calling thread
+ * only. The returned array is always in the order of the input list.
+ *
+ * Only the stateless part of the conversion is done here. The SSID translation and the
+ * construction of the {@link ScanDetail}s are left to the caller, see
+ * {@link WifiNative#getScanResults(String)}.
+ */
+public class NativeScanResultConverter {
+    private static final String TAG = "NativeScanResultConverter";
+
+    /**
+     * Batches with fewer results than this are always parsed on the calling thread, the cost of
+     * dispatching the work is not worth it.
+     */
+    @VisibleForTesting
+    public static final int MIN_RESULTS_FOR_PARALLEL_PARSING = 64;
+    /**
+     * Maximum number of worker threads, in addition to the calling thread.
+     */
+    @VisibleForTesting
+    public static final int MAX_WORKER_THREADS = 3;
+    private static final long WORKER_KEEP_ALIVE_SECONDS = 10;
+
+    /**
+     * Result of the parsing of a single {@link NativeScanResult}.
+     */
+    public static class ParsedScanResult {
+        public final NativeScanResult nativeResult;
+        public final WifiSsid originalSsid;
+        public final MacAddress bssidMac;
+        public final String bssid;
+        public final ScanResult.InformationElement[] ies;
+        public final String flags;
+        public final NetworkDetail networkDetail;
+
+        ParsedScanResult(NativeScanResult nativeResult, WifiSsid originalSsid, MacAddress bssidMac,
+                String bssid, ScanResult.InformationElement[] ies, String flags,
+                NetworkDetail networkDetail) {
+            this.nativeResult = nativeResult;
+            this.originalSsid = originalSsid;
+            this.bssidMac = bssidMac;
+            this.bssid = bssid;
+            this.ies = ies;
+            this.flags = flags;
+            this.networkDetail = networkDetail;
+        }
+    }
+
+    private final int mNumWorkers;
+    private Executor mExecutor;
+
+    public NativeScanResultConverter() {
+        this(null, Math.min(MAX_WORKER_THREADS,
+                Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    /**
+     * @param executor executor running the workers, or null to create a bounded pool on first use.
+     * @param numWorkers number of chunks handed to the executor for large batches. Parsing is
+     *                   always done on the calling thread if this is not positive.
+     */
+    @VisibleForTesting
+    public NativeScanResultConverter(@Nullable Executor executor, int numWorkers) {
+        mExecutor = executor;
+        mNumWorkers = Math.max(0, numWorkers);
+    }
+
+    /**
+     * Parse the provided native scan results.
+     *
+     * @param isEnhancedOpenSupported whether the interface supports OWE, used to generate the
+     *                                capabilities string.
+     * @return an array of the same size and order as |nativeResults|, holding null for the
+     * results which are malformed and should be dropped.
+     */
+    public @NonNull ParsedScanResult[] parse(@NonNull List<NativeScanResult> nativeResults,
+            boolean isEnhancedOpenSupported) {
+        int size = nativeResults.size();
+        ParsedScanResult[] parsed = new ParsedScanResult[size];
+        if (mNumWorkers == 0 || size < MIN_RESULTS_FOR_PARALLEL_PARSING) {
+            parseRange(nativeResults, parsed, 0, size, isEnhancedOpenSupported);
+            return parsed;
+        }
+
+        int numChunks = mNumWorkers + 1;
+        int chunkSize = (size + numChunks - 1) / numChunks;
+        CountDownLatch latch = new CountDownLatch(mNumWorkers);
+        RuntimeException[] workerFailure = new RuntimeException[1];
+        Executor executor = getExecutor();
+        // The calling thread parses the first chunk, the workers parse the others.
+        for (int chunk = 1; chunk < numChunks; chunk++) {
+            int start = Math.min(size, chunk * chunkSize);
+            int end = Math.min(size, start + chunkSize);
+            executor.execute(() -> {
+                try {
+                    parseRange(nativeResults, parsed, start, end, isEnhancedOpenSupported);
+                } catch (RuntimeException e) {
+                    synchronized (workerFailure) {
+                        workerFailure[0] = e;
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        parseRange(nativeResults, parsed, 0, Math.min(size, chunkSize), isEnhancedOpenSupported);
+        awaitUninterruptibly(latch);
+        synchronized (workerFailure) {
+            if (workerFailure[0] != null) {
+                throw workerFailure[0];
+            }
+        }
+        return parsed;
+    }
+
+    private Executor getExecutor() {
+        if (mExecutor == null) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(0, mNumWorkers,
+                    WORKER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, TAG);
+                        thread.setDaemon(true);
+                        return thread;
+                    },
+                    // Never block or drop work if all the workers are busy.
+                    new ThreadPoolExecutor.CallerRunsPolicy());
+            mExecutor = executor;
+        }
+        return mExecutor;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void parseRange(List<NativeScanResult> nativeResults,
+            ParsedScanResult[] parsed, int start, int end, boolean isEnhancedOpenSupported) {
+        for (int i = start; i < end; i++) {
+            parsed[i] = parseOne(nativeResults.get(i), isEnhancedOpenSupported);
+        }
+    }
+
+    private static @Nullable ParsedScanResult parseOne(NativeScanResult result,
+            boolean isEnhancedOpenSupported) {
+        if (result.getSsid().length > 32) {
+            Log.e(TAG, "Invalid SSID length (> 32 bytes): "
+                    + Arrays.toString(result.getSsid()));
+            return null;
+        }
+        WifiSsid originalSsid = WifiSsid.fromBytes(result.getSsid());
+        MacAddress bssidMac = result.getBssid();
+        if (bssidMac == null) {
+            Log.e(TAG, "Invalid MAC (BSSID) for SSID " + originalSsid);
+            return null;
+        }
+        String bssid = bssidMac.toString();
+        ScanResult.InformationElement[] ies =
+                InformationElementUtil.parseInformationElements(result.getInformationElements());
+        InformationElementUtil.Capabilities capabilities =
+                new InformationElementUtil.Capabilities();
+        capabilities.from(ies, result.getCapabilities(), isEnhancedOpenSupported,
+                result.getFrequencyMhz());
+        String flags = capabilities.generateCapabilitiesString();
+        NetworkDetail networkDetail;
+        try {
+            networkDetail = new NetworkDetail(bssid, ies, null, result.getFrequencyMhz());
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "Illegal argument for scan result with bssid: " + bssid, e);
+            return null;
+        }
+        return new ParsedScanResult(result, originalSsid, bssidMac, bssid, ies, flags,
+                networkDetail);
+    }
+}
@@ -89,15 +89,25 @@ public class NetworkSuggestionNominator implements WifiNetworkSelector.NetworkNo
             boolean untrustedNetworkAllowed, boolean oemPaidNetworkAllowed,
             boolean oemPrivateNetworkAllowed, Set<Integer> restrictedNetworkAllowedUids,
             @NonNull OnConnectableListener onConnectableListener) {
-        if (scanDetails.isEmpty()) {
+        nominateNetworks(new ScanDetailIndex(scanDetails), untrustedNetworkAllowed,
+                oemPaidNetworkAllowed, oemPrivateNetworkAllowed, restrictedNetworkAllowedUids,
+                onConnectableListener);
+    }
+
+    @Override
+    public void nominateNetworks(ScanDetailIndex scanDetailIndex,
+            boolean untrustedNetworkAllowed, boolean oemPaidNetworkAllowed,
+            boolean oemPrivateNetworkAllowed, Set<Integer> restrictedNetworkAllowedUids,
+            @NonNull OnConnectableListener onConnectableListener) {
+        if (scanDetailIndex.size() == 0) {
             return;
         }
         MatchMetaInfo matchMetaInfo = new MatchMetaInfo();
 
         findMatchedPasspointSuggestionNetworks(
-                scanDetails, matchMetaInfo, untrustedNetworkAllowed, oemPaidNetworkAllowed,
-                oemPrivateNetworkAllowed, restrictedNetworkAllowedUids);
-        findMatchedSuggestionNetworks(scanDetails, matchMetaInfo, untrustedNetworkAllowed,
+                scanDetailIndex.getScanDetails(), matchMetaInfo, untrustedNetworkAllowed,
+                oemPaidNetworkAllowed, oemPrivateNetworkAllowed, restrictedNetworkAllowedUids);
+        findMatchedSuggestionNetworks(scanDetailIndex, matchMetaInfo, untrustedNetworkAllowed,
                 oemPaidNetworkAllowed,
                 oemPrivateNetworkAllowed, restrictedNetworkAllowedUids);
 
@@ -227,13 +237,14 @@ public class NetworkSuggestionNominator implements WifiNetworkSelector.NetworkNo
         }
     }
 
-    private void findMatchedSuggestionNetworks(List<ScanDetail> scanDetails,
+    private void findMatchedSuggestionNetworks(ScanDetailIndex scanDetailIndex,
             MatchMetaInfo matchMetaInfo, boolean untrustedNetworkAllowed,
             boolean oemPaidNetworkAllowed,
             boolean oemPrivateNetworkAllowed, Set<Integer> restrictedNetworkAllowedUids) {
-        for (ScanDetail scanDetail : scanDetails) {
+        for (ScanDetail scanDetail : scanDetailIndex.getScanDetails()) {
             Set<ExtendedWifiNetworkSuggestion> matchingExtNetworkSuggestions =
-                    mWifiNetworkSuggestionsManager.getNetworkSuggestionsForScanDetail(scanDetail);
+                    mWifiNetworkSuggestionsManager.getNetworkSuggestionsForScanDetail(
+                            scanDetail, scanDetailIndex);
             if (matchingExtNetworkSuggestions.isEmpty()) {
                 continue;
             }
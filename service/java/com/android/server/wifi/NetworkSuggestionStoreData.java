@@ -149,6 +149,13 @@ public class NetworkSuggestionStoreData implements WifiConfigStore.StoreData {
         return XML_TAG_SECTION_HEADER_NETWORK_SUGGESTION_MAP;
     }
 
+    @Override
+    public boolean supportsLazyLoading() {
+        // Suggestions are only needed once the user store has been read and apps interact with
+        // the suggestions API, the manager loads them on first access.
+        return true;
+    }
+
     @Override
     public @WifiConfigStore.StoreFileId int getStoreFileId() {
         return WifiConfigStore.STORE_FILE_USER_NETWORK_SUGGESTIONS;
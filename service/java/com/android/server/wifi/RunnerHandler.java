@@ -26,15 +26,22 @@ import android.os.SystemClock;
 import android.os.Trace;
 import android.util.LocalLog;
 
+import com.android.internal.annotations.VisibleForTesting;
 import com.android.modules.utils.HandlerExecutor;
 
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 
 /**
  * RunnerHandler tracks all the Runnable jobs posted to the handler for the running time and
  * monitor if the running time exceeds the expected threshold.
  *
+ * By default the signature of a job is the task name passed to {@link WifiThreadRunner}, or is
+ * derived from the class of the posted task when the job is dispatched, which costs nothing at
+ * post time. When verbose logging is enabled, the signature is instead derived from the stack
+ * trace of the caller who posted the job.
  */
 public class RunnerHandler extends Handler {
     private static final String TAG = "WifiThreadRunner";
@@ -42,11 +49,24 @@ public class RunnerHandler extends Handler {
     private static final String KEY_SIGNATURE = "KEY_RUNNER_HANDLER_SIGNATURE";
     private static final String KEY_WHEN = "KEY_RUNNER_HANDLER_WHEN";
     private static final int METRICS_THRESHOLD_MILLIS = 100;
+    private static final String UNKNOWN_SIGNATURE = "<UNKNOWN>";
+    private static final String LEGACY_LAMBDA_PREFIX = "-$$Lambda$";
+    private static final String LAMBDA_SUFFIX = "#lambda";
+    /** Marks messages queued by {@link #postToFront(Runnable)}, see {@link #getEnqueueTime}. */
+    @VisibleForTesting
+    static final int MSG_WHAT_POST_TO_FRONT = 0x52484654;
+    /** Marks messages whose obj is the task name, see {@link WifiThreadRunner#post}. */
+    static final int MSG_WHAT_NAMED_TASK = 0x52484e54;
+    @VisibleForTesting
+    static final int MAX_INTERNED_SIGNATURES = 512;
 
     private final int mRunningTimeThresholdInMilliseconds;
     private final WifiMetrics mWifiMetrics;
     private Set<String> mIgnoredClasses = new HashSet<>();
     private Set<String> mIgnoredMethods = new HashSet<>();
+    // Only accessed from the looper thread in dispatchMessage().
+    private final Map<Class<?>, String> mInternedSignatures = new HashMap<>();
+    private volatile boolean mVerboseLoggingEnabled = false;
 
     // TODO: b/246623192 Add Wifi metric for Runner state overruns.
     private final LocalLog mLocalLog;
@@ -73,6 +93,79 @@ public class RunnerHandler extends Handler {
         mIgnoredMethods.add("handleMessage");
     }
 
+    /**
+     * Enable verbose logging. When enabled, the signature of each job is computed by walking the
+     * stack trace of the poster, which is expensive but identifies the exact calling method.
+     */
+    public void enableVerboseLogging(boolean verboseEnabled) {
+        mVerboseLoggingEnabled = verboseEnabled;
+    }
+
+    /**
+     * Get the signature of a job from the name of its task, or else from the class of the task.
+     * Tasks run by {@link WifiThreadRunner#call}, {@link WifiThreadRunner#run} and
+     * {@link WifiThreadRunner#runAtFront} are unwrapped first. Signatures derived from classes
+     * are cached in a bounded table so that repeated lookups do not allocate.
+     */
+    @VisibleForTesting
+    String getSignature(Runnable callback) {
+        if (callback == null) {
+            return UNKNOWN_SIGNATURE;
+        }
+        Object task = callback;
+        if (callback instanceof WifiThreadRunner.BlockingRunnable) {
+            WifiThreadRunner.BlockingRunnable blockingRunnable =
+                    (WifiThreadRunner.BlockingRunnable) callback;
+            if (blockingRunnable.getTaskName() != null) {
+                return blockingRunnable.getTaskName();
+            }
+            task = blockingRunnable.getTask();
+        }
+        Class<?> clazz = task.getClass();
+        String signature = mInternedSignatures.get(clazz);
+        if (signature != null) {
+            return signature;
+        }
+        signature = getClassSignature(clazz.getName());
+        if (mInternedSignatures.size() < MAX_INTERNED_SIGNATURES) {
+            mInternedSignatures.put(clazz, signature);
+        }
+        return signature;
+    }
+
+    /**
+     * Get the signature of a task from its class name, without the package. Lambdas are named
+     * after the class declaring them, since the names of their generated classes (e.g.
+     * Foo$$ExternalSyntheticLambda3) change from build to build.
+     */
+    @VisibleForTesting
+    static String getClassSignature(@NonNull String className) {
+        String simpleName = className.substring(className.lastIndexOf('.') + 1);
+        if (simpleName.startsWith(LEGACY_LAMBDA_PREFIX)) {
+            // -$$Lambda$Foo$<hash>
+            String declaringClass = simpleName.substring(LEGACY_LAMBDA_PREFIX.length());
+            int end = declaringClass.indexOf('$');
+            return (end > 0 ? declaringClass.substring(0, end) : declaringClass)
+                    + LAMBDA_SUFFIX;
+        }
+        // Foo$$ExternalSyntheticLambda3 or Foo$$Lambda$12/0x...
+        int lambdaIndex = simpleName.indexOf("$$");
+        if (lambdaIndex > 0) {
+            return simpleName.substring(0, lambdaIndex) + LAMBDA_SUFFIX;
+        }
+        return simpleName;
+    }
+
+    /**
+     * Get the signature of a message from the task name it carries, or else from its callback.
+     */
+    private String getSignature(@NonNull Message msg) {
+        if (msg.what == MSG_WHAT_NAMED_TASK && msg.obj instanceof String) {
+            return (String) msg.obj;
+        }
+        return getSignature(msg.getCallback());
+    }
+
     private String getSignature(StackTraceElement[] elements, Runnable callback) {
         StringBuilder sb = new StringBuilder();
         for (StackTraceElement e : elements) {
@@ -89,40 +182,58 @@ public class RunnerHandler extends Handler {
                 }
             }
             // The callback is the lambada function posted as Runnable#run function.
-            // If we can't identify the caller from the stack trace, then we will use the symbol
-            // of the lambada function as the signature of the caller.
+            // If we can't identify the caller from the stack trace, then we will use the
+            // signature of the callback class, without the identity hash of the instance.
             if (HandlerThread.class.getName().equals(e.getClassName())) {
-                sb.append(callback);
+                sb.append(getSignature(callback));
                 break;
             }
         }
-        return sb.length() == 0 ? "<UNKNOWN>" : sb.toString();
+        return sb.length() == 0 ? UNKNOWN_SIGNATURE : sb.toString();
     }
 
     @Override
     public boolean sendMessageAtTime(Message msg, long uptimeMillis) {
-        String signature = getSignature(new Throwable("RunnerHandler:").getStackTrace(),
-                msg.getCallback());
-        Bundle bundle = msg.getData();
-        bundle.putString(KEY_SIGNATURE, signature);
+        if (mVerboseLoggingEnabled) {
+            String signature = getSignature(new Throwable("RunnerHandler:").getStackTrace(),
+                    msg.getCallback());
+            Bundle bundle = msg.getData();
+            bundle.putString(KEY_SIGNATURE, signature);
+        }
         return super.sendMessageAtTime(msg, uptimeMillis);
     }
 
+    /**
+     * Get the time a message was enqueued. The message sent to front of the queue has when=0, so
+     * the enqueue time is recovered from the bundle or from the message args in that case.
+     */
+    private static long getEnqueueTime(@NonNull Message msg, Bundle bundle, long now) {
+        if (msg.getWhen() != 0) {
+            return msg.getWhen();
+        }
+        if (bundle != null && bundle.containsKey(KEY_WHEN)) {
+            return bundle.getLong(KEY_WHEN);
+        }
+        if (msg.what == MSG_WHAT_POST_TO_FRONT) {
+            return ((long) msg.arg1 << 32) | (msg.arg2 & 0xFFFFFFFFL);
+        }
+        return now;
+    }
+
     @Override
     public void dispatchMessage(@NonNull Message msg) {
-        final Bundle bundle = msg.getData();
-        final String signature = bundle.getString(KEY_SIGNATURE);
-        if (signature != null) {
-            Trace.traceBegin(Trace.TRACE_TAG_NETWORK, signature);
-        }
-        // The message sent to front of the queue has when=0, get from the bundle in that case.
-        final long when = msg.getWhen() != 0 ? msg.getWhen() : bundle.getLong(KEY_WHEN);
+        // peekData() does not allocate a Bundle for messages that carry none.
+        final Bundle bundle = msg.peekData();
+        // Metrics are always keyed by the task signature, so that enabling verbose logging does
+        // not change their key space. The stack trace based signature is only logged.
+        final String metricsSignature = getSignature(msg);
+        final String signature = bundle != null && bundle.containsKey(KEY_SIGNATURE)
+                ? bundle.getString(KEY_SIGNATURE) : metricsSignature;
+        Trace.traceBegin(Trace.TRACE_TAG_NETWORK, signature);
         final long start = SystemClock.uptimeMillis();
-        final long scheduleLatency = start - when;
+        final long scheduleLatency = start - getEnqueueTime(msg, bundle, start);
         super.dispatchMessage(msg);
-        if (signature != null) {
-            Trace.traceEnd(Trace.TRACE_TAG_NETWORK);
-        }
+        Trace.traceEnd(Trace.TRACE_TAG_NETWORK);
         final long runTime = SystemClock.uptimeMillis() - start;
         final String signatureToLog = signature != null ? signature : "unknown";
         if (runTime > mRunningTimeThresholdInMilliseconds) {
@@ -131,8 +242,10 @@ public class RunnerHandler extends Handler {
         if (scheduleLatency > WifiThreadRunner.getScissorsTimeoutThreshold()) {
             mLocalLog.log(signatureToLog + " schedule latency " + scheduleLatency + " ms");
         }
+        mWifiMetrics.wifiThreadTaskDispatched(metricsSignature, (int) scheduleLatency,
+                (int) runTime);
         if (runTime > METRICS_THRESHOLD_MILLIS || scheduleLatency > METRICS_THRESHOLD_MILLIS) {
-            mWifiMetrics.wifiThreadTaskExecuted(signatureToLog, (int) scheduleLatency,
+            mWifiMetrics.wifiThreadTaskExecuted(metricsSignature, (int) scheduleLatency,
                     (int) runTime);
         }
     }
@@ -146,11 +259,19 @@ public class RunnerHandler extends Handler {
      */
     public final boolean postToFront(@NonNull Runnable r) {
         Message msg = Message.obtain(this, r);
-        String signature = getSignature(new Throwable("RunnerHandler:").getStackTrace(),
-                msg.getCallback());
-        Bundle bundle = msg.getData();
-        bundle.putString(KEY_SIGNATURE, signature);
-        bundle.putLong(KEY_WHEN, SystemClock.uptimeMillis());
+        final long now = SystemClock.uptimeMillis();
+        if (mVerboseLoggingEnabled) {
+            String signature = getSignature(new Throwable("RunnerHandler:").getStackTrace(),
+                    msg.getCallback());
+            Bundle bundle = msg.getData();
+            bundle.putString(KEY_SIGNATURE, signature);
+            bundle.putLong(KEY_WHEN, now);
+        } else {
+            // Store the enqueue time in the message args to avoid allocating a Bundle.
+            msg.what = MSG_WHAT_POST_TO_FRONT;
+            msg.arg1 = (int) (now >>> 32);
+            msg.arg2 = (int) now;
+        }
         return sendMessageAtFrontOfQueue(msg);
     }
 }
@@ -101,19 +101,32 @@ public class SavedNetworkNominator implements WifiNetworkSelector.NetworkNominat
             boolean oemPrivateNetworkAllowed /* unused */,
             Set<Integer> restrictedNetworkAllowedUids /* unused */,
             @NonNull OnConnectableListener onConnectableListener) {
-        findMatchedSavedNetworks(scanDetails, onConnectableListener);
-        findMatchedPasspointNetworks(scanDetails, onConnectableListener);
+        nominateNetworks(new ScanDetailIndex(scanDetails), untrustedNetworkAllowed,
+                oemPaidNetworkAllowed, oemPrivateNetworkAllowed, restrictedNetworkAllowedUids,
+                onConnectableListener);
     }
 
-    private void findMatchedSavedNetworks(List<ScanDetail> scanDetails,
+    @Override
+    public void nominateNetworks(ScanDetailIndex scanDetailIndex,
+            boolean untrustedNetworkAllowed /* unused */,
+            boolean oemPaidNetworkAllowed /* unused */,
+            boolean oemPrivateNetworkAllowed /* unused */,
+            Set<Integer> restrictedNetworkAllowedUids /* unused */,
+            @NonNull OnConnectableListener onConnectableListener) {
+        findMatchedSavedNetworks(scanDetailIndex, onConnectableListener);
+        findMatchedPasspointNetworks(scanDetailIndex.getScanDetails(), onConnectableListener);
+    }
+
+    private void findMatchedSavedNetworks(ScanDetailIndex scanDetailIndex,
             OnConnectableListener onConnectableListener) {
+        List<ScanDetail> scanDetails = scanDetailIndex.getScanDetails();
         for (ScanDetail scanDetail : scanDetails) {
             ScanResult scanResult = scanDetail.getScanResult();
 
             // One ScanResult can be associated with more than one network, hence we calculate all
             // the scores and use the highest one as the ScanResult's score.
-            WifiConfiguration network =
-                    mWifiConfigManager.getSavedNetworkForScanDetailAndCache(scanDetail);
+            WifiConfiguration network = mWifiConfigManager.getSavedNetworkForScanDetailAndCache(
+                    scanDetail, scanDetailIndex);
 
             if (network == null) {
                 continue;
@@ -21,12 +21,15 @@ import android.net.wifi.ScanResult;
 import android.net.wifi.WifiConfiguration;
 
 import com.android.server.wifi.hotspot2.NetworkDetail;
+import com.android.server.wifi.util.BssidMap;
 
+import java.util.AbstractCollection;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 
 /**
  * Maps BSSIDs to their individual ScanDetails for a given WifiConfiguration.
@@ -35,18 +38,51 @@ public class ScanDetailCache {
 
     private static final String TAG = "ScanDetailCache";
     private static final boolean DBG = false;
+    private static final int INITIAL_SEEN_INDEX_CAPACITY = 16;
+
+    /**
+     * Orders entries by descending timestamp, followed by descending RSSI, followed by ascending
+     * BSSID, as listed by {@link #toString()}.
+     */
+    private static final Comparator<ScanDetail> RECENCY_ORDER = (a, b) -> {
+        ScanResult ra = a.getScanResult();
+        ScanResult rb = b.getScanResult();
+        if (ra.seen != rb.seen) {
+            return ra.seen > rb.seen ? -1 : 1;
+        }
+        if (ra.level != rb.level) {
+            return ra.level > rb.level ? -1 : 1;
+        }
+        return ra.BSSID.compareTo(rb.BSSID);
+    };
+
+    /**
+     * Position of a cached ScanDetail in the seen index. There is one key per cached BSSID,
+     * reused by every update of that BSSID. The seen time is copied when the entry is indexed so
+     * that in-place updates of the ScanDetail cannot corrupt the index.
+     */
+    private static final class SeenKey {
+        String bssid;
+        long seen;
+        ScanDetail scanDetail;
+    }
 
     private final WifiConfiguration mConfig;
     private final int mMaxSize;
     private final int mTrimSize;
-    private final HashMap<String, ScanDetail> mMap;
+    private final BssidMap<ScanDetail> mMap;
+    private final BssidMap<SeenKey> mSeenKeys;
+    // Keys of all the cached entries, sorted by ascending seen time followed by ascending BSSID,
+    // i.e. in eviction order.
+    private SeenKey[] mSeenIndex;
+    private int mSeenIndexSize;
 
     /**
      * Scan Detail cache associated with each configured network.
      *
      * The cache size is trimmed down to |trimSize| once it crosses the provided |maxSize|.
-     * Since this operation is relatively expensive, ensure that |maxSize| and |trimSize| are not
-     * too close to each other. |trimSize| should always be <= |maxSize|.
+     * The oldest entries are evicted first, using a secondary index ordered by the time each
+     * entry was last seen. |trimSize| should always be <= |maxSize|.
      *
      * @param config   WifiConfiguration object corresponding to the network.
      * @param maxSize  Max size desired for the cache.
@@ -56,16 +92,43 @@ public class ScanDetailCache {
         mConfig = config;
         mMaxSize = maxSize;
         mTrimSize = trimSize;
-        mMap = new HashMap(16, 0.75f);
+        mMap = new BssidMap<>();
+        mSeenKeys = new BssidMap<>();
+        mSeenIndex = new SeenKey[INITIAL_SEEN_INDEX_CAPACITY];
     }
 
     void put(ScanDetail scanDetail) {
-        // First check if we have reached |maxSize|. if yes, trim it down to |trimSize|.
-        if (mMap.size() >= mMaxSize) {
-            trim();
+        String bssid = scanDetail.getBSSIDString();
+        SeenKey key = mSeenKeys.get(bssid);
+        if (key != null) {
+            // Updating an existing BSSID never triggers a trim.
+            removeFromSeenIndex(key);
+        } else {
+            // First check if we have reached |maxSize|. if yes, trim it down to |trimSize|.
+            if (mMap.size() >= mMaxSize) {
+                trim();
+            }
+            key = new SeenKey();
+            mSeenKeys.put(bssid, key);
         }
 
-        mMap.put(scanDetail.getBSSIDString(), scanDetail);
+        mMap.put(bssid, scanDetail);
+        addToSeenIndex(key, scanDetail);
+    }
+
+    /**
+     * Re-index the entry for the provided BSSID. Must be invoked whenever the seen timestamp of
+     * a cached ScanDetail is modified in place.
+     *
+     * @param bssid provided BSSID
+     */
+    void refresh(@NonNull String bssid) {
+        SeenKey key = mSeenKeys.get(bssid);
+        if (key == null) {
+            return;
+        }
+        removeFromSeenIndex(key);
+        addToSeenIndex(key, key.scanDetail);
     }
 
     /**
@@ -91,6 +154,10 @@ public class ScanDetailCache {
 
     void remove(@NonNull String bssid) {
         mMap.remove(bssid);
+        SeenKey key = mSeenKeys.remove(bssid);
+        if (key != null) {
+            removeFromSeenIndex(key);
+        }
     }
 
     int size() {
@@ -101,8 +168,33 @@ public class ScanDetailCache {
         return size() == 0;
     }
 
+    /**
+     * Returns a read-only view of the cached BSSIDs. No copy is made, so the view must not be
+     * iterated while the cache is being modified.
+     */
     Collection<String> keySet() {
-        return mMap.keySet();
+        return new AbstractCollection<String>() {
+            @Override
+            public Iterator<String> iterator() {
+                Iterator<ScanDetail> it = mMap.values().iterator();
+                return new Iterator<String>() {
+                    @Override
+                    public boolean hasNext() {
+                        return it.hasNext();
+                    }
+
+                    @Override
+                    public String next() {
+                        return it.next().getBSSIDString();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return mMap.size();
+            }
+        };
     }
 
     Collection<ScanDetail> values() {
@@ -110,78 +202,99 @@ public class ScanDetailCache {
     }
 
     /**
-     * Method to reduce the cache to |mTrimSize| size by removing the oldest entries.
-     * TODO: Investigate if this method can be further optimized.
+     * Compares the key to the provided seen time and BSSID, in the order of the seen index.
+     */
+    private static int compareSeen(SeenKey key, long seen, String bssid) {
+        if (key.seen != seen) {
+            return key.seen < seen ? -1 : 1;
+        }
+        return key.bssid.compareTo(bssid);
+    }
+
+    /**
+     * Binary search of the seen index.
+     *
+     * @return the position of the entry with the provided seen time and BSSID if indexed,
+     *         otherwise (-(insertion point) - 1).
+     */
+    private int searchSeenIndex(long seen, String bssid) {
+        int low = 0;
+        int high = mSeenIndexSize - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int cmp = compareSeen(mSeenIndex[mid], seen, bssid);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private void addToSeenIndex(SeenKey key, ScanDetail scanDetail) {
+        key.bssid = scanDetail.getBSSIDString();
+        key.seen = scanDetail.getSeen();
+        key.scanDetail = scanDetail;
+        int index = -(searchSeenIndex(key.seen, key.bssid) + 1);
+        if (mSeenIndexSize == mSeenIndex.length) {
+            mSeenIndex = Arrays.copyOf(mSeenIndex, mSeenIndex.length * 2);
+        }
+        System.arraycopy(mSeenIndex, index, mSeenIndex, index + 1, mSeenIndexSize - index);
+        mSeenIndex[index] = key;
+        mSeenIndexSize++;
+    }
+
+    private void removeFromSeenIndex(SeenKey key) {
+        int index = searchSeenIndex(key.seen, key.bssid);
+        if (index < 0) {
+            return;
+        }
+        mSeenIndexSize--;
+        System.arraycopy(mSeenIndex, index + 1, mSeenIndex, index, mSeenIndexSize - index);
+        mSeenIndex[mSeenIndexSize] = null;
+    }
+
+    /**
+     * Method to reduce the cache to |mTrimSize| size by removing the oldest entries. Entries
+     * seen at the same time are evicted in ascending BSSID order.
      */
     private void trim() {
-        int currentSize = mMap.size();
-        if (currentSize < mTrimSize) {
+        int count = Math.min(mMap.size() - mTrimSize, mSeenIndexSize);
+        if (count <= 0) {
             return; // Nothing to trim
         }
-        ArrayList<ScanDetail> list = new ArrayList<ScanDetail>(mMap.values());
-        if (list.size() != 0) {
-            // Sort by ascending timestamp (oldest scan results first)
-            Collections.sort(list, new Comparator() {
-                public int compare(Object o1, Object o2) {
-                    ScanDetail a = (ScanDetail) o1;
-                    ScanDetail b = (ScanDetail) o2;
-                    if (a.getSeen() > b.getSeen()) {
-                        return 1;
-                    }
-                    if (a.getSeen() < b.getSeen()) {
-                        return -1;
-                    }
-                    return a.getBSSIDString().compareTo(b.getBSSIDString());
-                }
-            });
-        }
-        for (int i = 0; i < currentSize - mTrimSize; i++) {
+        for (int i = 0; i < count; i++) {
             // Remove oldest results from scan cache
-            ScanDetail result = list.get(i);
-            mMap.remove(result.getBSSIDString());
+            String bssid = mSeenIndex[i].bssid;
+            mSeenKeys.remove(bssid);
+            mMap.remove(bssid);
         }
+        mSeenIndexSize -= count;
+        System.arraycopy(mSeenIndex, count, mSeenIndex, 0, mSeenIndexSize);
+        Arrays.fill(mSeenIndex, mSeenIndexSize, mSeenIndexSize + count, null);
     }
 
     /**
-     * Return the most recent ScanResult for this network, or null if non exists.
+     * Return the most recent ScanResult for this network, or null if non exists. Entries seen
+     * at the same time are ordered by descending RSSI, followed by ascending BSSID.
      */
     public ScanResult getMostRecentScanResult() {
-        ArrayList<ScanDetail> list = sort();
-        if (list.size() == 0) {
+        if (mSeenIndexSize == 0) {
             return null;
         }
-        return list.get(0).getScanResult();
-    }
-
-    /**
-     * Returns the list of sorted ScanDetails in descending order of timestamp, followed by
-     * descending order of RSSI.
-     * @hide
-     **/
-    private ArrayList<ScanDetail> sort() {
-        ArrayList<ScanDetail> list = new ArrayList<ScanDetail>(mMap.values());
-        if (list.size() != 0) {
-            Collections.sort(list, new Comparator() {
-                public int compare(Object o1, Object o2) {
-                    ScanResult a = ((ScanDetail) o1).getScanResult();
-                    ScanResult b = ((ScanDetail) o2).getScanResult();
-                    if (a.seen > b.seen) {
-                        return -1;
-                    }
-                    if (a.seen < b.seen) {
-                        return 1;
-                    }
-                    if (a.level > b.level) {
-                        return -1;
-                    }
-                    if (a.level < b.level) {
-                        return 1;
-                    }
-                    return a.BSSID.compareTo(b.BSSID);
-                }
-            });
+        // The most recent entries are at the end of the index, in ascending BSSID order.
+        long newest = mSeenIndex[mSeenIndexSize - 1].seen;
+        ScanResult mostRecent = null;
+        for (int i = mSeenIndexSize - 1; i >= 0 && mSeenIndex[i].seen == newest; i--) {
+            ScanResult result = mSeenIndex[i].scanDetail.getScanResult();
+            if (mostRecent == null || result.level >= mostRecent.level) {
+                mostRecent = result;
+            }
         }
-        return list;
+        return mostRecent;
     }
 
     @Override
@@ -189,7 +302,8 @@ public class ScanDetailCache {
         StringBuilder sbuf = new StringBuilder();
         sbuf.append("Scan Cache:  ").append('\n');
 
-        ArrayList<ScanDetail> list = sort();
+        List<ScanDetail> list = new ArrayList<>(mMap.values());
+        list.sort(RECENCY_ORDER);
         long now_ms = System.currentTimeMillis();
         if (list.size() > 0) {
             for (ScanDetail scanDetail : list) {
@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.net.MacAddress;
+import android.net.wifi.ScanResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the scan details considered by a single network selection.
+ *
+ * The {@link ScanResultMatchInfo} and BSSID of every scan detail are computed once when the index
+ * is built, and shared by all the {@link WifiNetworkSelector.NetworkNominator}s and by
+ * {@link WifiCandidates}, so that matching a scan detail against the configured networks and
+ * suggestions is a hash lookup.
+ *
+ * Note: This class is not thread-safe, and the scan details must not be modified while indexed.
+ */
+public class ScanDetailIndex {
+    private final List<ScanDetail> mScanDetails;
+    private final Map<ScanDetail, ScanResultMatchInfo> mMatchInfos = new IdentityHashMap<>();
+    private final Map<ScanDetail, MacAddress> mBssids = new IdentityHashMap<>();
+    private final Map<String, ScanDetail> mScanDetailsByBssid = new HashMap<>();
+
+    public ScanDetailIndex(@NonNull List<ScanDetail> scanDetails) {
+        mScanDetails = Collections.unmodifiableList(new ArrayList<>(scanDetails));
+        for (ScanDetail scanDetail : mScanDetails) {
+            ScanResult scanResult = scanDetail.getScanResult();
+            ScanResultMatchInfo matchInfo = ScanResultMatchInfo.fromScanResult(scanResult);
+            mMatchInfos.put(scanDetail, matchInfo);
+            if (scanResult.BSSID == null) {
+                continue;
+            }
+            // Keep the first scan detail for a BSSID, like a linear search would.
+            mScanDetailsByBssid.putIfAbsent(scanResult.BSSID, scanDetail);
+            try {
+                mBssids.put(scanDetail, MacAddress.fromString(scanResult.BSSID));
+            } catch (IllegalArgumentException e) {
+                // Leave the BSSID unknown, the consumers handle it like a failed lookup.
+            }
+        }
+    }
+
+    /**
+     * @return the indexed scan details, in their original order.
+     */
+    public @NonNull List<ScanDetail> getScanDetails() {
+        return mScanDetails;
+    }
+
+    /**
+     * @return the number of indexed scan details.
+     */
+    public int size() {
+        return mScanDetails.size();
+    }
+
+    /**
+     * Get the match info of a scan detail. Scan details which are not indexed are supported, but
+     * their match info is computed on every call.
+     */
+    public @NonNull ScanResultMatchInfo getScanResultMatchInfo(@NonNull ScanDetail scanDetail) {
+        ScanResultMatchInfo matchInfo = mMatchInfos.get(scanDetail);
+        if (matchInfo == null) {
+            matchInfo = ScanResultMatchInfo.fromScanResult(scanDetail.getScanResult());
+        }
+        return matchInfo;
+    }
+
+    /**
+     * Get the BSSID of a scan detail.
+     * @return the BSSID, or null if it is missing or malformed.
+     */
+    public @Nullable MacAddress getBssid(@NonNull ScanDetail scanDetail) {
+        if (mMatchInfos.containsKey(scanDetail)) {
+            return mBssids.get(scanDetail);
+        }
+        String bssid = scanDetail.getScanResult().BSSID;
+        if (bssid == null) {
+            return null;
+        }
+        try {
+            return MacAddress.fromString(bssid);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the first indexed scan detail with the provided BSSID, or null if there is none.
+     */
+    public @Nullable ScanDetail getScanDetailForBssid(@Nullable String bssid) {
+        return bssid == null ? null : mScanDetailsByBssid.get(bssid);
+    }
+}
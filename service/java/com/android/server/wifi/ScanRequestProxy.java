@@ -26,6 +26,7 @@ import android.app.BroadcastOptions;
 import android.content.Context;
 import android.content.Intent;
 import android.net.wifi.IScanResultsCallback;
+import android.net.wifi.IScanResultsDeltaCallback;
 import android.net.wifi.ScanResult;
 import android.net.wifi.WifiManager;
 import android.net.wifi.WifiScanner;
@@ -48,13 +49,10 @@ import com.android.server.wifi.scanner.WifiScannerInternal;
 import com.android.server.wifi.util.WifiPermissionsUtil;
 import com.android.wifi.resources.R;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
 
 import javax.annotation.concurrent.NotThreadSafe;
 
@@ -119,11 +117,31 @@ public class ScanRequestProxy {
     private final ArrayMap<Pair<Integer, String>, LinkedList<Long>> mLastScanTimestampsForFgApps =
             new ArrayMap();
     // Scan results cached from the last full single scan request.
-    // Stored as a map of bssid -> ScanResult to allow other clients to perform ScanResult lookup
-    // for bssid more efficiently.
-    private final Map<String, ScanResult> mLastScanResultsMap = new HashMap<>();
+    // Indexed by bssid to allow other clients to perform ScanResult lookup for bssid more
+    // efficiently.
+    private final ScanResultStore mLastScanResults = new ScanResultStore();
     // external ScanResultCallback tracker
     private final RemoteCallbackList<IScanResultsCallback> mRegisteredScanResultsCallbacks;
+    // external ScanResultsDeltaCallback tracker
+    private final RemoteCallbackList<IScanResultsDeltaCallback>
+            mRegisteredScanResultsDeltaCallbacks;
+
+    /**
+     * Max number of changed BSSIDs sent inline in a single
+     * {@link IScanResultsDeltaCallback#onScanResultsChanged}. Larger changes only send the
+     * generation, and the client is expected to fetch the scan results with
+     * {@link WifiManager#getScanResults()}, which is not bound by the oneway transaction buffer.
+     */
+    @VisibleForTesting
+    static final int MAX_SCAN_RESULTS_PER_DELTA = 64;
+
+    // Per-callback state, stored as the cookie of mRegisteredScanResultsDeltaCallbacks.
+    private static class ScanResultsDeltaCallbackState {
+        // Set until the callback has been told to resync, either on registration or after a
+        // failed delivery which left it with a gap in the changes.
+        public boolean resyncPending = true;
+    }
+
     private class GlobalScanListener implements WifiScanner.ScanListener {
         @Override
         public void onSuccess() {
@@ -154,19 +172,10 @@ public class ScanRequestProxy {
             // Only process full band scan results.
             if (WifiScanner.isFullBandScan(scanData.getScannedBandsInternal(), false)) {
                 // Store the last scan results & send out the scan completion broadcast.
-                mLastScanResultsMap.clear();
-                Arrays.stream(scanResults).forEach(s -> {
-                    ScanResult scanResult = mLastScanResultsMap.get(s.BSSID);
-                    // If a hidden network is configured, wificond may report two scan results for
-                    // the same BSS, ie. One with the SSID and another one without SSID. So avoid
-                    // overwriting the scan result of the same BSS with Hidden SSID scan result
-                    if (scanResult == null
-                            || TextUtils.isEmpty(scanResult.SSID) || !TextUtils.isEmpty(s.SSID)) {
-                        mLastScanResultsMap.put(s.BSSID, s);
-                    }
-                });
+                ScanResultStore.Delta delta = mLastScanResults.update(scanResults);
                 sendScanResultBroadcast(true);
                 sendScanResultsAvailableToCallbacks();
+                sendScanResultsDeltaToCallbacks(delta);
             }
         }
 
@@ -228,6 +237,7 @@ public class ScanRequestProxy {
         mClock = clock;
         mSettingsConfigStore = settingsConfigStore;
         mRegisteredScanResultsCallbacks = new RemoteCallbackList<>();
+        mRegisteredScanResultsDeltaCallbacks = new RemoteCallbackList<>();
     }
 
     /**
@@ -548,7 +558,24 @@ public class ScanRequestProxy {
      */
     public List<ScanResult> getScanResults() {
         // return a copy to prevent external modification
-        return new ArrayList<>(mLastScanResultsMap.values());
+        return mLastScanResults.getScanResults();
+    }
+
+    /**
+     * Return the generation of the cached scan results. The generation is bumped every time the
+     * cached scan results change.
+     */
+    public long getScanResultsGeneration() {
+        return mLastScanResults.getGeneration();
+    }
+
+    /**
+     * Return the changes of the cached scan results since the provided generation, as returned
+     * by {@link #getScanResultsGeneration()}. If the generation is too old, a full snapshot of
+     * the scan results is returned instead.
+     */
+    public @NonNull ScanResultStore.Delta getScanResultsChangedSince(long generation) {
+        return mLastScanResults.getChangesSince(generation);
     }
 
     /**
@@ -558,7 +585,7 @@ public class ScanRequestProxy {
      * @return ScanResult for the corresponding bssid if found, null otherwise.
      */
     public @Nullable ScanResult getScanResult(@NonNull String bssid) {
-        ScanResult scanResult = mLastScanResultsMap.get(bssid);
+        ScanResult scanResult = mLastScanResults.get(bssid);
         if (scanResult == null) return null;
         // return a copy to prevent external modification
         return new ScanResult(scanResult);
@@ -570,10 +597,10 @@ public class ScanRequestProxy {
      */
     private void clearScanResults() {
         synchronized (mThrottleEnabledLock) {
-            mLastScanResultsMap.clear();
             mLastScanTimestampForBgApps = 0;
             mLastScanTimestampsForFgApps.clear();
         }
+        sendScanResultsDeltaToCallbacks(mLastScanResults.clear());
     }
 
     /**
@@ -604,6 +631,42 @@ public class ScanRequestProxy {
         mRegisteredScanResultsCallbacks.finishBroadcast();
     }
 
+    private void sendScanResultsDeltaToCallbacks(ScanResultStore.Delta delta) {
+        if (delta.isEmpty()) {
+            return;
+        }
+        int itemCount = mRegisteredScanResultsDeltaCallbacks.beginBroadcast();
+        for (int i = 0; i < itemCount; i++) {
+            sendScanResultsDelta(mRegisteredScanResultsDeltaCallbacks.getBroadcastItem(i),
+                    (ScanResultsDeltaCallbackState)
+                            mRegisteredScanResultsDeltaCallbacks.getBroadcastCookie(i),
+                    delta);
+        }
+        mRegisteredScanResultsDeltaCallbacks.finishBroadcast();
+    }
+
+    private void sendScanResultsDelta(IScanResultsDeltaCallback callback,
+            ScanResultsDeltaCallbackState state, ScanResultStore.Delta delta) {
+        boolean resync = state.resyncPending || delta.isFullSnapshot
+                || delta.added.size() + delta.updated.size() + delta.removedBssids.size()
+                        > MAX_SCAN_RESULTS_PER_DELTA;
+        try {
+            if (resync) {
+                // Only send the generation, the client pulls the scan results itself.
+                callback.onScanResultsChanged(delta.generation, true, Collections.emptyList(),
+                        Collections.emptyList(), Collections.emptyList());
+            } else {
+                callback.onScanResultsChanged(delta.generation, false, delta.added,
+                        delta.updated, delta.removedBssids);
+            }
+            state.resyncPending = false;
+        } catch (RemoteException e) {
+            // The client missed these changes, so the next delivery must make it resync.
+            Log.e(TAG, "onScanResultsChanged: remote exception -- " + e);
+            state.resyncPending = true;
+        }
+    }
+
     /**
      * Register a callback on scan event
      * @param callback IScanResultListener instance to add.
@@ -621,6 +684,32 @@ public class ScanRequestProxy {
         mRegisteredScanResultsCallbacks.unregister(callback);
     }
 
+    /**
+     * Register a callback to receive the changes of the cached scan results. The callback is
+     * immediately told to resync with the current scan results, and then only sent the changes.
+     * @param callback IScanResultsDeltaCallback instance to add.
+     * @return true if succeed otherwise false.
+     */
+    public boolean registerScanResultsDeltaCallback(IScanResultsDeltaCallback callback) {
+        ScanResultsDeltaCallbackState state = new ScanResultsDeltaCallbackState();
+        if (!mRegisteredScanResultsDeltaCallbacks.register(callback, state)) {
+            return false;
+        }
+        sendScanResultsDelta(callback, state, new ScanResultStore.Delta(-1,
+                mLastScanResults.getGeneration(), true, Collections.emptyList(),
+                Collections.emptyList(), Collections.emptyList()));
+        return true;
+    }
+
+    /**
+     * Unregister a callback registered with
+     * {@link #registerScanResultsDeltaCallback(IScanResultsDeltaCallback)}.
+     * @param callback IScanResultsDeltaCallback instance to remove.
+     */
+    public void unregisterScanResultsDeltaCallback(IScanResultsDeltaCallback callback) {
+        mRegisteredScanResultsDeltaCallbacks.unregister(callback);
+    }
+
     /**
      * Enable/disable wifi scan throttling from 3rd party apps.
      */
@@ -649,50 +738,42 @@ public class ScanRequestProxy {
 
     /** Indicate whether there are WPA2 personal only networks. */
     public boolean isWpa2PersonalOnlyNetworkInRange(String ssid) {
-        return mLastScanResultsMap.values().stream().anyMatch(r ->
-                TextUtils.equals(ssid, r.getWifiSsid().toString())
-                        && ScanResultUtil.isScanResultForPskOnlyNetwork(r));
+        return mLastScanResults.anyMatch(ssid, ScanResultUtil::isScanResultForPskOnlyNetwork);
     }
 
     /** Indicate whether there are WPA3 only networks. */
     public boolean isWpa3PersonalOnlyNetworkInRange(String ssid) {
-        return mLastScanResultsMap.values().stream().anyMatch(r ->
-                TextUtils.equals(ssid, r.getWifiSsid().toString())
-                        && ScanResultUtil.isScanResultForSaeOnlyNetwork(r));
+        return mLastScanResults.anyMatch(ssid, ScanResultUtil::isScanResultForSaeOnlyNetwork);
     }
 
     /** Indicate whether there are WPA2/WPA3 transition mode networks. */
     public boolean isWpa2Wpa3PersonalTransitionNetworkInRange(String ssid) {
-        return mLastScanResultsMap.values().stream().anyMatch(r ->
+        // Unlike the other queries, this one matches the quoted SSID string rather than the
+        // WifiSsid, which differs for non UTF-8 SSIDs, so it can't use the SSID index.
+        return mLastScanResults.anyMatch(r ->
                 TextUtils.equals(ssid, ScanResultUtil.createQuotedSsid(r.SSID))
                         && ScanResultUtil.isScanResultForPskSaeTransitionNetwork(r));
     }
 
     /** Indicate whether there are OPEN only networks. */
     public boolean isOpenOnlyNetworkInRange(String ssid) {
-        return mLastScanResultsMap.values().stream().anyMatch(r ->
-                TextUtils.equals(ssid, r.getWifiSsid().toString())
-                        && ScanResultUtil.isScanResultForOpenOnlyNetwork(r));
+        return mLastScanResults.anyMatch(ssid, ScanResultUtil::isScanResultForOpenOnlyNetwork);
     }
 
     /** Indicate whether there are OWE only networks. */
     public boolean isOweOnlyNetworkInRange(String ssid) {
-        return mLastScanResultsMap.values().stream().anyMatch(r ->
-                TextUtils.equals(ssid, r.getWifiSsid().toString())
-                        && ScanResultUtil.isScanResultForOweOnlyNetwork(r));
+        return mLastScanResults.anyMatch(ssid, ScanResultUtil::isScanResultForOweOnlyNetwork);
     }
 
     /** Indicate whether there are WPA2 Enterprise only networks. */
     public boolean isWpa2EnterpriseOnlyNetworkInRange(String ssid) {
-        return mLastScanResultsMap.values().stream().anyMatch(r ->
-                TextUtils.equals(ssid, r.getWifiSsid().toString())
-                        && ScanResultUtil.isScanResultForWpa2EnterpriseOnlyNetwork(r));
+        return mLastScanResults.anyMatch(ssid,
+                ScanResultUtil::isScanResultForWpa2EnterpriseOnlyNetwork);
     }
 
     /** Indicate whether there are WPA3 Enterprise only networks. */
     public boolean isWpa3EnterpriseOnlyNetworkInRange(String ssid) {
-        return mLastScanResultsMap.values().stream().anyMatch(r ->
-                TextUtils.equals(ssid, r.getWifiSsid().toString())
-                        && ScanResultUtil.isScanResultForWpa3EnterpriseOnlyNetwork(r));
+        return mLastScanResults.anyMatch(ssid,
+                ScanResultUtil::isScanResultForWpa3EnterpriseOnlyNetwork);
     }
 }
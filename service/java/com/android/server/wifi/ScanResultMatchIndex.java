@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi;
+
+import android.annotation.NonNull;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiConfiguration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of a list of scan results by their {@link ScanResultMatchInfo}, used to find the scan
+ * results matching many network configurations.
+ *
+ * The match info of each scan result is computed once when the index is built, and the scan
+ * results are grouped by SSID. {@link ScanResultMatchInfo#equals(Object)} never matches infos
+ * with different SSIDs, so a lookup only compares the configuration against the scan results
+ * with the same SSID, instead of against every scan result.
+ *
+ * Note: This class is not thread-safe.
+ */
+public class ScanResultMatchIndex {
+    private final List<ScanResult> mScanResults;
+    // Scan results and their match infos by SSID, in the order of the scan result list.
+    private final Map<String, List<Entry>> mEntriesBySsid = new HashMap<>();
+
+    private static class Entry {
+        public final ScanResult scanResult;
+        public final ScanResultMatchInfo matchInfo;
+
+        Entry(ScanResult scanResult, ScanResultMatchInfo matchInfo) {
+            this.scanResult = scanResult;
+            this.matchInfo = matchInfo;
+        }
+    }
+
+    public ScanResultMatchIndex(@NonNull List<ScanResult> scanResults) {
+        mScanResults = new ArrayList<>(scanResults);
+        for (ScanResult scanResult : mScanResults) {
+            if (scanResult == null) continue;
+            ScanResultMatchInfo matchInfo = ScanResultMatchInfo.fromScanResult(scanResult);
+            if (matchInfo == null) continue;
+            mEntriesBySsid.computeIfAbsent(matchInfo.networkSsid, k -> new ArrayList<>())
+                    .add(new Entry(scanResult, matchInfo));
+        }
+    }
+
+    /**
+     * @return true if this index was built from the same scan result objects, in the same order,
+     *         as the provided list, so it can be reused for it.
+     */
+    public boolean isBuiltFrom(@NonNull List<ScanResult> scanResults) {
+        if (scanResults.size() != mScanResults.size()) {
+            return false;
+        }
+        for (int i = 0; i < mScanResults.size(); i++) {
+            if (scanResults.get(i) != mScanResults.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the scan results which may be authenticated by the provided configuration, in the
+     * order of the scan result list the index was built from.
+     */
+    @NonNull
+    public List<ScanResult> getMatchingScanResults(@NonNull WifiConfiguration config) {
+        List<ScanResult> matchingScanResults = new ArrayList<>();
+        ScanResultMatchInfo configMatchInfo = ScanResultMatchInfo.fromWifiConfiguration(config);
+        if (configMatchInfo == null) {
+            return matchingScanResults;
+        }
+        List<Entry> entries = mEntriesBySsid.get(configMatchInfo.networkSsid);
+        if (entries == null) {
+            return matchingScanResults;
+        }
+        for (Entry entry : entries) {
+            if (configMatchInfo.equals(entry.matchInfo)) {
+                matchingScanResults.add(entry.scanResult);
+            }
+        }
+        return matchingScanResults;
+    }
+}
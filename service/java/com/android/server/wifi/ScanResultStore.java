@@ -0,0 +1,425 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiSsid;
+import android.net.wifi.util.ScanResultUtil;
+import android.text.TextUtils;
+
+import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.wifi.util.BssidMap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Cache of the scan results from the last full band single scan, maintained incrementally.
+ *
+ * Every update which changes the cached results bumps a generation number. For each BSSID the
+ * cache remembers the generation at which it was added or last changed, and removed BSSIDs are
+ * remembered for the last {@link #MAX_TRACKED_GENERATIONS} generations, so that the changes since
+ * any recent generation can be computed without diffing whole scans. The results are also
+ * indexed by SSID to answer the "network in range" queries of {@link ScanRequestProxy}.
+ *
+ * Note: This class is not thread-safe. It needs to be invoked from the main Wifi thread only.
+ */
+public class ScanResultStore {
+    /**
+     * Number of generations for which removed BSSIDs are remembered. Changes since an older
+     * generation are reported as a full snapshot.
+     */
+    @VisibleForTesting
+    public static final int MAX_TRACKED_GENERATIONS = 32;
+    /**
+     * Minimum RSSI change, compared to the RSSI last reported for a BSSID, for which the BSSID is
+     * reported as updated. RSSI fluctuates between every scan, smaller changes are not reported.
+     */
+    @VisibleForTesting
+    public static final int RSSI_CHANGE_THRESHOLD_DB = 5;
+
+    /**
+     * Changes of the cached scan results between two generations.
+     */
+    public static class Delta {
+        /** Generation the changes are relative to. */
+        public final long fromGeneration;
+        /** Generation of the cache after applying the changes. */
+        public final long generation;
+        /**
+         * True if {@link #added} holds all the cached results, and the receiver should discard
+         * any result it knows about.
+         */
+        public final boolean isFullSnapshot;
+        /** Results for BSSIDs which were not in the cache at {@link #fromGeneration}. */
+        public final List<ScanResult> added;
+        /**
+         * Results for BSSIDs whose SSID, security or frequency changed, or whose RSSI changed by
+         * at least {@link #RSSI_CHANGE_THRESHOLD_DB}.
+         */
+        public final List<ScanResult> updated;
+        /** BSSIDs no longer in the cache. */
+        public final List<String> removedBssids;
+
+        Delta(long fromGeneration, long generation, boolean isFullSnapshot,
+                List<ScanResult> added, List<ScanResult> updated, List<String> removedBssids) {
+            this.fromGeneration = fromGeneration;
+            this.generation = generation;
+            this.isFullSnapshot = isFullSnapshot;
+            this.added = added;
+            this.updated = updated;
+            this.removedBssids = removedBssids;
+        }
+
+        /**
+         * @return true if there are no changes.
+         */
+        public boolean isEmpty() {
+            return !isFullSnapshot && added.isEmpty() && updated.isEmpty()
+                    && removedBssids.isEmpty();
+        }
+    }
+
+    private static class Entry {
+        public ScanResult scanResult;
+        // Generation since which the BSSID has been in the cache without interruption.
+        public long addedGeneration;
+        public long changedGeneration;
+        // RSSI of the result last reported as added or updated.
+        public int reportedLevel;
+        // Generation at which the BSSID was removed, if it is no longer in the cache.
+        public long removedGeneration = -1;
+        // Generation at which the BSSID was first added, and the [removed, added again)
+        // generation ranges during which it was not in the cache since then. Ranges older than
+        // the tracked generations are pruned.
+        public long firstAddedGeneration;
+        public List<long[]> absentRanges;
+
+        Entry(ScanResult scanResult, long generation) {
+            this.scanResult = scanResult;
+            this.addedGeneration = generation;
+            this.changedGeneration = generation;
+            this.reportedLevel = scanResult.level;
+            this.firstAddedGeneration = generation;
+        }
+
+        /**
+         * Whether the BSSID was in the cache at the provided generation, which must be older than
+         * the current generation and no older than the oldest tracked generation.
+         */
+        boolean wasInCacheAt(long generation) {
+            if (generation < firstAddedGeneration
+                    || (removedGeneration >= 0 && generation >= removedGeneration)) {
+                return false;
+            }
+            if (absentRanges != null) {
+                for (long[] range : absentRanges) {
+                    if (generation >= range[0] && generation < range[1]) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+    }
+
+    private final BssidMap<Entry> mEntries = new BssidMap<>();
+    // Entries of the BSSIDs removed from the cache, until they are added again or are older
+    // than the tracked generations.
+    private final BssidMap<Entry> mRemovedBssids = new BssidMap<>();
+    // SSID (as returned by |getSsidKey|) -> results with that SSID.
+    private final Map<String, List<ScanResult>> mSsidIndex = new HashMap<>();
+    private long mGeneration = 0;
+    // Oldest generation for which |getChangesSince| can compute an incremental delta.
+    private long mOldestTrackedGeneration = 0;
+    // Snapshot of all the cached results, rebuilt on first access after a change.
+    private List<ScanResult> mSnapshot = Collections.emptyList();
+    private boolean mSnapshotStale = false;
+
+    /**
+     * @return the current generation of the cache.
+     */
+    public long getGeneration() {
+        return mGeneration;
+    }
+
+    /**
+     * Replace the cached results with the results of a new full band scan.
+     *
+     * @return the changes compared to the previous generation.
+     */
+    public @NonNull Delta update(@NonNull ScanResult[] scanResults) {
+        BssidMap<ScanResult> newResults = new BssidMap<>(scanResults.length);
+        for (ScanResult s : scanResults) {
+            ScanResult scanResult = newResults.get(s.BSSID);
+            // If a hidden network is configured, wificond may report two scan results for
+            // the same BSS, ie. One with the SSID and another one without SSID. So avoid
+            // overwriting the scan result of the same BSS with Hidden SSID scan result
+            if (scanResult == null
+                    || TextUtils.isEmpty(scanResult.SSID) || !TextUtils.isEmpty(s.SSID)) {
+                newResults.put(s.BSSID, s);
+            }
+        }
+
+        long generation = mGeneration + 1;
+        List<ScanResult> added = new ArrayList<>();
+        List<ScanResult> updated = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (Entry entry : mEntries.values()) {
+            if (!newResults.containsKey(entry.scanResult.BSSID)) {
+                removed.add(entry.scanResult.BSSID);
+            }
+        }
+        List<Entry> removedEntries = new ArrayList<>(removed.size());
+        for (String bssid : removed) {
+            Entry entry = mEntries.remove(bssid);
+            removeFromSsidIndex(entry.scanResult);
+            removedEntries.add(entry);
+        }
+        for (ScanResult scanResult : newResults.values()) {
+            Entry entry = mEntries.get(scanResult.BSSID);
+            if (entry == null) {
+                entry = new Entry(scanResult, generation);
+                Entry removedEntry = mRemovedBssids.remove(scanResult.BSSID);
+                if (removedEntry != null) {
+                    inheritHistory(entry, removedEntry);
+                }
+                mEntries.put(scanResult.BSSID, entry);
+                addToSsidIndex(scanResult);
+                added.add(scanResult);
+                continue;
+            }
+            // Always keep the latest result, even if only the timestamps changed.
+            removeFromSsidIndex(entry.scanResult);
+            if (isChanged(entry, scanResult)) {
+                entry.changedGeneration = generation;
+                entry.reportedLevel = scanResult.level;
+                updated.add(scanResult);
+            }
+            entry.scanResult = scanResult;
+            addToSsidIndex(scanResult);
+        }
+        if (added.isEmpty() && updated.isEmpty() && removed.isEmpty()) {
+            mSnapshotStale = true;
+            return new Delta(mGeneration, mGeneration, false, added, updated, removed);
+        }
+        for (Entry entry : removedEntries) {
+            markRemoved(entry, generation);
+        }
+        advanceGeneration(generation);
+        return new Delta(generation - 1, generation, false, added, updated, removed);
+    }
+
+    /**
+     * Remove all the cached results.
+     *
+     * @return the changes compared to the previous generation.
+     */
+    public @NonNull Delta clear() {
+        if (mEntries.isEmpty()) {
+            return new Delta(mGeneration, mGeneration, false, Collections.emptyList(),
+                    Collections.emptyList(), Collections.emptyList());
+        }
+        long generation = mGeneration + 1;
+        List<String> removed = new ArrayList<>(mEntries.size());
+        for (Entry entry : mEntries.values()) {
+            removed.add(entry.scanResult.BSSID);
+            markRemoved(entry, generation);
+        }
+        mEntries.clear();
+        mSsidIndex.clear();
+        advanceGeneration(generation);
+        return new Delta(generation - 1, generation, false, Collections.emptyList(),
+                Collections.emptyList(), removed);
+    }
+
+    /**
+     * Compute the changes of the cache since the provided generation. If the generation is too
+     * old (or unknown), a full snapshot is returned instead.
+     */
+    public @NonNull Delta getChangesSince(long generation) {
+        if (generation < mOldestTrackedGeneration || generation > mGeneration) {
+            return new Delta(generation, mGeneration, true, getScanResults(),
+                    Collections.emptyList(), Collections.emptyList());
+        }
+        List<ScanResult> added = new ArrayList<>();
+        List<ScanResult> updated = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (Entry entry : mEntries.values()) {
+            if (entry.addedGeneration > generation) {
+                // A BSSID removed and added again since |generation| is known to the receiver.
+                if (entry.wasInCacheAt(generation)) {
+                    updated.add(entry.scanResult);
+                } else {
+                    added.add(entry.scanResult);
+                }
+            } else if (entry.changedGeneration > generation) {
+                updated.add(entry.scanResult);
+            }
+        }
+        for (Entry entry : mRemovedBssids.values()) {
+            // A BSSID added and removed again since |generation| is unknown to the receiver.
+            if (entry.removedGeneration > generation && entry.wasInCacheAt(generation)) {
+                removed.add(entry.scanResult.BSSID);
+            }
+        }
+        return new Delta(generation, mGeneration, false, added, updated, removed);
+    }
+
+    /**
+     * @return a copy of all the cached results.
+     */
+    public @NonNull List<ScanResult> getScanResults() {
+        if (mSnapshotStale) {
+            List<ScanResult> snapshot = new ArrayList<>(mEntries.size());
+            for (Entry entry : mEntries.values()) {
+                snapshot.add(entry.scanResult);
+            }
+            mSnapshot = snapshot;
+            mSnapshotStale = false;
+        }
+        return new ArrayList<>(mSnapshot);
+    }
+
+    /**
+     * @return the cached result for the provided BSSID, or null if there is none.
+     */
+    public @Nullable ScanResult get(@NonNull String bssid) {
+        Entry entry = mEntries.get(bssid);
+        return entry == null ? null : entry.scanResult;
+    }
+
+    /**
+     * @return the number of cached results.
+     */
+    public int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * Check whether any of the cached results matches the predicate.
+     */
+    public boolean anyMatch(@NonNull Predicate<ScanResult> predicate) {
+        for (Entry entry : mEntries.values()) {
+            if (predicate.test(entry.scanResult)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether any of the cached results for the provided SSID matches the predicate.
+     *
+     * @param ssid SSID in the format of {@link WifiSsid#toString()}, i.e quoted for UTF-8 SSIDs.
+     */
+    public boolean anyMatch(@Nullable String ssid, @NonNull Predicate<ScanResult> predicate) {
+        List<ScanResult> scanResults = mSsidIndex.get(ssid);
+        if (scanResults == null) {
+            return false;
+        }
+        for (ScanResult scanResult : scanResults) {
+            if (predicate.test(scanResult)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void advanceGeneration(long generation) {
+        mGeneration = generation;
+        mSnapshotStale = true;
+        long oldestTrackedGeneration = mGeneration - MAX_TRACKED_GENERATIONS;
+        if (oldestTrackedGeneration > mOldestTrackedGeneration) {
+            mOldestTrackedGeneration = oldestTrackedGeneration;
+            List<String> expiredBssids = new ArrayList<>();
+            for (Entry entry : mRemovedBssids.values()) {
+                if (entry.removedGeneration <= mOldestTrackedGeneration) {
+                    expiredBssids.add(entry.scanResult.BSSID);
+                }
+            }
+            for (String bssid : expiredBssids) {
+                mRemovedBssids.remove(bssid);
+            }
+        }
+    }
+
+    private void markRemoved(Entry entry, long generation) {
+        entry.removedGeneration = generation;
+        mRemovedBssids.put(entry.scanResult.BSSID, entry);
+    }
+
+    /**
+     * Carry over the history of a BSSID which is added again to the cache, so that the changes
+     * since a generation at which it was in the cache report it as updated rather than added.
+     */
+    private void inheritHistory(Entry entry, Entry removedEntry) {
+        entry.firstAddedGeneration = removedEntry.firstAddedGeneration;
+        entry.absentRanges = removedEntry.absentRanges != null
+                ? removedEntry.absentRanges : new ArrayList<>(1);
+        entry.absentRanges.removeIf(range -> range[1] <= mOldestTrackedGeneration);
+        entry.absentRanges.add(new long[] {removedEntry.removedGeneration, entry.addedGeneration});
+    }
+
+    private static String getSsidKey(ScanResult scanResult) {
+        WifiSsid wifiSsid = scanResult.getWifiSsid();
+        return wifiSsid != null
+                ? wifiSsid.toString() : ScanResultUtil.createQuotedSsid(scanResult.SSID);
+    }
+
+    private void addToSsidIndex(ScanResult scanResult) {
+        String key = getSsidKey(scanResult);
+        List<ScanResult> scanResults = mSsidIndex.get(key);
+        if (scanResults == null) {
+            scanResults = new ArrayList<>(1);
+            mSsidIndex.put(key, scanResults);
+        }
+        scanResults.add(scanResult);
+    }
+
+    private void removeFromSsidIndex(ScanResult scanResult) {
+        String key = getSsidKey(scanResult);
+        List<ScanResult> scanResults = mSsidIndex.get(key);
+        if (scanResults == null) {
+            return;
+        }
+        scanResults.remove(scanResult);
+        if (scanResults.isEmpty()) {
+            mSsidIndex.remove(key);
+        }
+    }
+
+    /**
+     * Whether the new result for a BSSID should be reported as an update. Results of consecutive
+     * scans always differ in timestamps, those are not considered, and RSSI changes are only
+     * considered past {@link #RSSI_CHANGE_THRESHOLD_DB}.
+     */
+    private static boolean isChanged(Entry entry, ScanResult newResult) {
+        ScanResult oldResult = entry.scanResult;
+        return Math.abs(entry.reportedLevel - newResult.level) >= RSSI_CHANGE_THRESHOLD_DB
+                || oldResult.frequency != newResult.frequency
+                || oldResult.channelWidth != newResult.channelWidth
+                || !TextUtils.equals(oldResult.SSID, newResult.SSID)
+                || !TextUtils.equals(oldResult.capabilities, newResult.capabilities);
+    }
+}
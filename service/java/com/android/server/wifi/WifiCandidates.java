@@ -50,8 +50,18 @@ public class WifiCandidates {
 
     public WifiCandidates(@NonNull WifiScoreCard wifiScoreCard, @NonNull Context context,
             @NonNull List<Candidate> candidates) {
+        this(wifiScoreCard, context, candidates, null);
+    }
+
+    /**
+     * @param scanDetailIndex index of the scan details of the network selection, used to avoid
+     *                        recomputing the match info of each scan detail when making keys.
+     */
+    public WifiCandidates(@NonNull WifiScoreCard wifiScoreCard, @NonNull Context context,
+            @NonNull List<Candidate> candidates, @Nullable ScanDetailIndex scanDetailIndex) {
         mWifiScoreCard = Preconditions.checkNotNull(wifiScoreCard);
         mContext = context;
+        mScanDetailIndex = scanDetailIndex;
         for (Candidate c : candidates) {
             mCandidates.put(c.getKey(), c);
         }
@@ -59,6 +69,7 @@ public class WifiCandidates {
 
     private final WifiScoreCard mWifiScoreCard;
     private final Context mContext;
+    private final @Nullable ScanDetailIndex mScanDetailIndex;
 
     /**
      * Represents a connectable candidate.
@@ -635,12 +646,17 @@ public class WifiCandidates {
         if (!validConfigAndScanDetail(config, scanDetail)) return null;
 
         ScanResult scanResult = scanDetail.getScanResult();
-        SecurityParams params = ScanResultMatchInfo.fromScanResult(scanResult)
-                .matchForNetworkSelection(ScanResultMatchInfo.fromWifiConfiguration(config));
+        ScanResultMatchInfo matchInfo = mScanDetailIndex != null
+                ? mScanDetailIndex.getScanResultMatchInfo(scanDetail)
+                : ScanResultMatchInfo.fromScanResult(scanResult);
+        SecurityParams params = matchInfo.matchForNetworkSelection(
+                ScanResultMatchInfo.fromWifiConfiguration(config));
         if (null == params) return null;
-        MacAddress bssid = MacAddress.fromString(scanResult.BSSID);
-        return new Key(ScanResultMatchInfo.fromScanResult(scanResult), bssid, config.networkId,
-                params.getSecurityType());
+        MacAddress bssid = mScanDetailIndex != null ? mScanDetailIndex.getBssid(scanDetail) : null;
+        if (bssid == null) {
+            bssid = MacAddress.fromString(scanResult.BSSID);
+        }
+        return new Key(matchInfo, bssid, config.networkId, params.getSecurityType());
     }
 
     /**
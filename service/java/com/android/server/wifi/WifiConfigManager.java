@@ -297,6 +297,14 @@ public class WifiConfigManager {
      * Map of configured networks with network id as the key.
      */
     private final ConfigurationMap mConfiguredNetworks;
+    /**
+     * Snapshot returned by {@link #getConfiguredNetworksSnapshot()}, valid while the generation
+     * of {@link #mConfiguredNetworks} is unchanged.
+     */
+    private List<WifiConfiguration> mConfiguredNetworksSnapshot;
+    private long mConfiguredNetworksSnapshotGeneration;
+    private long mConfiguredNetworksSnapshotRequestCount = 0;
+    private long mConfiguredNetworksSnapshotBuildCount = 0;
     /**
      * Stores a map of NetworkId to ScanDetailCache.
      */
@@ -744,7 +752,7 @@ public class WifiConfigManager {
     private List<WifiConfiguration> getConfiguredNetworks(
             boolean savedOnly, boolean maskPasswords, int targetUid) {
         List<WifiConfiguration> networks = new ArrayList<>();
-        for (WifiConfiguration config : getInternalConfiguredNetworks()) {
+        for (WifiConfiguration config : mConfiguredNetworks.peekValuesForCurrentUser()) {
             if (savedOnly && (config.ephemeral || config.isPasspoint())) {
                 continue;
             }
@@ -762,6 +770,28 @@ public class WifiConfigManager {
         return getConfiguredNetworks(false, true, Process.WIFI_UID);
     }
 
+    /**
+     * Retrieves a read-only snapshot of all configured networks with passwords masked, as returned
+     * by {@link #getConfiguredNetworks()}.
+     *
+     * The snapshot is shared between callers and only rebuilt after the internal configurations
+     * may have changed, so neither the list nor the configurations may be modified. Use
+     * {@link #getConfiguredNetworks()} to get configurations which can be modified.
+     *
+     * @return List of WifiConfiguration objects representing the networks.
+     */
+    public @NonNull List<WifiConfiguration> getConfiguredNetworksSnapshot() {
+        mConfiguredNetworksSnapshotRequestCount++;
+        if (mConfiguredNetworksSnapshot == null
+                || mConfiguredNetworksSnapshotGeneration != mConfiguredNetworks.getGeneration()) {
+            mConfiguredNetworksSnapshot = Collections.unmodifiableList(
+                    getConfiguredNetworks(false, true, Process.WIFI_UID));
+            mConfiguredNetworksSnapshotGeneration = mConfiguredNetworks.getGeneration();
+            mConfiguredNetworksSnapshotBuildCount++;
+        }
+        return mConfiguredNetworksSnapshot;
+    }
+
     /**
      * Retrieves the list of all configured networks with the passwords in plaintext.
      *
@@ -792,7 +822,7 @@ public class WifiConfigManager {
      * @return WifiConfiguration object if found, null otherwise.
      */
     public @Nullable WifiConfiguration getConfiguredNetwork(int networkId) {
-        WifiConfiguration config = getInternalConfiguredNetwork(networkId);
+        WifiConfiguration config = peekInternalConfiguredNetwork(networkId);
         if (config == null) {
             return null;
         }
@@ -809,7 +839,7 @@ public class WifiConfigManager {
      * @return WifiConfiguration object if found, null otherwise.
      */
     public @Nullable WifiConfiguration getConfiguredNetwork(String configKey) {
-        WifiConfiguration config = getInternalConfiguredNetwork(configKey);
+        WifiConfiguration config = peekInternalConfiguredNetwork(configKey);
         if (config == null) {
             return null;
         }
@@ -829,7 +859,7 @@ public class WifiConfigManager {
      * @return WifiConfiguration object if found, null otherwise.
      */
     public @Nullable WifiConfiguration getConfiguredNetworkWithPassword(int networkId) {
-        WifiConfiguration config = getInternalConfiguredNetwork(networkId);
+        WifiConfiguration config = peekInternalConfiguredNetwork(networkId);
         if (config == null) {
             return null;
         }
@@ -849,7 +879,7 @@ public class WifiConfigManager {
      * @return Copy of WifiConfiguration object if found, null otherwise.
      */
     public @Nullable WifiConfiguration getConfiguredNetworkWithoutMasking(int networkId) {
-        WifiConfiguration config = getInternalConfiguredNetwork(networkId);
+        WifiConfiguration config = peekInternalConfiguredNetwork(networkId);
         if (config == null) {
             return null;
         }
@@ -952,6 +982,36 @@ public class WifiConfigManager {
         return internalConfig;
     }
 
+    /**
+     * Same as {@link #getInternalConfiguredNetwork(int)}, for a caller which only copies the
+     * internal WifiConfiguration object, and so does not invalidate the configured networks
+     * snapshot.
+     */
+    private @Nullable WifiConfiguration peekInternalConfiguredNetwork(int networkId) {
+        if (networkId == WifiConfiguration.INVALID_NETWORK_ID) {
+            return null;
+        }
+        WifiConfiguration internalConfig = mConfiguredNetworks.peekForCurrentUser(networkId);
+        if (internalConfig == null) {
+            Log.e(TAG, "Cannot find network with networkId " + networkId);
+        }
+        return internalConfig;
+    }
+
+    /**
+     * Same as {@link #getInternalConfiguredNetwork(String)}, for a caller which only copies the
+     * internal WifiConfiguration object, and so does not invalidate the configured networks
+     * snapshot.
+     */
+    private @Nullable WifiConfiguration peekInternalConfiguredNetwork(String configKey) {
+        WifiConfiguration internalConfig =
+                mConfiguredNetworks.peekByConfigKeyForCurrentUser(configKey);
+        if (internalConfig == null) {
+            Log.e(TAG, "Cannot find network with configKey " + configKey);
+        }
+        return internalConfig;
+    }
+
     /**
      * Method to send out the configured networks change broadcast when network configurations
      * changed.
@@ -2723,7 +2783,27 @@ public class WifiConfigManager {
      * null if none exists.
      */
     public WifiConfiguration getSavedNetworkForScanDetailAndCache(ScanDetail scanDetail) {
-        WifiConfiguration network = getSavedNetworkForScanDetail(scanDetail);
+        return getSavedNetworkForScanDetailAndCache(scanDetail, null);
+    }
+
+    /**
+     * Same as {@link #getSavedNetworkForScanDetailAndCache(ScanDetail)}, but uses the match info
+     * of the scan detail from the provided index instead of computing it.
+     *
+     * @param scanDetail input a scanDetail from the scan result
+     * @param scanDetailIndex index of the current network selection, or null.
+     * @return WifiConfiguration object representing the network corresponding to the scanDetail,
+     * null if none exists.
+     */
+    public WifiConfiguration getSavedNetworkForScanDetailAndCache(ScanDetail scanDetail,
+            @Nullable ScanDetailIndex scanDetailIndex) {
+        WifiConfiguration network;
+        if (scanDetailIndex == null) {
+            network = getSavedNetworkForScanDetail(scanDetail);
+        } else {
+            network = mConfiguredNetworks.getByScanResultMatchInfoForCurrentUser(
+                    scanDetailIndex.getScanResultMatchInfo(scanDetail));
+        }
         if (network == null) {
             return null;
         }
@@ -2768,6 +2848,8 @@ public class WifiConfigManager {
                     result.level = (int) ((double) result.level * (1 - alpha)
                                         + (double) previousRssi * alpha);
                 }
+                // Seen time and RSSI were modified in place, re-index the entry.
+                scanDetailCache.refresh(info.getBSSID());
                 if (mVerboseLoggingEnabled) {
                     Log.v(TAG, "Updating scan detail cache freq=" + result.frequency
                             + " BSSID=" + result.BSSID
@@ -2850,8 +2932,9 @@ public class WifiConfigManager {
             return false;
         }
         if (scanDetailCache1 != null && scanDetailCache2 != null) {
+            Collection<String> bssids2 = scanDetailCache2.keySet();
             for (String abssid : scanDetailCache1.keySet()) {
-                for (String bbssid : scanDetailCache2.keySet()) {
+                for (String bbssid : bssids2) {
                     if (abssid.regionMatches(
                             true, 0, bbssid, 0, LINK_CONFIGURATION_BSSID_MATCH_LENGTH)) {
                         if (mVerboseLoggingEnabled) {
@@ -3264,7 +3347,7 @@ public class WifiConfigManager {
             return new HashSet<>();
         }
         if (mUserManager.isUserUnlockingOrUnlocked(UserHandle.of(mCurrentUserId))) {
-            saveToStore(true);
+            saveToStoreImmediately();
         }
         // Remove any private networks of the old user before switching the userId.
         Set<Integer> removedNetworkIds = clearInternalDataForUser(mCurrentUserId);
@@ -3323,7 +3406,7 @@ public class WifiConfigManager {
         }
         if (userId == mCurrentUserId
                 && mUserManager.isUserUnlockingOrUnlocked(UserHandle.of(mCurrentUserId))) {
-            saveToStore(true);
+            saveToStoreImmediately();
             clearInternalDataForUser(mCurrentUserId);
         }
     }
@@ -3409,6 +3492,9 @@ public class WifiConfigManager {
                 Log.d(TAG, "Merging network from shared store "
                         + configuration.getProfileKey());
                 mergeWithInternalWifiConfiguration(existingConfiguration, configuration);
+                // Re-index the merged network, whose profile key may have changed.
+                mConfiguredNetworks.remove(existingConfiguration.networkId);
+                mConfiguredNetworks.put(existingConfiguration);
                 continue;
             }
 
@@ -3448,6 +3534,9 @@ public class WifiConfigManager {
                 Log.d(TAG, "Merging network from user store "
                         + configuration.getProfileKey());
                 mergeWithInternalWifiConfiguration(existingConfiguration, configuration);
+                // Re-index the merged network, whose profile key may have changed.
+                mConfiguredNetworks.remove(existingConfiguration.networkId);
+                mConfiguredNetworks.put(existingConfiguration);
                 continue;
             }
 
@@ -3624,8 +3713,14 @@ public class WifiConfigManager {
     /**
      * Save the current snapshot of the in-memory lists to the config store.
      *
+     * Note: When write coalescing is enabled in {@link WifiConfigStore}, a forced write is only
+     * queued, and is written to disk within {@link WifiConfigStore#COALESCED_WRITE_MAX_LATENCY_MS}
+     * or when {@link #flushCoalescedStoreWrites()} is called.
+     *
      * @param forceWrite Whether the write needs to be forced or not.
      * @return Whether the write was successful or not, this is applicable only for force writes.
+     *         If the forced write was queued by write coalescing, this only means that it was
+     *         queued successfully.
      */
     public synchronized boolean saveToStore(boolean forceWrite) {
         if (mPendingStoreRead) {
@@ -3686,7 +3781,42 @@ public class WifiConfigManager {
         try {
             long start = mClock.getElapsedSinceBootMillis();
             mWifiConfigStore.write(forceWrite);
-            mWifiMetrics.wifiConfigStored((int) (mClock.getElapsedSinceBootMillis() - start));
+            // A coalesced write only queues the data, its duration is not a store write time.
+            if (!forceWrite || !mWifiConfigStore.isWriteCoalescingEnabled()) {
+                mWifiMetrics.wifiConfigStored((int) (mClock.getElapsedSinceBootMillis() - start));
+            }
+        } catch (IOException | IllegalStateException e) {
+            Log.wtf(TAG, "Writing to store failed. Saved networks maybe lost!", e);
+            return false;
+        } catch (XmlPullParserException e) {
+            Log.wtf(TAG, "XML serialization for store failed. Saved networks maybe lost!", e);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Save the current snapshot of the in-memory lists to the config store and flush out any
+     * write delayed by write coalescing. Used before in-memory data is cleared.
+     *
+     * @return Whether the write was successful or not.
+     */
+    private boolean saveToStoreImmediately() {
+        if (!saveToStore(true)) {
+            return false;
+        }
+        return flushCoalescedStoreWrites();
+    }
+
+    /**
+     * Write to disk any forced write which was queued by write coalescing. Used before the device
+     * shuts down.
+     *
+     * @return Whether the write was successful or not.
+     */
+    public synchronized boolean flushCoalescedStoreWrites() {
+        try {
+            mWifiConfigStore.flushCoalescedWrites();
         } catch (IOException | IllegalStateException e) {
             Log.wtf(TAG, "Writing to store failed. Saved networks maybe lost!", e);
             return false;
@@ -3724,6 +3854,9 @@ public class WifiConfigManager {
         pw.println("WifiConfigManager - ConfigurationMap End ----");
         pw.println("WifiConfigManager - Next network ID to be allocated " + mNextNetworkId);
         pw.println("WifiConfigManager - Last selected network ID " + mLastSelectedNetworkId);
+        pw.println("WifiConfigManager - Configured networks snapshot built "
+                + mConfiguredNetworksSnapshotBuildCount + " times for "
+                + mConfiguredNetworksSnapshotRequestCount + " requests");
         pw.println("WifiConfigManager - PNO scan frequency culling enabled = "
                 + mContext.getResources().getBoolean(R.bool.config_wifiPnoFrequencyCullingEnabled));
         pw.println("WifiConfigManager - PNO scan recency sorting enabled = "
@@ -27,6 +27,8 @@ import android.net.wifi.WifiMigration;
 import android.net.wifi.util.Environment;
 import android.os.Handler;
 import android.os.UserHandle;
+import android.util.ArrayMap;
+import android.util.ArraySet;
 import android.util.AtomicFile;
 import android.util.Log;
 import android.util.SparseArray;
@@ -35,8 +37,11 @@ import android.util.Xml;
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.internal.util.FastXmlSerializer;
 import com.android.internal.util.Preconditions;
+import com.android.modules.utils.BinaryXmlPullParser;
+import com.android.modules.utils.BinaryXmlSerializer;
 import com.android.server.wifi.util.EncryptedData;
 import com.android.server.wifi.util.FileUtils;
+import com.android.server.wifi.util.WifiConfigStoreBinaryFormat;
 import com.android.server.wifi.util.WifiConfigStoreEncryptionUtil;
 import com.android.server.wifi.util.XmlUtil;
 
@@ -61,6 +66,7 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -153,6 +159,16 @@ public class WifiConfigStore {
      * Time interval for buffering file writes for non-forced writes
      */
     private static final int BUFFERED_WRITE_ALARM_INTERVAL_MS = 10 * 1000;
+    /**
+     * Quiet period after the last forced write request before coalesced writes are flushed.
+     */
+    @VisibleForTesting
+    public static final int COALESCED_WRITE_DEBOUNCE_MS = 100;
+    /**
+     * Max time a forced write request can be delayed by write coalescing.
+     */
+    @VisibleForTesting
+    public static final int COALESCED_WRITE_MAX_LATENCY_MS = 1000;
     /**
      * Config store file name for general shared store file.
      */
@@ -225,6 +241,61 @@ public class WifiConfigStore {
                 }
             };
 
+    /**
+     * Flag to indicate if store files should be mirrored in {@link WifiConfigStoreBinaryFormat}
+     * companion files, which are read instead of the XML store files when they are up to date.
+     */
+    private boolean mBinaryFormatEnabled = false;
+    /**
+     * Flag to indicate if forced writes should be coalesced.
+     */
+    private boolean mWriteCoalescingEnabled = false;
+    /**
+     * Store files with new data to be written by the next coalesced write.
+     */
+    private final Set<StoreFile> mDirtyStoreFiles = new ArraySet<>();
+    /**
+     * Time of the first forced write request absorbed by the pending coalesced write, or -1 if
+     * there is no pending coalesced write.
+     */
+    private long mFirstCoalescedWriteRequestTimeMs = -1;
+    /**
+     * Runnable for flushing out any coalesced writes.
+     */
+    private final Runnable mCoalescedWriteRunnable = () -> {
+        try {
+            flushCoalescedWrites();
+        } catch (IOException | IllegalStateException | XmlPullParserException e) {
+            Log.wtf(TAG, "Coalesced write failed", e);
+        }
+    };
+    /**
+     * Flag to indicate if deserialization of {@link StoreData} instances supporting lazy loading
+     * should be deferred until they are first requested.
+     */
+    private boolean mLazyLoadingEnabled = false;
+    /**
+     * Sections read from store files whose {@link StoreData} has not been deserialized yet.
+     */
+    private final Map<StoreData, PendingStoreData> mPendingStoreData = new ArrayMap<>();
+    /**
+     * Runnable for loading any deferred {@link StoreData} nobody has requested yet.
+     */
+    private final Runnable mLoadPendingStoreDataRunnable = this::loadAllPendingStoreData;
+    /**
+     * Per {@link StoreData} deserialization stats, keyed by {@link StoreData#getName()}.
+     */
+    private final Map<String, DeserializationStats> mDeserializationStats = new ArrayMap<>();
+    /**
+     * Write amplification counters.
+     */
+    private long mNumWriteRequests = 0;
+    private long mNumForcedWriteRequests = 0;
+    private long mNumCoalescedWriteRequests = 0;
+    private long mNumStoreFilesSerialized = 0;
+    private long mNumBytesSerialized = 0;
+    private long mNumWriteOperations = 0;
+
     /**
      * List of data containers.
      */
@@ -373,6 +444,50 @@ public class WifiConfigStore {
         mVerboseLoggingEnabled = verbose;
     }
 
+    /**
+     * Enable coalescing of forced writes. When enabled, a burst of forced writes is merged into a
+     * single write per store file with new data, issued once no new request arrived for
+     * {@link #COALESCED_WRITE_DEBOUNCE_MS}, and at most {@link #COALESCED_WRITE_MAX_LATENCY_MS}
+     * after the first request of the burst.
+     */
+    public void enableWriteCoalescing(boolean enable) {
+        mWriteCoalescingEnabled = enable;
+    }
+
+    /**
+     * @return true if forced writes are coalesced, see {@link #enableWriteCoalescing(boolean)}.
+     */
+    public boolean isWriteCoalescingEnabled() {
+        return mWriteCoalescingEnabled;
+    }
+
+    /**
+     * Enable writing a companion file in the binary format next to each XML store file.
+     *
+     * The XML store files are always written and remain the source of truth, so that the store
+     * can still be read after a rollback to a version which doesn't know about the binary format.
+     * A binary file is only read if the checksum recorded in it matches the current contents of
+     * its XML store file, so a binary file left behind by a rollback or by disabling the binary
+     * format is ignored, and removed on the next write.
+     *
+     * This is a trade of write cost for read cost: while enabled, every write serializes the
+     * data twice and writes two files, each with its own fsync.
+     */
+    public void enableBinaryFormat(boolean enable) {
+        mBinaryFormatEnabled = enable;
+    }
+
+    /**
+     * Enable/disable lazy loading. When enabled, the deserialization of a {@link StoreData} which
+     * {@link StoreData#supportsLazyLoading()} is deferred until {@link #loadStoreData(StoreData)}
+     * is invoked, or the task which triggered the read completes. Only applies to store files read from
+     * their {@link WifiConfigStoreBinaryFormat} companion file, XML store files are always
+     * deserialized eagerly.
+     */
+    public void enableLazyLoading(boolean enable) {
+        mLazyLoadingEnabled = enable;
+    }
+
     /**
      * Retrieve the list of {@link StoreData} instances registered for the provided
      * {@link StoreFile}.
@@ -399,25 +514,34 @@ public class WifiConfigStore {
      * shared configurations to shared config store.
      *
      * @param forceSync boolean to force write the config stores now. if false, the writes are
-     *                  buffered and written after the configured interval.
+     *                  buffered and written after the configured interval. If write coalescing
+     *                  is enabled, forced writes are only queued and written within
+     *                  {@link #COALESCED_WRITE_MAX_LATENCY_MS}, and a failure of the delayed
+     *                  write is not reported to the caller.
      */
     public void write(boolean forceSync)
             throws XmlPullParserException, IOException {
+        mNumWriteRequests++;
+        if (forceSync) {
+            mNumForcedWriteRequests++;
+            if (mWriteCoalescingEnabled) {
+                scheduleCoalescedWrite();
+                return;
+            }
+        }
         boolean hasAnyNewData = false;
         // Serialize the provided data and send it to the respective stores. The actual write will
         // be performed later depending on the |forceSync| flag .
         for (StoreFile sharedStoreFile : mSharedStores) {
             if (hasNewDataToSerialize(sharedStoreFile)) {
-                byte[] sharedDataBytes = serializeData(sharedStoreFile);
-                sharedStoreFile.storeRawDataToWrite(sharedDataBytes);
+                serializeAndStoreRawData(sharedStoreFile);
                 hasAnyNewData = true;
             }
         }
         if (mUserStores != null) {
             for (StoreFile userStoreFile : mUserStores) {
                 if (hasNewDataToSerialize(userStoreFile)) {
-                    byte[] userDataBytes = serializeData(userStoreFile);
-                    userStoreFile.storeRawDataToWrite(userDataBytes);
+                    serializeAndStoreRawData(userStoreFile);
                     hasAnyNewData = true;
                 }
             }
@@ -438,6 +562,81 @@ public class WifiConfigStore {
         }
     }
 
+    /**
+     * Mark the store files with new data as dirty and (re)schedule the coalesced write. The
+     * write is pushed back by {@link #COALESCED_WRITE_DEBOUNCE_MS} on every request, but never
+     * beyond {@link #COALESCED_WRITE_MAX_LATENCY_MS} after the first pending request.
+     */
+    private void scheduleCoalescedWrite() {
+        for (StoreFile sharedStoreFile : mSharedStores) {
+            if (hasNewDataToSerialize(sharedStoreFile)) {
+                mDirtyStoreFiles.add(sharedStoreFile);
+            }
+        }
+        if (mUserStores != null) {
+            for (StoreFile userStoreFile : mUserStores) {
+                if (hasNewDataToSerialize(userStoreFile)) {
+                    mDirtyStoreFiles.add(userStoreFile);
+                }
+            }
+        }
+        if (mDirtyStoreFiles.isEmpty() && !mBufferedWritePending) {
+            return;
+        }
+        long now = mClock.getElapsedSinceBootMillis();
+        if (mFirstCoalescedWriteRequestTimeMs < 0) {
+            mFirstCoalescedWriteRequestTimeMs = now;
+        } else {
+            mNumCoalescedWriteRequests++;
+        }
+        long deadline = Math.min(now + COALESCED_WRITE_DEBOUNCE_MS,
+                mFirstCoalescedWriteRequestTimeMs + COALESCED_WRITE_MAX_LATENCY_MS);
+        mEventHandler.removeCallbacks(mCoalescedWriteRunnable);
+        mEventHandler.postDelayed(mCoalescedWriteRunnable, Math.max(0, deadline - now));
+    }
+
+    /**
+     * Immediately perform any write pending because of write coalescing. Must be invoked before
+     * the in-memory data of a {@link StoreData} is cleared or its store file becomes unavailable.
+     */
+    public void flushCoalescedWrites() throws XmlPullParserException, IOException {
+        if (mFirstCoalescedWriteRequestTimeMs < 0) {
+            return;
+        }
+        mEventHandler.removeCallbacks(mCoalescedWriteRunnable);
+        mFirstCoalescedWriteRequestTimeMs = -1;
+        List<StoreFile> dirtyStoreFiles = new ArrayList<>(mDirtyStoreFiles);
+        for (StoreFile storeFile : dirtyStoreFiles) {
+            serializeAndStoreRawData(storeFile);
+        }
+        try {
+            writeBufferedData();
+        } catch (IOException | IllegalStateException e) {
+            // Keep the files dirty so that the next write request retries them. The previous
+            // contents of the files are preserved by AtomicFile.
+            mDirtyStoreFiles.addAll(dirtyStoreFiles);
+            throw e;
+        }
+    }
+
+    private void serializeAndStoreRawData(@NonNull StoreFile storeFile)
+            throws XmlPullParserException, IOException {
+        byte[] dataBytes = serializeData(storeFile);
+        byte[] binaryDataBytes = null;
+        if (mBinaryFormatEnabled) {
+            binaryDataBytes = serializeDataToBinary(retrieveStoreDataListForStoreFile(storeFile),
+                    storeFile, WifiConfigStoreBinaryFormat.computeXmlChecksum(dataBytes));
+        }
+        storeFile.storeRawDataToWrite(dataBytes, binaryDataBytes);
+        // This file is up to date now, any pending coalesced write for it is redundant.
+        mDirtyStoreFiles.remove(storeFile);
+        mNumStoreFilesSerialized++;
+        mNumBytesSerialized += dataBytes.length;
+        if (binaryDataBytes != null) {
+            mNumBytesSerialized += binaryDataBytes.length;
+        }
+    }
+
     /**
      * Serialize all the data from all the {@link StoreData} clients registered for the provided
      * {@link StoreFile}.
@@ -453,6 +652,10 @@ public class WifiConfigStore {
     private byte[] serializeData(@NonNull StoreFile storeFile)
             throws XmlPullParserException, IOException {
         List<StoreData> storeDataList = retrieveStoreDataListForStoreFile(storeFile);
+        // Deferred data must be loaded before it is written back, otherwise it would be lost.
+        for (StoreData storeData : storeDataList) {
+            loadStoreData(storeData);
+        }
 
         final XmlSerializer out = new FastXmlSerializer();
         final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
@@ -472,6 +675,30 @@ public class WifiConfigStore {
         return outputStream.toByteArray();
     }
 
+    /**
+     * Serialize the provided {@link StoreData} clients using {@link WifiConfigStoreBinaryFormat}.
+     * Each StoreData is written to its own section as a binary XML document.
+     *
+     * @param xmlChecksum checksum of the XML serialization of the same data.
+     */
+    private static byte[] serializeDataToBinary(@NonNull List<StoreData> storeDataList,
+            @NonNull StoreFile storeFile, int xmlChecksum)
+            throws XmlPullParserException, IOException {
+        WifiConfigStoreBinaryFormat.Writer writer = new WifiConfigStoreBinaryFormat.Writer(
+                CURRENT_CONFIG_STORE_DATA_VERSION, xmlChecksum);
+        for (StoreData storeData : storeDataList) {
+            String tag = storeData.getName();
+            final BinaryXmlSerializer out = new BinaryXmlSerializer();
+            final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            out.setOutput(outputStream, StandardCharsets.UTF_8.name());
+            XmlUtil.writeDocumentStart(out, tag);
+            storeData.serializeData(out, storeFile.getEncryptionUtil());
+            XmlUtil.writeDocumentEnd(out, tag);
+            writer.addSection(tag, outputStream.toByteArray());
+        }
+        return writer.toByteArray();
+    }
+
     /**
      * Helper method to start a buffered write alarm if one doesn't already exist.
      */
@@ -501,6 +728,7 @@ public class WifiConfigStore {
     private void writeBufferedData() throws IOException {
         stopBufferedWriteAlarm();
 
+        mNumWriteOperations++;
         long writeStartTime = mClock.getElapsedSinceBootMillis();
         for (StoreFile sharedStoreFile : mSharedStores) {
             sharedStoreFile.writeBufferedRawData();
@@ -594,9 +822,11 @@ public class WifiConfigStore {
         for (StoreFile sharedStoreFile : mSharedStores) {
             byte[] sharedDataBytes =
                     readDataFromMigrationSharedStoreFile(sharedStoreFile.getFileId());
+            byte[] sharedBinaryDataBytes = null;
             if (sharedDataBytes == null) {
                 // nothing to migrate, do normal read.
                 sharedDataBytes = sharedStoreFile.readRawData();
+                sharedBinaryDataBytes = sharedStoreFile.readBinaryRawData();
             } else {
                 Log.i(TAG, "Read data out of shared migration store file: "
                         + sharedStoreFile.getName());
@@ -609,7 +839,7 @@ public class WifiConfigStore {
                 WifiMigration.removeSharedConfigStoreFile(
                         getMigrationStoreFileId(sharedStoreFile.getFileId()));
             }
-            deserializeData(sharedDataBytes, sharedStoreFile);
+            deserializeData(sharedDataBytes, sharedBinaryDataBytes, sharedStoreFile);
         }
     }
 
@@ -622,9 +852,11 @@ public class WifiConfigStore {
         for (StoreFile userStoreFile : mUserStores) {
             byte[] userDataBytes = readDataFromMigrationUserStoreFile(
                     userStoreFile.getFileId(), userStoreFile.mUserHandle);
+            byte[] userBinaryDataBytes = null;
             if (userDataBytes == null) {
                 // nothing to migrate, do normal read.
                 userDataBytes = userStoreFile.readRawData();
+                userBinaryDataBytes = userStoreFile.readBinaryRawData();
             } else {
                 Log.i(TAG, "Read data out of user migration store file: "
                         + userStoreFile.getName());
@@ -638,7 +870,7 @@ public class WifiConfigStore {
                         getMigrationStoreFileId(userStoreFile.getFileId()),
                         userStoreFile.mUserHandle);
             }
-            deserializeData(userDataBytes, userStoreFile);
+            deserializeData(userDataBytes, userBinaryDataBytes, userStoreFile);
         }
     }
 
@@ -669,6 +901,7 @@ public class WifiConfigStore {
             // Silently ignore on any overflow errors.
         }
         Log.d(TAG, "Reading from all stores completed in " + readTime + " ms.");
+        schedulePendingStoreDataLoad();
     }
 
     /**
@@ -680,6 +913,8 @@ public class WifiConfigStore {
     public void switchUserStoresAndRead(@NonNull List<StoreFile> userStores)
             throws XmlPullParserException, IOException {
         Preconditions.checkNotNull(userStores);
+        // Flush out any coalesced writes before the current user data is reset.
+        flushCoalescedWrites();
         // Reset user store data.
         if (mUserStores != null) {
             for (StoreFile userStoreFile : mUserStores) {
@@ -697,6 +932,7 @@ public class WifiConfigStore {
         long readTime = mClock.getElapsedSinceBootMillis() - readStartTime;
         mWifiMetrics.noteWifiConfigStoreReadDuration(toIntExact(readTime));
         Log.d(TAG, "Reading from user stores completed in " + readTime + " ms.");
+        schedulePendingStoreDataLoad();
     }
 
     /**
@@ -704,10 +940,78 @@ public class WifiConfigStore {
      */
     private void resetStoreData(@NonNull StoreFile storeFile) {
         for (StoreData storeData: retrieveStoreDataListForStoreFile(storeFile)) {
+            mPendingStoreData.remove(storeData);
             storeData.resetData();
         }
     }
 
+    /**
+     * Deserialize the provided {@link StoreData} now if its deserialization was deferred by lazy
+     * loading. Owners of a {@link StoreData} supporting lazy loading must invoke this before
+     * accessing their data. This is a no-op if the data has already been loaded.
+     *
+     * Note: Failures to parse the deferred data are logged and treated as an empty store, since
+     * the read which returned the data has already completed.
+     */
+    public void loadStoreData(@NonNull StoreData storeData) {
+        PendingStoreData pending = mPendingStoreData.remove(storeData);
+        if (pending == null) {
+            return;
+        }
+        long startTimeNanos = mClock.getElapsedSinceBootNanos();
+        try {
+            deserializeBinarySections(pending.dataBytes, pending.sections, storeData,
+                    pending.version, pending.storeFile);
+        } catch (XmlPullParserException | IOException | IllegalArgumentException e) {
+            Log.e(TAG, "Failed to load deferred store data: " + storeData.getName(), e);
+            storeData.resetData();
+            try {
+                storeData.deserializeData(null, 0, pending.version,
+                        pending.storeFile.getEncryptionUtil());
+            } catch (XmlPullParserException | IOException ex) {
+                Log.e(TAG, "Failed to reset deferred store data: " + storeData.getName(), ex);
+            }
+        }
+        noteDeserialization(storeData, mClock.getElapsedSinceBootNanos() - startTimeNanos, true);
+        if (mPendingStoreData.isEmpty()) {
+            mEventHandler.removeCallbacks(mLoadPendingStoreDataRunnable);
+        }
+    }
+
+    /**
+     * Load all the {@link StoreData} whose deserialization is still deferred.
+     */
+    private void loadAllPendingStoreData() {
+        for (StoreData storeData : new ArrayList<>(mPendingStoreData.keySet())) {
+            loadStoreData(storeData);
+        }
+    }
+
+    /**
+     * Deferred data nobody asked for is loaded right after the task which triggered the read,
+     * before any other event queued on the wifi thread, so that side effects of the
+     * deserialization are not delayed past the read by more than that task.
+     */
+    private void schedulePendingStoreDataLoad() {
+        mEventHandler.removeCallbacks(mLoadPendingStoreDataRunnable);
+        if (!mPendingStoreData.isEmpty()) {
+            mEventHandler.postAtFrontOfQueue(mLoadPendingStoreDataRunnable);
+        }
+    }
+
+    private void noteDeserialization(@NonNull StoreData storeData, long durationNanos,
+            boolean deferred) {
+        DeserializationStats stats = mDeserializationStats.get(storeData.getName());
+        if (stats == null) {
+            stats = new DeserializationStats();
+            mDeserializationStats.put(storeData.getName(), stats);
+        }
+        stats.count++;
+        stats.lastDurationNanos = durationNanos;
+        stats.totalDurationNanos += durationNanos;
+        stats.lastDeferred = deferred;
+    }
+
     // Inform all the provided store data clients that there is nothing in the store for them.
     private void indicateNoDataForStoreDatas(Collection<StoreData> storeDataSet,
             @Version int version, @NonNull WifiConfigStoreEncryptionUtil encryptionUtil)
@@ -725,20 +1029,28 @@ public class WifiConfigStore {
      * is discarded.
      *
      * @param dataBytes The data to parse
+     * @param binaryDataBytes The data of the binary companion file, or null if there is none.
+     *                        Only parsed instead of |dataBytes| if it mirrors |dataBytes|.
      * @param storeFile StoreFile that we read from. Will be used to retrieve the list of clients
      *                  who have data to deserialize from this file.
      *
      * @throws XmlPullParserException
      * @throws IOException
      */
-    private void deserializeData(@NonNull byte[] dataBytes, @NonNull StoreFile storeFile)
-            throws XmlPullParserException, IOException {
+    private void deserializeData(@NonNull byte[] dataBytes, @Nullable byte[] binaryDataBytes,
+            @NonNull StoreFile storeFile) throws XmlPullParserException, IOException {
         List<StoreData> storeDataList = retrieveStoreDataListForStoreFile(storeFile);
         if (dataBytes == null) {
             indicateNoDataForStoreDatas(storeDataList, -1 /* unknown */,
                     storeFile.getEncryptionUtil());
             return;
         }
+        WifiConfigStoreBinaryFormat.Header header =
+                parseBinaryHeaderIfUpToDate(binaryDataBytes, dataBytes, storeFile);
+        if (header != null) {
+            deserializeBinaryData(binaryDataBytes, header, storeFile, storeDataList);
+            return;
+        }
         final XmlPullParser in = Xml.newPullParser();
         final ByteArrayInputStream inputStream = new ByteArrayInputStream(dataBytes);
         in.setInput(inputStream, StandardCharsets.UTF_8.name());
@@ -767,8 +1079,11 @@ public class WifiConfigStore {
                         + storeDataList);
                 continue;
             }
+            long startTimeNanos = mClock.getElapsedSinceBootNanos();
             storeData.deserializeDataForSection(in, rootTagDepth + 1, version,
                     storeFile.getEncryptionUtil(), headerName[0]);
+            noteDeserialization(storeData, mClock.getElapsedSinceBootNanos() - startTimeNanos,
+                    false);
             storeDatasInvoked.add(storeData);
         }
         // Inform all the other registered store data clients that there is nothing in the store
@@ -778,6 +1093,131 @@ public class WifiConfigStore {
         indicateNoDataForStoreDatas(storeDatasNotInvoked, version, storeFile.getEncryptionUtil());
     }
 
+    /**
+     * Parse the header of a binary companion file, if it mirrors the current contents of its XML
+     * store file and can be read by this version.
+     *
+     * @return the parsed header, or null if the XML store file should be parsed instead.
+     */
+    private static @Nullable WifiConfigStoreBinaryFormat.Header parseBinaryHeaderIfUpToDate(
+            @Nullable byte[] binaryDataBytes, @NonNull byte[] dataBytes,
+            @NonNull StoreFile storeFile) {
+        if (!WifiConfigStoreBinaryFormat.isBinaryFormat(binaryDataBytes)) {
+            return null;
+        }
+        WifiConfigStoreBinaryFormat.Header header;
+        try {
+            header = WifiConfigStoreBinaryFormat.parseHeader(binaryDataBytes);
+        } catch (IOException e) {
+            Log.e(TAG, "Ignoring invalid binary store file for " + storeFile.getName(), e);
+            return null;
+        }
+        if (header.version < INITIAL_CONFIG_STORE_DATA_VERSION
+                || header.version > CURRENT_CONFIG_STORE_DATA_VERSION) {
+            Log.w(TAG, "Ignoring binary store file for " + storeFile.getName()
+                    + " with version " + header.version);
+            return null;
+        }
+        if (header.xmlChecksum != WifiConfigStoreBinaryFormat.computeXmlChecksum(dataBytes)) {
+            // The XML store file was written without its companion, e.g. after a rollback.
+            Log.w(TAG, "Ignoring stale binary store file for " + storeFile.getName());
+            return null;
+        }
+        return header;
+    }
+
+    /**
+     * Deserialize data stored in {@link WifiConfigStoreBinaryFormat}. Sections without a
+     * registered {@link StoreData} are skipped without being decoded, and the sections of a
+     * {@link StoreData} supporting lazy loading are only indexed if lazy loading is enabled.
+     */
+    private void deserializeBinaryData(@NonNull byte[] dataBytes,
+            @NonNull WifiConfigStoreBinaryFormat.Header header, @NonNull StoreFile storeFile,
+            @NonNull List<StoreData> storeDataList) throws XmlPullParserException, IOException {
+        @Version int version = header.version;
+        // Group the sections by StoreData, preserving their order in the file.
+        Map<StoreData, List<WifiConfigStoreBinaryFormat.Section>> sectionsPerStoreData =
+                new ArrayMap<>();
+        for (WifiConfigStoreBinaryFormat.Section section : header.sections) {
+            StoreData storeData = storeDataList.stream()
+                    .filter(s -> s.getSectionsToParse().contains(section.name))
+                    .findAny()
+                    .orElse(null);
+            if (storeData == null) {
+                Log.e(TAG, "Unknown store data: " + section.name + ". List of store data: "
+                        + storeDataList);
+                continue;
+            }
+            List<WifiConfigStoreBinaryFormat.Section> sections =
+                    sectionsPerStoreData.get(storeData);
+            if (sections == null) {
+                sections = new ArrayList<>();
+                sectionsPerStoreData.put(storeData, sections);
+            }
+            sections.add(section);
+        }
+        for (StoreData storeData : storeDataList) {
+            List<WifiConfigStoreBinaryFormat.Section> sections =
+                    sectionsPerStoreData.get(storeData);
+            if (sections == null) {
+                // Inform the store data client that there is nothing in the store for it.
+                storeData.deserializeData(null, 0, version, storeFile.getEncryptionUtil());
+                continue;
+            }
+            if (mLazyLoadingEnabled && storeData.supportsLazyLoading()) {
+                mPendingStoreData.put(storeData,
+                        new PendingStoreData(dataBytes, sections, version, storeFile));
+                continue;
+            }
+            long startTimeNanos = mClock.getElapsedSinceBootNanos();
+            deserializeBinarySections(dataBytes, sections, storeData, version, storeFile);
+            noteDeserialization(storeData, mClock.getElapsedSinceBootNanos() - startTimeNanos,
+                    false);
+        }
+    }
+
+    private static void deserializeBinarySections(@NonNull byte[] dataBytes,
+            @NonNull List<WifiConfigStoreBinaryFormat.Section> sections,
+            @NonNull StoreData storeData, @Version int version, @NonNull StoreFile storeFile)
+            throws XmlPullParserException, IOException {
+        for (WifiConfigStoreBinaryFormat.Section section : sections) {
+            final BinaryXmlPullParser in = new BinaryXmlPullParser();
+            in.setInput(new ByteArrayInputStream(dataBytes, section.offset, section.length),
+                    StandardCharsets.UTF_8.name());
+            XmlUtil.gotoDocumentStart(in, section.name);
+            storeData.deserializeDataForSection(in, in.getDepth(), version,
+                    storeFile.getEncryptionUtil(), section.name);
+        }
+    }
+
+    /**
+     * Sections of a store file indexed on read, whose deserialization was deferred.
+     */
+    private static class PendingStoreData {
+        public final byte[] dataBytes;
+        public final List<WifiConfigStoreBinaryFormat.Section> sections;
+        public final @Version int version;
+        public final StoreFile storeFile;
+
+        PendingStoreData(byte[] dataBytes, List<WifiConfigStoreBinaryFormat.Section> sections,
+                @Version int version, StoreFile storeFile) {
+            this.dataBytes = dataBytes;
+            this.sections = sections;
+            this.version = version;
+            this.storeFile = storeFile;
+        }
+    }
+
+    /**
+     * Deserialization time of a {@link StoreData}.
+     */
+    private static class DeserializationStats {
+        public int count;
+        public long lastDurationNanos;
+        public long totalDurationNanos;
+        public boolean lastDeferred;
+    }
+
     /**
      * Parse the version from the XML stream.
      * This is used for both the shared and user config store data.
@@ -833,6 +1273,30 @@ public class WifiConfigStore {
             pw.println("File Name: " + STORE_ID_TO_FILE_NAME.get(storeData.getStoreFileId()));
         }
         pw.println("WifiConfigStore - Store Data End ----");
+        pw.println("WifiConfigStore - Deserialization Stats Begin ----");
+        pw.println("Lazy loading enabled: " + mLazyLoadingEnabled);
+        for (Map.Entry<String, DeserializationStats> entry : mDeserializationStats.entrySet()) {
+            DeserializationStats stats = entry.getValue();
+            pw.println("StoreData => Name: " + entry.getKey()
+                    + ", Loaded: " + stats.count + " times"
+                    + ", Last: " + stats.lastDurationNanos / 1000 + " us"
+                    + (stats.lastDeferred ? " (deferred)" : "")
+                    + ", Total: " + stats.totalDurationNanos / 1000 + " us");
+        }
+        for (StoreData storeData : mPendingStoreData.keySet()) {
+            pw.println("StoreData => Name: " + storeData.getName() + ", Pending");
+        }
+        pw.println("WifiConfigStore - Deserialization Stats End ----");
+        pw.println("WifiConfigStore - Write Stats Begin ----");
+        pw.println("Binary format enabled: " + mBinaryFormatEnabled);
+        pw.println("Write coalescing enabled: " + mWriteCoalescingEnabled);
+        pw.println("Write requests: " + mNumWriteRequests
+                + ", Forced: " + mNumForcedWriteRequests
+                + ", Coalesced: " + mNumCoalescedWriteRequests);
+        pw.println("Store files serialized: " + mNumStoreFilesSerialized
+                + ", Bytes serialized: " + mNumBytesSerialized
+                + ", Write operations: " + mNumWriteOperations);
+        pw.println("WifiConfigStore - Write Stats End ----");
     }
 
     /**
@@ -847,14 +1311,26 @@ public class WifiConfigStore {
          * File permissions to lock down the file.
          */
         private static final int FILE_MODE = 0600;
+        /**
+         * Suffix of the binary companion file, replacing the ".xml" suffix of the store file.
+         */
+        private static final String BINARY_FILE_SUFFIX = ".bin";
         /**
          * The store file to be written to.
          */
         private final AtomicFile mAtomicFile;
+        /**
+         * The binary companion file, see {@link WifiConfigStore#enableBinaryFormat(boolean)}.
+         */
+        private final AtomicFile mBinaryAtomicFile;
         /**
          * This is an intermediate buffer to store the data to be written.
          */
         private byte[] mWriteData;
+        /**
+         * This is an intermediate buffer to store the binary data to be written, if any.
+         */
+        private byte[] mBinaryWriteData;
         /**
          * Store the file name for setting the file permissions/logging purposes.
          */
@@ -876,6 +1352,12 @@ public class WifiConfigStore {
                 @NonNull UserHandle userHandle,
                 @Nullable WifiConfigStoreEncryptionUtil encryptionUtil) {
             mAtomicFile = new AtomicFile(file);
+            String binaryFileName = file.getName();
+            if (binaryFileName.endsWith(".xml")) {
+                binaryFileName = binaryFileName.substring(0, binaryFileName.length() - 4);
+            }
+            mBinaryAtomicFile = new AtomicFile(
+                    new File(file.getParentFile(), binaryFileName + BINARY_FILE_SUFFIX));
             mFileName = file.getAbsolutePath();
             mFileId = fileId;
             mUserHandle = userHandle;
@@ -915,15 +1397,42 @@ public class WifiConfigStore {
             return bytes;
         }
 
+        /**
+         * Read the entire raw data from the binary companion file and return in a byte array.
+         *
+         * @return raw data read from the file or null if the file is not found.
+         * @throws IOException if an error occurs.
+         */
+        public byte[] readBinaryRawData() throws IOException {
+            try {
+                return mBinaryAtomicFile.readFully();
+            } catch (FileNotFoundException e) {
+                return null;
+            }
+        }
+
         /**
          * Store the provided byte array to be written when {@link #writeBufferedRawData()} method
-         * is invoked.
+         * is invoked. The binary companion file is removed by the write.
          * This intermediate step is needed to help in buffering file writes.
          *
          * @param data raw data to be written to the file.
          */
         public void storeRawDataToWrite(byte[] data) {
+            storeRawDataToWrite(data, null);
+        }
+
+        /**
+         * Store the provided byte arrays to be written when {@link #writeBufferedRawData()} method
+         * is invoked.
+         *
+         * @param data raw data to be written to the file.
+         * @param binaryData raw data to be written to the binary companion file, or null to
+         *                   remove the binary companion file.
+         */
+        public void storeRawDataToWrite(byte[] data, @Nullable byte[] binaryData) {
             mWriteData = data;
+            mBinaryWriteData = binaryData;
         }
 
         /**
@@ -934,23 +1443,36 @@ public class WifiConfigStore {
          */
         public void writeBufferedRawData() throws IOException {
             if (mWriteData == null) return; // No data to write for this file.
-            // Write the data to the atomic file.
-            FileOutputStream out = null;
+            // Write the XML store file first, a binary file which doesn't match it is ignored.
             try {
-                out = mAtomicFile.startWrite();
-                FileUtils.chmod(mFileName, FILE_MODE);
-                out.write(mWriteData);
-                mAtomicFile.finishWrite(out);
-            } catch (IOException e) {
-                if (out != null) {
-                    mAtomicFile.failWrite(out);
+                writeAtomicFile(mAtomicFile, mWriteData);
+                if (mBinaryWriteData != null) {
+                    writeAtomicFile(mBinaryAtomicFile, mBinaryWriteData);
+                } else {
+                    mBinaryAtomicFile.delete();
                 }
-                throw e;
             } catch (NullPointerException e) {
                 Log.wtf(TAG, "Possible concurrent modify on mWriteData", e);
             }
             // Reset the pending write data after write.
             mWriteData = null;
+            mBinaryWriteData = null;
+        }
+
+        private static void writeAtomicFile(@NonNull AtomicFile atomicFile, @NonNull byte[] data)
+                throws IOException {
+            FileOutputStream out = null;
+            try {
+                out = atomicFile.startWrite();
+                FileUtils.chmod(atomicFile.getBaseFile().getAbsolutePath(), FILE_MODE);
+                out.write(data);
+                atomicFile.finishWrite(out);
+            } catch (IOException e) {
+                if (out != null) {
+                    atomicFile.failWrite(out);
+                }
+                throw e;
+            }
         }
     }
 
@@ -1032,6 +1554,16 @@ public class WifiConfigStore {
             return Set.of(getName());
         }
 
+        /**
+         * By default, the data is deserialized while the store file is read. Modules whose data
+         * is not needed during startup can override this to allow the deserialization to be
+         * deferred, see {@link WifiConfigStore#loadStoreData(StoreData)}.
+         * @return true if the deserialization of this store data can be deferred.
+         */
+        default boolean supportsLazyLoading() {
+            return false;
+        }
+
         /**
          * File Id where this data needs to be written to.
          * This should be one of {@link #STORE_FILE_SHARED_GENERAL},
@@ -3341,7 +3341,7 @@ public class WifiConnectivityManager {
             mConfigManager.stopRestrictingAutoJoinToSubscriptionId();
             mConfigManager.clearUserTemporarilyDisabledList();
             mConfigManager.removeAllEphemeralOrPasspointConfiguredNetworks();
-            // Flush ANQP cache if configured to do so
+            // Flush ANQP cache if configured to do so, including its persisted copy.
             if (mWifiGlobals.flushAnqpCacheOnWifiToggleOffEvent()) {
                 mPasspointManager.clearAnqpRequestsAndFlushCache();
             }
@@ -334,7 +334,8 @@ public class WifiHealthMonitor {
         pw.println("System Info Stats");
         pw.println(mWifiSystemInfoStats);
         pw.println("configured network connection stats");
-        List<WifiConfiguration> configuredNetworks = mWifiConfigManager.getConfiguredNetworks();
+        List<WifiConfiguration> configuredNetworks =
+                mWifiConfigManager.getConfiguredNetworksSnapshot();
         for (WifiConfiguration network : configuredNetworks) {
             if (isInvalidConfiguredNetwork(network)) continue;
             boolean isRecentlyConnected = (mClock.getWallClockMillis() - network.lastConnected)
@@ -389,7 +390,8 @@ public class WifiHealthMonitor {
         int connectionDurationSec = 0;
         // Set the alarm for the next day
         scheduleDailyDetectionAlarm(DAILY_DETECTION_INTERVAL_MS);
-        List<WifiConfiguration> configuredNetworks = mWifiConfigManager.getConfiguredNetworks();
+        List<WifiConfiguration> configuredNetworks =
+                mWifiConfigManager.getConfiguredNetworksSnapshot();
         for (WifiConfiguration network : configuredNetworks) {
             if (isInvalidConfiguredNetwork(network)) {
                 continue;
@@ -543,7 +545,8 @@ public class WifiHealthMonitor {
      * Issue NetworkStats read request for all configured networks.
      */
     private void requestReadAllNetworks() {
-        List<WifiConfiguration> configuredNetworks = mWifiConfigManager.getConfiguredNetworks();
+        List<WifiConfiguration> configuredNetworks =
+                mWifiConfigManager.getConfiguredNetworksSnapshot();
         for (WifiConfiguration network : configuredNetworks) {
             if (isInvalidConfiguredNetwork(network)) {
                 continue;
@@ -564,7 +567,8 @@ public class WifiHealthMonitor {
      * Update NetworkStats of all configured networks after a SW build change is detected
      */
     private void updateAllNetworkAfterSwBuildChange() {
-        List<WifiConfiguration> configuredNetworks = mWifiConfigManager.getConfiguredNetworks();
+        List<WifiConfiguration> configuredNetworks =
+                mWifiConfigManager.getConfiguredNetworksSnapshot();
         for (WifiConfiguration network : configuredNetworks) {
             if (isInvalidConfiguredNetwork(network)) {
                 continue;
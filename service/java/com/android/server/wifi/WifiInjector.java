@@ -186,6 +186,7 @@ public class WifiInjector {
     private final LocalLog mConnectivityLocalLog;
     private final LocalLog mWifiAwareLocalLog;
     private final LocalLog mWifiHandlerLocalLog;
+    private final RunnerHandler mWifiHandler;
     private final ThroughputScorer mThroughputScorer;
     private final WifiNetworkSelector mWifiNetworkSelector;
     private final SavedNetworkNominator mSavedNetworkNominator;
@@ -287,6 +288,7 @@ public class WifiInjector {
         RunnerHandler wifiHandler = new RunnerHandler(wifiLooper, context.getResources().getInteger(
                 R.integer.config_wifiConfigurationWifiRunnerThresholdInMs),
                 mWifiHandlerLocalLog, mWifiMetrics);
+        mWifiHandler = wifiHandler;
         mWifiDiagnosticsHandlerThread = new HandlerThread("WifiDiagnostics");
         mWifiDiagnosticsHandlerThread.start();
 
@@ -363,6 +365,12 @@ public class WifiInjector {
         // New config store
         mWifiConfigStore = new WifiConfigStore(mContext, wifiHandler, mClock, mWifiMetrics,
                 WifiConfigStore.createSharedFiles(mFrameworkFacade.isNiapModeOn(mContext)));
+        mWifiConfigStore.enableWriteCoalescing(
+                mDeviceConfigFacade.isConfigStoreWriteCoalescingEnabled());
+        mWifiConfigStore.enableBinaryFormat(
+                mDeviceConfigFacade.isConfigStoreBinaryFormatEnabled());
+        mWifiConfigStore.enableLazyLoading(
+                mDeviceConfigFacade.isConfigStoreLazyLoadingEnabled());
         mWifiPseudonymManager = new WifiPseudonymManager(
                 mContext, this, mClock, wifiLooper);
         mWifiCarrierInfoManager = new WifiCarrierInfoManager(makeTelephonyManager(),
@@ -370,7 +378,7 @@ public class WifiInjector {
                 mWifiConfigStore, wifiHandler, mWifiMetrics, mClock, mWifiPseudonymManager);
         String l2KeySeed = Secure.getString(mContext.getContentResolver(), Secure.ANDROID_ID);
         mWifiScoreCard = new WifiScoreCard(mClock, l2KeySeed, mDeviceConfigFacade,
-                mContext, mWifiGlobals);
+                mContext, mWifiGlobals, wifiHandler);
         mWifiMetrics.setWifiScoreCard(mWifiScoreCard);
         mLruConnectionTracker = new LruConnectionTracker(MAX_RECENTLY_CONNECTED_NETWORK,
                 mContext);
@@ -629,6 +637,7 @@ public class WifiInjector {
         mWifiDialogManager.enableVerboseLogging(verboseEnabled);
         mExternalPnoScanRequestManager.enableVerboseLogging(verboseEnabled);
         mMultiInternetWifiNetworkFactory.enableVerboseLogging(verboseEnabled);
+        mWifiHandler.enableVerboseLogging(verboseEnabled);
     }
 
     public UserManager getUserManager() {
@@ -69,6 +69,7 @@ import android.text.TextUtils;
 import android.util.ArrayMap;
 import android.util.ArraySet;
 import android.util.Base64;
+import android.util.Base64OutputStream;
 import android.util.Log;
 import android.util.Pair;
 import android.util.SparseArray;
@@ -129,11 +130,14 @@ import com.android.server.wifi.proto.nano.WifiMetricsProto.WifiUsabilityStats;
 import com.android.server.wifi.proto.nano.WifiMetricsProto.WifiUsabilityStatsEntry;
 import com.android.server.wifi.rtt.RttMetrics;
 import com.android.server.wifi.scanner.KnownBandsChannelHelper;
+import com.android.server.wifi.util.ConcurrentCounter;
 import com.android.server.wifi.util.InformationElementUtil;
 import com.android.server.wifi.util.IntCounter;
 import com.android.server.wifi.util.IntHistogram;
+import com.android.server.wifi.util.LogHistogram;
 import com.android.server.wifi.util.MetricsUtils;
 import com.android.server.wifi.util.ObjectCounter;
+import com.android.server.wifi.util.RingBuffer;
 import com.android.server.wifi.util.StringUtil;
 import com.android.wifi.resources.R;
 
@@ -142,6 +146,8 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.time.Duration;
 import java.util.ArrayDeque;
@@ -152,11 +158,12 @@ import java.util.Calendar;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
 
 /**
  * Provides storage for wireless connectivity metrics, as they are generated.
@@ -281,8 +288,9 @@ public class WifiMetrics {
 
     public static final int MAX_STA_EVENTS = 768;
     @VisibleForTesting static final int MAX_USER_ACTION_EVENTS = 200;
-    private LinkedList<StaEventWithTime> mStaEventList = new LinkedList<>();
-    private LinkedList<UserActionEventWithTime> mUserActionEventList = new LinkedList<>();
+    private final RingBuffer<StaEventWithTime> mStaEventList = new RingBuffer<>(MAX_STA_EVENTS);
+    private final RingBuffer<UserActionEventWithTime> mUserActionEventList =
+            new RingBuffer<>(MAX_USER_ACTION_EVENTS);
     private WifiStatusBuilder mWifiStatusBuilder = new WifiStatusBuilder();
     private int mLastPollRssi = -127;
     private int mLastPollLinkSpeed = -1;
@@ -295,6 +303,12 @@ public class WifiMetrics {
     private WifiSettingsStore mWifiSettingsStore;
     private IntCounter mPasspointDeauthImminentScope = new IntCounter();
     private IntCounter mRecentFailureAssociationStatus = new IntCounter();
+    /**
+     * Latency histograms of the jobs executed on the wifi thread, keyed by job signature. Not
+     * guarded by mLock, recording is lock-free.
+     */
+    private final ConcurrentHashMap<String, WifiThreadTaskLatency> mWifiThreadTaskLatencies =
+            new ConcurrentHashMap<>();
     private boolean mFirstConnectionAfterBoot = true;
     private long mLastTotalBeaconRx = 0;
 
@@ -436,10 +450,12 @@ public class WifiMetrics {
     private int mLinkProbeStaEventCount = 0;
     @VisibleForTesting static final int MAX_LINK_PROBE_STA_EVENTS = MAX_STA_EVENTS / 4;
 
-    private final LinkedList<WifiUsabilityStatsEntry> mWifiUsabilityStatsEntriesList =
-            new LinkedList<>();
-    private final LinkedList<WifiUsabilityStats> mWifiUsabilityStatsListBad = new LinkedList<>();
-    private final LinkedList<WifiUsabilityStats> mWifiUsabilityStatsListGood = new LinkedList<>();
+    private final RingBuffer<WifiUsabilityStatsEntry> mWifiUsabilityStatsEntriesList =
+            new RingBuffer<>(MAX_WIFI_USABILITY_STATS_ENTRIES_LIST_SIZE);
+    private final RingBuffer<WifiUsabilityStats> mWifiUsabilityStatsListBad =
+            new RingBuffer<>(MAX_WIFI_USABILITY_STATS_LIST_SIZE_PER_TYPE);
+    private final RingBuffer<WifiUsabilityStats> mWifiUsabilityStatsListGood =
+            new RingBuffer<>(MAX_WIFI_USABILITY_STATS_LIST_SIZE_PER_TYPE);
     private int mWifiUsabilityStatsCounter = 0;
     private final Random mRand = new Random();
     private final RemoteCallbackList<IOnWifiUsabilityStatsListener> mOnWifiUsabilityListeners;
@@ -519,6 +535,14 @@ public class WifiMetrics {
     private static final int[] WIFI_LOCK_SESSION_DURATION_HISTOGRAM_BUCKETS =
             {1, 10, 60, 600, 3600};
     private final WifiToggleStats mWifiToggleStats = new WifiToggleStats();
+    // Counters incremented from binder threads. They do not take |mLock|, and are folded into
+    // |mWifiLogProto| and |mWifiToggleStats| by foldConcurrentCounters().
+    private final ConcurrentCounter mNumAddOrUpdateNetworkCalls = new ConcurrentCounter();
+    private final ConcurrentCounter mNumEnableNetworkCalls = new ConcurrentCounter();
+    private final ConcurrentCounter mNumToggleOnPrivileged = new ConcurrentCounter();
+    private final ConcurrentCounter mNumToggleOffPrivileged = new ConcurrentCounter();
+    private final ConcurrentCounter mNumToggleOnNormal = new ConcurrentCounter();
+    private final ConcurrentCounter mNumToggleOffNormal = new ConcurrentCounter();
     private BssidBlocklistStats mBssidBlocklistStats = new BssidBlocklistStats();
 
     private final IntHistogram mWifiLockHighPerfAcqDurationSecHistogram =
@@ -3745,18 +3769,18 @@ public class WifiMetrics {
     public void dump(FileDescriptor fd, PrintWriter pw, String[] args) {
         synchronized (mLock) {
             consolidateScoringParams();
+            foldConcurrentCounters();
             if (args != null && args.length > 0 && PROTO_DUMP_ARG.equals(args[0])) {
                 // Dump serialized WifiLog proto
                 consolidateProto();
-                byte[] wifiMetricsProto = WifiMetricsProto.WifiLog.toByteArray(mWifiLogProto);
-                String metricsProtoDump = Base64.encodeToString(wifiMetricsProto, Base64.DEFAULT);
                 if (args.length > 1 && CLEAN_DUMP_ARG.equals(args[1])) {
                     // Output metrics proto bytes (base64) and nothing else
-                    pw.print(metricsProtoDump);
+                    writeWifiLogProtoBase64(pw);
                 } else {
                     // Tag the start and end of the metrics proto bytes
                     pw.println("WifiMetrics:");
-                    pw.println(metricsProtoDump);
+                    writeWifiLogProtoBase64(pw);
+                    pw.println();
                     pw.println("EndWifiMetrics");
                 }
                 clear();
@@ -4007,6 +4031,13 @@ public class WifiMetrics {
                         + mWifiLogProto.numL2ConnectionThroughFilsAuthentication);
                 pw.println("mWifiLogProto.recentFailureAssociationStatus="
                         + mRecentFailureAssociationStatus.toString());
+                pw.println("mWifiLogProto.wifiThreadTaskLatencyStats:");
+                for (Map.Entry<String, WifiThreadTaskLatency> entry
+                        : mWifiThreadTaskLatencies.entrySet()) {
+                    pw.println("  " + entry.getKey()
+                            + ": scheduleLatency={" + entry.getValue().scheduleLatency
+                            + "} runTime={" + entry.getValue().runTime + "}");
+                }
 
                 pw.println("mWifiLogProto.numScans=" + mWifiLogProto.numScans);
                 pw.println("mWifiLogProto.WifiScoreCount: [" + MIN_WIFI_SCORE + ", "
@@ -5002,10 +5033,10 @@ public class WifiMetrics {
                     Math.min(mWifiUsabilityStatsListBad.size(),
                             mWifiUsabilityStatsListGood.size()),
                     MAX_WIFI_USABILITY_STATS_PER_TYPE_TO_UPLOAD);
-            LinkedList<WifiUsabilityStats> usabilityStatsGoodCopy =
-                    new LinkedList<>(mWifiUsabilityStatsListGood);
-            LinkedList<WifiUsabilityStats> usabilityStatsBadCopy =
-                    new LinkedList<>(mWifiUsabilityStatsListBad);
+            List<WifiUsabilityStats> usabilityStatsGoodCopy =
+                    new ArrayList<>(mWifiUsabilityStatsListGood);
+            List<WifiUsabilityStats> usabilityStatsBadCopy =
+                    new ArrayList<>(mWifiUsabilityStatsListBad);
             mWifiLogProto.wifiUsabilityStatsList = new WifiUsabilityStats[numUsabilityStats * 2];
             for (int i = 0; i < numUsabilityStats; i++) {
                 mWifiLogProto.wifiUsabilityStatsList[2 * i] = usabilityStatsGoodCopy.remove(
@@ -5105,6 +5136,7 @@ public class WifiMetrics {
                     mWifiLockLowLatencyActiveSessionDurationSecHistogram.toProto();
 
             mWifiLogProto.wifiLockStats = mWifiLockStats;
+            foldConcurrentCounters();
             mWifiLogProto.wifiToggleStats = mWifiToggleStats;
 
             /**
@@ -5182,7 +5214,129 @@ public class WifiMetrics {
             mWifiLogProto.passpointDeauthImminentScope = mPasspointDeauthImminentScope.toProto();
             mWifiLogProto.recentFailureAssociationStatus =
                     mRecentFailureAssociationStatus.toProto();
+            mWifiLogProto.wifiThreadTaskLatencyStats = buildWifiThreadTaskLatencyStats();
+        }
+    }
+
+    /**
+     * Number of elements of a repeated field of |mWifiLogProto| serialized at once by
+     * writeWifiLogProtoBase64().
+     */
+    private static final int PROTO_DUMP_SECTION_SIZE = 16;
+
+    /**
+     * Serialize |mWifiLogProto| as base64 to the provided writer, in the format of
+     * {@link Base64#DEFAULT}.
+     *
+     * Instead of serializing the whole proto into a single array, the large repeated fields are
+     * serialized a few elements at a time as separate WifiLog messages, and the base64 encoding is
+     * streamed to the writer. The concatenation of serialized messages parses as their merge, so
+     * the output decodes to the same WifiLog.
+     */
+    private void writeWifiLogProtoBase64(PrintWriter pw) {
+        WifiMetricsProto.ConnectionEvent[] connectionEvents = mWifiLogProto.connectionEvent;
+        StaEvent[] staEvents = mWifiLogProto.staEventList;
+        UserActionEvent[] userActionEvents = mWifiLogProto.userActionEvents;
+        WifiIsUnusableEvent[] wifiIsUnusableEvents = mWifiLogProto.wifiIsUnusableEventList;
+        WifiUsabilityStats[] wifiUsabilityStats = mWifiLogProto.wifiUsabilityStatsList;
+        mWifiLogProto.connectionEvent = WifiMetricsProto.ConnectionEvent.emptyArray();
+        mWifiLogProto.staEventList = StaEvent.emptyArray();
+        mWifiLogProto.userActionEvents = UserActionEvent.emptyArray();
+        mWifiLogProto.wifiIsUnusableEventList = WifiIsUnusableEvent.emptyArray();
+        mWifiLogProto.wifiUsabilityStatsList = WifiUsabilityStats.emptyArray();
+        try (OutputStream out = new Base64OutputStream(
+                new PrintWriterOutputStream(pw), Base64.DEFAULT)) {
+            out.write(WifiMetricsProto.WifiLog.toByteArray(mWifiLogProto));
+            WifiMetricsProto.WifiLog section = new WifiMetricsProto.WifiLog();
+            writeProtoSections(out, section, connectionEvents,
+                    (log, elements) -> log.connectionEvent = elements);
+            writeProtoSections(out, section, staEvents,
+                    (log, elements) -> log.staEventList = elements);
+            writeProtoSections(out, section, userActionEvents,
+                    (log, elements) -> log.userActionEvents = elements);
+            writeProtoSections(out, section, wifiIsUnusableEvents,
+                    (log, elements) -> log.wifiIsUnusableEventList = elements);
+            writeProtoSections(out, section, wifiUsabilityStats,
+                    (log, elements) -> log.wifiUsabilityStatsList = elements);
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write metrics proto", e);
+        } finally {
+            mWifiLogProto.connectionEvent = connectionEvents;
+            mWifiLogProto.staEventList = staEvents;
+            mWifiLogProto.userActionEvents = userActionEvents;
+            mWifiLogProto.wifiIsUnusableEventList = wifiIsUnusableEvents;
+            mWifiLogProto.wifiUsabilityStatsList = wifiUsabilityStats;
+        }
+    }
+
+    /**
+     * Serialize the elements of a repeated field of WifiLog, {@link #PROTO_DUMP_SECTION_SIZE}
+     * elements at a time, using |section| as the container. The field is left empty.
+     */
+    private static <T> void writeProtoSections(OutputStream out,
+            WifiMetricsProto.WifiLog section, T[] elements,
+            BiConsumer<WifiMetricsProto.WifiLog, T[]> setter) throws IOException {
+        for (int i = 0; i < elements.length; i += PROTO_DUMP_SECTION_SIZE) {
+            setter.accept(section, Arrays.copyOfRange(elements, i,
+                    Math.min(elements.length, i + PROTO_DUMP_SECTION_SIZE)));
+            out.write(WifiMetricsProto.WifiLog.toByteArray(section));
+        }
+        setter.accept(section, Arrays.copyOf(elements, 0));
+    }
+
+    /**
+     * Adapts a PrintWriter to an OutputStream of ASCII bytes, without closing the writer.
+     */
+    private static class PrintWriterOutputStream extends OutputStream {
+        private final PrintWriter mPrintWriter;
+
+        PrintWriterOutputStream(PrintWriter printWriter) {
+            mPrintWriter = printWriter;
+        }
+
+        @Override
+        public void write(int b) {
+            mPrintWriter.write((char) (b & 0xFF));
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            char[] chars = new char[len];
+            for (int i = 0; i < len; i++) {
+                chars[i] = (char) (b[off + i] & 0xFF);
+            }
+            mPrintWriter.write(chars);
+        }
+
+        @Override
+        public void flush() {
+            mPrintWriter.flush();
+        }
+
+        @Override
+        public void close() {
+            flush();
+        }
+    }
+
+    private WifiMetricsProto.WifiThreadTaskLatencyStats[] buildWifiThreadTaskLatencyStats() {
+        List<WifiMetricsProto.WifiThreadTaskLatencyStats> statsList = new ArrayList<>();
+        for (Map.Entry<String, WifiThreadTaskLatency> entry
+                : mWifiThreadTaskLatencies.entrySet()) {
+            WifiThreadTaskLatency latency = entry.getValue();
+            WifiMetricsProto.WifiThreadTaskLatencyStats stats =
+                    new WifiMetricsProto.WifiThreadTaskLatencyStats();
+            stats.taskName = entry.getKey();
+            stats.count = latency.runTime.getTotalCount();
+            stats.scheduleLatencyP50Ms = latency.scheduleLatency.getValueAtQuantile(0.50);
+            stats.scheduleLatencyP95Ms = latency.scheduleLatency.getValueAtQuantile(0.95);
+            stats.scheduleLatencyP99Ms = latency.scheduleLatency.getValueAtQuantile(0.99);
+            stats.runTimeP50Ms = latency.runTime.getValueAtQuantile(0.50);
+            stats.runTimeP95Ms = latency.runTime.getValueAtQuantile(0.95);
+            stats.runTimeP99Ms = latency.runTime.getValueAtQuantile(0.99);
+            statsList.add(stats);
         }
+        return statsList.toArray(new WifiMetricsProto.WifiThreadTaskLatencyStats[0]);
     }
 
     private WifiToWifiSwitchStats buildWifiToWifiSwitchStats() {
@@ -5309,6 +5463,7 @@ public class WifiMetrics {
             mWifiScoreCounts.clear();
             mWifiUsabilityScoreCounts.clear();
             mWifiLogProto.clear();
+            clearConcurrentCounters();
             mScanResultRssiTimestampMillis = -1;
             mSoftApManagerReturnCodeCounts.clear();
             mStaEventList.clear();
@@ -5420,6 +5575,7 @@ public class WifiMetrics {
             mWifiToWifiSwitchStats.clear();
             mPasspointDeauthImminentScope.clear();
             mRecentFailureAssociationStatus.clear();
+            mWifiThreadTaskLatencies.clear();
             mWifiNetworkSuggestionPriorityGroups.clear();
             mWifiNetworkSuggestionCoexistSavedNetworks.clear();
         }
@@ -5625,9 +5781,8 @@ public class WifiMetrics {
         mLastWifiUsabilityScore = -1;
         mLastPredictionHorizonSec = -1;
         synchronized (mLock) {
+            // The oldest event is evicted once the list is full.
             mStaEventList.add(new StaEventWithTime(staEvent, mClock.getWallClockMillis()));
-            // Prune StaEventList if it gets too long
-            if (mStaEventList.size() > MAX_STA_EVENTS) mStaEventList.remove();
         }
     }
 
@@ -6028,8 +6183,8 @@ public class WifiMetrics {
         }
     }
 
-    private LinkedList<WifiIsUnusableWithTime> mWifiIsUnusableList =
-            new LinkedList<WifiIsUnusableWithTime>();
+    private final RingBuffer<WifiIsUnusableWithTime> mWifiIsUnusableList =
+            new RingBuffer<>(MAX_UNUSABLE_EVENTS);
     private long mTxScucessDelta = 0;
     private long mTxRetriesDelta = 0;
     private long mTxBadDelta = 0;
@@ -6212,9 +6367,6 @@ public class WifiMetrics {
     public void logUserActionEvent(int eventType, int networkId) {
         synchronized (mLock) {
             mUserActionEventList.add(new UserActionEventWithTime(eventType, networkId));
-            if (mUserActionEventList.size() > MAX_USER_ACTION_EVENTS) {
-                mUserActionEventList.remove();
-            }
         }
     }
 
@@ -6230,9 +6382,6 @@ public class WifiMetrics {
             networkInfo.isEphemeral = isEphemeral;
             networkInfo.isPasspoint = isPasspoint;
             mUserActionEventList.add(new UserActionEventWithTime(eventType, networkInfo));
-            if (mUserActionEventList.size() > MAX_USER_ACTION_EVENTS) {
-                mUserActionEventList.remove();
-            }
         }
     }
 
@@ -6328,9 +6477,6 @@ public class WifiMetrics {
         event.totalRxBytes = mFacade.getTotalRxBytes();
 
         mWifiIsUnusableList.add(new WifiIsUnusableWithTime(event, mClock.getWallClockMillis()));
-        if (mWifiIsUnusableList.size() > MAX_UNUSABLE_EVENTS) {
-            mWifiIsUnusableList.removeFirst();
-        }
     }
 
     /**
@@ -6357,10 +6503,12 @@ public class WifiMetrics {
                 stats.lostmpdu_be = info.txBad;
                 stats.rxmpdu_be = info.rxSuccess;
             }
+            // Overwrite the oldest entry once the list is full instead of allocating.
             WifiUsabilityStatsEntry wifiUsabilityStatsEntry =
-                    mWifiUsabilityStatsEntriesList.size()
-                    < MAX_WIFI_USABILITY_STATS_ENTRIES_LIST_SIZE
-                    ? new WifiUsabilityStatsEntry() : mWifiUsabilityStatsEntriesList.remove();
+                    mWifiUsabilityStatsEntriesList.recycle();
+            if (wifiUsabilityStatsEntry == null) {
+                wifiUsabilityStatsEntry = new WifiUsabilityStatsEntry();
+            }
             wifiUsabilityStatsEntry.timeStampMs = stats.timeStampInMs;
             wifiUsabilityStatsEntry.totalTxSuccess = stats.txmpdu_be + stats.txmpdu_bk
                     + stats.txmpdu_vi + stats.txmpdu_vo;
@@ -7649,33 +7797,54 @@ public class WifiMetrics {
 
     /** Increments metrics counting number of addOrUpdateNetwork calls. **/
     public void incrementNumAddOrUpdateNetworkCalls() {
-        synchronized (mLock) {
-            mWifiLogProto.numAddOrUpdateNetworkCalls++;
-        }
+        mNumAddOrUpdateNetworkCalls.increment();
     }
 
     /** Increments metrics counting number of enableNetwork calls. **/
     public void incrementNumEnableNetworkCalls() {
-        synchronized (mLock) {
-            mWifiLogProto.numEnableNetworkCalls++;
-        }
+        mNumEnableNetworkCalls.increment();
     }
 
     /** Add to WifiToggleStats **/
     public void incrementNumWifiToggles(boolean isPrivileged, boolean enable) {
+        if (isPrivileged && enable) {
+            mNumToggleOnPrivileged.increment();
+        } else if (isPrivileged && !enable) {
+            mNumToggleOffPrivileged.increment();
+        } else if (!isPrivileged && enable) {
+            mNumToggleOnNormal.increment();
+        } else {
+            mNumToggleOffNormal.increment();
+        }
+    }
+
+    /**
+     * Copy the values of the counters which are incremented without |mLock| into the proto.
+     */
+    private void foldConcurrentCounters() {
         synchronized (mLock) {
-            if (isPrivileged && enable) {
-                mWifiToggleStats.numToggleOnPrivileged++;
-            } else if (isPrivileged && !enable) {
-                mWifiToggleStats.numToggleOffPrivileged++;
-            } else if (!isPrivileged && enable) {
-                mWifiToggleStats.numToggleOnNormal++;
-            } else {
-                mWifiToggleStats.numToggleOffNormal++;
-            }
+            mWifiLogProto.numAddOrUpdateNetworkCalls = mNumAddOrUpdateNetworkCalls.getInt();
+            mWifiLogProto.numEnableNetworkCalls = mNumEnableNetworkCalls.getInt();
+            mWifiToggleStats.numToggleOnPrivileged = mNumToggleOnPrivileged.getInt();
+            mWifiToggleStats.numToggleOffPrivileged = mNumToggleOffPrivileged.getInt();
+            mWifiToggleStats.numToggleOnNormal = mNumToggleOnNormal.getInt();
+            mWifiToggleStats.numToggleOffNormal = mNumToggleOffNormal.getInt();
         }
     }
 
+    /**
+     * Clear the values of the counters which are incremented without |mLock| reported by the last
+     * foldConcurrentCounters().
+     */
+    private void clearConcurrentCounters() {
+        mNumAddOrUpdateNetworkCalls.clear();
+        mNumEnableNetworkCalls.clear();
+        mNumToggleOnPrivileged.clear();
+        mNumToggleOffPrivileged.clear();
+        mNumToggleOnNormal.clear();
+        mNumToggleOffNormal.clear();
+    }
+
     /**
      * Increment number of passpoint provision failure
      * @param failureCode indicates error condition
@@ -8624,4 +8793,45 @@ public class WifiMetrics {
     public void wifiThreadTaskExecuted(String taskName, int delay, int runningTime) {
         WifiStatsLog.write(WIFI_THREAD_TASK_EXECUTED, runningTime, delay, taskName);
     }
+
+    /** Max number of distinct job signatures tracked by {@link #mWifiThreadTaskLatencies}. */
+    @VisibleForTesting
+    static final int MAX_WIFI_THREAD_TASK_SIGNATURES = 128;
+    @VisibleForTesting
+    static final String WIFI_THREAD_TASK_OVERFLOW_SIGNATURE = "<OTHER>";
+
+    /** Queueing latency and run time histograms of a wifi thread job. */
+    private static class WifiThreadTaskLatency {
+        public final LogHistogram scheduleLatency = new LogHistogram();
+        public final LogHistogram runTime = new LogHistogram();
+    }
+
+    /**
+     * Record the schedule latency and run time of a task executed on the Wifi Thread in the
+     * histograms of its signature, whatever their values. Once
+     * {@link #MAX_WIFI_THREAD_TASK_SIGNATURES} signatures are tracked, new signatures are
+     * recorded under {@link #WIFI_THREAD_TASK_OVERFLOW_SIGNATURE}. This is lock-free and only
+     * allocates the first time a signature is seen.
+     * @param taskName Signature of the task, which must not depend on the task instance
+     * @param delay Time in milliseconds between posting the task and running it
+     * @param runningTime Time in milliseconds spent running the task
+     */
+    public void wifiThreadTaskDispatched(String taskName, int delay, int runningTime) {
+        WifiThreadTaskLatency latency = mWifiThreadTaskLatencies.get(taskName);
+        if (latency == null) {
+            if (mWifiThreadTaskLatencies.size() >= MAX_WIFI_THREAD_TASK_SIGNATURES) {
+                taskName = WIFI_THREAD_TASK_OVERFLOW_SIGNATURE;
+            }
+            latency = mWifiThreadTaskLatencies.get(taskName);
+            if (latency == null) {
+                WifiThreadTaskLatency newLatency = new WifiThreadTaskLatency();
+                latency = mWifiThreadTaskLatencies.putIfAbsent(taskName, newLatency);
+                if (latency == null) {
+                    latency = newLatency;
+                }
+            }
+        }
+        latency.scheduleLatency.record(delay);
+        latency.runTime.record(runningTime);
+    }
 }
@@ -130,6 +130,8 @@ public class WifiNative {
     private InterfaceObserverInternal mInterfaceObserver;
     private InterfaceEventCallback mInterfaceListener;
     private @WifiManager.MloMode int mCachedMloMode = WifiManager.MLO_MODE_DEFAULT;
+    private final NativeScanResultConverter mNativeScanResultConverter =
+            new NativeScanResultConverter();
 
     public WifiNative(WifiVendorHal vendorHal,
                       SupplicantStaIfaceHal staIfaceHal, HostapdHal hostapdHal,
@@ -1826,39 +1828,21 @@ public class WifiNative {
     private ArrayList<ScanDetail> convertNativeScanResults(@NonNull String ifaceName,
             List<NativeScanResult> nativeResults) {
         ArrayList<ScanDetail> results = new ArrayList<>();
-        for (NativeScanResult result : nativeResults) {
-            if (result.getSsid().length > 32) {
-                Log.e(TAG, "Invalid SSID length (> 32 bytes): "
-                        + Arrays.toString(result.getSsid()));
+        // Parsing of the IEs is spread across worker threads for large batches, the remaining
+        // steps are done in order on this thread.
+        NativeScanResultConverter.ParsedScanResult[] parsedResults =
+                mNativeScanResultConverter.parse(nativeResults, mIsEnhancedOpenSupported);
+        for (NativeScanResultConverter.ParsedScanResult parsed : parsedResults) {
+            if (parsed == null) {
                 continue;
             }
-            WifiSsid originalSsid = WifiSsid.fromBytes(result.getSsid());
-            MacAddress bssidMac = result.getBssid();
-            if (bssidMac == null) {
-                Log.e(TAG, "Invalid MAC (BSSID) for SSID " + originalSsid);
-                continue;
-            }
-            String bssid = bssidMac.toString();
-            ScanResult.InformationElement[] ies =
-                    InformationElementUtil.parseInformationElements(result.getInformationElements());
-            InformationElementUtil.Capabilities capabilities =
-                    new InformationElementUtil.Capabilities();
-            capabilities.from(ies, result.getCapabilities(), mIsEnhancedOpenSupported,
-                              result.getFrequencyMhz());
-            String flags = capabilities.generateCapabilitiesString();
-            NetworkDetail networkDetail;
-            try {
-                networkDetail = new NetworkDetail(bssid, ies, null, result.getFrequencyMhz());
-            } catch (IllegalArgumentException e) {
-                Log.e(TAG, "Illegal argument for scan result with bssid: " + bssid, e);
-                continue;
-            }
-
+            NativeScanResult result = parsed.nativeResult;
+            NetworkDetail networkDetail = parsed.networkDetail;
             WifiSsid translatedSsid = mWifiInjector.getSsidTranslator()
-                    .getTranslatedSsidAndRecordBssidCharset(originalSsid, bssidMac);
-            ScanDetail scanDetail = new ScanDetail(networkDetail, translatedSsid, bssid, flags,
-                    result.getSignalMbm() / 100, result.getFrequencyMhz(), result.getTsf(), ies,
-                    null, result.getInformationElements());
+                    .getTranslatedSsidAndRecordBssidCharset(parsed.originalSsid, parsed.bssidMac);
+            ScanDetail scanDetail = new ScanDetail(networkDetail, translatedSsid, parsed.bssid,
+                    parsed.flags, result.getSignalMbm() / 100, result.getFrequencyMhz(),
+                    result.getTsf(), parsed.ies, null, result.getInformationElements());
             ScanResult scanResult = scanDetail.getScanResult();
             scanResult.setWifiStandard(wifiModeToWifiStandard(networkDetail.getWifiMode()));
             scanResult.ifaceName = ifaceName;
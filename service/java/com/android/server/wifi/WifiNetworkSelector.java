@@ -62,6 +62,7 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
@@ -195,6 +196,25 @@ public class WifiNetworkSelector {
                 boolean oemPrivateNetworkAllowed, Set<Integer> restrictedNetworkAllowedUids,
                 OnConnectableListener onConnectableListener);
 
+        /**
+         * Evaluate all the networks from the scan results, using an index of the scan details
+         * shared by all the nominators of a network selection. Nominators which match scan
+         * details against configurations should override this to avoid recomputing the match
+         * info of each scan detail.
+         *
+         * @param scanDetailIndex          index of the scan details constructed from the scan
+         *                                 results
+         * @see #nominateNetworks(List, boolean, boolean, boolean, Set, OnConnectableListener)
+         */
+        default void nominateNetworks(ScanDetailIndex scanDetailIndex,
+                boolean untrustedNetworkAllowed, boolean oemPaidNetworkAllowed,
+                boolean oemPrivateNetworkAllowed, Set<Integer> restrictedNetworkAllowedUids,
+                OnConnectableListener onConnectableListener) {
+            nominateNetworks(new ArrayList<>(scanDetailIndex.getScanDetails()),
+                    untrustedNetworkAllowed, oemPaidNetworkAllowed, oemPrivateNetworkAllowed,
+                    restrictedNetworkAllowedUids, onConnectableListener);
+        }
+
         /**
          * Callback for recording connectable candidates
          */
@@ -660,17 +680,6 @@ public class WifiNetworkSelector {
         return validScanDetails;
     }
 
-    private ScanDetail findScanDetailForBssid(List<ScanDetail> scanDetails,
-            String currentBssid) {
-        for (ScanDetail scanDetail : scanDetails) {
-            ScanResult scanResult = scanDetail.getScanResult();
-            if (scanResult.BSSID.equals(currentBssid)) {
-                return scanDetail;
-            }
-        }
-        return null;
-    }
-
     private boolean isEnhancedOpenSupported() {
         if (mIsEnhancedOpenSupportedInitialized) {
             return mIsEnhancedOpenSupported;
@@ -737,6 +746,8 @@ public class WifiNetworkSelector {
      * c) Log any disabled networks.
      */
     private void updateConfiguredNetworks() {
+        // Not the shared snapshot: the loop below modifies the internal configurations, which
+        // would invalidate it on every selection.
         List<WifiConfiguration> configuredNetworks = mWifiConfigManager.getConfiguredNetworks();
         if (configuredNetworks.size() == 0) {
             localLog("No configured networks.");
@@ -1069,7 +1080,10 @@ public class WifiNetworkSelector {
             return null;
         }
 
-        WifiCandidates wifiCandidates = new WifiCandidates(mWifiScoreCard, mContext);
+        // Index the scan details once, it is shared by all the nominators and the candidates.
+        ScanDetailIndex scanDetailIndex = new ScanDetailIndex(mFilteredNetworks);
+        WifiCandidates wifiCandidates = new WifiCandidates(mWifiScoreCard, mContext,
+                Collections.emptyList(), scanDetailIndex);
         for (ClientModeManagerState cmmState : cmmStates) {
             // Always get the current BSSID from WifiInfo in case that firmware initiated
             // roaming happened.
@@ -1092,7 +1106,7 @@ public class WifiNetworkSelector {
                         ScanResultMatchInfo.fromWifiConfiguration(currentNetwork),
                         bssid, currentNetwork.networkId,
                         params.getSecurityType());
-                ScanDetail scanDetail = findScanDetailForBssid(mFilteredNetworks, currentBssid);
+                ScanDetail scanDetail = scanDetailIndex.getScanDetailForBssid(currentBssid);
                 int predictedTputMbps = (scanDetail == null) ? 0 : predictThroughput(scanDetail);
                 wifiCandidates.add(key, currentNetwork,
                         NetworkNominator.NOMINATOR_ID_CURRENT,
@@ -1114,8 +1128,10 @@ public class WifiNetworkSelector {
 
         for (NetworkNominator registeredNominator : mNominators) {
             localLog("About to run " + registeredNominator.getName() + " :");
+            long nominatorStartNanos = mClock.getElapsedSinceBootNanos();
+            int numCandidatesBefore = wifiCandidates.size();
             registeredNominator.nominateNetworks(
-                    new ArrayList<>(mFilteredNetworks),
+                    scanDetailIndex,
                     untrustedNetworkAllowed, oemPaidNetworkAllowed, oemPrivateNetworkAllowed,
                     restrictedNetworkAllowedUids, (scanDetail, config) -> {
                         WifiCandidates.Key key = wifiCandidates.keyFromScanDetailAndConfig(
@@ -1148,6 +1164,11 @@ public class WifiNetworkSelector {
                             }
                         }
                     });
+            localLog(registeredNominator.getName() + " took "
+                    + TimeUnit.NANOSECONDS.toMicros(
+                            mClock.getElapsedSinceBootNanos() - nominatorStartNanos)
+                    + " us, candidates: " + numCandidatesBefore + " -> "
+                    + wifiCandidates.size());
         }
         if (mConnectableNetworks.size() != wifiCandidates.size()) {
             localLog("Connectable: " + mConnectableNetworks.size()
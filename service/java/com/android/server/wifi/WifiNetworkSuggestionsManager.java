@@ -166,6 +166,8 @@ public class WifiNetworkSuggestionsManager {
     private final WifiNotificationManager mNotificationManager;
     private final WifiPermissionsUtil mWifiPermissionsUtil;
     private final WifiConfigManager mWifiConfigManager;
+    private final WifiConfigStore mWifiConfigStore;
+    private final NetworkSuggestionStoreData mNetworkSuggestionStoreData;
     private final WifiMetrics mWifiMetrics;
     private final WifiInjector mWifiInjector;
     private final FrameworkFacade mFrameworkFacade;
@@ -432,6 +434,11 @@ public class WifiNetworkSuggestionsManager {
 
     private final Map<String, Set<ExtendedWifiNetworkSuggestion>>
             mPasspointInfo = new HashMap<>();
+    /**
+     * Index of the scan results of the last scan result matching query, reused while the scan
+     * results do not change.
+     */
+    private ScanResultMatchIndex mLastScanResultMatchIndex;
 
     private final HashMap<String, RemoteCallbackList<ISuggestionConnectionStatusListener>>
             mSuggestionStatusListenerPerApp = new HashMap<>();
@@ -575,6 +582,35 @@ public class WifiNetworkSuggestionsManager {
         }
     }
 
+    /**
+     * The suggestions are lazily loaded by the config store, make sure they are loaded before
+     * they are accessed. Outside of {@link NetworkSuggestionDataSource}, the suggestions and the
+     * indexes built from them must only be accessed after invoking this, either directly or
+     * through {@link #getActiveNetworkSuggestionsPerApp()}.
+     */
+    private void loadUserDataIfNeeded() {
+        if (!mUserDataLoaded && mNetworkSuggestionStoreData != null) {
+            mWifiConfigStore.loadStoreData(mNetworkSuggestionStoreData);
+        }
+    }
+
+    /**
+     * @return the suggestions of all apps, loading them first if needed.
+     */
+    private Map<String, PerAppInfo> getActiveNetworkSuggestionsPerApp() {
+        loadUserDataIfNeeded();
+        return mActiveNetworkSuggestionsPerApp;
+    }
+
+    /**
+     * @return true if the suggestions of the current user have been read from the store, loading
+     * them first if needed.
+     */
+    private boolean isUserDataLoaded() {
+        loadUserDataIfNeeded();
+        return mUserDataLoaded;
+    }
+
     private void handleUserAllowAction(int uid, String packageName) {
         Log.i(TAG, "User clicked to allow app");
         // Set the user approved flag.
@@ -680,8 +716,10 @@ public class WifiNetworkSuggestionsManager {
         mClock = clock;
 
         // register the data store for serializing/deserializing data.
-        wifiConfigStore.registerStoreData(
-                wifiInjector.makeNetworkSuggestionStoreData(new NetworkSuggestionDataSource()));
+        mWifiConfigStore = wifiConfigStore;
+        mNetworkSuggestionStoreData =
+                wifiInjector.makeNetworkSuggestionStoreData(new NetworkSuggestionDataSource());
+        wifiConfigStore.registerStoreData(mNetworkSuggestionStoreData);
 
         mWifiCarrierInfoManager.addImsiProtectedOrUserApprovedListener(
                 new ImsiProtectedOrUserApprovedListener());
@@ -900,7 +938,7 @@ public class WifiNetworkSuggestionsManager {
             Log.e(TAG, "UID " + uid + " not visible to the current user");
             return WifiManager.STATUS_NETWORK_SUGGESTIONS_ERROR_INTERNAL;
         }
-        if (!mUserDataLoaded) {
+        if (!isUserDataLoaded()) {
             Log.e(TAG, "Add Network suggestion before boot complete is not allowed.");
             return WifiManager.STATUS_NETWORK_SUGGESTIONS_ERROR_INTERNAL;
         }
@@ -930,10 +968,10 @@ public class WifiNetworkSuggestionsManager {
             }
         }
 
-        PerAppInfo perAppInfo = mActiveNetworkSuggestionsPerApp.get(packageName);
+        PerAppInfo perAppInfo = getActiveNetworkSuggestionsPerApp().get(packageName);
         if (perAppInfo == null) {
             perAppInfo = new PerAppInfo(uid, packageName, featureId);
-            mActiveNetworkSuggestionsPerApp.put(packageName, perAppInfo);
+            getActiveNetworkSuggestionsPerApp().put(packageName, perAppInfo);
             if (mWifiPermissionsUtil.checkNetworkCarrierProvisioningPermission(uid)) {
                 Log.i(TAG, "Setting the carrier provisioning app approved");
                 perAppInfo.hasUserApproved = true;
@@ -1061,7 +1099,7 @@ public class WifiNetworkSuggestionsManager {
         try {
             saveToStore();
         } catch (OutOfMemoryError e) {
-            Optional<PerAppInfo> appInfo = mActiveNetworkSuggestionsPerApp.values()
+            Optional<PerAppInfo> appInfo = getActiveNetworkSuggestionsPerApp().values()
                     .stream()
                     .max(Comparator.comparingInt(a -> a.extNetworkSuggestions.size()));
             if (appInfo.isPresent()) {
@@ -1392,7 +1430,7 @@ public class WifiNetworkSuggestionsManager {
             Log.e(TAG, "UID " + uid + " not visible to the current user");
             return WifiManager.STATUS_NETWORK_SUGGESTIONS_ERROR_INTERNAL;
         }
-        if (!mUserDataLoaded) {
+        if (!isUserDataLoaded()) {
             Log.e(TAG, "Remove Network suggestion before boot complete is not allowed.");
             return WifiManager.STATUS_NETWORK_SUGGESTIONS_ERROR_INTERNAL;
         }
@@ -1407,7 +1445,7 @@ public class WifiNetworkSuggestionsManager {
             Log.e(TAG, "Null in suggestion remove from app: " + packageName);
             return WifiManager.STATUS_NETWORK_SUGGESTIONS_ERROR_REMOVE_INVALID;
         }
-        PerAppInfo perAppInfo = mActiveNetworkSuggestionsPerApp.get(packageName);
+        PerAppInfo perAppInfo = getActiveNetworkSuggestionsPerApp().get(packageName);
         if (perAppInfo == null) {
             Log.e(TAG, "Failed to remove network suggestions for " + packageName
                     + ". No network suggestions found");
@@ -1437,13 +1475,13 @@ public class WifiNetworkSuggestionsManager {
      * Remove all tracking of the app that has been uninstalled.
      */
     public void removeApp(@NonNull String packageName) {
-        PerAppInfo perAppInfo = mActiveNetworkSuggestionsPerApp.get(packageName);
+        PerAppInfo perAppInfo = getActiveNetworkSuggestionsPerApp().get(packageName);
         if (perAppInfo == null) return;
         removeInternal(List.of(), packageName, perAppInfo, ACTION_REMOVE_SUGGESTION_DISCONNECT);
         // Stop tracking app-op changes when the App is removed from suggestion database
         stopTrackingAppOpsChange(packageName);
         // Remove the package fully from the internal database.
-        mActiveNetworkSuggestionsPerApp.remove(packageName);
+        getActiveNetworkSuggestionsPerApp().remove(packageName);
         RemoteCallbackList<ISuggestionConnectionStatusListener> listenerTracker =
                 mSuggestionStatusListenerPerApp.remove(packageName);
         if (listenerTracker != null) listenerTracker.kill();
@@ -1461,11 +1499,11 @@ public class WifiNetworkSuggestionsManager {
             Log.e(TAG, "UID " + uid + " not visible to the current user");
             return networkSuggestionList;
         }
-        if (!mUserDataLoaded) {
+        if (!isUserDataLoaded()) {
             Log.e(TAG, "Get Network suggestion before boot complete is not allowed.");
             return networkSuggestionList;
         }
-        PerAppInfo perAppInfo = mActiveNetworkSuggestionsPerApp.get(packageName);
+        PerAppInfo perAppInfo = getActiveNetworkSuggestionsPerApp().get(packageName);
         // if App never suggested return empty list.
         if (perAppInfo == null) return networkSuggestionList;
         for (ExtendedWifiNetworkSuggestion extendedSuggestion : perAppInfo.extNetworkSuggestions
@@ -1480,7 +1518,7 @@ public class WifiNetworkSuggestionsManager {
      */
     public void clear() {
         Iterator<Map.Entry<String, PerAppInfo>> iter =
-                mActiveNetworkSuggestionsPerApp.entrySet().iterator();
+                getActiveNetworkSuggestionsPerApp().entrySet().iterator();
         while (iter.hasNext()) {
             Map.Entry<String, PerAppInfo> entry = iter.next();
             removeInternal(List.of(), entry.getKey(), entry.getValue(),
@@ -1500,7 +1538,7 @@ public class WifiNetworkSuggestionsManager {
      * Check if network suggestions are enabled or disabled for the app.
      */
     public boolean hasUserApprovedForApp(String packageName) {
-        PerAppInfo perAppInfo = mActiveNetworkSuggestionsPerApp.get(packageName);
+        PerAppInfo perAppInfo = getActiveNetworkSuggestionsPerApp().get(packageName);
         if (perAppInfo == null) return false;
 
         return perAppInfo.hasUserApproved;
@@ -1510,7 +1548,7 @@ public class WifiNetworkSuggestionsManager {
      * Enable or Disable network suggestions for the app.
      */
     public void setHasUserApprovedForApp(boolean approved, int uid, String packageName) {
-        PerAppInfo perAppInfo = mActiveNetworkSuggestionsPerApp.get(packageName);
+        PerAppInfo perAppInfo = getActiveNetworkSuggestionsPerApp().get(packageName);
         if (perAppInfo == null) return;
 
         if (mVerboseLoggingEnabled) {
@@ -1528,7 +1566,7 @@ public class WifiNetworkSuggestionsManager {
      * keep that choice.
      */
     private void restoreInitialAutojoinForCarrierId(int carrierId, boolean allowAutoJoin) {
-        for (PerAppInfo appInfo : mActiveNetworkSuggestionsPerApp.values()) {
+        for (PerAppInfo appInfo : getActiveNetworkSuggestionsPerApp().values()) {
             for (ExtendedWifiNetworkSuggestion ewns : appInfo.extNetworkSuggestions.values()) {
                 if (!(isSimBasedPhase1Suggestion(ewns)
                         && getCarrierIdFromSuggestion(ewns) == carrierId)) {
@@ -1566,7 +1604,7 @@ public class WifiNetworkSuggestionsManager {
      */
     @VisibleForTesting
     public Set<WifiNetworkSuggestion> getAllNetworkSuggestions() {
-        return mActiveNetworkSuggestionsPerApp.values()
+        return getActiveNetworkSuggestionsPerApp().values()
                 .stream()
                 .flatMap(e -> convertToWnsSet(e.extNetworkSuggestions.values())
                         .stream())
@@ -1577,7 +1615,7 @@ public class WifiNetworkSuggestionsManager {
      * Returns a set of all network suggestions across all apps that have been approved by user.
      */
     public Set<WifiNetworkSuggestion> getAllApprovedNetworkSuggestions() {
-        return mActiveNetworkSuggestionsPerApp.values()
+        return getActiveNetworkSuggestionsPerApp().values()
                 .stream()
                 .filter(e -> e.isApproved())
                 .flatMap(e -> convertToWnsSet(e.extNetworkSuggestions.values())
@@ -1590,7 +1628,7 @@ public class WifiNetworkSuggestionsManager {
      */
     public List<WifiConfiguration> getAllScanOptimizationSuggestionNetworks() {
         List<WifiConfiguration> networks = new ArrayList<>();
-        for (PerAppInfo info : mActiveNetworkSuggestionsPerApp.values()) {
+        for (PerAppInfo info : getActiveNetworkSuggestionsPerApp().values()) {
             if (!info.isApproved()) {
                 continue;
             }
@@ -1615,7 +1653,7 @@ public class WifiNetworkSuggestionsManager {
      */
     public List<WifiConfiguration> getAllPasspointScanOptimizationSuggestionNetworks() {
         List<WifiConfiguration> networks = new ArrayList<>();
-        for (PerAppInfo info : mActiveNetworkSuggestionsPerApp.values()) {
+        for (PerAppInfo info : getActiveNetworkSuggestionsPerApp().values()) {
             if (!info.isApproved()) {
                 continue;
             }
@@ -1641,7 +1679,7 @@ public class WifiNetworkSuggestionsManager {
     }
 
     private List<Integer> getAllMaxSizes() {
-        return mActiveNetworkSuggestionsPerApp.values()
+        return getActiveNetworkSuggestionsPerApp().values()
                 .stream()
                 .map(e -> e.maxSize)
                 .collect(Collectors.toList());
@@ -1757,11 +1795,11 @@ public class WifiNetworkSuggestionsManager {
      */
     private boolean sendUserApprovalNotificationIfNotApproved(
             @NonNull String packageName, @NonNull int uid) {
-        if (!mActiveNetworkSuggestionsPerApp.containsKey(packageName)) {
+        if (!getActiveNetworkSuggestionsPerApp().containsKey(packageName)) {
             Log.wtf(TAG, "AppInfo is missing for " + packageName);
             return false;
         }
-        if (mActiveNetworkSuggestionsPerApp.get(packageName).hasUserApproved) {
+        if (getActiveNetworkSuggestionsPerApp().get(packageName).hasUserApproved) {
             return false; // already approved.
         }
 
@@ -1776,6 +1814,7 @@ public class WifiNetworkSuggestionsManager {
     private @Nullable Set<ExtendedWifiNetworkSuggestion>
             getNetworkSuggestionsForScanResultMatchInfo(
             @NonNull ScanResultMatchInfo scanResultMatchInfo, @Nullable MacAddress bssid) {
+        loadUserDataIfNeeded();
         Set<ExtendedWifiNetworkSuggestion> extNetworkSuggestions = new HashSet<>();
         if (bssid != null) {
             Set<ExtendedWifiNetworkSuggestion> matchingExtNetworkSuggestionsWithBssid =
@@ -1801,6 +1840,7 @@ public class WifiNetworkSuggestionsManager {
         if (TextUtils.isEmpty(fqdn)) {
             return null;
         }
+        loadUserDataIfNeeded();
         return mPasspointInfo.get(fqdn);
     }
 
@@ -1846,6 +1886,18 @@ public class WifiNetworkSuggestionsManager {
      */
     public @NonNull Set<ExtendedWifiNetworkSuggestion> getNetworkSuggestionsForScanDetail(
             @NonNull ScanDetail scanDetail) {
+        return getNetworkSuggestionsForScanDetail(scanDetail, null);
+    }
+
+    /**
+     * Same as {@link #getNetworkSuggestionsForScanDetail(ScanDetail)}, but uses the match info
+     * and BSSID of the scan detail from the provided index instead of computing them.
+     *
+     * @param scanDetail ScanDetail object for the network.
+     * @param scanDetailIndex index of the current network selection, or null.
+     */
+    public @NonNull Set<ExtendedWifiNetworkSuggestion> getNetworkSuggestionsForScanDetail(
+            @NonNull ScanDetail scanDetail, @Nullable ScanDetailIndex scanDetailIndex) {
         ScanResult scanResult = scanDetail.getScanResult();
         if (scanResult == null) {
             Log.e(TAG, "No scan result found in scan detail");
@@ -1853,10 +1905,14 @@ public class WifiNetworkSuggestionsManager {
         }
         Set<ExtendedWifiNetworkSuggestion> extNetworkSuggestions = null;
         try {
-            ScanResultMatchInfo scanResultMatchInfo =
-                    ScanResultMatchInfo.fromScanResult(scanResult);
+            ScanResultMatchInfo scanResultMatchInfo = scanDetailIndex != null
+                    ? scanDetailIndex.getScanResultMatchInfo(scanDetail)
+                    : ScanResultMatchInfo.fromScanResult(scanResult);
+            MacAddress bssid = scanDetailIndex != null
+                    ? scanDetailIndex.getBssid(scanDetail) : null;
             extNetworkSuggestions = getNetworkSuggestionsForScanResultMatchInfo(
-                    scanResultMatchInfo,  MacAddress.fromString(scanResult.BSSID));
+                    scanResultMatchInfo,
+                    bssid != null ? bssid : MacAddress.fromString(scanResult.BSSID));
         } catch (IllegalArgumentException e) {
             Log.e(TAG, "Failed to lookup network from scan result match info map", e);
         }
@@ -1939,7 +1995,7 @@ public class WifiNetworkSuggestionsManager {
         // As they are all single type configurations, they should have unique keys.
         Map<String, WifiConfiguration> wifiConfigMap = new HashMap<>();
         WifiConfigurationUtil.convertMultiTypeConfigsToLegacyConfigs(
-                mWifiConfigManager.getConfiguredNetworks(), true)
+                mWifiConfigManager.getConfiguredNetworksSnapshot(), true)
                         .forEach(c -> wifiConfigMap.put(c.getProfileKey(), c));
 
         // Create a HashSet to avoid return multiple result for duplicate ScanResult.
@@ -1990,7 +2046,8 @@ public class WifiNetworkSuggestionsManager {
                     continue;
                 }
                 if (networkKeys.add(wCmWifiConfig.getProfileKey())) {
-                    sharedWifiConfigs.add(wCmWifiConfig);
+                    // Copy, since it may belong to the shared configured networks snapshot.
+                    sharedWifiConfigs.add(new WifiConfiguration(wCmWifiConfig));
                 }
             }
         }
@@ -2037,7 +2094,7 @@ public class WifiNetworkSuggestionsManager {
             boolean autoJoinOnly) {
         List<WifiScanner.ScanSettings.HiddenNetwork> hiddenNetworks = new ArrayList<>();
         Set<WifiSsid> ssidSet = new LinkedHashSet<>();
-        for (PerAppInfo appInfo : mActiveNetworkSuggestionsPerApp.values()) {
+        for (PerAppInfo appInfo : getActiveNetworkSuggestionsPerApp().values()) {
             if (!appInfo.hasUserApproved) continue;
             for (ExtendedWifiNetworkSuggestion ewns : appInfo.extNetworkSuggestions.values()) {
                 if (!ewns.wns.wifiConfiguration.hiddenSSID) continue;
@@ -2393,7 +2450,7 @@ public class WifiNetworkSuggestionsManager {
         }
         Log.w(TAG, "SIM state is changed!");
         Iterator<Map.Entry<String, PerAppInfo>> iter =
-                mActiveNetworkSuggestionsPerApp.entrySet().iterator();
+                getActiveNetworkSuggestionsPerApp().entrySet().iterator();
         while (iter.hasNext()) {
             PerAppInfo appInfo = iter.next().getValue();
             int carrierId = mWifiCarrierInfoManager
@@ -2438,7 +2495,7 @@ public class WifiNetworkSuggestionsManager {
             Log.d(TAG, stringBuilder.toString());
         }
         Iterator<Map.Entry<String, PerAppInfo>> iter =
-                mActiveNetworkSuggestionsPerApp.entrySet().iterator();
+                getActiveNetworkSuggestionsPerApp().entrySet().iterator();
         while (iter.hasNext()) {
             PerAppInfo appInfo = iter.next().getValue();
             if (privilegedApps.contains(appInfo.packageName)) {
@@ -2475,7 +2532,7 @@ public class WifiNetworkSuggestionsManager {
      * Resets all sim networks state.
      */
     public void resetSimNetworkSuggestions() {
-        mActiveNetworkSuggestionsPerApp.values().stream()
+        getActiveNetworkSuggestionsPerApp().values().stream()
                 .flatMap(e -> e.extNetworkSuggestions.values().stream())
                 .forEach(ewns -> ewns.anonymousIdentity = null);
         saveToStore();
@@ -2531,50 +2588,40 @@ public class WifiNetworkSuggestionsManager {
                 || scanResults == null || scanResults.isEmpty()) {
             return filteredScanResults;
         }
+        ScanResultMatchIndex matchIndex = getScanResultMatchIndex(scanResults);
         for (WifiNetworkSuggestion suggestion : wifiNetworkSuggestions) {
             if (suggestion == null || suggestion.wifiConfiguration == null) {
                 continue;
             }
             filteredScanResults.put(suggestion,
-                    getMatchingScanResultsForSuggestion(suggestion, scanResults));
+                    getMatchingScanResultsForSuggestion(suggestion, scanResults, matchIndex));
         }
 
         return filteredScanResults;
     }
 
     private List<ScanResult> getMatchingScanResultsForSuggestion(WifiNetworkSuggestion suggestion,
-            List<ScanResult> scanResults) {
+            List<ScanResult> scanResults, ScanResultMatchIndex matchIndex) {
         if (suggestion.passpointConfiguration != null) {
             return mWifiInjector.getPasspointManager().getMatchingScanResults(
                     suggestion.passpointConfiguration, scanResults);
         } else {
-            return getMatchingScanResults(suggestion.wifiConfiguration, scanResults);
+            return matchIndex.getMatchingScanResults(suggestion.wifiConfiguration);
         }
     }
 
     /**
-     * Get the filtered ScanResults which may be authenticated by the {@link WifiConfiguration}.
-     * @param wifiConfiguration The instance of {@link WifiConfiguration}
-     * @param scanResults The list of {@link ScanResult}
-     * @return The filtered ScanResults
+     * Get the {@link ScanResultMatchIndex} of the provided scan results. The index is reused
+     * across calls as long as the scan results are the same objects, which is the case for the
+     * cached scan results until a new scan completes.
      */
     @NonNull
-    private List<ScanResult> getMatchingScanResults(
-            @NonNull WifiConfiguration wifiConfiguration,
-            @NonNull List<ScanResult> scanResults) {
-        ScanResultMatchInfo matchInfoFromConfigration =
-                ScanResultMatchInfo.fromWifiConfiguration(wifiConfiguration);
-        if (matchInfoFromConfigration == null) {
-            return new ArrayList<>();
+    private ScanResultMatchIndex getScanResultMatchIndex(@NonNull List<ScanResult> scanResults) {
+        if (mLastScanResultMatchIndex == null
+                || !mLastScanResultMatchIndex.isBuiltFrom(scanResults)) {
+            mLastScanResultMatchIndex = new ScanResultMatchIndex(scanResults);
         }
-        List<ScanResult> filteredScanResult = new ArrayList<>();
-        for (ScanResult scanResult : scanResults) {
-            if (matchInfoFromConfigration.equals(ScanResultMatchInfo.fromScanResult(scanResult))) {
-                filteredScanResult.add(scanResult);
-            }
-        }
-
-        return filteredScanResult;
+        return mLastScanResultMatchIndex;
     }
 
     /**
@@ -2631,10 +2678,10 @@ public class WifiNetworkSuggestionsManager {
                 == AppOpsManager.MODE_IGNORED) {
             return WifiManager.STATUS_SUGGESTION_APPROVAL_REJECTED_BY_USER;
         }
-        if (!mActiveNetworkSuggestionsPerApp.containsKey(packageName)) {
+        if (!getActiveNetworkSuggestionsPerApp().containsKey(packageName)) {
             return WifiManager.STATUS_SUGGESTION_APPROVAL_UNKNOWN;
         }
-        PerAppInfo info = mActiveNetworkSuggestionsPerApp.get(packageName);
+        PerAppInfo info = getActiveNetworkSuggestionsPerApp().get(packageName);
         if (info.hasUserApproved) {
             return WifiManager.STATUS_SUGGESTION_APPROVAL_APPROVED_BY_USER;
         }
@@ -2686,8 +2733,10 @@ public class WifiNetworkSuggestionsManager {
         List<ScanResult> scanResults = scanDetails.stream().map(ScanDetail::getScanResult)
                 .collect(Collectors.toList());
         // Check if the secure suggestion is in the range.
+        ScanResultMatchIndex matchIndex = getScanResultMatchIndex(scanResults);
         for (ExtendedWifiNetworkSuggestion ewns : secureExtSuggestions) {
-            if (!getMatchingScanResultsForSuggestion(ewns.wns, scanResults).isEmpty()) {
+            if (!getMatchingScanResultsForSuggestion(ewns.wns, scanResults, matchIndex)
+                    .isEmpty()) {
                 return true;
             }
         }
@@ -2753,7 +2802,7 @@ public class WifiNetworkSuggestionsManager {
                 .filter(config -> config.fromWifiNetworkSuggestion)
                 .map(WifiConfiguration::getProfileKey)
                 .collect(Collectors.toSet());
-        mActiveNetworkSuggestionsPerApp.values().stream()
+        getActiveNetworkSuggestionsPerApp().values().stream()
                 .flatMap(e -> e.extNetworkSuggestions.values().stream())
                 .forEach(ewns -> {
                     String profileKey = ewns
@@ -2771,7 +2820,7 @@ public class WifiNetworkSuggestionsManager {
     }
 
     private void onUserConnectChoiceRemoveForSuggestion(String choiceKey) {
-        if (mActiveNetworkSuggestionsPerApp.values().stream()
+        if (getActiveNetworkSuggestionsPerApp().values().stream()
                 .flatMap(e -> e.extNetworkSuggestions.values().stream())
                 .filter(ewns -> TextUtils.equals(ewns.connectChoice, choiceKey))
                 .peek(ewns -> {
@@ -2826,7 +2875,7 @@ public class WifiNetworkSuggestionsManager {
         pw.println("Dump of WifiNetworkSuggestionsManager");
         pw.println("WifiNetworkSuggestionsManager - Networks Begin ----");
         for (Map.Entry<String, PerAppInfo> networkSuggestionsEntry
-                : mActiveNetworkSuggestionsPerApp.entrySet()) {
+                : getActiveNetworkSuggestionsPerApp().entrySet()) {
             pw.println("Package Name: " + networkSuggestionsEntry.getKey());
             PerAppInfo appInfo = networkSuggestionsEntry.getValue();
             pw.println("Has user approved: " + appInfo.hasUserApproved);
@@ -39,6 +39,7 @@ import android.net.MacAddress;
 import android.net.wifi.ScanResult;
 import android.net.wifi.SupplicantState;
 import android.net.wifi.WifiManager;
+import android.os.Handler;
 import android.util.ArrayMap;
 import android.util.Base64;
 import android.util.LocalLog;
@@ -88,6 +89,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 
 import javax.annotation.concurrent.NotThreadSafe;
 
@@ -122,12 +124,22 @@ public class WifiScoreCard {
     private static final int MAX_FREQUENCIES_PER_SSID = 10;
     private static final int MAX_TRAFFIC_STATS_POLL_TIME_DELTA_MS = 6_000;
 
+    /** Event-triggered writes are batched, at most one batch per window */
+    @VisibleForTesting
+    static final long WRITE_BATCH_WINDOW_MILLIS = 10_000;
+    /** Maximum number of event-triggered writes issued per minute */
+    @VisibleForTesting
+    static final int MAX_SCHEDULED_WRITES_PER_MINUTE = 20;
+    private static final long MINUTE_MILLIS = 60_000;
+    private static final int WRITE_STATS_MINUTES = 60;
+
     private final Clock mClock;
     private final String mL2KeySeed;
     private MemoryStore mMemoryStore;
     private final DeviceConfigFacade mDeviceConfigFacade;
     private final Context mContext;
     private final WifiGlobals mWifiGlobals;
+    private final Handler mHandler;
     private final LocalLog mLocalLog = new LocalLog(256);
     private final long[][][] mL2ErrorAccPercent =
             new long[NUM_LINK_BAND][NUM_LINK_DIRECTION][NUM_SIGNAL_LEVEL];
@@ -138,6 +150,23 @@ public class WifiScoreCard {
     private final int[][][] mBwEstCount =
             new int[NUM_LINK_BAND][NUM_LINK_DIRECTION][NUM_SIGNAL_LEVEL];
 
+    private long mLastScheduledWritesMillis = TS_NONE;
+    private boolean mScheduledWritesDeferred = false;
+    private boolean mDeferredWritesPending = false;
+    private final Runnable mDeferredWritesRunnable = () -> {
+        mDeferredWritesPending = false;
+        if (mScheduledWritesDeferred) {
+            scheduleWrites();
+        }
+    };
+    private long mTotalWrites = 0;
+    private long mTotalBytesWritten = 0;
+    private long mTotalUnchangedWritesSkipped = 0;
+    // Writes issued in each of the last WRITE_STATS_MINUTES minutes, indexed by minute modulo
+    // WRITE_STATS_MINUTES, along with the minute each slot was last used for.
+    private final int[] mWritesPerMinute = new int[WRITE_STATS_MINUTES];
+    private final long[] mWritesMinute = new long[WRITE_STATS_MINUTES];
+
     @VisibleForTesting
     static final int[] RSSI_BUCKETS = intsInRange(-100, -20);
 
@@ -189,6 +218,7 @@ public class WifiScoreCard {
         } else {
             mMemoryStore = memoryStore;
             Log.e(TAG, "Reinstalling MemoryStore");
+            forgetLastWrites();
             // Our caller will call doWrites() eventually, so nothing more to do here.
         }
     }
@@ -272,9 +302,10 @@ public class WifiScoreCard {
     /**
      * @param clock is the time source
      * @param l2KeySeed is for making our L2Keys usable only on this device
+     * @param handler is used to flush writes deferred by batching
      */
     public WifiScoreCard(Clock clock, String l2KeySeed, DeviceConfigFacade deviceConfigFacade,
-            Context context, WifiGlobals wifiGlobals) {
+            Context context, WifiGlobals wifiGlobals, Handler handler) {
         mClock = clock;
         mContext = context;
         mL2KeySeed = l2KeySeed;
@@ -282,6 +313,7 @@ public class WifiScoreCard {
         mPlaceholderPerNetwork = new PerNetwork("");
         mDeviceConfigFacade = deviceConfigFacade;
         mWifiGlobals = wifiGlobals;
+        mHandler = handler;
     }
 
     /**
@@ -402,9 +434,12 @@ public class WifiScoreCard {
             if (duration >= SUCCESS_MILLIS_SINCE_ROAM) {
                 updatePerBssid(Event.ROAM_SUCCESS, wifiInfo);
                 ifaceInfo.tsRoam = TS_NONE;
-                doWritesBssid();
+                scheduleWrites();
             }
         }
+        if (mScheduledWritesDeferred) {
+            scheduleWrites();
+        }
     }
 
     private int geTxLinkSpeedWithSufficientTxRate(@NonNull ExtendedWifiInfo wifiInfo) {
@@ -432,7 +467,7 @@ public class WifiScoreCard {
         PerNetwork perNetwork = lookupNetwork(wifiInfo.getSSID());
         perNetwork.initBandwidthFilter(wifiInfo);
         ifaceInfo.attemptingSwitch = false;
-        doWrites();
+        scheduleWrites();
     }
 
     /**
@@ -445,7 +480,7 @@ public class WifiScoreCard {
         if (ifaceInfo.validatedThisConnectionAtLeastOnce) return; // Only once per connection
         updatePerBssid(Event.VALIDATION_SUCCESS, wifiInfo);
         ifaceInfo.validatedThisConnectionAtLeastOnce = true;
-        doWrites();
+        scheduleWrites();
     }
 
     /**
@@ -552,7 +587,7 @@ public class WifiScoreCard {
         }
         // No need to call resetConnectionStateInternal() because
         // resetConnectionState() will be called after WifiNative.disconnect() in ClientModeImpl
-        doWrites();
+        scheduleWrites();
     }
 
     /**
@@ -2054,6 +2089,9 @@ public class WifiScoreCard {
         private final long mHash;
         private static final String TAG = "WifiMemoryStoreAccessBase";
         private final AtomicReference<byte[]> mPendingReadFromStore = new AtomicReference<>();
+        // Length and checksum of the last blob written, if any.
+        private int mLastWrittenLength = -1;
+        private long mLastWrittenChecksum;
         MemoryStoreAccessBase(long hash) {
             mHash = hash;
             mL2Key = l2KeyFromLong();
@@ -2093,6 +2131,31 @@ public class WifiScoreCard {
         int idFromLong() {
             return (int) mHash & 0x7fffffff;
         }
+
+        /**
+         * Records a blob about to be written to the MemoryStore.
+         *
+         * @return false if the blob is the same as the last one written, so the write can be
+         *         skipped.
+         */
+        boolean noteWrite(byte[] serialized) {
+            CRC32 crc = new CRC32();
+            crc.update(serialized);
+            long checksum = crc.getValue();
+            if (mLastWrittenLength == serialized.length && mLastWrittenChecksum == checksum) {
+                return false;
+            }
+            mLastWrittenLength = serialized.length;
+            mLastWrittenChecksum = checksum;
+            return true;
+        }
+
+        /**
+         * Forgets the last blob written, so that the next write is never skipped.
+         */
+        void forgetLastWrite() {
+            mLastWrittenLength = -1;
+        }
     }
 
     private void logd(String string) {
@@ -2212,50 +2275,160 @@ public class WifiScoreCard {
      * @returns number of writes issued.
      */
     public int doWrites() {
-        return doWritesBssid() + doWritesNetwork();
+        mScheduledWritesDeferred = false;
+        cancelDeferredWrites();
+        return doWritesBssid(Integer.MAX_VALUE) + doWritesNetwork(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Issues write requests for changed entries after an event, batched and throttled.
+     *
+     * Events often come in bursts (IP configuration, validation, roaming), so at most one batch
+     * of writes is issued per WRITE_BATCH_WINDOW_MILLIS, and no more than
+     * MAX_SCHEDULED_WRITES_PER_MINUTE writes are issued per minute. Entries which are left
+     * changed are written by a delayed batch once the window or minute has passed, or by
+     * doWrites().
+     */
+    private void scheduleWrites() {
+        if (mMemoryStore == null) return;
+        long now = mClock.getElapsedSinceBootMillis();
+        int budget = MAX_SCHEDULED_WRITES_PER_MINUTE - getWritesInMinute(now);
+        if (budget <= 0) {
+            deferWrites(MINUTE_MILLIS - now % MINUTE_MILLIS);
+            return;
+        }
+        if (mLastScheduledWritesMillis != TS_NONE
+                && now - mLastScheduledWritesMillis < WRITE_BATCH_WINDOW_MILLIS) {
+            deferWrites(WRITE_BATCH_WINDOW_MILLIS - (now - mLastScheduledWritesMillis));
+            return;
+        }
+        mLastScheduledWritesMillis = now;
+        int count = doWritesBssid(budget);
+        count += doWritesNetwork(budget - count);
+        if (count >= budget && hasChangedEntries()) {
+            deferWrites(MINUTE_MILLIS - now % MINUTE_MILLIS);
+        } else {
+            mScheduledWritesDeferred = false;
+        }
+    }
+
+    /**
+     * Marks writes as deferred, and makes sure a batch is attempted after delayMillis even if
+     * no further events arrive.
+     */
+    private void deferWrites(long delayMillis) {
+        mScheduledWritesDeferred = true;
+        if (mDeferredWritesPending) return;
+        mDeferredWritesPending = true;
+        mHandler.postDelayed(mDeferredWritesRunnable, delayMillis);
+    }
+
+    private void cancelDeferredWrites() {
+        if (!mDeferredWritesPending) return;
+        mDeferredWritesPending = false;
+        mHandler.removeCallbacks(mDeferredWritesRunnable);
     }
 
-    private int doWritesBssid() {
+    private boolean hasChangedEntries() {
+        for (PerBssid perBssid : mApForBssid.values()) {
+            if (perBssid.changed) return true;
+        }
+        for (PerNetwork perNetwork : mApForNetwork.values()) {
+            if (perNetwork.changed) return true;
+        }
+        return false;
+    }
+
+    private int doWritesBssid(int maxWrites) {
         if (mMemoryStore == null) return 0;
         int count = 0;
         int bytes = 0;
         for (PerBssid perBssid : mApForBssid.values()) {
+            if (count >= maxWrites) break;
             if (perBssid.changed) {
                 perBssid.finishPendingRead();
                 byte[] serialized = perBssid.toAccessPoint(/* No BSSID */ true).toByteArray();
+                perBssid.changed = false;
+                if (!perBssid.noteWrite(serialized)) {
+                    mTotalUnchangedWritesSkipped++;
+                    continue;
+                }
                 mMemoryStore.setCluster(perBssid.getL2Key(), groupHintFromSsid(perBssid.ssid));
                 mMemoryStore.write(perBssid.getL2Key(), PER_BSSID_DATA_NAME, serialized);
 
-                perBssid.changed = false;
                 count++;
                 bytes += serialized.length;
             }
         }
-        if (mVerboseLoggingEnabled && count > 0) {
-            Log.v(TAG, "Write count: " + count + ", bytes: " + bytes);
-        }
+        noteWrites(count, bytes);
         return count;
     }
 
-    private int doWritesNetwork() {
+    private int doWritesNetwork(int maxWrites) {
         if (mMemoryStore == null) return 0;
         int count = 0;
         int bytes = 0;
         for (PerNetwork perNetwork : mApForNetwork.values()) {
+            if (count >= maxWrites) break;
             if (perNetwork.changed) {
                 perNetwork.finishPendingRead();
                 byte[] serialized = perNetwork.toNetworkStats().toByteArray();
+                perNetwork.changed = false;
+                if (!perNetwork.noteWrite(serialized)) {
+                    mTotalUnchangedWritesSkipped++;
+                    continue;
+                }
                 mMemoryStore.setCluster(perNetwork.getL2Key(), groupHintFromSsid(perNetwork.ssid));
                 mMemoryStore.write(perNetwork.getL2Key(), PER_NETWORK_DATA_NAME, serialized);
-                perNetwork.changed = false;
                 count++;
                 bytes += serialized.length;
             }
         }
-        if (mVerboseLoggingEnabled && count > 0) {
+        noteWrites(count, bytes);
+        return count;
+    }
+
+    private void noteWrites(int count, int bytes) {
+        if (count == 0) return;
+        if (mVerboseLoggingEnabled) {
             Log.v(TAG, "Write count: " + count + ", bytes: " + bytes);
         }
-        return count;
+        long minute = mClock.getElapsedSinceBootMillis() / MINUTE_MILLIS;
+        int slot = (int) (minute % WRITE_STATS_MINUTES);
+        if (mWritesMinute[slot] != minute) {
+            mWritesMinute[slot] = minute;
+            mWritesPerMinute[slot] = 0;
+        }
+        mWritesPerMinute[slot] += count;
+        mTotalWrites += count;
+        mTotalBytesWritten += bytes;
+    }
+
+    private int getWritesInMinute(long nowMillis) {
+        long minute = nowMillis / MINUTE_MILLIS;
+        int slot = (int) (minute % WRITE_STATS_MINUTES);
+        return mWritesMinute[slot] == minute ? mWritesPerMinute[slot] : 0;
+    }
+
+    @VisibleForTesting
+    int getWritesInLastHour() {
+        long minute = mClock.getElapsedSinceBootMillis() / MINUTE_MILLIS;
+        int writes = 0;
+        for (int i = 0; i < WRITE_STATS_MINUTES; i++) {
+            if (minute - mWritesMinute[i] < WRITE_STATS_MINUTES) {
+                writes += mWritesPerMinute[i];
+            }
+        }
+        return writes;
+    }
+
+    private void forgetLastWrites() {
+        for (PerBssid perBssid : mApForBssid.values()) {
+            perBssid.forgetLastWrite();
+        }
+        for (PerNetwork perNetwork : mApForNetwork.values()) {
+            perNetwork.forgetLastWrite();
+        }
     }
 
     /**
@@ -2270,7 +2443,7 @@ public class WifiScoreCard {
     private void clean() {
         if (mMemoryStore == null) return;
         if (mApForBssidReferenced >= mApForBssidTargetSize) {
-            doWritesBssid(); // Do not want to evict changed items
+            doWritesBssid(Integer.MAX_VALUE); // Do not want to evict changed items
             // Evict the unreferenced ones, and clear all the referenced bits for the next round.
             Iterator<Map.Entry<MacAddress, PerBssid>> it = mApForBssid.entrySet().iterator();
             while (it.hasNext()) {
@@ -2677,6 +2850,10 @@ public class WifiScoreCard {
                 printAvgStats(mL2ErrorAccPercent[i][j], mBwEstCount[i][j], pw);
             }
         }
+        pw.println(" MemoryStore writes: total=" + mTotalWrites
+                + " bytes=" + mTotalBytesWritten
+                + " lastHour=" + getWritesInLastHour()
+                + " unchangedSkipped=" + mTotalUnchangedWritesSkipped);
         pw.println();
     }
 
@@ -109,6 +109,7 @@ import android.net.wifi.IOnWifiDriverCountryCodeChangedListener;
 import android.net.wifi.IOnWifiUsabilityStatsListener;
 import android.net.wifi.IPnoScanResultsCallback;
 import android.net.wifi.IScanResultsCallback;
+import android.net.wifi.IScanResultsDeltaCallback;
 import android.net.wifi.ISoftApCallback;
 import android.net.wifi.IStringListener;
 import android.net.wifi.ISubsystemRestartCallback;
@@ -120,6 +121,7 @@ import android.net.wifi.IWifiConnectedNetworkScorer;
 import android.net.wifi.IWifiLowLatencyLockListener;
 import android.net.wifi.IWifiNetworkSelectionConfigListener;
 import android.net.wifi.IWifiNetworkStateChangedListener;
+import android.net.wifi.IWifiStateListener;
 import android.net.wifi.IWifiVerboseLoggingStatusChangedListener;
 import android.net.wifi.QosPolicyParams;
 import android.net.wifi.ScanResult;
@@ -344,7 +346,7 @@ public class WifiServiceImpl extends BaseWifiService {
                 mActiveModeWarden.updateSoftApCapability(
                         mTetheredSoftApTracker.getSoftApCapability(),
                         WifiManager.IFACE_IP_MODE_TETHERED);
-            });
+            }, TAG + "#onActiveDataSubscriptionIdChanged");
         }
     }
 
@@ -699,7 +701,7 @@ public class WifiServiceImpl extends BaseWifiService {
             registerForCarrierConfigChange();
             mWifiInjector.getAdaptiveConnectivityEnabledSettingObserver().initialize();
             mIsWifiServiceStarted = true;
-        });
+        }, TAG + "#checkAndStartWifi");
     }
 
     private void setPulledAtomCallbacks() {
@@ -747,7 +749,8 @@ public class WifiServiceImpl extends BaseWifiService {
         for (ClientModeManager cmm : mActiveModeWarden.getClientModeManagers()) {
             cmm.resetSimAuthNetworks(resetReason);
         }
-        mWifiThreadRunner.post(mWifiNetworkSuggestionsManager::updateCarrierPrivilegedApps);
+        mWifiThreadRunner.post(mWifiNetworkSuggestionsManager::updateCarrierPrivilegedApps,
+                TAG + "#resetCarrierNetworks");
         if (resetReason == RESET_SIM_REASON_SIM_INSERTED) {
             // clear the blocklists in case any SIM based network were disabled due to the SIM
             // not being available.
@@ -759,7 +762,7 @@ public class WifiServiceImpl extends BaseWifiService {
             // mWifiNetworkSuggestionsManager#updateCarrierPrivilegedApps
             mWifiThreadRunner.post(() -> mWifiConfigManager
                     .removeEphemeralCarrierNetworks(mWifiCarrierInfoManager
-                            .getCurrentCarrierPrivilegedPackages()));
+                            .getCurrentCarrierPrivilegedPackages()), TAG + "#resetCarrierNetworks");
         }
     }
 
@@ -845,7 +848,7 @@ public class WifiServiceImpl extends BaseWifiService {
                 mWifiConfigManager.updateTrustOnFirstUseFlag(isTrustOnFirstUseSupported());
             }
             updateVerboseLoggingEnabled();
-        });
+        }, TAG + "#handleBootCompleted");
     }
 
     public void handleUserSwitch(int userId) {
@@ -854,17 +857,19 @@ public class WifiServiceImpl extends BaseWifiService {
         mWifiThreadRunner.post(() -> {
             mWifiConfigManager.handleUserSwitch(userId);
             resetNotificationManager();
-        });
+        }, TAG + "#handleUserSwitch");
     }
 
     public void handleUserUnlock(int userId) {
         Log.d(TAG, "Handle user unlock " + userId);
-        mWifiThreadRunner.post(() -> mWifiConfigManager.handleUserUnlock(userId));
+        mWifiThreadRunner.post(() -> mWifiConfigManager.handleUserUnlock(userId),
+                TAG + "#handleUserUnlock");
     }
 
     public void handleUserStop(int userId) {
         Log.d(TAG, "Handle user stop " + userId);
-        mWifiThreadRunner.post(() -> mWifiConfigManager.handleUserStop(userId));
+        mWifiThreadRunner.post(() -> mWifiConfigManager.handleUserStop(userId),
+                TAG + "#handleUserStop");
     }
 
     /**
@@ -903,7 +908,7 @@ public class WifiServiceImpl extends BaseWifiService {
             mLastCallerInfoManager.put(WifiManager.API_START_SCAN, Process.myTid(),
                     callingUid, Binder.getCallingPid(), packageName, true);
             Boolean scanSuccess = mWifiThreadRunner.call(() ->
-                    mScanRequestProxy.startScan(callingUid, packageName), null);
+                    mScanRequestProxy.startScan(callingUid, packageName), null, TAG + "#startScan");
             if (scanSuccess == null) {
                 sendFailedScanBroadcast();
                 return false;
@@ -990,6 +995,8 @@ public class WifiServiceImpl extends BaseWifiService {
         // before memory store write triggered by mMemoryStoreImpl.stop().
         mWifiScoreCard.resetAllConnectionStates();
         mMemoryStoreImpl.stop();
+        // Write out any config store write delayed by write coalescing before the reboot.
+        mWifiConfigManager.flushCoalescedStoreWrites();
     }
 
     private boolean checkNetworkSettingsPermission(int pid, int uid) {
@@ -1205,7 +1212,7 @@ public class WifiServiceImpl extends BaseWifiService {
     private ClientModeManager getPrimaryClientModeManagerBlockingThreadSafe() {
         return mWifiThreadRunner.call(
                 () -> mActiveModeWarden.getPrimaryClientModeManager(),
-                mDefaultClientModeManager);
+                mDefaultClientModeManager, TAG + "#getPrimaryClientModeManagerBlockingThreadSafe");
     }
 
     /**
@@ -1272,7 +1279,7 @@ public class WifiServiceImpl extends BaseWifiService {
                     return;
                 }
                 showWifiEnableRequestDialog(callingUid, callingPid, packageName);
-            });
+            }, TAG + "#setWifiEnabled");
             return true;
         }
         setWifiEnabledInternal(packageName, enable, callingUid, callingPid, isPrivileged);
@@ -1300,12 +1307,13 @@ public class WifiServiceImpl extends BaseWifiService {
                     mWifiEnableRequestDialogHandles.valueAt(i).dismissDialog();
                 }
                 mWifiEnableRequestDialogHandles.clear();
-            });
+            }, TAG + "#setWifiEnabledInternal");
         }
         if (mWifiPermissionsUtil.checkNetworkSettingsPermission(callingUid)) {
             if (enable) {
                 mWifiThreadRunner.post(
-                        () -> mWifiConnectivityManager.setAutoJoinEnabledExternal(true, false));
+                        () -> mWifiConnectivityManager.setAutoJoinEnabledExternal(true, false),
+                        TAG + "#setWifiEnabledInternal");
                 mWifiMetrics.logUserActionEvent(UserActionEvent.EVENT_TOGGLE_WIFI_ON);
             } else {
                 WifiInfo wifiInfo = mActiveModeWarden.getConnectionInfo();
@@ -1392,7 +1400,7 @@ public class WifiServiceImpl extends BaseWifiService {
             if (!mActiveModeWarden.registerSubsystemRestartCallback(callback)) {
                 Log.e(TAG, "registerSubsystemRestartCallback: Failed to register callback");
             }
-        });
+        }, TAG + "#registerSubsystemRestartCallback");
     }
 
     @RequiresApi(Build.VERSION_CODES.S)
@@ -1409,7 +1417,7 @@ public class WifiServiceImpl extends BaseWifiService {
             if (!mActiveModeWarden.unregisterSubsystemRestartCallback(callback)) {
                 Log.e(TAG, "unregisterSubsystemRestartCallback: Failed to register callback");
             }
-        });
+        }, TAG + "#unregisterSubsystemRestartCallback");
     }
 
     /**
@@ -1428,7 +1436,7 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         mWifiThreadRunner.post(() -> {
             mActiveModeWarden.addWifiNetworkStateChangedListener(listener);
-        });
+        }, TAG + "#addWifiNetworkStateChangedListener");
     }
 
     /**
@@ -1448,7 +1456,7 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         mWifiThreadRunner.post(() -> {
             mActiveModeWarden.removeWifiNetworkStateChangedListener(listener);
-        });
+        }, TAG + "#removeWifiNetworkStateChangedListener");
     }
 
     @RequiresApi(Build.VERSION_CODES.S)
@@ -1466,7 +1474,7 @@ public class WifiServiceImpl extends BaseWifiService {
             mWifiMetrics.logUserActionEvent(UserActionEvent.EVENT_RESTART_WIFI_SUB_SYSTEM,
                     wifiInfo == null ? -1 : wifiInfo.getNetworkId());
             mWifiInjector.getSelfRecovery().trigger(REASON_API_CALL);
-        });
+        }, TAG + "#restartWifiSubsystem");
     }
 
     /**
@@ -1485,7 +1493,7 @@ public class WifiServiceImpl extends BaseWifiService {
         // This is only needed for pre-T.
         if (state == WifiManager.WIFI_STATE_ENABLING && !SdkLevel.isAtLeastT()) {
             state = mWifiThreadRunner.call(() -> mActiveModeWarden.getWifiState(),
-                    WifiManager.WIFI_STATE_ENABLING);
+                    WifiManager.WIFI_STATE_ENABLING, TAG + "#getWifiEnabledState");
         }
         if (mVerboseLoggingEnabled) {
             mLog.info("getWifiEnabledState uid=% state=%").c(Binder.getCallingUid()).c(
@@ -1494,6 +1502,25 @@ public class WifiServiceImpl extends BaseWifiService {
         return state;
     }
 
+    /**
+     * Add a listener which is sent the current Wi-Fi state, then every new state. Used by
+     * {@link WifiManager#getWifiState()} to cache the state in the calling process.
+     */
+    @Override
+    public void addWifiStateListener(IWifiStateListener listener) {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must not be null");
+        }
+        enforceAccessPermission();
+        int pid = Binder.getCallingPid();
+        if (mVerboseLoggingEnabled) {
+            mLog.info("addWifiStateListener uid=% pid=%").c(Binder.getCallingUid()).c(pid)
+                    .flush();
+        }
+        mWifiThreadRunner.post(() -> mActiveModeWarden.addWifiStateListener(listener, pid),
+                TAG + "#addWifiStateListener");
+    }
+
     /**
      * see {@link WifiManager#getWifiApState()}
      * @return One of {@link WifiManager#WIFI_AP_STATE_DISABLED},
@@ -1529,7 +1556,8 @@ public class WifiServiceImpl extends BaseWifiService {
         enforceNetworkStackPermission();
         mLog.info("updateInterfaceIpState uid=%").c(Binder.getCallingUid()).flush();
         // hand off the work to our handler thread
-        mWifiThreadRunner.post(() -> mLohsSoftApTracker.updateInterfaceIpState(ifaceName, mode));
+        mWifiThreadRunner.post(() -> mLohsSoftApTracker.updateInterfaceIpState(ifaceName, mode),
+                TAG + "#updateInterfaceIpState");
     }
 
     /**
@@ -1564,7 +1592,8 @@ public class WifiServiceImpl extends BaseWifiService {
             return;
         }
         mWifiThreadRunner.post(() ->
-                mCoexManager.setCoexUnsafeChannels(unsafeChannels, restrictions));
+                mCoexManager.setCoexUnsafeChannels(unsafeChannels, restrictions),
+                TAG + "#setCoexUnsafeChannels");
     }
 
     /**
@@ -1583,7 +1612,8 @@ public class WifiServiceImpl extends BaseWifiService {
         if (mVerboseLoggingEnabled) {
             mLog.info("registerCoexCallback uid=%").c(Binder.getCallingUid()).flush();
         }
-        mWifiThreadRunner.post(() -> mCoexManager.registerRemoteCoexCallback(callback));
+        mWifiThreadRunner.post(() -> mCoexManager.registerRemoteCoexCallback(callback),
+                TAG + "#registerCoexCallback");
     }
 
     /**
@@ -1620,7 +1650,8 @@ public class WifiServiceImpl extends BaseWifiService {
         if (mVerboseLoggingEnabled) {
             mLog.info("unregisterCoexCallback uid=%").c(Binder.getCallingUid()).flush();
         }
-        mWifiThreadRunner.post(() -> mCoexManager.unregisterRemoteCoexCallback(callback));
+        mWifiThreadRunner.post(() -> mCoexManager.unregisterRemoteCoexCallback(callback),
+                TAG + "#unregisterCoexCallback");
     }
 
     private Runnable mRecoverSoftApStateIfNeeded = new Runnable() {
@@ -1637,12 +1668,12 @@ public class WifiServiceImpl extends BaseWifiService {
                 return false;
             }
             return mTetheredSoftApTracker.setEnablingIfAllowed();
-        }, null);
+        }, null, TAG + "#checkSetEnablingIfAllowed");
 
         if (resultSetEnablingIfAllowed == null) {
             Log.i(TAG, "Timeout happened ! Recover SAP state if needed");
             mWifiThreadRunner.removeCallbacks(mRecoverSoftApStateIfNeeded);
-            mWifiThreadRunner.post(mRecoverSoftApStateIfNeeded);
+            mWifiThreadRunner.post(mRecoverSoftApStateIfNeeded, TAG + "#checkSetEnablingIfAllowed");
             return false;
         }
 
@@ -1682,7 +1713,8 @@ public class WifiServiceImpl extends BaseWifiService {
 
         WorkSource requestorWs = new WorkSource(callingUid, packageName);
         if (!mWifiThreadRunner.call(
-                () -> mActiveModeWarden.canRequestMoreSoftApManagers(requestorWs), false)) {
+                () -> mActiveModeWarden.canRequestMoreSoftApManagers(requestorWs), false,
+                TAG + "#startSoftAp")) {
             // Take down LOHS if it is up.
             mLohsSoftApTracker.stopAll();
         }
@@ -1728,7 +1760,8 @@ public class WifiServiceImpl extends BaseWifiService {
 
         WorkSource requestorWs = new WorkSource(callingUid, packageName);
         if (!mWifiThreadRunner.call(
-                () -> mActiveModeWarden.canRequestMoreSoftApManagers(requestorWs), false)) {
+                () -> mActiveModeWarden.canRequestMoreSoftApManagers(requestorWs), false,
+                TAG + "#startTetheredHotspot")) {
             // Take down LOHS if it is up.
             mLohsSoftApTracker.stopAll();
         }
@@ -1857,7 +1890,7 @@ public class WifiServiceImpl extends BaseWifiService {
                 if (mLohsSoftApTracker != null) {
                     mLohsSoftApTracker.notifyNewCountryCodeChangePending(countryCode);
                 }
-            });
+            }, TAG + "#onCountryCodeChangePending");
         }
 
         @Override
@@ -1925,7 +1958,7 @@ public class WifiServiceImpl extends BaseWifiService {
                     }
                     mRegisteredDriverCountryCodeListeners.finishBroadcast();
                 }
-            });
+            }, TAG + "#onDriverCountryCodeChanged");
         }
     }
 
@@ -2315,7 +2348,7 @@ public class WifiServiceImpl extends BaseWifiService {
                 if (mLocalOnlyHotspotRequests.isEmpty()) {
                     mWifiThreadRunner.post(() -> {
                         startForFirstRequestLocked(request);
-                    });
+                    }, TAG + "#startLocalOnlyHotspot");
 
                 } else if (mLohsInterfaceMode == WifiManager.IFACE_IP_MODE_LOCAL_ONLY) {
                     // LOHS has already started up for an earlier request, so we can send the
@@ -2512,7 +2545,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, "registerSoftApCallback: remote exception -- " + e);
             }
-        });
+        }, TAG + "#registerSoftApCallback");
     }
 
     /**
@@ -2540,7 +2573,8 @@ public class WifiServiceImpl extends BaseWifiService {
 
         // post operation to handler thread
         mWifiThreadRunner.post(() ->
-                mTetheredSoftApTracker.unregisterSoftApCallback(callback));
+                mTetheredSoftApTracker.unregisterSoftApCallback(callback),
+                TAG + "#unregisterSoftApCallback");
     }
 
     /**
@@ -2718,7 +2752,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, "registerSoftApCallback: remote exception -- " + e);
             }
-        });
+        }, TAG + "#registerLocalOnlyHotspotSoftApCallback");
     }
 
     @Override
@@ -2740,7 +2774,8 @@ public class WifiServiceImpl extends BaseWifiService {
 
         // post operation to handler thread
         mWifiThreadRunner.post(() ->
-                mLohsSoftApTracker.unregisterSoftApCallback(callback));
+                mLohsSoftApTracker.unregisterSoftApCallback(callback),
+                TAG + "#unregisterLocalOnlyHotspotSoftApCallback");
     }
 
     /**
@@ -2844,7 +2879,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, e.getMessage());
             }
-        });
+        }, TAG + "#queryLastConfiguredTetheredApPassphraseSinceBoot");
     }
 
     /**
@@ -2963,7 +2998,8 @@ public class WifiServiceImpl extends BaseWifiService {
             return false;
         }
         mLog.info("disconnect uid=%").c(callingUid).flush();
-        mWifiThreadRunner.post(() -> mActiveModeWarden.getPrimaryClientModeManager().disconnect());
+        mWifiThreadRunner.post(() -> mActiveModeWarden.getPrimaryClientModeManager().disconnect(),
+                TAG + "#disconnect");
         return true;
     }
 
@@ -2985,7 +3021,7 @@ public class WifiServiceImpl extends BaseWifiService {
 
         mWifiThreadRunner.post(() -> {
             mActiveModeWarden.getPrimaryClientModeManager().reconnect(new WorkSource(callingUid));
-        });
+        }, TAG + "#reconnect");
         return true;
     }
 
@@ -3005,7 +3041,8 @@ public class WifiServiceImpl extends BaseWifiService {
             return false;
         }
         mLog.info("reassociate uid=%").c(callingUid).flush();
-        mWifiThreadRunner.post(() -> mActiveModeWarden.getPrimaryClientModeManager().reassociate());
+        mWifiThreadRunner.post(() -> mActiveModeWarden.getPrimaryClientModeManager().reassociate(),
+                TAG + "#reassociate");
         return true;
     }
 
@@ -3076,7 +3113,7 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         WifiLinkLayerStats stats = mWifiThreadRunner.call(
                 () -> mActiveModeWarden.getPrimaryClientModeManager().getWifiLinkLayerStats(),
-                null);
+                null, TAG + "#getWifiActivityEnergyInfo");
         if (stats == null) {
             return null;
         }
@@ -3165,7 +3202,7 @@ public class WifiServiceImpl extends BaseWifiService {
         int finalTargetConfigUid = targetConfigUid;
         List<WifiConfiguration> configs = mWifiThreadRunner.call(
                 () -> mWifiConfigManager.getSavedNetworks(finalTargetConfigUid),
-                Collections.emptyList());
+                Collections.emptyList(), TAG + "#getConfiguredNetworks");
         if (isTargetSdkLessThanQOrPrivileged && !callerNetworksOnly) {
             return new ParceledListSlice<>(
                     WifiConfigurationUtil.convertMultiTypeConfigsToLegacyConfigs(configs, false));
@@ -3229,7 +3266,7 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         List<WifiConfiguration> configs = mWifiThreadRunner.call(
                 () -> mWifiConfigManager.getConfiguredNetworksWithPasswords(),
-                Collections.emptyList());
+                Collections.emptyList(), TAG + "#getPrivilegedConfiguredNetworks");
         return new ParceledListSlice<>(
                 WifiConfigurationUtil.convertMultiTypeConfigsToLegacyConfigs(configs, false));
     }
@@ -3265,7 +3302,8 @@ public class WifiServiceImpl extends BaseWifiService {
             return null;
         }
         WifiConfiguration config = mWifiThreadRunner.call(
-                () -> mWifiConfigManager.getConfiguredNetworkWithPassword(networkId), null);
+                () -> mWifiConfigManager.getConfiguredNetworkWithPassword(networkId), null,
+                TAG + "#getPrivilegedConnectedNetwork");
         if (config == null) {
             if (mVerboseLoggingEnabled) {
                 mLog.info("getPrivilegedConnectedNetwork failed to get config").flush();
@@ -3304,7 +3342,7 @@ public class WifiServiceImpl extends BaseWifiService {
         mWifiThreadRunner.post(() -> {
             mNetworkSelectionConfig = nsConfig;
             mWifiConnectivityManager.setNetworkSelectionConfig(nsConfig);
-        });
+        }, TAG + "#setNetworkSelectionConfig");
         mLastCallerInfoManager.put(
                 WifiManager.API_SET_NETWORK_SELECTION_CONFIG,
                 Process.myTid(),
@@ -3357,7 +3395,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, e.getMessage());
             }
-        });
+        }, TAG + "#getNetworkSelectionConfig");
     }
 
     /**
@@ -3444,7 +3482,7 @@ public class WifiServiceImpl extends BaseWifiService {
         mLog.info("scanSchedule=% scanType=% uid=%").c(Arrays.toString(scanScheduleSeconds))
                 .c(Arrays.toString(scanType)).c(uid).flush();
         mWifiThreadRunner.post(() -> mWifiConnectivityManager.setExternalScreenOnScanSchedule(
-                scanScheduleSeconds, scanType));
+                scanScheduleSeconds, scanType), TAG + "#setScreenOnScanSchedule");
         mLastCallerInfoManager.put(WifiManager.API_SET_SCAN_SCHEDULE, Process.myTid(),
                 uid, Binder.getCallingPid(), "<unknown>",
                 scanScheduleSeconds != null);
@@ -3467,7 +3505,8 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         mLog.info("delayMs=% uid=%").c(delayMs).c(uid).flush();
         mWifiThreadRunner.post(() ->
-                mWifiConnectivityManager.setOneShotScreenOnConnectivityScanDelayMillis(delayMs));
+                mWifiConnectivityManager.setOneShotScreenOnConnectivityScanDelayMillis(delayMs),
+                TAG + "#setOneShotScreenOnConnectivityScanDelayMillis");
         mLastCallerInfoManager.put(WifiManager.API_SET_ONE_SHOT_SCREEN_ON_CONNECTIVITY_SCAN_DELAY,
                 Process.myTid(), uid, Binder.getCallingPid(), "<unknown>",
                 delayMs > 0);
@@ -3497,7 +3536,7 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         return mWifiThreadRunner.call(
             () -> mPasspointManager.getAllMatchingPasspointProfilesForScanResults(scanResults),
-                Collections.emptyMap());
+                Collections.emptyMap(), TAG + "#getAllMatchingPasspointProfilesForScanResults");
     }
 
     /**
@@ -3520,7 +3559,7 @@ public class WifiServiceImpl extends BaseWifiService {
             mLog.info("setSsidsAllowlist uid=%").c(uid).flush();
         }
         mWifiThreadRunner.post(() ->
-                mWifiBlocklistMonitor.setSsidsAllowlist(ssids));
+                mWifiBlocklistMonitor.setSsidsAllowlist(ssids), TAG + "#setSsidsAllowlist");
     }
 
     /**
@@ -3543,7 +3582,8 @@ public class WifiServiceImpl extends BaseWifiService {
             mLog.info("getSsidsAllowlist uid=%").c(uid).flush();
         }
         return mWifiThreadRunner.call(
-                () -> mWifiBlocklistMonitor.getSsidsAllowlist(), Collections.EMPTY_LIST);
+                () -> mWifiBlocklistMonitor.getSsidsAllowlist(), Collections.EMPTY_LIST,
+                TAG + "#getSsidsAllowlist");
     }
 
     /**
@@ -3567,7 +3607,8 @@ public class WifiServiceImpl extends BaseWifiService {
             return Collections.emptyMap();
         }
         return mWifiThreadRunner.call(
-            () -> mPasspointManager.getMatchingOsuProviders(scanResults), Collections.emptyMap());
+            () -> mPasspointManager.getMatchingOsuProviders(scanResults), Collections.emptyMap(),
+                TAG + "#getMatchingOsuProviders");
     }
 
     /**
@@ -3592,7 +3633,7 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         return mWifiThreadRunner.call(
             () -> mPasspointManager.getMatchingPasspointConfigsForOsuProviders(osuProviders),
-                Collections.emptyMap());
+                Collections.emptyMap(), TAG + "#getMatchingPasspointConfigsForOsuProviders");
     }
 
     /**
@@ -3619,7 +3660,7 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         return mWifiThreadRunner.call(
             () -> mPasspointManager.getWifiConfigsForPasspointProfiles(fqdnList),
-                Collections.emptyList());
+                Collections.emptyList(), TAG + "#getWifiConfigsForPasspointProfiles");
     }
 
     /**
@@ -3649,7 +3690,8 @@ public class WifiServiceImpl extends BaseWifiService {
         return mWifiThreadRunner.call(
                 () -> mWifiNetworkSuggestionsManager
                         .getWifiConfigForMatchedNetworkSuggestionsSharedWithUser(scanResults),
-                Collections.emptyList());
+                Collections.emptyList(),
+                TAG + "#getWifiConfigForMatchedNetworkSuggestionsSharedWithUser");
     }
 
     /**
@@ -3824,7 +3866,8 @@ public class WifiServiceImpl extends BaseWifiService {
         NetworkUpdateResult result = mWifiThreadRunner.call(
                 () -> mWifiConfigManager.addOrUpdateNetwork(config, attributedCreatorUid,
                         attributedCreatorPackage, overrideCreator),
-                new NetworkUpdateResult(WifiConfiguration.INVALID_NETWORK_ID));
+                new NetworkUpdateResult(WifiConfiguration.INVALID_NETWORK_ID),
+                TAG + "#addOrUpdateNetworkInternal");
         return new AddNetworkResult(result.getStatusCode(), result.getNetworkId());
     }
 
@@ -3862,7 +3905,8 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         mLog.info("removeNetwork uid=%").c(callingUid).flush();
         return mWifiThreadRunner.call(
-                () -> mWifiConfigManager.removeNetwork(netId, callingUid, packageName), false);
+                () -> mWifiConfigManager.removeNetwork(netId, callingUid, packageName), false,
+                TAG + "#removeNetwork");
     }
 
     @Override
@@ -3877,7 +3921,8 @@ public class WifiServiceImpl extends BaseWifiService {
                     + "of an organization owned device");
         }
         return mWifiThreadRunner.call(
-                () -> mWifiConfigManager.removeNonCallerConfiguredNetwork(callingUid), false);
+                () -> mWifiConfigManager.removeNonCallerConfiguredNetwork(callingUid), false,
+                TAG + "#removeNonCallerConfiguredNetworks");
     }
 
     /**
@@ -3907,9 +3952,8 @@ public class WifiServiceImpl extends BaseWifiService {
                         mConnectHelper.connectToNetwork(
                                 new NetworkUpdateResult(netId),
                                 new ActionListenerWrapper(connectListener),
-                                callingUid, packageName)
-                )
-        );
+                                callingUid, packageName)),
+                TAG + "#triggerConnectAndReturnStatus");
         // now wait for response.
         try {
             countDownLatch.await(RUN_WITH_SCISSORS_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
@@ -3966,7 +4010,7 @@ public class WifiServiceImpl extends BaseWifiService {
         } else {
             return mWifiThreadRunner.call(
                     () -> mWifiConfigManager.enableNetwork(netId, false, callingUid, packageName),
-                    false);
+                    false, TAG + "#enableNetwork");
         }
     }
 
@@ -3992,7 +4036,8 @@ public class WifiServiceImpl extends BaseWifiService {
                 callingUid, Binder.getCallingPid(), packageName, true);
         mLog.info("disableNetwork uid=%").c(callingUid).flush();
         return mWifiThreadRunner.call(
-                () -> mWifiConfigManager.disableNetwork(netId, callingUid, packageName), false);
+                () -> mWifiConfigManager.disableNetwork(netId, callingUid, packageName), false,
+                TAG + "#disableNetwork");
     }
 
     /**
@@ -4039,7 +4084,7 @@ public class WifiServiceImpl extends BaseWifiService {
             // primary STA disconnecting (such as promoting the secondary to primary), potentially
             // resulting in messy and unexpected state transitions.
             mActiveModeWarden.getPrimaryClientModeManager().disconnect();
-        });
+        }, TAG + "#startRestrictingAutoJoinToSubscriptionId");
     }
 
     /**
@@ -4058,7 +4103,8 @@ public class WifiServiceImpl extends BaseWifiService {
         mLog.info("stopRestrictingAutoJoinToSubscriptionId uid=%")
                 .c(Binder.getCallingUid()).flush();
         mWifiThreadRunner.post(() ->
-                mWifiConfigManager.stopRestrictingAutoJoinToSubscriptionId());
+                mWifiConfigManager.stopRestrictingAutoJoinToSubscriptionId(),
+                TAG + "#stopRestrictingAutoJoinToSubscriptionId");
     }
 
     /**
@@ -4093,7 +4139,7 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         boolean finalIsDeviceAdmin = isDeviceAdmin;
         mWifiThreadRunner.post(() -> mWifiConnectivityManager.setAutoJoinEnabledExternal(choice,
-                finalIsDeviceAdmin));
+                finalIsDeviceAdmin), TAG + "#allowAutojoinGlobal");
         mLastCallerInfoManager.put(WifiManager.API_AUTOJOIN_GLOBAL, Process.myTid(),
                 callingUid, Binder.getCallingPid(), "<unknown>", choice);
     }
@@ -4119,7 +4165,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, e.getMessage());
             }
-        });
+        }, TAG + "#queryAutojoinGlobal");
     }
 
     /**
@@ -4172,7 +4218,7 @@ public class WifiServiceImpl extends BaseWifiService {
                             : UserActionEvent.EVENT_CONFIGURE_AUTO_CONNECT_OFF, netId);
                 }
             }
-        });
+        }, TAG + "#allowAutojoin");
     }
 
     /**
@@ -4190,7 +4236,8 @@ public class WifiServiceImpl extends BaseWifiService {
         int callingUid = Binder.getCallingUid();
         mLog.info("allowAutojoinPasspoint=% uid=%").c(enableAutojoin).c(callingUid).flush();
         mWifiThreadRunner.post(
-                () -> mPasspointManager.enableAutojoin(null, fqdn, enableAutojoin));
+                () -> mPasspointManager.enableAutojoin(null, fqdn, enableAutojoin),
+                TAG + "#allowAutojoinPasspoint");
     }
 
     /**
@@ -4210,7 +4257,8 @@ public class WifiServiceImpl extends BaseWifiService {
         mLog.info("setMacRandomizationSettingPasspointEnabled=% uid=%")
                 .c(enable).c(callingUid).flush();
         mWifiThreadRunner.post(
-                () -> mPasspointManager.enableMacRandomization(fqdn, enable));
+                () -> mPasspointManager.enableMacRandomization(fqdn, enable),
+                TAG + "#setMacRandomizationSettingPasspointEnabled");
     }
 
     /**
@@ -4229,7 +4277,8 @@ public class WifiServiceImpl extends BaseWifiService {
         mLog.info("setPasspointMeteredOverride=% uid=%")
                 .c(meteredOverride).c(callingUid).flush();
         mWifiThreadRunner.post(
-                () -> mPasspointManager.setMeteredOverride(fqdn, meteredOverride));
+                () -> mPasspointManager.setMeteredOverride(fqdn, meteredOverride),
+                TAG + "#setPasspointMeteredOverride");
     }
 
     /**
@@ -4289,10 +4338,15 @@ public class WifiServiceImpl extends BaseWifiService {
         mWifiPermissionsUtil.checkPackage(uid, callingPackage);
         long ident = Binder.clearCallingIdentity();
         try {
-            WifiInfo wifiInfo = mWifiThreadRunner.call(
-                    () -> getClientModeManagerIfSecondaryCmmRequestedByCallerPresent(
-                            uid, callingPackage)
-                            .getConnectionInfo(), new WifiInfo());
+            // Without any secondary CMM, every caller gets the primary CMM info, which is
+            // published by ActiveModeWarden so it can be read without waiting on the wifi thread.
+            WifiInfo wifiInfo = mActiveModeWarden.getConnectionInfoIfNoSecondaryClientModeManager();
+            if (wifiInfo == null) {
+                wifiInfo = mWifiThreadRunner.call(
+                        () -> getClientModeManagerIfSecondaryCmmRequestedByCallerPresent(
+                                uid, callingPackage)
+                                .getConnectionInfo(), new WifiInfo(), TAG + "#getConnectionInfo");
+            }
             long redactions = wifiInfo.getApplicableRedactions();
             if (mWifiPermissionsUtil.checkLocalMacAddressPermission(uid)) {
                 if (mVerboseLoggingEnabled) {
@@ -4334,7 +4388,8 @@ public class WifiServiceImpl extends BaseWifiService {
      * @return the list of results
      */
     @Override
-    public List<ScanResult> getScanResults(String callingPackage, String callingFeatureId) {
+    public ParceledListSlice<ScanResult> getScanResults(String callingPackage,
+            String callingFeatureId) {
         enforceAccessPermission();
         int uid = Binder.getCallingUid();
         long ident = Binder.clearCallingIdentity();
@@ -4345,12 +4400,15 @@ public class WifiServiceImpl extends BaseWifiService {
             mWifiPermissionsUtil.enforceCanAccessScanResults(callingPackage, callingFeatureId,
                     uid, null);
             List<ScanResult> scanResults = mWifiThreadRunner.call(
-                    mScanRequestProxy::getScanResults, Collections.emptyList());
-            return scanResults;
+                    mScanRequestProxy::getScanResults, Collections.emptyList(),
+                    TAG + "#getScanResults");
+            // Dense scans may not fit in a single binder transaction, so the results are sent
+            // in chunks through a ParceledListSlice.
+            return new ParceledListSlice<>(scanResults);
         } catch (SecurityException e) {
             Log.w(TAG, "Permission violation - getScanResults not allowed for uid="
                     + uid + ", packageName=" + callingPackage + ", reason=" + e);
-            return new ArrayList<>();
+            return new ParceledListSlice<>(new ArrayList<>());
         } finally {
             Binder.restoreCallingIdentity(ident);
         }
@@ -4378,7 +4436,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, e.getMessage());
             }
-        });
+        }, TAG + "#getChannelData");
     }
 
     private List<Bundle> getChannelDataInternal() {
@@ -4432,7 +4490,7 @@ public class WifiServiceImpl extends BaseWifiService {
                                     networkSuggestions, scanResults);
                         }
                     },
-                    Collections.emptyMap());
+                    Collections.emptyMap(), TAG + "#getMatchingScanResults");
         } catch (SecurityException e) {
             Log.w(TAG, "Permission violation - getMatchingScanResults not allowed for uid="
                     + uid + ", packageName=" + callingPackage + ", reason + e");
@@ -4473,7 +4531,7 @@ public class WifiServiceImpl extends BaseWifiService {
         mLog.info("addorUpdatePasspointConfiguration uid=%").c(callingUid).flush();
         return mWifiThreadRunner.call(
                 () -> mPasspointManager.addOrUpdateProvider(config, callingUid, packageName,
-                        false, true, false), false);
+                        false, true, false), false, TAG + "#addOrUpdatePasspointConfiguration");
     }
 
     /**
@@ -4507,7 +4565,7 @@ public class WifiServiceImpl extends BaseWifiService {
         final boolean privilegedFinal = privileged;
         return mWifiThreadRunner.call(
                 () -> mPasspointManager.removeProvider(uid, privilegedFinal, uniqueId, fqdn),
-                false);
+                false, TAG + "#removePasspointConfigurationInternal");
     }
 
     /**
@@ -4532,7 +4590,7 @@ public class WifiServiceImpl extends BaseWifiService {
         final boolean privilegedFinal = privileged;
         return mWifiThreadRunner.call(
             () -> mPasspointManager.getProviderConfigs(uid, privilegedFinal),
-            Collections.emptyList());
+            Collections.emptyList(), TAG + "#getPasspointConfigurations");
     }
 
     /**
@@ -4546,7 +4604,7 @@ public class WifiServiceImpl extends BaseWifiService {
         mLog.info("queryPasspointIcon uid=%").c(Binder.getCallingUid()).flush();
         mWifiThreadRunner.post(() -> {
             mActiveModeWarden.getPrimaryClientModeManager().syncQueryPasspointIcon(bssid, fileName);
-        });
+        }, TAG + "#queryPasspointIcon");
     }
 
     /**
@@ -4612,7 +4670,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, "registerDriverCountryCodeChangedListener: remote exception -- " + e);
             }
-        });
+        }, TAG + "#registerDriverCountryCodeChangedListener");
     }
 
     /**
@@ -4643,7 +4701,8 @@ public class WifiServiceImpl extends BaseWifiService {
 
         // post operation to handler thread
         mWifiThreadRunner.post(() ->
-                mCountryCodeTracker.unregisterDriverCountryCodeChangedListener(listener));
+                mCountryCodeTracker.unregisterDriverCountryCodeChangedListener(listener),
+                TAG + "#unregisterDriverCountryCodeChangedListener");
     }
 
      /**
@@ -4690,7 +4749,8 @@ public class WifiServiceImpl extends BaseWifiService {
                     .c(Binder.getCallingUid()).c(countryCode).flush();
         }
         // Post operation to handler thread
-        mWifiThreadRunner.post(() -> mCountryCode.setOverrideCountryCode(countryCode));
+        mWifiThreadRunner.post(() -> mCountryCode.setOverrideCountryCode(countryCode),
+                TAG + "#setOverrideCountryCode");
     }
 
     /**
@@ -4709,7 +4769,8 @@ public class WifiServiceImpl extends BaseWifiService {
             mLog.info("clearCountryCode uid=%").c(Binder.getCallingUid()).flush();
         }
         // Post operation to handler thread
-        mWifiThreadRunner.post(() -> mCountryCode.clearOverrideCountryCode());
+        mWifiThreadRunner.post(() -> mCountryCode.clearOverrideCountryCode(),
+                TAG + "#clearOverrideCountryCode");
     }
 
     /**
@@ -4735,7 +4796,8 @@ public class WifiServiceImpl extends BaseWifiService {
                     .c(Binder.getCallingUid()).c(countryCode).flush();
         }
         // Post operation to handler thread
-        mWifiThreadRunner.post(() -> mCountryCode.setDefaultCountryCode(countryCode));
+        mWifiThreadRunner.post(() -> mCountryCode.setDefaultCountryCode(countryCode),
+                TAG + "#setDefaultCountryCode");
     }
 
     @Override
@@ -4811,7 +4873,7 @@ public class WifiServiceImpl extends BaseWifiService {
     public boolean isWifiStandardSupported(@WifiStandard int standard) {
         return mWifiThreadRunner.call(
                 () -> mActiveModeWarden.getPrimaryClientModeManager().isWifiStandardSupported(
-                        standard), false);
+                        standard), false, TAG + "#isWifiStandardSupported");
     }
 
     /**
@@ -4831,7 +4893,8 @@ public class WifiServiceImpl extends BaseWifiService {
         DhcpResultsParcelable dhcpResults = mWifiThreadRunner.call(
                 () -> getClientModeManagerIfSecondaryCmmRequestedByCallerPresent(
                         callingUid, packageName)
-                        .syncGetDhcpResultsParcelable(), new DhcpResultsParcelable());
+                        .syncGetDhcpResultsParcelable(), new DhcpResultsParcelable(),
+                TAG + "#getDhcpInfo");
 
         DhcpInfo info = new DhcpInfo();
 
@@ -4973,7 +5036,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, e.getMessage());
             }
-        });
+        }, TAG + "#enableTdlsWithRemoteIpAddress");
     }
 
     @Override
@@ -4990,7 +5053,7 @@ public class WifiServiceImpl extends BaseWifiService {
                 enable);
         mWifiThreadRunner.post(() ->
                 mActiveModeWarden.getPrimaryClientModeManager().enableTdls(
-                        remoteMacAddress, enable));
+                        remoteMacAddress, enable), TAG + "#enableTdlsWithMacAddress");
     }
 
     /**
@@ -5021,7 +5084,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, e.getMessage());
             }
-        });
+        }, TAG + "#enableTdlsWithRemoteMacAddress");
     }
 
     /**
@@ -5040,7 +5103,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, e.getMessage());
             }
-        });
+        }, TAG + "#isTdlsOperationCurrentlyAvailable");
     }
 
     /**
@@ -5063,7 +5126,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, e.getMessage());
             }
-        });
+        }, TAG + "#getMaxSupportedConcurrentTdlsSessions");
     }
 
     /**
@@ -5082,7 +5145,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, e.getMessage());
             }
-        });
+        }, TAG + "#getNumberOfEnabledTdlsSessions");
     }
 
     /**
@@ -5100,7 +5163,7 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         mLog.info("disableEphemeralNetwork uid=%").c(callingUid).flush();
         mWifiThreadRunner.post(() -> mWifiConfigManager.userTemporarilyDisabledNetwork(network,
-                callingUid));
+                callingUid), TAG + "#disableEphemeralNetwork");
     }
 
     private void removeAppStateInternal(int uid, @NonNull String pkgName) {
@@ -5206,7 +5269,7 @@ public class WifiServiceImpl extends BaseWifiService {
                     mWifiConfigManager.getSavedNetworks(WIFI_UID));
             mActiveModeWarden.updateMetrics();
             mPasspointManager.updateMetrics();
-        });
+        }, TAG + "#updateWifiMetrics");
         boolean isNonPersistentMacRandEnabled = mFrameworkFacade.getIntegerSetting(mContext,
                 WifiConfigManager.NON_PERSISTENT_MAC_RANDOMIZATION_FEATURE_FORCE_ENABLE_FLAG, 0)
                 == 1 ? true : false;
@@ -5317,7 +5380,7 @@ public class WifiServiceImpl extends BaseWifiService {
                 pw.println();
                 mWifiNative.dump(pw);
             }
-        });
+        }, TAG + "#dump");
     }
 
     @Override
@@ -5338,7 +5401,8 @@ public class WifiServiceImpl extends BaseWifiService {
         }
 
         return mWifiThreadRunner.call(() ->
-                mWifiLockManager.acquireWifiLock(lockMode, tag, binder, updatedWs), false);
+                mWifiLockManager.acquireWifiLock(lockMode, tag, binder, updatedWs), false,
+                TAG + "#acquireWifiLock");
     }
 
     @Override
@@ -5354,7 +5418,8 @@ public class WifiServiceImpl extends BaseWifiService {
                 ? new WorkSource(Binder.getCallingUid()) : ws;
 
         mWifiThreadRunner.run(() ->
-                mWifiLockManager.updateWifiLockWorkSource(binder, updatedWs));
+                mWifiLockManager.updateWifiLockWorkSource(binder, updatedWs),
+                TAG + "#updateWifiLockWorkSource");
     }
 
     @Override
@@ -5365,7 +5430,7 @@ public class WifiServiceImpl extends BaseWifiService {
         mContext.enforceCallingOrSelfPermission(android.Manifest.permission.WAKE_LOCK, null);
 
         return mWifiThreadRunner.call(() ->
-                mWifiLockManager.releaseWifiLock(binder), false);
+                mWifiLockManager.releaseWifiLock(binder), false, TAG + "#releaseWifiLock");
     }
 
     @Override
@@ -5522,11 +5587,11 @@ public class WifiServiceImpl extends BaseWifiService {
                 }
                 mWifiConfigManager.removeNetwork(network.networkId, callingUid, packageName);
             }
-        });
+        }, TAG + "#factoryReset");
         // Delete all Passpoint configurations
         List<PasspointConfiguration> configs = mWifiThreadRunner.call(
                 () -> mPasspointManager.getProviderConfigs(WIFI_UID /* ignored */, true),
-                Collections.emptyList());
+                Collections.emptyList(), TAG + "#factoryReset");
         for (PasspointConfiguration config : configs) {
             removePasspointConfigurationInternal(null, config.getUniqueId());
         }
@@ -5542,7 +5607,7 @@ public class WifiServiceImpl extends BaseWifiService {
             mWifiHealthMonitor.clear();
             mWifiCarrierInfoManager.clear();
             notifyFactoryReset();
-        });
+        }, TAG + "#factoryReset");
     }
 
     /**
@@ -5603,7 +5668,8 @@ public class WifiServiceImpl extends BaseWifiService {
         mLog.info("retrieveBackupData uid=%").c(Binder.getCallingUid()).flush();
         Log.d(TAG, "Retrieving backup data");
         List<WifiConfiguration> wifiConfigurations = mWifiThreadRunner.call(
-                () -> mWifiConfigManager.getConfiguredNetworksWithPasswords(), null);
+                () -> mWifiConfigManager.getConfiguredNetworksWithPasswords(), null,
+                TAG + "#retrieveBackupData");
         byte[] backupData =
                 mWifiBackupRestore.retrieveBackupDataFromConfigurations(wifiConfigurations);
         Log.d(TAG, "Retrieved backup data");
@@ -5651,7 +5717,7 @@ public class WifiServiceImpl extends BaseWifiService {
             }
             if (nextStartIdx < mConfigurations.size()) {
                 mWifiThreadRunner.post(new NetworkUpdater(mCallingUid, mConfigurations,
-                        nextStartIdx, mBatchNum));
+                        nextStartIdx, mBatchNum), TAG + "#restoreNetworks");
             }
             Log.d(TAG, "Restored backup data index " + nextStartIdx + " of total "
                     + mConfigurations.size() + " configs ");
@@ -5674,7 +5740,7 @@ public class WifiServiceImpl extends BaseWifiService {
         final int batchNum = mContext.getResources().getInteger(
                     R.integer.config_wifiConfigurationRestoreNetworksBatchNum);
         mWifiThreadRunner.run(new NetworkUpdater(callingUid, configurations, 0,
-                batchNum > 0 ? batchNum : configurations.size()));
+                batchNum > 0 ? batchNum : configurations.size()), TAG + "#restoreNetworks");
     }
 
     /**
@@ -5700,7 +5766,7 @@ public class WifiServiceImpl extends BaseWifiService {
         enforceNetworkSettingsPermission();
         mLog.info("retrieveSoftApBackupData uid=%").c(Binder.getCallingUid()).flush();
         SoftApConfiguration config = mWifiThreadRunner.call(mWifiApConfigStore::getApConfiguration,
-                new SoftApConfiguration.Builder().build());
+                new SoftApConfiguration.Builder().build(), TAG + "#retrieveSoftApBackupData");
         byte[] backupData =
                 mSoftApBackupRestore.retrieveBackupDataFromSoftApConfiguration(config);
         Log.d(TAG, "Retrieved soft ap backup data");
@@ -5792,7 +5858,8 @@ public class WifiServiceImpl extends BaseWifiService {
             mLog.info("registerTrafficStateCallback uid=%").c(Binder.getCallingUid()).flush();
         }
         // Post operation to handler thread
-        mWifiThreadRunner.post(() -> mWifiTrafficPoller.addCallback(callback));
+        mWifiThreadRunner.post(() -> mWifiTrafficPoller.addCallback(callback),
+                TAG + "#registerTrafficStateCallback");
     }
 
     /**
@@ -5810,7 +5877,8 @@ public class WifiServiceImpl extends BaseWifiService {
             mLog.info("unregisterTrafficStateCallback uid=%").c(Binder.getCallingUid()).flush();
         }
         // Post operation to handler thread
-        mWifiThreadRunner.post(() -> mWifiTrafficPoller.removeCallback(callback));
+        mWifiThreadRunner.post(() -> mWifiTrafficPoller.removeCallback(callback),
+                TAG + "#unregisterTrafficStateCallback");
     }
 
     private long getSupportedFeaturesInternal() {
@@ -5841,7 +5909,8 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         // Post operation to handler thread
         mWifiThreadRunner.post(() ->
-                mWifiInjector.getWifiNetworkFactory().addCallback(callback));
+                mWifiInjector.getWifiNetworkFactory().addCallback(callback),
+                TAG + "#registerNetworkRequestMatchCallback");
     }
 
     /**
@@ -5861,7 +5930,8 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         // Post operation to handler thread
         mWifiThreadRunner.post(() ->
-                mWifiInjector.getWifiNetworkFactory().removeCallback(callback));
+                mWifiInjector.getWifiNetworkFactory().removeCallback(callback),
+                TAG + "#unregisterNetworkRequestMatchCallback");
     }
 
     /**
@@ -5906,7 +5976,8 @@ public class WifiServiceImpl extends BaseWifiService {
 
         int success = mWifiThreadRunner.call(() -> mWifiNetworkSuggestionsManager.add(
                 networkSuggestions, callingUid, callingPackageName, callingFeatureId),
-                WifiManager.STATUS_NETWORK_SUGGESTIONS_ERROR_INTERNAL);
+                WifiManager.STATUS_NETWORK_SUGGESTIONS_ERROR_INTERNAL,
+                TAG + "#addNetworkSuggestions");
         if (success != WifiManager.STATUS_NETWORK_SUGGESTIONS_SUCCESS) {
             Log.e(TAG, "Failed to add network suggestions");
         }
@@ -5939,7 +6010,8 @@ public class WifiServiceImpl extends BaseWifiService {
 
         int success = mWifiThreadRunner.call(() -> mWifiNetworkSuggestionsManager.remove(
                 networkSuggestions, callingUid, callingPackageName,
-                action), WifiManager.STATUS_NETWORK_SUGGESTIONS_ERROR_INTERNAL);
+                action), WifiManager.STATUS_NETWORK_SUGGESTIONS_ERROR_INTERNAL,
+                TAG + "#removeNetworkSuggestions");
         if (success != WifiManager.STATUS_NETWORK_SUGGESTIONS_SUCCESS) {
             Log.e(TAG, "Failed to remove network suggestions");
         }
@@ -5961,7 +6033,7 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         return mWifiThreadRunner.call(() ->
                 mWifiNetworkSuggestionsManager.get(callingPackageName, callingUid),
-                Collections.emptyList());
+                Collections.emptyList(), TAG + "#getNetworkSuggestions");
     }
 
     /**
@@ -5978,7 +6050,7 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         String result = mWifiThreadRunner.call(
                 () -> mActiveModeWarden.getPrimaryClientModeManager().getFactoryMacAddress(),
-                null);
+                null, TAG + "#getFactoryMacAddresses");
         // result can be empty array if either: WifiThreadRunner.call() timed out, or
         // ClientModeImpl.getFactoryMacAddress() returned null.
         // In this particular instance, we don't differentiate the two types of nulls.
@@ -6009,7 +6081,7 @@ public class WifiServiceImpl extends BaseWifiService {
             mWifiHealthMonitor.setDeviceMobilityState(state);
             mWifiDataStall.setDeviceMobilityState(state);
             mActiveModeWarden.setDeviceMobilityState(state);
-        });
+        }, TAG + "#setDeviceMobilityState");
     }
 
     /**
@@ -6063,7 +6135,8 @@ public class WifiServiceImpl extends BaseWifiService {
                         mDppManager.startDppAsConfiguratorInitiator(
                                 uid, packageName,
                                 mActiveModeWarden.getPrimaryClientModeManager().getInterfaceName(),
-                                binder, enrolleeUri, selectedNetworkId, netRole, callback)));
+                                binder, enrolleeUri, selectedNetworkId, netRole, callback)),
+                TAG + "#startDppAsConfiguratorInitiator");
     }
 
     /**
@@ -6100,7 +6173,8 @@ public class WifiServiceImpl extends BaseWifiService {
                 mMakeBeforeBreakManager.stopAllSecondaryTransientClientModeManagers(() ->
                         mDppManager.startDppAsEnrolleeInitiator(uid,
                                 mActiveModeWarden.getPrimaryClientModeManager().getInterfaceName(),
-                                binder, configuratorUri, callback)));
+                                binder, configuratorUri, callback)),
+                TAG + "#startDppAsEnrolleeInitiator");
     }
 
     /**
@@ -6157,7 +6231,8 @@ public class WifiServiceImpl extends BaseWifiService {
                 mMakeBeforeBreakManager.stopAllSecondaryTransientClientModeManagers(() ->
                         mDppManager.startDppAsEnrolleeResponder(uid,
                                 mActiveModeWarden.getPrimaryClientModeManager().getInterfaceName(),
-                                binder, deviceInfo, curve, callback)));
+                                binder, deviceInfo, curve, callback)),
+                TAG + "#startDppAsEnrolleeResponder");
     }
 
     /**
@@ -6170,7 +6245,7 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         final int uid = getMockableCallingUid();
 
-        mWifiThreadRunner.post(() -> mDppManager.stopDppSession(uid));
+        mWifiThreadRunner.post(() -> mDppManager.stopDppSession(uid), TAG + "#stopDppSession");
     }
 
     /**
@@ -6191,7 +6266,8 @@ public class WifiServiceImpl extends BaseWifiService {
         enforceAccessPermission();
         // Post operation to handler thread
         mWifiThreadRunner.post(() ->
-                mRegisteredWifiLoggingStatusListeners.register(listener));
+                mRegisteredWifiLoggingStatusListeners.register(listener),
+                TAG + "#addWifiVerboseLoggingStatusChangedListener");
     }
 
     /**
@@ -6212,7 +6288,8 @@ public class WifiServiceImpl extends BaseWifiService {
         enforceAccessPermission();
         // Post operation to handler thread
         mWifiThreadRunner.post(() ->
-                mRegisteredWifiLoggingStatusListeners.unregister(listener));
+                mRegisteredWifiLoggingStatusListeners.unregister(listener),
+                TAG + "#removeWifiVerboseLoggingStatusChangedListener");
     }
 
     /**
@@ -6238,7 +6315,8 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         // Post operation to handler thread
         mWifiThreadRunner.post(() ->
-                mWifiMetrics.addOnWifiUsabilityListener(listener));
+                mWifiMetrics.addOnWifiUsabilityListener(listener),
+                TAG + "#addOnWifiUsabilityStatsListener");
     }
 
     /**
@@ -6259,7 +6337,8 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         // Post operation to handler thread
         mWifiThreadRunner.post(() ->
-                mWifiMetrics.removeOnWifiUsabilityListener(listener));
+                mWifiMetrics.removeOnWifiUsabilityListener(listener),
+                TAG + "#removeOnWifiUsabilityStatsListener");
     }
 
     /**
@@ -6286,7 +6365,7 @@ public class WifiServiceImpl extends BaseWifiService {
             String ifaceName = mActiveModeWarden.getPrimaryClientModeManager().getInterfaceName();
             mWifiMetrics.incrementWifiUsabilityScoreCount(
                     ifaceName, seqNum, score, predictionHorizonSec);
-        });
+        }, TAG + "#updateWifiUsabilityScore");
     }
 
     /**
@@ -6445,7 +6524,7 @@ public class WifiServiceImpl extends BaseWifiService {
 
             mMakeBeforeBreakManager.stopAllSecondaryTransientClientModeManagers(() ->
                     mConnectHelper.connectToNetwork(result, wrapper, uid, packageName));
-        });
+        }, TAG + "#connect");
     }
 
     /**
@@ -6481,7 +6560,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } else {
                 wrapper.sendFailure(WifiManager.ActionListener.FAILURE_INTERNAL_ERROR);
             }
-        });
+        }, TAG + "#save");
     }
 
     /**
@@ -6512,7 +6591,7 @@ public class WifiServiceImpl extends BaseWifiService {
                 Log.e(TAG, "Failed to remove network");
                 wrapper.sendFailure(WifiManager.ActionListener.FAILURE_INTERNAL_ERROR);
             }
-        });
+        }, TAG + "#forget");
     }
 
     /**
@@ -6531,7 +6610,7 @@ public class WifiServiceImpl extends BaseWifiService {
             if (!mWifiInjector.getScanRequestProxy().registerScanResultsCallback(callback)) {
                 Log.e(TAG, "registerScanResultsCallback: Failed to register callback");
             }
-        });
+        }, TAG + "#registerScanResultsCallback");
     }
 
     /**
@@ -6544,8 +6623,49 @@ public class WifiServiceImpl extends BaseWifiService {
         enforceAccessPermission();
         // post operation to handler thread
         mWifiThreadRunner.post(() -> mWifiInjector.getScanRequestProxy()
-                        .unregisterScanResultsCallback(callback));
+                        .unregisterScanResultsCallback(callback),
+                TAG + "#unregisterScanResultsCallback");
+
+    }
+
+    /**
+     * Register a callback to receive only the changes of the cached scan results.
+     * Restricted to privileged callers.
+     */
+    @Override
+    public void registerScanResultsDeltaCallback(@NonNull IScanResultsDeltaCallback callback) {
+        if (callback == null) {
+            throw new IllegalArgumentException("callback must not be null");
+        }
+        int uid = Binder.getCallingUid();
+        if (!isPrivileged(Binder.getCallingPid(), uid)) {
+            throw new SecurityException(TAG + ": Permission denied");
+        }
+        if (mVerboseLoggingEnabled) {
+            mLog.info("registerScanResultsDeltaCallback uid=%").c(uid).flush();
+        }
+        mWifiThreadRunner.post(() -> {
+            if (!mWifiInjector.getScanRequestProxy().registerScanResultsDeltaCallback(callback)) {
+                Log.e(TAG, "registerScanResultsDeltaCallback: Failed to register callback");
+            }
+        }, TAG + "#registerScanResultsDeltaCallback");
+    }
 
+    /**
+     * See {@link #registerScanResultsDeltaCallback(IScanResultsDeltaCallback)}
+     */
+    @Override
+    public void unregisterScanResultsDeltaCallback(@NonNull IScanResultsDeltaCallback callback) {
+        int uid = Binder.getCallingUid();
+        if (!isPrivileged(Binder.getCallingPid(), uid)) {
+            throw new SecurityException(TAG + ": Permission denied");
+        }
+        if (mVerboseLoggingEnabled) {
+            mLog.info("unregisterScanResultsDeltaCallback uid=%").c(uid).flush();
+        }
+        mWifiThreadRunner.post(() -> mWifiInjector.getScanRequestProxy()
+                .unregisterScanResultsDeltaCallback(callback),
+                TAG + "#unregisterScanResultsDeltaCallback");
     }
 
     /**
@@ -6571,7 +6691,8 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         mWifiThreadRunner.post(() ->
                 mWifiNetworkSuggestionsManager
-                        .registerSuggestionConnectionStatusListener(listener, packageName, uid));
+                        .registerSuggestionConnectionStatusListener(listener, packageName, uid),
+                TAG + "#registerSuggestionConnectionStatusListener");
     }
 
     /**
@@ -6592,7 +6713,8 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         mWifiThreadRunner.post(() ->
                 mWifiNetworkSuggestionsManager
-                        .unregisterSuggestionConnectionStatusListener(listener, packageName, uid));
+                        .unregisterSuggestionConnectionStatusListener(listener, packageName, uid),
+                TAG + "#unregisterSuggestionConnectionStatusListener");
     }
 
     /**
@@ -6623,7 +6745,7 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         mWifiThreadRunner.post(() ->
                 mWifiNetworkFactory.addLocalOnlyConnectionStatusListener(listener, packageName,
-                        featureId));
+                        featureId), TAG + "#addLocalOnlyConnectionStatusListener");
     }
 
     /**
@@ -6653,7 +6775,8 @@ public class WifiServiceImpl extends BaseWifiService {
                     .c(uid).flush();
         }
         mWifiThreadRunner.post(() ->
-                mWifiNetworkFactory.removeLocalOnlyConnectionStatusListener(listener, packageName));
+                mWifiNetworkFactory.removeLocalOnlyConnectionStatusListener(listener, packageName),
+                TAG + "#removeLocalOnlyConnectionStatusListener");
     }
 
     @Override
@@ -6707,7 +6830,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, e.getMessage());
             }
-        });
+        }, TAG + "#setExternalPnoScanRequest");
     }
 
     /**
@@ -6724,7 +6847,7 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         mWifiThreadRunner.post(() -> {
             mWifiConnectivityManager.clearExternalPnoScanRequest(uid);
-        });
+        }, TAG + "#clearExternalPnoScanRequest");
     }
 
     /**
@@ -6760,7 +6883,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, e.getMessage());
             }
-        });
+        }, TAG + "#getLastCallerInfoForApi");
     }
 
     /**
@@ -6790,7 +6913,8 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         // Post operation to handler thread
         return mWifiThreadRunner.call(
-                () -> mActiveModeWarden.setWifiConnectedNetworkScorer(binder, scorer), false);
+                () -> mActiveModeWarden.setWifiConnectedNetworkScorer(binder, scorer), false,
+                TAG + "#setWifiConnectedNetworkScorer");
     }
 
     /**
@@ -6804,7 +6928,8 @@ public class WifiServiceImpl extends BaseWifiService {
             mLog.info("clearWifiConnectedNetworkScorer uid=%").c(Binder.getCallingUid()).flush();
         }
         // Post operation to handler thread
-        mWifiThreadRunner.post(() -> mActiveModeWarden.clearWifiConnectedNetworkScorer());
+        mWifiThreadRunner.post(() -> mActiveModeWarden.clearWifiConnectedNetworkScorer(),
+                TAG + "#clearWifiConnectedNetworkScorer");
     }
 
     /**
@@ -6932,7 +7057,8 @@ public class WifiServiceImpl extends BaseWifiService {
             mLog.info("addSuggestionUserApprovalStatusListener uid=%").c(uid).flush();
         }
         mWifiThreadRunner.post(() -> mWifiNetworkSuggestionsManager
-                .addSuggestionUserApprovalStatusListener(listener, packageName, uid));
+                .addSuggestionUserApprovalStatusListener(listener, packageName, uid),
+                TAG + "#addSuggestionUserApprovalStatusListener");
     }
 
     /**
@@ -6961,7 +7087,8 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         mWifiThreadRunner.post(() ->
                 mWifiNetworkSuggestionsManager
-                        .removeSuggestionUserApprovalStatusListener(listener, packageName, uid));
+                        .removeSuggestionUserApprovalStatusListener(listener, packageName, uid),
+                TAG + "#removeSuggestionUserApprovalStatusListener");
     }
 
     /**
@@ -6985,7 +7112,7 @@ public class WifiServiceImpl extends BaseWifiService {
 
         mWifiThreadRunner.post(() -> {
             removeAppStateInternal(targetAppUid, targetAppPackageName);
-        });
+        }, TAG + "#removeAppState");
     }
 
     /**
@@ -6997,7 +7124,8 @@ public class WifiServiceImpl extends BaseWifiService {
                 android.Manifest.permission.NETWORK_SETTINGS, "WifiService");
         // Post operation to handler thread
         return mWifiThreadRunner.call(
-                () -> mSettingsStore.handleWifiScoringEnabled(enabled), false);
+                () -> mSettingsStore.handleWifiScoringEnabled(enabled), false,
+                TAG + "#setWifiScoringEnabled");
     }
 
     @VisibleForTesting
@@ -7090,7 +7218,8 @@ public class WifiServiceImpl extends BaseWifiService {
             }
         }
         List<WifiAvailableChannel> channels = mWifiThreadRunner.call(
-                () -> mWifiNative.getUsableChannels(band, mode, filter), null);
+                () -> mWifiNative.getUsableChannels(band, mode, filter), null,
+                TAG + "#getUsableChannels");
         if (channels == null) {
             throw new UnsupportedOperationException();
         }
@@ -7118,7 +7247,8 @@ public class WifiServiceImpl extends BaseWifiService {
                     android.Manifest.permission.NETWORK_MANAGED_PROVISIONING,
                     android.Manifest.permission.NETWORK_CARRIER_PROVISIONING);
         }
-        mWifiThreadRunner.post(mPasspointManager::clearAnqpRequestsAndFlushCache);
+        mWifiThreadRunner.post(mPasspointManager::clearAnqpRequestsAndFlushCache,
+                TAG + "#flushPasspointAnqpCache");
     }
 
     /**
@@ -7132,7 +7262,8 @@ public class WifiServiceImpl extends BaseWifiService {
             mLog.info("isWifiPasspointEnabled uid=%").c(Binder.getCallingUid()).flush();
         }
         // Post operation to handler thread
-        return mWifiThreadRunner.call(() -> mPasspointManager.isWifiPasspointEnabled(), false);
+        return mWifiThreadRunner.call(() -> mPasspointManager.isWifiPasspointEnabled(), false,
+                TAG + "#isWifiPasspointEnabled");
     }
 
     /**
@@ -7155,7 +7286,7 @@ public class WifiServiceImpl extends BaseWifiService {
         // Post operation to handler thread
         mWifiThreadRunner.post(() ->
                 mPasspointManager.setWifiPasspointEnabled(enabled)
-        );
+        , TAG + "#setWifiPasspointEnabled");
     }
 
     private boolean isPnoSupported() {
@@ -7186,7 +7317,8 @@ public class WifiServiceImpl extends BaseWifiService {
         // Post operation to handler thread
         return mWifiThreadRunner.call(
                 () -> mMultiInternetManager.getStaConcurrencyForMultiInternetMode(),
-                WifiManager.WIFI_MULTI_INTERNET_MODE_DISABLED);
+                WifiManager.WIFI_MULTI_INTERNET_MODE_DISABLED,
+                TAG + "#getStaConcurrencyForMultiInternetMode");
     }
 
     /**
@@ -7211,7 +7343,8 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         // Post operation to handler thread
         return mWifiThreadRunner.call(() ->
-                mMultiInternetManager.setStaConcurrencyForMultiInternetMode(mode), false);
+                mMultiInternetManager.setStaConcurrencyForMultiInternetMode(mode), false,
+                TAG + "#setStaConcurrencyForMultiInternetMode");
     }
 
     /**
@@ -7253,7 +7386,7 @@ public class WifiServiceImpl extends BaseWifiService {
                     continue;
                 }
             }
-        });
+        }, TAG + "#notifyMinimumRequiredWifiSecurityLevelChanged");
     }
 
     /**
@@ -7294,7 +7427,7 @@ public class WifiServiceImpl extends BaseWifiService {
                     continue;
                 }
             }
-        });
+        }, TAG + "#notifyWifiSsidPolicyChanged");
     }
 
     /**
@@ -7311,7 +7444,8 @@ public class WifiServiceImpl extends BaseWifiService {
                     .flush();
         }
         mWifiThreadRunner.post(() ->
-                mWifiDialogManager.replyToSimpleDialog(dialogId, reply));
+                mWifiDialogManager.replyToSimpleDialog(dialogId, reply),
+                TAG + "#replyToSimpleDialog");
     }
 
     /**
@@ -7332,7 +7466,7 @@ public class WifiServiceImpl extends BaseWifiService {
         mWifiThreadRunner.post(() ->
                 mWifiDialogManager.replyToP2pInvitationReceivedDialog(
                         dialogId, accepted, optionalPin)
-        );
+        , TAG + "#replyToP2pInvitationReceivedDialog");
     }
 
     /**
@@ -7343,7 +7477,8 @@ public class WifiServiceImpl extends BaseWifiService {
             @NonNull List<DhcpOption> options) {
         enforceAnyPermissionOf(android.Manifest.permission.NETWORK_SETTINGS,
                 android.Manifest.permission.OVERRIDE_WIFI_CONFIG);
-        mWifiThreadRunner.post(() -> mWifiConfigManager.addCustomDhcpOptions(ssid, oui, options));
+        mWifiThreadRunner.post(() -> mWifiConfigManager.addCustomDhcpOptions(ssid, oui, options),
+                TAG + "#addCustomDhcpOptions");
     }
 
     /**
@@ -7353,7 +7488,8 @@ public class WifiServiceImpl extends BaseWifiService {
     public void removeCustomDhcpOptions(@NonNull WifiSsid ssid, @NonNull byte[] oui) {
         enforceAnyPermissionOf(android.Manifest.permission.NETWORK_SETTINGS,
                 android.Manifest.permission.OVERRIDE_WIFI_CONFIG);
-        mWifiThreadRunner.post(() -> mWifiConfigManager.removeCustomDhcpOptions(ssid, oui));
+        mWifiThreadRunner.post(() -> mWifiConfigManager.removeCustomDhcpOptions(ssid, oui),
+                TAG + "#removeCustomDhcpOptions");
     }
 
     /**
@@ -7439,7 +7575,7 @@ public class WifiServiceImpl extends BaseWifiService {
                 Log.e(TAG,
                         "Failed calling back with results of isItPossibleToCreateInterface - " + e);
             }
-        });
+        }, TAG + "#reportCreateInterfaceImpact");
     }
     @Override
     public int getMaxNumberOfChannelsPerRequest() {
@@ -7526,7 +7662,7 @@ public class WifiServiceImpl extends BaseWifiService {
         mWifiThreadRunner.post(() -> {
             mApplicationQosPolicyRequestHandler.queueAddRequest(
                     policyParamsList, listener, binder, uid);
-        });
+        }, TAG + "#addQosPolicies");
     }
 
     /**
@@ -7557,7 +7693,7 @@ public class WifiServiceImpl extends BaseWifiService {
         List<Integer> policyIdList = Arrays.stream(policyIds).boxed().toList();
         mWifiThreadRunner.post(() -> {
             mApplicationQosPolicyRequestHandler.queueRemoveRequest(policyIdList, uid);
-        });
+        }, TAG + "#removeQosPolicies");
     }
 
     /**
@@ -7581,7 +7717,7 @@ public class WifiServiceImpl extends BaseWifiService {
 
         mWifiThreadRunner.post(() -> {
             mApplicationQosPolicyRequestHandler.queueRemoveAllRequest(uid);
-        });
+        }, TAG + "#removeAllQosPolicies");
     }
 
     /**
@@ -7597,7 +7733,8 @@ public class WifiServiceImpl extends BaseWifiService {
             throw new IllegalArgumentException("intervalMs should not be smaller than 0");
         }
         mWifiThreadRunner.post(() -> mActiveModeWarden.getPrimaryClientModeManager()
-                    .setLinkLayerStatsPollingInterval(intervalMs));
+                    .setLinkLayerStatsPollingInterval(intervalMs),
+                TAG + "#setLinkLayerStatsPollingInterval");
     }
 
     /**
@@ -7618,7 +7755,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, e.getMessage());
             }
-        });
+        }, TAG + "#getLinkLayerStatsPollingInterval");
     }
 
     /**
@@ -7648,7 +7785,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, e.getMessage());
             }
-        });
+        }, TAG + "#setMloMode");
     }
 
     /**
@@ -7675,7 +7812,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, e.getMessage());
             }
-        });
+        }, TAG + "#getMloMode");
     }
 
     /**
@@ -7697,7 +7834,7 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         mWifiThreadRunner.post(() -> {
             mWifiLockManager.addWifiLowLatencyLockListener(listener);
-        });
+        }, TAG + "#addWifiLowLatencyLockListener");
     }
 
     /**
@@ -7713,7 +7850,7 @@ public class WifiServiceImpl extends BaseWifiService {
         }
         mWifiThreadRunner.post(() -> {
             mWifiLockManager.removeWifiLowLatencyLockListener(listener);
-        });
+        }, TAG + "#removeWifiLowLatencyLockListener");
     }
 
     private String getPackageName(Bundle extras) {
@@ -7758,7 +7895,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, e.getMessage());
             }
-        });
+        }, TAG + "#getMaxMloAssociationLinkCount");
     }
 
     /**
@@ -7790,7 +7927,7 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, e.getMessage());
             }
-        });
+        }, TAG + "#getMaxMloStrLinkCount");
     }
 
     /**
@@ -7835,6 +7972,6 @@ public class WifiServiceImpl extends BaseWifiService {
             } catch (RemoteException e) {
                 Log.e(TAG, e.getMessage());
             }
-        });
+        }, TAG + "#getSupportedSimultaneousBandCombinations");
     }
 }
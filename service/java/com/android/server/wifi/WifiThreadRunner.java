@@ -20,6 +20,7 @@ import android.annotation.NonNull;
 import android.annotation.Nullable;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.Message;
 import android.os.SystemClock;
 import android.util.Log;
 
@@ -75,9 +76,22 @@ public class WifiThreadRunner {
      */
     @Nullable
     public <T> T call(@NonNull Supplier<T> supplier, T valueToReturnOnTimeout) {
+        return call(supplier, valueToReturnOnTimeout, null);
+    }
+
+    /**
+     * Same as {@link #call(Supplier, Object)}, with the name the task is reported under in the
+     * wifi thread logs and metrics.
+     *
+     * @param taskName stable name of the task, e.g. TAG + "#method". If null, the task is named
+     *                 after the class of |supplier|.
+     */
+    @Nullable
+    public <T> T call(@NonNull Supplier<T> supplier, T valueToReturnOnTimeout,
+            @Nullable String taskName) {
         Mutable<T> result = new Mutable<>();
         boolean runWithScissorsSuccess = runWithScissors(mHandler,
-                () -> result.value = supplier.get(),
+                () -> result.value = supplier.get(), supplier, taskName,
                 RUN_WITH_SCISSORS_TIMEOUT_MILLIS, false);
         if (runWithScissorsSuccess) {
             return result.value;
@@ -103,8 +117,19 @@ public class WifiThreadRunner {
      * @return true if the runnable executed successfully, false otherwise
      */
     public boolean run(@NonNull Runnable runnable) {
-        boolean runWithScissorsSuccess =
-                runWithScissors(mHandler, runnable, RUN_WITH_SCISSORS_TIMEOUT_MILLIS, false);
+        return run(runnable, null);
+    }
+
+    /**
+     * Same as {@link #run(Runnable)}, with the name the task is reported under in the wifi
+     * thread logs and metrics.
+     *
+     * @param taskName stable name of the task, e.g. TAG + "#method". If null, the task is named
+     *                 after the class of |runnable|.
+     */
+    public boolean run(@NonNull Runnable runnable, @Nullable String taskName) {
+        boolean runWithScissorsSuccess = runWithScissors(mHandler, runnable, runnable, taskName,
+                RUN_WITH_SCISSORS_TIMEOUT_MILLIS, false);
         if (runWithScissorsSuccess) {
             return true;
         } else {
@@ -126,8 +151,19 @@ public class WifiThreadRunner {
      * @return true if the runnable executed successfully, false otherwise
      */
     public boolean runAtFront(@NonNull Runnable runnable) {
-        boolean runWithScissorsSuccess =
-                runWithScissors(mHandler, runnable, RUN_WITH_SCISSORS_TIMEOUT_MILLIS, true);
+        return runAtFront(runnable, null);
+    }
+
+    /**
+     * Same as {@link #runAtFront(Runnable)}, with the name the task is reported under in the
+     * wifi thread logs and metrics.
+     *
+     * @param taskName stable name of the task, e.g. TAG + "#method". If null, the task is named
+     *                 after the class of |runnable|.
+     */
+    public boolean runAtFront(@NonNull Runnable runnable, @Nullable String taskName) {
+        boolean runWithScissorsSuccess = runWithScissors(mHandler, runnable, runnable, taskName,
+                RUN_WITH_SCISSORS_TIMEOUT_MILLIS, true);
         if (runWithScissorsSuccess) {
             return true;
         } else {
@@ -181,6 +217,20 @@ public class WifiThreadRunner {
         return mHandler.post(runnable);
     }
 
+    /**
+     * Same as {@link #post(Runnable)}, with the name the task is reported under in the wifi
+     * thread logs and metrics. The name is carried by the message itself, so this does not
+     * allocate more than {@link #post(Runnable)}.
+     *
+     * @param taskName stable name of the task, e.g. TAG + "#method".
+     */
+    public boolean post(@NonNull Runnable runnable, @NonNull String taskName) {
+        Message msg = Message.obtain(mHandler, runnable);
+        msg.what = RunnerHandler.MSG_WHAT_NAMED_TASK;
+        msg.obj = taskName;
+        return mHandler.sendMessage(msg);
+    }
+
     /**
      * Asynchronously runs a Runnable on the main Wifi thread with delay.
      *
@@ -252,6 +302,8 @@ public class WifiThreadRunner {
      * </p>
      *
      * @param r The Runnable that will be executed synchronously.
+     * @param task The task run by |r|, used to name it if |taskName| is null.
+     * @param taskName Name of the task in the wifi thread logs and metrics, may be null.
      * @param timeout The timeout in milliseconds, or 0 to wait indefinitely.
      * @param atFront Message needs to be posted at the front of the queue or not.
      *
@@ -264,7 +316,7 @@ public class WifiThreadRunner {
      * less funny like runUnsafe().
      */
     private boolean runWithScissors(@NonNull Handler handler, @NonNull Runnable r,
-            long timeout, boolean atFront) {
+            @NonNull Object task, @Nullable String taskName, long timeout, boolean atFront) {
         if (r == null) {
             throw new IllegalArgumentException("runnable must not be null");
         }
@@ -282,22 +334,39 @@ public class WifiThreadRunner {
             return true;
         }
 
-        BlockingRunnable br = new BlockingRunnable(r);
+        BlockingRunnable br = new BlockingRunnable(r, task, taskName);
         return br.postAndWait(handler, timeout, atFront);
     }
 
-    private static final class BlockingRunnable implements Runnable {
-        private final Runnable mTask;
+    /**
+     * Runnable posted by {@link #runWithScissors}. It exposes the task it runs to
+     * {@link RunnerHandler}, which would otherwise name every blocking task after this class.
+     */
+    static final class BlockingRunnable implements Runnable {
+        private final Runnable mRunnable;
+        private final Object mTask;
+        private final String mTaskName;
         private boolean mDone;
 
-        BlockingRunnable(Runnable task) {
+        BlockingRunnable(Runnable runnable, Object task, @Nullable String taskName) {
+            mRunnable = runnable;
             mTask = task;
+            mTaskName = taskName;
+        }
+
+        /** The Runnable or Supplier provided by the caller. */
+        @NonNull Object getTask() {
+            return mTask;
+        }
+
+        @Nullable String getTaskName() {
+            return mTaskName;
         }
 
         @Override
         public void run() {
             try {
-                mTask.run();
+                mRunnable.run();
             } finally {
                 synchronized (this) {
                     mDone = true;
@@ -85,6 +85,24 @@ public class ANQPData {
         return Collections.unmodifiableMap(mANQPElements);
     }
 
+    /**
+     * Return the time at which this entry expires.
+     *
+     * @return the expiry time, based on {@link Clock#getElapsedSinceBootMillis()}
+     */
+    public long getExpiryTime() {
+        return mExpiryTime;
+    }
+
+    /**
+     * Set the time at which this entry expires, e.g. for data restored from persistent storage.
+     *
+     * @param expiryTime the expiry time, based on {@link Clock#getElapsedSinceBootMillis()}
+     */
+    void setExpiryTime(long expiryTime) {
+        mExpiryTime = expiryTime;
+    }
+
     /**
      * Check if this entry is expired at the specified time.
      *
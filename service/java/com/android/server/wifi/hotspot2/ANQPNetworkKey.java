@@ -18,6 +18,10 @@ package com.android.server.wifi.hotspot2;
 
 import android.text.TextUtils;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 /**
  * Unique key for identifying APs that will contain the same ANQP information.
  *
@@ -91,6 +95,27 @@ public class ANQPNetworkKey {
                 && that.mAnqpDomainID == mAnqpDomainID;
     }
 
+    /**
+     * Write the key to a stream, in the format read by {@link #readFrom(DataInputStream)}.
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeBoolean(mSSID != null);
+        if (mSSID != null) {
+            out.writeUTF(mSSID);
+        }
+        out.writeLong(mBSSID);
+        out.writeLong(mHESSID);
+        out.writeInt(mAnqpDomainID);
+    }
+
+    /**
+     * Read a key written by {@link #writeTo(DataOutputStream)}.
+     */
+    static ANQPNetworkKey readFrom(DataInputStream in) throws IOException {
+        String ssid = in.readBoolean() ? in.readUTF() : null;
+        return new ANQPNetworkKey(ssid, in.readLong(), in.readLong(), in.readInt());
+    }
+
     @Override
     public String toString() {
         if (mHESSID != 0L) {
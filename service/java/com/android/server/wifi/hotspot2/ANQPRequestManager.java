@@ -26,6 +26,8 @@ import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -33,6 +35,11 @@ import java.util.Map;
  * Class for managing sending of ANQP requests.  This manager will ignore ANQP requests for a
  * period of time (hold off time) to a specified AP if the previous request to that AP goes
  * unanswered or failed.  The hold off time will increase exponentially until the max is reached.
+ *
+ * At most {@link #MAX_OUTSTANDING_REQUESTS} requests are outstanding at a time, across all APs.
+ * Further requests are queued, and sent in decreasing RSSI order as outstanding requests
+ * complete.  APs with the same {@link ANQPNetworkKey} (e.g. the APs of an ANQP domain) share
+ * the same ANQP data, so only one request is sent per key, and its response covers all of them.
  */
 public class ANQPRequestManager {
     private static final String TAG = "ANQPRequestManager";
@@ -43,7 +50,13 @@ public class ANQPRequestManager {
     /**
      * List of pending ANQP request associated with an AP (BSSID).
      */
-    private final Map<Long, ANQPNetworkKey> mPendingQueries;
+    private final Map<Long, PendingRequest> mPendingQueries;
+
+    /**
+     * List of ANQP requests waiting for an outstanding request to complete, associated with an
+     * AP (BSSID), in the order they were queued.
+     */
+    private final Map<Long, QueuedRequest> mQueuedRequests;
 
     /**
      * List of hold off time information associated with APs specified by their BSSID.
@@ -68,6 +81,26 @@ public class ANQPRequestManager {
     @VisibleForTesting
     public static final int MAX_HOLDOFF_COUNT = 6;
 
+    /**
+     * Maximum number of ANQP requests sent to the supplicant and not answered yet.
+     */
+    @VisibleForTesting
+    public static final int MAX_OUTSTANDING_REQUESTS = 4;
+
+    /**
+     * Time after which an unanswered request no longer counts as outstanding, and another request
+     * can be sent for the same {@link ANQPNetworkKey}.
+     */
+    @VisibleForTesting
+    public static final int OUTSTANDING_REQUEST_TIMEOUT_MILLISECONDS =
+            BASE_HOLDOFF_TIME_MILLISECONDS;
+
+    /**
+     * Time after which a queued request is dropped, if the AP was not seen again in a scan.
+     */
+    @VisibleForTesting
+    public static final int MAX_QUEUED_TIME_MILLISECONDS = 30000;
+
     private static final List<Constants.ANQPElementType> R1_ANQP_BASE_SET = Arrays.asList(
             Constants.ANQPElementType.ANQPVenueName,
             Constants.ANQPElementType.ANQPIPAddrAvailability,
@@ -96,10 +129,35 @@ public class ANQPRequestManager {
         public long holdOffExpirationTime;
     }
 
+    /**
+     * Class to keep track of an ANQP request sent to an AP.
+     */
+    private static class PendingRequest {
+        public final ANQPNetworkKey anqpNetworkKey;
+        public final long sendTime;
+
+        PendingRequest(ANQPNetworkKey anqpNetworkKey, long sendTime) {
+            this.anqpNetworkKey = anqpNetworkKey;
+            this.sendTime = sendTime;
+        }
+    }
+
+    /**
+     * Class to keep track of an ANQP request waiting to be sent to an AP.
+     */
+    private static class QueuedRequest {
+        public ANQPNetworkKey anqpNetworkKey;
+        public boolean rcOIs;
+        public NetworkDetail.HSRelease hsReleaseVer;
+        public int rssi;
+        public long queueTime;
+    }
+
     public ANQPRequestManager(PasspointEventHandler handler, Clock clock) {
         mPasspointHandler = handler;
         mClock = clock;
         mPendingQueries = new HashMap<>();
+        mQueuedRequests = new LinkedHashMap<>();
         mHoldOffInfo = new HashMap<>();
     }
 
@@ -115,15 +173,51 @@ public class ANQPRequestManager {
      *              Roaming Consortium ANQP element will be requested
      * @param hsReleaseVer Indicates Hotspot 2.0 Release version. When set to R2 or higher,
      *              the Release 2 ANQP elements {@link #R2_ANQP_BASE_SET} will be requested
-     * @return true if a request was sent successfully
+     * @param rssi The RSSI of the AP, used to prioritize the request when it is queued
+     * @return true if a request was sent successfully, false if it was not allowed, failed to
+     *         send or was queued
      */
     public boolean requestANQPElements(long bssid, ANQPNetworkKey anqpNetworkKey, boolean rcOIs,
-            NetworkDetail.HSRelease hsReleaseVer) {
+            NetworkDetail.HSRelease hsReleaseVer, int rssi) {
         // Check if we are allow to send the request now.
         if (!canSendRequestNow(bssid)) {
             return false;
         }
 
+        // The response to an outstanding request for the same key will cover this AP.
+        long currentTime = mClock.getElapsedSinceBootMillis();
+        if (isRequestOutstanding(anqpNetworkKey, currentTime)) {
+            return false;
+        }
+
+        if (getNumOutstandingRequests(currentTime) >= MAX_OUTSTANDING_REQUESTS) {
+            QueuedRequest request = mQueuedRequests.get(bssid);
+            if (request == null) {
+                request = new QueuedRequest();
+                mQueuedRequests.put(bssid, request);
+            }
+            request.anqpNetworkKey = anqpNetworkKey;
+            request.rcOIs = rcOIs;
+            request.hsReleaseVer = hsReleaseVer;
+            request.rssi = rssi;
+            request.queueTime = currentTime;
+            return false;
+        }
+
+        mQueuedRequests.remove(bssid);
+        boolean sent = sendRequest(bssid, anqpNetworkKey, rcOIs, hsReleaseVer);
+        // Requests queued before this one may have been unblocked by timed out requests.
+        sendQueuedRequests();
+        return sent;
+    }
+
+    /**
+     * Send an ANQP request to the supplicant, and update the hold off info for the AP.
+     *
+     * @return true if the request was sent successfully
+     */
+    private boolean sendRequest(long bssid, ANQPNetworkKey anqpNetworkKey, boolean rcOIs,
+            NetworkDetail.HSRelease hsReleaseVer) {
         // No need to hold off future requests for send failures.
         if (!mPasspointHandler.requestANQP(bssid, getRequestElementIDs(rcOIs, hsReleaseVer))) {
             return false;
@@ -133,10 +227,45 @@ public class ANQPRequestManager {
         // the given AP.
         updateHoldOffInfo(bssid);
 
-        mPendingQueries.put(bssid, anqpNetworkKey);
+        mPendingQueries.put(bssid,
+                new PendingRequest(anqpNetworkKey, mClock.getElapsedSinceBootMillis()));
         return true;
     }
 
+    /**
+     * Send the queued requests with the highest RSSI, until the maximum number of outstanding
+     * requests is reached. Requests which are expired, held off, or covered by an outstanding
+     * request for the same key are dropped.
+     */
+    private void sendQueuedRequests() {
+        long currentTime = mClock.getElapsedSinceBootMillis();
+        while (!mQueuedRequests.isEmpty()
+                && getNumOutstandingRequests(currentTime) < MAX_OUTSTANDING_REQUESTS) {
+            long bestBssid = 0;
+            QueuedRequest best = null;
+            Iterator<Map.Entry<Long, QueuedRequest>> iter = mQueuedRequests.entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry<Long, QueuedRequest> entry = iter.next();
+                QueuedRequest request = entry.getValue();
+                if (currentTime - request.queueTime >= MAX_QUEUED_TIME_MILLISECONDS
+                        || isHeldOff(entry.getKey(), currentTime)
+                        || isRequestOutstanding(request.anqpNetworkKey, currentTime)) {
+                    iter.remove();
+                    continue;
+                }
+                if (best == null || request.rssi > best.rssi) {
+                    bestBssid = entry.getKey();
+                    best = request;
+                }
+            }
+            if (best == null) {
+                return;
+            }
+            mQueuedRequests.remove(bestBssid);
+            sendRequest(bestBssid, best.anqpNetworkKey, best.rcOIs, best.hsReleaseVer);
+        }
+    }
+
     /**
      * Request Venue URL ANQP-element from the specified AP post connection.
      *
@@ -149,7 +278,8 @@ public class ANQPRequestManager {
             return false;
         }
 
-        mPendingQueries.put(bssid, anqpNetworkKey);
+        mPendingQueries.put(bssid,
+                new PendingRequest(anqpNetworkKey, mClock.getElapsedSinceBootMillis()));
         return true;
     }
 
@@ -161,11 +291,46 @@ public class ANQPRequestManager {
      * @return {@link ANQPNetworkKey} associated with the completed request
      */
     public ANQPNetworkKey onRequestCompleted(long bssid, boolean success) {
+        PendingRequest request = mPendingQueries.remove(bssid);
         if (success) {
             // Query succeeded.  No need to hold off request to the given AP.
             mHoldOffInfo.remove(bssid);
+            if (request != null) {
+                // The response covers the queued requests for the same key.
+                mQueuedRequests.values().removeIf(
+                        queued -> queued.anqpNetworkKey.equals(request.anqpNetworkKey));
+            }
+        }
+        sendQueuedRequests();
+        return request == null ? null : request.anqpNetworkKey;
+    }
+
+    /**
+     * Check if a request for the given key was sent and is waiting for a response.
+     */
+    private boolean isRequestOutstanding(ANQPNetworkKey anqpNetworkKey, long currentTime) {
+        for (PendingRequest request : mPendingQueries.values()) {
+            if (currentTime - request.sendTime < OUTSTANDING_REQUEST_TIMEOUT_MILLISECONDS
+                    && request.anqpNetworkKey.equals(anqpNetworkKey)) {
+                return true;
+            }
         }
-        return mPendingQueries.remove(bssid);
+        return false;
+    }
+
+    private int getNumOutstandingRequests(long currentTime) {
+        int count = 0;
+        for (PendingRequest request : mPendingQueries.values()) {
+            if (currentTime - request.sendTime < OUTSTANDING_REQUEST_TIMEOUT_MILLISECONDS) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private boolean isHeldOff(long bssid, long currentTime) {
+        HoldOffInfo info = mHoldOffInfo.get(bssid);
+        return info != null && info.holdOffExpirationTime > currentTime;
     }
 
     /**
@@ -240,6 +405,9 @@ public class ANQPRequestManager {
      */
     public void dump(PrintWriter pw) {
         pw.println("ANQPRequestManager - Begin ---");
+        long currentTime = mClock.getElapsedSinceBootMillis();
+        pw.println("Outstanding requests: " + getNumOutstandingRequests(currentTime)
+                + ", queued requests: " + mQueuedRequests.size());
         for (Map.Entry<Long, HoldOffInfo> holdOffInfo : mHoldOffInfo.entrySet()) {
             long bssid = holdOffInfo.getKey();
             pw.println("For BBSID: " + Utils.macToString(bssid));
@@ -256,6 +424,7 @@ public class ANQPRequestManager {
      */
     public void clear() {
         mPendingQueries.clear();
+        mQueuedRequests.clear();
         mHoldOffInfo.clear();
     }
 }
@@ -16,34 +16,110 @@
 
 package com.android.server.wifi.hotspot2;
 
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.util.Log;
+
 import com.android.internal.annotations.VisibleForTesting;
 import com.android.server.wifi.Clock;
 import com.android.server.wifi.hotspot2.anqp.ANQPElement;
+import com.android.server.wifi.hotspot2.anqp.ANQPParser;
 import com.android.server.wifi.hotspot2.anqp.Constants;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.BufferUnderflowException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
 /**
  * Cache for storing ANQP data.  This is simply a data cache, all the logic related to
  * ANQP data query will be handled elsewhere (e.g. the consumer of the cache).
+ *
+ * Expired entries are tracked by a hierarchical timing wheel with a resolution of
+ * {@link #CACHE_SWEEP_INTERVAL_MILLISECONDS}, so that adding an entry and removing an expired
+ * one take constant time, and a sweep only visits the entries which expire. The estimated size
+ * of the cached ANQP elements is capped to {@link #MAX_CACHE_SIZE_BYTES}, by evicting the least
+ * recently used entries.
+ *
+ * The cache can be saved to and restored from a compact binary form, see
+ * {@link #toPersistedData()}, so that Passpoint matching can use it right after a restart.
  */
 public class AnqpCache {
+    private static final String TAG = "AnqpCache";
+
     @VisibleForTesting
     public static final long CACHE_SWEEP_INTERVAL_MILLISECONDS = 60000L;
+    @VisibleForTesting
+    public static final int MAX_CACHE_SIZE_BYTES = 256 * 1024;
+    @VisibleForTesting
+    public static final int MAX_PERSISTED_SIZE_BYTES = 64 * 1024;
+
+    private static final int PERSISTED_DATA_VERSION = 1;
+    // Namespaces of the element type IDs in the persisted data.
+    private static final int ANQP_ELEMENT_NAMESPACE = 0;
+    private static final int HS20_ELEMENT_NAMESPACE = 1;
+
+    // Estimated memory overhead of a cache entry and of an ANQP element, excluding its content.
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+    private static final int ELEMENT_OVERHEAD_BYTES = 32;
+
+    // Each level of the timing wheel has WHEEL_SLOTS slots. A slot of level 0 spans one tick of
+    // CACHE_SWEEP_INTERVAL_MILLISECONDS, a slot of level 1 spans WHEEL_SLOTS ticks.
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SLOTS = 1 << WHEEL_BITS;
+    private static final int WHEEL_MASK = WHEEL_SLOTS - 1;
+    private static final int WHEEL_LEVELS = 2;
 
     private long mLastSweep;
     private Clock mClock;
 
-    private final Map<ANQPNetworkKey, ANQPData> mANQPCache;
+    // Ordered from the least to the most recently accessed entry.
+    private final LinkedHashMap<ANQPNetworkKey, CacheEntry> mANQPCache;
+    private final CacheEntry[][] mWheel = new CacheEntry[WHEEL_LEVELS][WHEEL_SLOTS];
+    // Every entry expiring at or before this tick has been removed.
+    private long mWheelTick;
+    private long mSizeBytes = 0;
+    private boolean mChangedSincePersisted = false;
+    // Data last returned by toPersistedData() or restored by restoreFromPersistedData().
+    private @Nullable byte[] mPersistedData;
+
+    private long mHits = 0;
+    private long mMisses = 0;
+    private long mExpirations = 0;
+    private long mEvictions = 0;
+
+    private static final class CacheEntry {
+        final ANQPNetworkKey key;
+        final ANQPData data;
+        int sizeBytes;
+        // First tick at which the entry is expired.
+        long expiryTick;
+        // Position in the timing wheel.
+        int level;
+        int slot;
+        @Nullable CacheEntry prev;
+        @Nullable CacheEntry next;
+
+        CacheEntry(ANQPNetworkKey key, ANQPData data) {
+            this.key = key;
+            this.data = data;
+        }
+    }
 
     public AnqpCache(Clock clock) {
         mClock = clock;
-        mANQPCache = new HashMap<>();
+        mANQPCache = new LinkedHashMap<>(16, 0.75f, /* accessOrder */ true);
         mLastSweep = mClock.getElapsedSinceBootMillis();
+        mWheelTick = mLastSweep / CACHE_SWEEP_INTERVAL_MILLISECONDS;
     }
 
     /**
@@ -54,8 +130,17 @@ public class AnqpCache {
      */
     public void addEntry(ANQPNetworkKey key,
             Map<Constants.ANQPElementType, ANQPElement> anqpElements) {
-        ANQPData data = new ANQPData(mClock, anqpElements);
-        mANQPCache.put(key, data);
+        insertEntry(key, new ANQPData(mClock, anqpElements));
+    }
+
+    private void insertEntry(ANQPNetworkKey key, ANQPData data) {
+        CacheEntry entry = new CacheEntry(key, data);
+        removeEntry(mANQPCache.put(key, entry));
+        mChangedSincePersisted = true;
+        entry.sizeBytes = estimateSizeBytes(entry.data);
+        mSizeBytes += entry.sizeBytes;
+        schedule(entry);
+        evictIfNeeded();
     }
 
     /**
@@ -68,12 +153,20 @@ public class AnqpCache {
      */
     public void addOrUpdateEntry(ANQPNetworkKey key,
             Map<Constants.ANQPElementType, ANQPElement> anqpElements) {
-        if (!mANQPCache.containsKey(key)) {
+        CacheEntry entry = mANQPCache.get(key);
+        if (entry == null) {
             // Create a new entry
             addEntry(key, anqpElements);
             return;
         }
-        mANQPCache.get(key).update(anqpElements);
+        entry.data.update(anqpElements);
+        mChangedSincePersisted = true;
+        unschedule(entry);
+        schedule(entry);
+        mSizeBytes -= entry.sizeBytes;
+        entry.sizeBytes = estimateSizeBytes(entry.data);
+        mSizeBytes += entry.sizeBytes;
+        evictIfNeeded();
     }
 
     /**
@@ -83,11 +176,17 @@ public class AnqpCache {
      * @return {@link ANQPData}
      */
     public ANQPData getEntry(ANQPNetworkKey key) {
-        return mANQPCache.get(key);
+        CacheEntry entry = mANQPCache.get(key);
+        if (entry == null) {
+            mMisses++;
+            return null;
+        }
+        mHits++;
+        return entry.data;
     }
 
     /**
-     * Go through the cache to remove any expired entries.
+     * Remove the expired entries from the cache.
      */
     public void sweep() {
         long now = mClock.getElapsedSinceBootMillis();
@@ -95,35 +194,348 @@ public class AnqpCache {
         if (now < mLastSweep + CACHE_SWEEP_INTERVAL_MILLISECONDS) {
             return;
         }
-
-        // Get all expired keys.
-        List<ANQPNetworkKey> expiredKeys = new ArrayList<>();
-        for (Map.Entry<ANQPNetworkKey, ANQPData> entry : mANQPCache.entrySet()) {
-            if (entry.getValue().expired(now)) {
-                expiredKeys.add(entry.getKey());
-            }
-        }
-
-        // Remove all expired entries.
-        for (ANQPNetworkKey key : expiredKeys) {
-            mANQPCache.remove(key);
-        }
+        advanceWheel(now / CACHE_SWEEP_INTERVAL_MILLISECONDS);
         mLastSweep = now;
     }
 
     public void dump(PrintWriter out) {
         out.println("Last sweep " + Utils.toHMS(mClock.getElapsedSinceBootMillis() - mLastSweep)
                 + " ago.");
-        for (Map.Entry<ANQPNetworkKey, ANQPData> entry : mANQPCache.entrySet()) {
-            out.println(entry.getKey() + ": " + entry.getValue());
+        out.println("Entries: " + mANQPCache.size() + ", estimated size: " + mSizeBytes
+                + " of " + MAX_CACHE_SIZE_BYTES + " bytes");
+        out.println("Hits: " + mHits + ", misses: " + mMisses + ", expirations: " + mExpirations
+                + ", evictions: " + mEvictions);
+        for (CacheEntry entry : mANQPCache.values()) {
+            out.println(entry.key + ": " + entry.data);
         }
     }
 
     /**
-     * Flush the ANQP cache
+     * Flush the ANQP cache. The persisted copy of the cache is kept, use
+     * {@link #discardPersistedData()} to discard it as well.
      */
     public void flush() {
         mANQPCache.clear();
+        for (CacheEntry[] level : mWheel) {
+            for (int i = 0; i < WHEEL_SLOTS; i++) {
+                level[i] = null;
+            }
+        }
+        mSizeBytes = 0;
         mLastSweep = mClock.getElapsedSinceBootMillis();
+        mWheelTick = mLastSweep / CACHE_SWEEP_INTERVAL_MILLISECONDS;
+    }
+
+    /**
+     * Discard the persisted copy of the cache, so that the current entries replace it the next
+     * time the cache is persisted.
+     */
+    public void discardPersistedData() {
+        mPersistedData = null;
+        mChangedSincePersisted = true;
+    }
+
+    /**
+     * Estimate the memory used by the ANQP elements of an entry, including the raw payloads they
+     * retain.
+     */
+    private static int estimateSizeBytes(ANQPData data) {
+        int size = ENTRY_OVERHEAD_BYTES;
+        for (ANQPElement element : data.getElements().values()) {
+            size += ELEMENT_OVERHEAD_BYTES + element.getSizeBytes()
+                    + ANQPElement.sizeOf(element.getPayload());
+        }
+        return size;
+    }
+
+    /**
+     * Evict the least recently used entries until the estimated size fits in the cap. The most
+     * recent entry is always kept.
+     */
+    private void evictIfNeeded() {
+        Iterator<CacheEntry> it = mANQPCache.values().iterator();
+        while (mSizeBytes > MAX_CACHE_SIZE_BYTES && mANQPCache.size() > 1) {
+            CacheEntry entry = it.next();
+            it.remove();
+            removeEntry(entry);
+            mEvictions++;
+        }
+    }
+
+    /**
+     * Release the wheel slot and the size accounted for an entry already removed from the map.
+     */
+    private void removeEntry(@Nullable CacheEntry entry) {
+        if (entry == null) return;
+        unschedule(entry);
+        mSizeBytes -= entry.sizeBytes;
+    }
+
+    private void schedule(CacheEntry entry) {
+        long expiryTime = entry.data.getExpiryTime();
+        // Round up, so that the entry is only removed once its expiry time has passed.
+        entry.expiryTick = (expiryTime + CACHE_SWEEP_INTERVAL_MILLISECONDS - 1)
+                / CACHE_SWEEP_INTERVAL_MILLISECONDS;
+        insertInWheel(entry);
+    }
+
+    private void insertInWheel(CacheEntry entry) {
+        long tick = Math.max(entry.expiryTick, mWheelTick + 1);
+        // The level 0 slots are visited in order for the next WHEEL_SLOTS ticks.
+        if (tick - mWheelTick <= WHEEL_SLOTS) {
+            entry.level = 0;
+            entry.slot = (int) (tick & WHEEL_MASK);
+        } else {
+            // Entries beyond the span of level 1 are placed in its farthest slot, and moved again
+            // when that slot is cascaded.
+            long farthest = mWheelTick + ((long) WHEEL_SLOTS << WHEEL_BITS) - 1;
+            entry.level = 1;
+            entry.slot = (int) ((Math.min(tick, farthest) >> WHEEL_BITS) & WHEEL_MASK);
+        }
+        CacheEntry head = mWheel[entry.level][entry.slot];
+        entry.prev = null;
+        entry.next = head;
+        if (head != null) head.prev = entry;
+        mWheel[entry.level][entry.slot] = entry;
+    }
+
+    private void unschedule(CacheEntry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else if (mWheel[entry.level][entry.slot] == entry) {
+            mWheel[entry.level][entry.slot] = entry.next;
+        }
+        if (entry.next != null) entry.next.prev = entry.prev;
+        entry.prev = null;
+        entry.next = null;
+    }
+
+    /**
+     * Advance the wheel up to |nowTick|, removing the entries which expired.
+     */
+    private void advanceWheel(long nowTick) {
+        if (nowTick - mWheelTick >= ((long) WHEEL_SLOTS << WHEEL_BITS)) {
+            // After a long pause, reschedule all the entries rather than visiting every tick.
+            mWheelTick = nowTick;
+            List<CacheEntry> entries = new ArrayList<>(mANQPCache.values());
+            for (CacheEntry[] level : mWheel) {
+                for (int i = 0; i < WHEEL_SLOTS; i++) {
+                    level[i] = null;
+                }
+            }
+            for (CacheEntry entry : entries) {
+                if (entry.expiryTick <= nowTick) {
+                    expire(entry);
+                } else {
+                    insertInWheel(entry);
+                }
+            }
+            return;
+        }
+        while (mWheelTick < nowTick) {
+            long tick = mWheelTick + 1;
+            if ((tick & WHEEL_MASK) == 0) {
+                // Move the entries of the next level 1 slot down to level 0.
+                int slot = (int) ((tick >> WHEEL_BITS) & WHEEL_MASK);
+                CacheEntry entry = mWheel[1][slot];
+                mWheel[1][slot] = null;
+                while (entry != null) {
+                    CacheEntry next = entry.next;
+                    insertInWheel(entry);
+                    entry = next;
+                }
+            }
+            int slot = (int) (tick & WHEEL_MASK);
+            CacheEntry entry = mWheel[0][slot];
+            mWheel[0][slot] = null;
+            mWheelTick = tick;
+            while (entry != null) {
+                CacheEntry next = entry.next;
+                entry.prev = null;
+                entry.next = null;
+                if (entry.expiryTick <= tick) {
+                    expire(entry);
+                } else {
+                    insertInWheel(entry);
+                }
+                entry = next;
+            }
+        }
+    }
+
+    private void expire(CacheEntry entry) {
+        mANQPCache.remove(entry.key);
+        mSizeBytes -= entry.sizeBytes;
+        mExpirations++;
+        mChangedSincePersisted = true;
+    }
+
+    /**
+     * @return true if the cache changed since the last call to {@link #toPersistedData()}.
+     */
+    public boolean hasChangesToPersist() {
+        return mChangedSincePersisted;
+    }
+
+    /**
+     * Serialize the cache to a compact binary form, which can be restored by
+     * {@link #restoreFromPersistedData(byte[])} after a restart or a reboot.
+     *
+     * Each element is saved as its raw ANQP payload, which is parsed again by {@link ANQPParser}
+     * on restore. Entries with elements which were not created by the parser are skipped. The
+     * most recently used entries are saved first, up to {@link #MAX_PERSISTED_SIZE_BYTES}. Expiry
+     * times are saved as wall clock times, since the elapsed time restarts with a reboot.
+     *
+     * If the cache did not change since it was last persisted or restored, e.g. because it was
+     * only flushed, the same data is returned.
+     */
+    public @NonNull byte[] toPersistedData() {
+        if (!mChangedSincePersisted && mPersistedData != null) {
+            return mPersistedData;
+        }
+        mChangedSincePersisted = false;
+        mPersistedData = serializeEntries();
+        return mPersistedData;
+    }
+
+    private @NonNull byte[] serializeEntries() {
+        long now = mClock.getElapsedSinceBootMillis();
+        long wallClockNow = mClock.getWallClockMillis();
+        List<CacheEntry> entries = new ArrayList<>(mANQPCache.values());
+        ByteArrayOutputStream entriesBytes = new ByteArrayOutputStream();
+        int count = 0;
+        try {
+            for (int i = entries.size() - 1; i >= 0; i--) {
+                CacheEntry entry = entries.get(i);
+                if (entry.data.expired(now)) continue;
+                byte[] entryBytes = serializeEntry(entry,
+                        wallClockNow + entry.data.getExpiryTime() - now);
+                if (entryBytes == null) continue;
+                if (entriesBytes.size() + entryBytes.length > MAX_PERSISTED_SIZE_BYTES) break;
+                entriesBytes.write(entryBytes);
+                count++;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(entriesBytes.size() + 8);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(PERSISTED_DATA_VERSION);
+            out.writeInt(count);
+            entriesBytes.writeTo(out);
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // Not expected when writing to memory.
+            Log.e(TAG, "Failed to serialize the ANQP cache", e);
+            return new byte[0];
+        }
+    }
+
+    private static @Nullable byte[] serializeEntry(CacheEntry entry, long wallClockExpiryTime)
+            throws IOException {
+        Map<Constants.ANQPElementType, ANQPElement> elements = entry.data.getElements();
+        if (elements.size() > Byte.MAX_VALUE) return null;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        entry.key.writeTo(out);
+        out.writeLong(wallClockExpiryTime);
+        out.writeByte(elements.size());
+        for (Map.Entry<Constants.ANQPElementType, ANQPElement> element : elements.entrySet()) {
+            byte[] payload = element.getValue().getPayload();
+            if (payload == null || payload.length > 0xffff) return null;
+            if (!writeElementType(out, element.getKey())
+                    || !writeElementType(out, element.getValue().getPayloadType())) {
+                return null;
+            }
+            out.writeShort(payload.length);
+            out.write(payload);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Restore the entries saved by {@link #toPersistedData()}, except the expired ones and those
+     * already in the cache. Malformed data is ignored.
+     */
+    public void restoreFromPersistedData(@NonNull byte[] data) {
+        boolean changedSincePersisted = mChangedSincePersisted;
+        long now = mClock.getElapsedSinceBootMillis();
+        long wallClockNow = mClock.getWallClockMillis();
+        List<ANQPNetworkKey> keys = new ArrayList<>();
+        List<ANQPData> restored = new ArrayList<>();
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            int version = in.readInt();
+            if (version != PERSISTED_DATA_VERSION) {
+                Log.w(TAG, "Ignoring persisted ANQP cache with unknown version " + version);
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                ANQPNetworkKey key = ANQPNetworkKey.readFrom(in);
+                long remainingLifetime = in.readLong() - wallClockNow;
+                Map<Constants.ANQPElementType, ANQPElement> elements = new HashMap<>();
+                boolean valid = true;
+                int numElements = in.readByte();
+                for (int j = 0; j < numElements; j++) {
+                    Constants.ANQPElementType type = readElementType(in);
+                    Constants.ANQPElementType payloadType = readElementType(in);
+                    byte[] payload = new byte[in.readUnsignedShort()];
+                    in.readFully(payload);
+                    if (type == null || payloadType == null) {
+                        valid = false;
+                        continue;
+                    }
+                    try {
+                        elements.put(type, ANQPParser.parsePayload(payloadType, payload));
+                    } catch (IOException | BufferUnderflowException e) {
+                        valid = false;
+                    }
+                }
+                // Skip expired entries, and those with a lifetime extended by a clock change.
+                if (!valid || remainingLifetime <= 0
+                        || remainingLifetime > ANQPData.DATA_LIFETIME_MILLISECONDS
+                        || mANQPCache.containsKey(key)) {
+                    continue;
+                }
+                ANQPData anqpData = new ANQPData(mClock, elements);
+                anqpData.setExpiryTime(
+                        Math.min(anqpData.getExpiryTime(), now + remainingLifetime));
+                keys.add(key);
+                restored.add(anqpData);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to restore the persisted ANQP cache", e);
+            return;
+        }
+        // The most recently used entries were saved first.
+        for (int i = restored.size() - 1; i >= 0; i--) {
+            insertEntry(keys.get(i), restored.get(i));
+        }
+        mPersistedData = data;
+        // Entries added before the restore are not persisted yet.
+        mChangedSincePersisted = changedSincePersisted;
+    }
+
+    private static boolean writeElementType(DataOutputStream out,
+            @Nullable Constants.ANQPElementType type) throws IOException {
+        if (type == null) return false;
+        Integer id = Constants.getANQPElementID(type);
+        int namespace = ANQP_ELEMENT_NAMESPACE;
+        if (id == null) {
+            id = Constants.getHS20ElementID(type);
+            namespace = HS20_ELEMENT_NAMESPACE;
+        }
+        if (id == null) return false;
+        out.writeByte(namespace);
+        out.writeShort(id);
+        return true;
+    }
+
+    private static @Nullable Constants.ANQPElementType readElementType(DataInputStream in)
+            throws IOException {
+        int namespace = in.readUnsignedByte();
+        int id = in.readUnsignedShort();
+        return namespace == ANQP_ELEMENT_NAMESPACE
+                ? Constants.mapANQPElement(id) : Constants.mapHS20Element(id);
     }
 }
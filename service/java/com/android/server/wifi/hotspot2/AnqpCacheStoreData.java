@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.hotspot2;
+
+import android.annotation.Nullable;
+import android.util.Log;
+
+import com.android.server.wifi.WifiConfigStore;
+import com.android.server.wifi.util.WifiConfigStoreEncryptionUtil;
+import com.android.server.wifi.util.XmlUtil;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlSerializer;
+
+import java.io.IOException;
+
+/**
+ * Store data for the ANQP cache, so that cached ANQP elements survive a wifi restart or a
+ * reboot. The cache is saved in the shared store as a single blob, see
+ * {@link AnqpCache#toPersistedData()}.
+ */
+public class AnqpCacheStoreData implements WifiConfigStore.StoreData {
+    private static final String TAG = "AnqpCacheStoreData";
+    private static final String XML_TAG_SECTION_HEADER_ANQP_CACHE = "AnqpCache";
+    private static final String XML_TAG_CACHE_DATA = "CacheData";
+
+    private final DataSource mDataSource;
+
+    /**
+     * Interface define the data source for the ANQP cache store data.
+     */
+    public interface DataSource {
+        /**
+         * Retrieve the serialized ANQP cache.
+         *
+         * @return the serialized cache, or null if there is nothing to save
+         */
+        @Nullable byte[] getData();
+
+        /**
+         * Set the serialized ANQP cache read from the store.
+         *
+         * @param data the serialized cache
+         */
+        void setData(byte[] data);
+
+        /**
+         * @return true if the cache changed since it was last retrieved
+         */
+        boolean hasNewData();
+    }
+
+    AnqpCacheStoreData(DataSource dataSource) {
+        mDataSource = dataSource;
+    }
+
+    @Override
+    public void serializeData(XmlSerializer out,
+            @Nullable WifiConfigStoreEncryptionUtil encryptionUtil)
+            throws XmlPullParserException, IOException {
+        byte[] data = mDataSource.getData();
+        if (data != null) {
+            XmlUtil.writeNextValue(out, XML_TAG_CACHE_DATA, data);
+        }
+    }
+
+    @Override
+    public void deserializeData(XmlPullParser in, int outerTagDepth,
+            @WifiConfigStore.Version int version,
+            @Nullable WifiConfigStoreEncryptionUtil encryptionUtil)
+            throws XmlPullParserException, IOException {
+        // Ignore empty reads.
+        if (in == null) {
+            return;
+        }
+        while (!XmlUtil.isNextSectionEnd(in, outerTagDepth)) {
+            String[] valueName = new String[1];
+            Object value = XmlUtil.readCurrentValue(in, valueName);
+            if (valueName[0] == null) {
+                throw new XmlPullParserException("Missing value name");
+            }
+            switch (valueName[0]) {
+                case XML_TAG_CACHE_DATA:
+                    if (value instanceof byte[]) {
+                        mDataSource.setData((byte[]) value);
+                    }
+                    break;
+                default:
+                    Log.w(TAG, "Ignoring unknown value under ANQP cache data " + valueName[0]);
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public void resetData() {
+        // Nothing to reset, the cache is only ever filled from the store.
+    }
+
+    @Override
+    public boolean hasNewDataToSerialize() {
+        return mDataSource.hasNewData();
+    }
+
+    @Override
+    public String getName() {
+        return XML_TAG_SECTION_HEADER_ANQP_CACHE;
+    }
+
+    @Override
+    public @WifiConfigStore.StoreFileId int getStoreFileId() {
+        // Shared general store.
+        return WifiConfigStore.STORE_FILE_SHARED_GENERAL;
+    }
+}
@@ -20,6 +20,8 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
 
 public class NetworkDetail {
 
@@ -60,10 +62,8 @@ public class NetworkDetail {
     // True if the SSID is potentially from a hidden network
     private final boolean mIsHiddenSsid;
 
-    // BSS Load element:
-    private final int mStationCount;
-    private final int mChannelUtilization;
-    private final int mCapacity;
+    // Elements which are only parsed on first access, shared by copies of this instance.
+    private final LazyElements mLazyElements;
 
     //channel detailed information
    /*
@@ -89,7 +89,6 @@ public class NetworkDetail {
      */
     private final int mWifiMode;
     private final int mMaxRate;
-    private final int mMaxNumberSpatialStreams;
 
     /*
      * From Interworking element:
@@ -106,17 +105,6 @@ public class NetworkDetail {
     private final HSRelease mHSRelease;
     private final int mAnqpDomainID;
 
-    /*
-     * From beacon:
-     * mAnqpOICount is how many additional OIs are available through ANQP.
-     * mRoamingConsortiums is either null, if the element was not present, or is an array of
-     * 1, 2 or 3 longs in which the roaming consortium values occupy the LSBs.
-     */
-    private final int mAnqpOICount;
-    private final long[] mRoamingConsortiums;
-    private int mDtimInterval = -1;
-    private String mCountryCode;
-
     private final InformationElementUtil.ExtendedCapabilities mExtendedCapabilities;
 
     private final Map<Constants.ANQPElementType, ANQPElement> mANQPElements;
@@ -136,6 +124,149 @@ public class NetworkDetail {
     private int mMloLinkId = MloLink.INVALID_MLO_LINK_ID;
     private List<MloLink> mAffiliatedMloLinks = Collections.emptyList();
 
+    /**
+     * Index of the Information Elements whose parsing is deferred until first access. The
+     * parsed elements are memoized.
+     *
+     * The BSS Load, Roaming Consortium, Country, TIM and HT/VHT/HE Capabilities elements are
+     * not needed to build the {@link ScanResult}, and most of them are never read for most
+     * BSSIDs. A malformed lazily parsed element is treated as absent.
+     */
+    private static class LazyElements {
+        private final ScanResult.InformationElement[] mInfoElements;
+        // Index in |mInfoElements| of the last occurrence of each element, or -1 if absent.
+        private int mBssLoadIndex = -1;
+        private int mRoamingConsortiumIndex = -1;
+        private int mCountryIndex = -1;
+        private int mTimIndex = -1;
+        private int mHtCapabilitiesIndex = -1;
+        private int mVhtCapabilitiesIndex = -1;
+        private int mHeCapabilitiesIndex = -1;
+
+        private InformationElementUtil.BssLoad mBssLoad;
+        private InformationElementUtil.RoamingConsortium mRoamingConsortium;
+        private InformationElementUtil.Country mCountry;
+        private InformationElementUtil.TrafficIndicationMap mTrafficIndicationMap;
+        private int mMaxNumberSpatialStreams = -1;
+
+        LazyElements(ScanResult.InformationElement[] infoElements) {
+            mInfoElements = infoElements;
+        }
+
+        /**
+         * Record the index of an element if it is parsed lazily.
+         * @return true if the element is parsed lazily.
+         */
+        boolean index(ScanResult.InformationElement ie, int index) {
+            switch (ie.id) {
+                case ScanResult.InformationElement.EID_BSS_LOAD:
+                    mBssLoadIndex = index;
+                    return true;
+                case ScanResult.InformationElement.EID_ROAMING_CONSORTIUM:
+                    mRoamingConsortiumIndex = index;
+                    return true;
+                case ScanResult.InformationElement.EID_COUNTRY:
+                    mCountryIndex = index;
+                    return true;
+                case ScanResult.InformationElement.EID_TIM:
+                    mTimIndex = index;
+                    return true;
+                case ScanResult.InformationElement.EID_HT_CAPABILITIES:
+                    mHtCapabilitiesIndex = index;
+                    return true;
+                case ScanResult.InformationElement.EID_VHT_CAPABILITIES:
+                    mVhtCapabilitiesIndex = index;
+                    return true;
+                case ScanResult.InformationElement.EID_EXTENSION_PRESENT:
+                    if (ie.idExt == ScanResult.InformationElement.EID_EXT_HE_CAPABILITIES) {
+                        mHeCapabilitiesIndex = index;
+                        return true;
+                    }
+                    return false;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Parse the element at the provided index into |element|.
+         * @return |element|, reset to its initial state if the element is malformed.
+         */
+        private <T> T parse(int index, T element, Supplier<T> factory,
+                BiConsumer<T, ScanResult.InformationElement> parser) {
+            if (index < 0) {
+                return element;
+            }
+            try {
+                parser.accept(element, mInfoElements[index]);
+                return element;
+            } catch (IllegalArgumentException | BufferUnderflowException
+                    | ArrayIndexOutOfBoundsException e) {
+                Log.d(TAG, "Caught " + e + " parsing element " + mInfoElements[index].id);
+                return factory.get();
+            }
+        }
+
+        synchronized InformationElementUtil.BssLoad getBssLoad() {
+            if (mBssLoad == null) {
+                mBssLoad = parse(mBssLoadIndex, new InformationElementUtil.BssLoad(),
+                        InformationElementUtil.BssLoad::new,
+                        InformationElementUtil.BssLoad::from);
+            }
+            return mBssLoad;
+        }
+
+        synchronized InformationElementUtil.RoamingConsortium getRoamingConsortium() {
+            if (mRoamingConsortium == null) {
+                mRoamingConsortium = parse(mRoamingConsortiumIndex,
+                        new InformationElementUtil.RoamingConsortium(),
+                        InformationElementUtil.RoamingConsortium::new,
+                        InformationElementUtil.RoamingConsortium::from);
+            }
+            return mRoamingConsortium;
+        }
+
+        synchronized InformationElementUtil.Country getCountry() {
+            if (mCountry == null) {
+                mCountry = parse(mCountryIndex, new InformationElementUtil.Country(),
+                        InformationElementUtil.Country::new,
+                        InformationElementUtil.Country::from);
+            }
+            return mCountry;
+        }
+
+        synchronized InformationElementUtil.TrafficIndicationMap getTrafficIndicationMap() {
+            if (mTrafficIndicationMap == null) {
+                mTrafficIndicationMap = parse(mTimIndex,
+                        new InformationElementUtil.TrafficIndicationMap(),
+                        InformationElementUtil.TrafficIndicationMap::new,
+                        InformationElementUtil.TrafficIndicationMap::from);
+            }
+            return mTrafficIndicationMap;
+        }
+
+        synchronized int getMaxNumberSpatialStreams() {
+            if (mMaxNumberSpatialStreams < 0) {
+                InformationElementUtil.HtCapabilities htCapabilities = parse(
+                        mHtCapabilitiesIndex, new InformationElementUtil.HtCapabilities(),
+                        InformationElementUtil.HtCapabilities::new,
+                        InformationElementUtil.HtCapabilities::from);
+                InformationElementUtil.VhtCapabilities vhtCapabilities = parse(
+                        mVhtCapabilitiesIndex, new InformationElementUtil.VhtCapabilities(),
+                        InformationElementUtil.VhtCapabilities::new,
+                        InformationElementUtil.VhtCapabilities::from);
+                InformationElementUtil.HeCapabilities heCapabilities = parse(
+                        mHeCapabilitiesIndex, new InformationElementUtil.HeCapabilities(),
+                        InformationElementUtil.HeCapabilities::new,
+                        InformationElementUtil.HeCapabilities::from);
+                mMaxNumberSpatialStreams = Math.max(heCapabilities.getMaxNumberSpatialStreams(),
+                        Math.max(vhtCapabilities.getMaxNumberSpatialStreams(),
+                                htCapabilities.getMaxNumberSpatialStreams()));
+            }
+            return mMaxNumberSpatialStreams;
+        }
+    }
+
     public NetworkDetail(String bssid, ScanResult.InformationElement[] infoElements,
             List<String> anqpLines, int freq) {
         if (infoElements == null) {
@@ -148,14 +279,11 @@ public class NetworkDetail {
         boolean isHiddenSsid = false;
         byte[] ssidOctets = null;
 
-        InformationElementUtil.BssLoad bssLoad = new InformationElementUtil.BssLoad();
+        LazyElements lazyElements = new LazyElements(infoElements);
 
         InformationElementUtil.Interworking interworking =
                 new InformationElementUtil.Interworking();
 
-        InformationElementUtil.RoamingConsortium roamingConsortium =
-                new InformationElementUtil.RoamingConsortium();
-
         InformationElementUtil.Vsa vsa = new InformationElementUtil.Vsa();
 
         InformationElementUtil.HtOperation htOperation = new InformationElementUtil.HtOperation();
@@ -165,12 +293,6 @@ public class NetworkDetail {
         InformationElementUtil.EhtOperation ehtOperation =
                 new InformationElementUtil.EhtOperation();
 
-        InformationElementUtil.HtCapabilities htCapabilities =
-                new InformationElementUtil.HtCapabilities();
-        InformationElementUtil.VhtCapabilities vhtCapabilities =
-                new InformationElementUtil.VhtCapabilities();
-        InformationElementUtil.HeCapabilities heCapabilities =
-                new InformationElementUtil.HeCapabilities();
         InformationElementUtil.EhtCapabilities ehtCapabilities =
                 new InformationElementUtil.EhtCapabilities();
         InformationElementUtil.Rnr rnr =
@@ -180,12 +302,6 @@ public class NetworkDetail {
         InformationElementUtil.ExtendedCapabilities extendedCapabilities =
                 new InformationElementUtil.ExtendedCapabilities();
 
-        InformationElementUtil.Country country =
-                new InformationElementUtil.Country();
-
-        InformationElementUtil.TrafficIndicationMap trafficIndicationMap =
-                new InformationElementUtil.TrafficIndicationMap();
-
         InformationElementUtil.SupportedRates supportedRates =
                 new InformationElementUtil.SupportedRates();
         InformationElementUtil.SupportedRates extendedSupportedRates =
@@ -195,45 +311,31 @@ public class NetworkDetail {
 
         ArrayList<Integer> iesFound = new ArrayList<Integer>();
         try {
-            for (ScanResult.InformationElement ie : infoElements) {
+            for (int i = 0; i < infoElements.length; i++) {
+                ScanResult.InformationElement ie = infoElements[i];
                 iesFound.add(ie.id);
+                if (lazyElements.index(ie, i)) {
+                    continue;
+                }
                 switch (ie.id) {
                     case ScanResult.InformationElement.EID_SSID:
                         ssidOctets = ie.bytes;
                         break;
-                    case ScanResult.InformationElement.EID_BSS_LOAD:
-                        bssLoad.from(ie);
-                        break;
                     case ScanResult.InformationElement.EID_HT_OPERATION:
                         htOperation.from(ie);
                         break;
                     case ScanResult.InformationElement.EID_VHT_OPERATION:
                         vhtOperation.from(ie);
                         break;
-                    case ScanResult.InformationElement.EID_HT_CAPABILITIES:
-                        htCapabilities.from(ie);
-                        break;
-                    case ScanResult.InformationElement.EID_VHT_CAPABILITIES:
-                        vhtCapabilities.from(ie);
-                        break;
                     case ScanResult.InformationElement.EID_INTERWORKING:
                         interworking.from(ie);
                         break;
-                    case ScanResult.InformationElement.EID_ROAMING_CONSORTIUM:
-                        roamingConsortium.from(ie);
-                        break;
                     case ScanResult.InformationElement.EID_VSA:
                         vsa.from(ie);
                         break;
                     case ScanResult.InformationElement.EID_EXTENDED_CAPS:
                         extendedCapabilities.from(ie);
                         break;
-                    case ScanResult.InformationElement.EID_COUNTRY:
-                        country.from(ie);
-                        break;
-                    case ScanResult.InformationElement.EID_TIM:
-                        trafficIndicationMap.from(ie);
-                        break;
                     case ScanResult.InformationElement.EID_SUPPORTED_RATES:
                         supportedRates.from(ie);
                         break;
@@ -248,9 +350,6 @@ public class NetworkDetail {
                             case ScanResult.InformationElement.EID_EXT_HE_OPERATION:
                                 heOperation.from(ie);
                                 break;
-                            case ScanResult.InformationElement.EID_EXT_HE_CAPABILITIES:
-                                heCapabilities.from(ie);
-                                break;
                             case ScanResult.InformationElement.EID_EXT_EHT_OPERATION:
                                 ehtOperation.from(ie);
                                 break;
@@ -314,9 +413,7 @@ public class NetworkDetail {
         mSSID = ssid;
         mHESSID = interworking.hessid;
         mIsHiddenSsid = isHiddenSsid;
-        mStationCount = bssLoad.stationCount;
-        mChannelUtilization = bssLoad.channelUtilization;
-        mCapacity = bssLoad.capacity;
+        mLazyElements = lazyElements;
         mAnt = interworking.ant;
         mInternet = interworking.internet;
         mHSRelease = vsa.hsRelease;
@@ -325,8 +422,6 @@ public class NetworkDetail {
         mMboCellularDataAware = vsa.IsMboApCellularDataAware;
         mOceSupported = vsa.IsOceCapable;
         mMboAssociationDisallowedReasonCode = vsa.mboAssociationDisallowedReasonCode;
-        mAnqpOICount = roamingConsortium.anqpOICount;
-        mRoamingConsortiums = roamingConsortium.getRoamingConsortiums();
         mExtendedCapabilities = extendedCapabilities;
         mANQPElements = null;
         //set up channel info
@@ -387,19 +482,6 @@ public class NetworkDetail {
         mCenterfreq0 = centerFreq0;
         mCenterfreq1 = centerFreq1;
 
-        if (country.isValid()) {
-            mCountryCode = country.getCountryCode();
-        }
-
-        // If trafficIndicationMap is not valid, mDtimPeriod will be negative
-        if (trafficIndicationMap.isValid()) {
-            mDtimInterval = trafficIndicationMap.mDtimPeriod;
-        }
-
-        mMaxNumberSpatialStreams = Math.max(heCapabilities.getMaxNumberSpatialStreams(),
-                Math.max(vhtCapabilities.getMaxNumberSpatialStreams(),
-                htCapabilities.getMaxNumberSpatialStreams()));
-
         int maxRateA = 0;
         int maxRateB = 0;
         // If we got some Extended supported rates, consider them, if not default to 0
@@ -447,7 +529,7 @@ public class NetworkDetail {
                     + mPrimaryFreq + " Centerfreq0: " + mCenterfreq0 + " Centerfreq1: "
                     + mCenterfreq1 + (extendedCapabilities.is80211McRTTResponder()
                     ? " Support RTT responder" : " Do not support RTT responder")
-                    + " MaxNumberSpatialStreams: " + mMaxNumberSpatialStreams
+                    + " MaxNumberSpatialStreams: " + getMaxNumberSpatialStreams()
                     + " MboAssociationDisallowedReasonCode: "
                     + mMboAssociationDisallowedReasonCode);
             Log.v("WifiMode", mSSID
@@ -484,15 +566,11 @@ public class NetworkDetail {
         mIsHiddenSsid = base.mIsHiddenSsid;
         mBSSID = base.mBSSID;
         mHESSID = base.mHESSID;
-        mStationCount = base.mStationCount;
-        mChannelUtilization = base.mChannelUtilization;
-        mCapacity = base.mCapacity;
+        mLazyElements = base.mLazyElements;
         mAnt = base.mAnt;
         mInternet = base.mInternet;
         mHSRelease = base.mHSRelease;
         mAnqpDomainID = base.mAnqpDomainID;
-        mAnqpOICount = base.mAnqpOICount;
-        mRoamingConsortiums = base.mRoamingConsortiums;
         mExtendedCapabilities =
                 new InformationElementUtil.ExtendedCapabilities(base.mExtendedCapabilities);
         mANQPElements = anqpElements;
@@ -500,11 +578,8 @@ public class NetworkDetail {
         mPrimaryFreq = base.mPrimaryFreq;
         mCenterfreq0 = base.mCenterfreq0;
         mCenterfreq1 = base.mCenterfreq1;
-        mDtimInterval = base.mDtimInterval;
-        mCountryCode = base.mCountryCode;
         mWifiMode = base.mWifiMode;
         mMaxRate = base.mMaxRate;
-        mMaxNumberSpatialStreams = base.mMaxNumberSpatialStreams;
         mMboSupported = base.mMboSupported;
         mMboCellularDataAware = base.mMboCellularDataAware;
         mOceSupported = base.mOceSupported;
@@ -522,7 +597,7 @@ public class NetworkDetail {
     }
 
     public boolean has80211uInfo() {
-        return mAnt != null || mRoamingConsortiums != null || mHSRelease != null;
+        return mAnt != null || getRoamingConsortiums() != null || mHSRelease != null;
     }
 
     public boolean hasInterworking() {
@@ -553,15 +628,15 @@ public class NetworkDetail {
     }
 
     public int getStationCount() {
-        return mStationCount;
+        return mLazyElements.getBssLoad().stationCount;
     }
 
     public int getChannelUtilization() {
-        return mChannelUtilization;
+        return mLazyElements.getBssLoad().channelUtilization;
     }
 
     public int getCapacity() {
-        return mCapacity;
+        return mLazyElements.getBssLoad().capacity;
     }
 
     public boolean isInterworking() {
@@ -592,12 +667,19 @@ public class NetworkDetail {
         return osuProviders != null ? ((RawByteElement) osuProviders).getPayload() : null;
     }
 
+    /**
+     * @return how many additional OIs are available through ANQP.
+     */
     public int getAnqpOICount() {
-        return mAnqpOICount;
+        return mLazyElements.getRoamingConsortium().anqpOICount;
     }
 
+    /**
+     * @return null if the Roaming Consortium element was not present, or an array of 1, 2 or 3
+     * longs in which the roaming consortium values occupy the LSBs.
+     */
     public long[] getRoamingConsortiums() {
-        return mRoamingConsortiums;
+        return mLazyElements.getRoamingConsortium().getRoamingConsortiums();
     }
 
     public Map<Constants.ANQPElementType, ANQPElement> getANQPElements() {
@@ -621,15 +703,19 @@ public class NetworkDetail {
     }
 
     public int getMaxNumberSpatialStreams() {
-        return mMaxNumberSpatialStreams;
+        return mLazyElements.getMaxNumberSpatialStreams();
     }
 
     public int getDtimInterval() {
-        return mDtimInterval;
+        // If the TIM element is not valid, the DTIM period will be negative
+        InformationElementUtil.TrafficIndicationMap trafficIndicationMap =
+                mLazyElements.getTrafficIndicationMap();
+        return trafficIndicationMap.isValid() ? trafficIndicationMap.mDtimPeriod : -1;
     }
 
     public String getCountryCode() {
-        return mCountryCode;
+        InformationElementUtil.Country country = mLazyElements.getCountry();
+        return country.isValid() ? country.getCountryCode() : null;
     }
 
     public boolean is80211McResponderSupport() {
@@ -676,12 +762,13 @@ public class NetworkDetail {
         return "NetworkInfo{SSID='" + mSSID
                 + "', HESSID=" + Utils.macToSimpleString(mHESSID)
                 + ", BSSID=" + Utils.macToSimpleString(mBSSID)
-                + ", StationCount=" + mStationCount
-                + ", ChannelUtilization=" + mChannelUtilization
-                + ", Capacity=" + mCapacity
+                + ", StationCount=" + getStationCount()
+                + ", ChannelUtilization=" + getChannelUtilization()
+                + ", Capacity=" + getCapacity()
                 + ", Ant=" + mAnt + ", Internet=" + mInternet + ", HSRelease="
-                + mHSRelease + ", AnqpDomainID" + mAnqpDomainID + ", AnqpOICount" + mAnqpOICount
-                + ", RoamingConsortiums=" + Utils.roamingConsortiumsToString(mRoamingConsortiums)
+                + mHSRelease + ", AnqpDomainID" + mAnqpDomainID + ", AnqpOICount"
+                + getAnqpOICount() + ", RoamingConsortiums="
+                + Utils.roamingConsortiumsToString(getRoamingConsortiums())
                 + "}";
     }
 
@@ -704,7 +791,7 @@ public class NetworkDetail {
     public boolean isBeaconFrame() {
         // Beacon frames have a 'Traffic Indication Map' Information element
         // Probe Responses do not. This is indicated by a DTIM period > 0
-        return mDtimInterval > 0;
+        return getDtimInterval() > 0;
     }
 
     /**
@@ -125,6 +125,8 @@ public class PasspointManager {
     private final PasspointObjectFactory mObjectFactory;
 
     private final Map<String, PasspointProvider> mProviders;
+    // Index of mProviders by the ANQP and IE data they can match.
+    private final PasspointMatchIndex mMatchIndex = new PasspointMatchIndex();
     private final AnqpCache mAnqpCache;
     private final ANQPRequestManager mAnqpRequestManager;
     private final WifiConfigManager mWifiConfigManager;
@@ -183,6 +185,12 @@ public class PasspointManager {
                 mWifiMetrics.incrementTotalNumberOfPasspointConnectionsWithVenueUrl();
             }
 
+            // The raw payloads are only needed to persist the cache.
+            if (!isAnqpCachePersistenceEnabled()) {
+                for (ANQPElement element : anqpElements.values()) {
+                    element.discardPayload();
+                }
+            }
             // Add new entry to the cache.
             mAnqpCache.addOrUpdateEntry(anqpKey, anqpElements);
         }
@@ -215,9 +223,11 @@ public class PasspointManager {
         @Override
         public void setProviders(List<PasspointProvider> providers) {
             mProviders.clear();
+            mMatchIndex.clear();
             for (PasspointProvider provider : providers) {
                 provider.enableVerboseLogging(mVerboseLoggingEnabled);
                 mProviders.put(provider.getConfig().getUniqueId(), provider);
+                mMatchIndex.addProvider(provider.getConfig().getUniqueId(), provider);
                 if (provider.getPackageName() != null) {
                     startTrackingAppOpsChange(provider.getPackageName(),
                             provider.getCreatorUid());
@@ -242,6 +252,33 @@ public class PasspointManager {
         }
     }
 
+    /**
+     * Data provider for the ANQP cache store data {@link AnqpCacheStoreData}. The cache is only
+     * saved and restored when ANQP cache persistence is enabled.
+     */
+    private class AnqpCacheDataSourceHandler implements AnqpCacheStoreData.DataSource {
+        @Override
+        public byte[] getData() {
+            return isAnqpCachePersistenceEnabled() ? mAnqpCache.toPersistedData() : null;
+        }
+
+        @Override
+        public void setData(byte[] data) {
+            if (isAnqpCachePersistenceEnabled()) {
+                mAnqpCache.restoreFromPersistedData(data);
+            }
+        }
+
+        @Override
+        public boolean hasNewData() {
+            return isAnqpCachePersistenceEnabled() && mAnqpCache.hasChangesToPersist();
+        }
+    }
+
+    private boolean isAnqpCachePersistenceEnabled() {
+        return mWifiInjector.getDeviceConfigFacade().isAnqpCachePersistenceEnabled();
+    }
+
     /**
      * Listener for app-ops changes for apps to remove the corresponding Passpoint profiles.
      */
@@ -386,6 +423,8 @@ public class PasspointManager {
                 mKeyStore, mWifiCarrierInfoManager, new UserDataSourceHandler(), clock));
         wifiConfigStore.registerStoreData(objectFactory.makePasspointConfigSharedStoreData(
                 new SharedDataSourceHandler()));
+        wifiConfigStore.registerStoreData(objectFactory.makeAnqpCacheStoreData(
+                new AnqpCacheDataSourceHandler()));
         mPasspointProvisioner = objectFactory.makePasspointProvisioner(context, wifiNative,
                 this, wifiMetrics);
         ActivityManager activityManager = context.getSystemService(ActivityManager.class);
@@ -560,6 +599,7 @@ public class PasspointManager {
                     + " and unique ID: " + config.getUniqueId());
             old.uninstallCertsAndKeys();
             mProviders.remove(config.getUniqueId());
+            mMatchIndex.removeProvider(config.getUniqueId());
             // Keep the user connect choice and AnonymousIdentity
             newProvider.setUserConnectChoice(old.getConnectChoice(), old.getConnectChoiceRssi());
             newProvider.setAnonymousIdentity(old.getAnonymousIdentity());
@@ -575,6 +615,7 @@ public class PasspointManager {
         }
         newProvider.enableVerboseLogging(mVerboseLoggingEnabled);
         mProviders.put(config.getUniqueId(), newProvider);
+        mMatchIndex.addProvider(config.getUniqueId(), newProvider);
         if (!isFromSuggestion) {
             // Suggestions will be handled by the WifiNetworkSuggestionsManager
             mWifiConfigManager.saveToStore(true /* forceWrite */);
@@ -625,6 +666,7 @@ public class PasspointManager {
         }
         String uniqueId = provider.getConfig().getUniqueId();
         mProviders.remove(uniqueId);
+        mMatchIndex.removeProvider(uniqueId);
         mWifiConfigManager.removeConnectChoiceFromAllNetworks(uniqueId);
         if (!provider.isFromSuggestion()) {
             // Suggestions will be handled by the WifiNetworkSuggestionsManager
@@ -926,17 +968,25 @@ public class PasspointManager {
         if (anqpEntry == null) {
             if (anqpRequestAllowed) {
                 mAnqpRequestManager.requestANQPElements(bssid, anqpKey,
-                        roamingConsortium.anqpOICount > 0, vsa.hsRelease);
+                        roamingConsortium.anqpOICount > 0, vsa.hsRelease, scanResult.level);
             }
             Log.d(TAG, "ANQP entry not found for: " + anqpKey);
             return allMatches;
         }
         boolean anyProviderUpdated = false;
+        // Only the providers which may match the AP need to be matched when the index is used.
+        Set<PasspointProvider> candidates =
+                mWifiInjector.getDeviceConfigFacade().isPasspointMatchIndexEnabled()
+                        ? mMatchIndex.getCandidates(anqpEntry.getElements(), roamingConsortium)
+                        : null;
         for (Map.Entry<String, PasspointProvider> entry : mProviders.entrySet()) {
             PasspointProvider provider = entry.getValue();
             if (provider.tryUpdateCarrierId()) {
                 anyProviderUpdated = true;
             }
+            if (candidates != null && !candidates.contains(provider)) {
+                continue;
+            }
             if (mVerboseLoggingEnabled) {
                 Log.d(TAG, "Matching provider " + provider.getConfig().getHomeSp().getFqdn()
                         + " with "
@@ -1315,6 +1365,7 @@ public class PasspointManager {
         }
         pw.println("PasspointManager - Providers End ---");
         pw.println("PasspointManager - Next provider ID to be assigned " + mProviderIndex);
+        mMatchIndex.dump(pw);
         mAnqpCache.dump(pw);
         mAnqpRequestManager.dump(pw);
     }
@@ -1366,6 +1417,7 @@ public class PasspointManager {
                 enterpriseConfig.getClientCertificateAlias(), null, false, false, mClock);
         provider.enableVerboseLogging(mVerboseLoggingEnabled);
         mProviders.put(passpointConfig.getUniqueId(), provider);
+        mMatchIndex.addProvider(passpointConfig.getUniqueId(), provider);
         return true;
     }
 
@@ -1445,6 +1497,7 @@ public class PasspointManager {
     public void clearAnqpRequestsAndFlushCache() {
         mAnqpRequestManager.clear();
         mAnqpCache.flush();
+        mAnqpCache.discardPersistedData();
         mProviders.values().stream().forEach(p -> p.clearProviderBlock());
     }
 
@@ -0,0 +1,369 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.hotspot2;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+import android.net.wifi.hotspot2.PasspointConfiguration;
+import android.net.wifi.hotspot2.pps.Credential;
+import android.net.wifi.hotspot2.pps.HomeSp;
+import android.text.TextUtils;
+
+import com.android.server.wifi.hotspot2.anqp.ANQPElement;
+import com.android.server.wifi.hotspot2.anqp.CellularNetwork;
+import com.android.server.wifi.hotspot2.anqp.Constants.ANQPElementType;
+import com.android.server.wifi.hotspot2.anqp.DomainNameElement;
+import com.android.server.wifi.hotspot2.anqp.NAIRealmData;
+import com.android.server.wifi.hotspot2.anqp.NAIRealmElement;
+import com.android.server.wifi.hotspot2.anqp.RoamingConsortiumElement;
+import com.android.server.wifi.hotspot2.anqp.ThreeGPPNetworkElement;
+import com.android.server.wifi.util.InformationElementUtil.RoamingConsortium;
+
+import java.io.PrintWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the Passpoint providers by the ANQP and IE data they can match, used to find the few
+ * providers which may match an AP without calling {@link PasspointProvider#match} on all of
+ * them.
+ *
+ * Providers are indexed by:
+ * - their home and roaming consortium OIs, looked up with the OIs of the Roaming Consortium
+ *   ANQP element and IE.
+ * - their FQDN and other home partners, in a tree of domain labels, looked up with the domains
+ *   of the Domain Name ANQP element.
+ * - their credential realm, in a tree of domain labels, looked up with the realms of the NAI
+ *   Realm ANQP element.
+ * - the MCC-MNC prefix of their SIM credential IMSI, looked up with the PLMNs of the 3GPP
+ *   Network ANQP element and the 3GPP domains of the Domain Name ANQP element.
+ *
+ * The lookup returns a superset of the matching providers: {@link PasspointProvider#match}
+ * still has to be called on each candidate. Providers without a configuration are always
+ * returned as candidates. Providers are compared by identity, since {@link PasspointProvider}
+ * equality is based on the configuration content.
+ *
+ * Note: This class is not thread-safe.
+ */
+public class PasspointMatchIndex {
+    // Length of the MCC-MNC prefix which all the PLMNs matching an IMSI share.
+    private static final int MCC_MNC_KEY_LENGTH = 5;
+
+    private final Map<String, IndexedProvider> mProviders = new HashMap<>();
+    private final Set<PasspointProvider> mUnindexedProviders = newProviderSet();
+    private final Map<Long, Set<PasspointProvider>> mProvidersByOi = new HashMap<>();
+    private final Map<String, Set<PasspointProvider>> mProvidersByMccMnc = new HashMap<>();
+    private final DomainLabel mDomainTree = new DomainLabel();
+    private final DomainLabel mRealmTree = new DomainLabel();
+
+    /**
+     * Keys under which a provider is indexed, kept to remove the provider from the index.
+     */
+    private static class IndexedProvider {
+        public final PasspointProvider provider;
+        public final Set<Long> ois = new HashSet<>();
+        public final Set<String> domains = new HashSet<>();
+        public String realm;
+        public String mccMnc;
+
+        IndexedProvider(PasspointProvider provider) {
+            this.provider = provider;
+        }
+    }
+
+    /**
+     * Node of a tree of domain labels, which holds the providers indexed under the domain made of
+     * the labels from the root to the node.  The root holds the top level domains, e.g. the
+     * domain "android.google.com" is indexed as: [com] -> [google] -> [android].
+     */
+    private static class DomainLabel {
+        public final Map<String, DomainLabel> subDomains = new HashMap<>();
+        public final Set<PasspointProvider> providers = newProviderSet();
+
+        /**
+         * Index a provider under the domain made of |labels|, from the top level domain.
+         */
+        public void add(List<String> labels, PasspointProvider provider) {
+            DomainLabel node = this;
+            for (String label : labels) {
+                DomainLabel subDomain = node.subDomains.get(label);
+                if (subDomain == null) {
+                    subDomain = new DomainLabel();
+                    node.subDomains.put(label, subDomain);
+                }
+                node = subDomain;
+            }
+            node.providers.add(provider);
+        }
+
+        /**
+         * Remove a provider indexed under the domain made of |labels|, and the nodes left empty.
+         *
+         * @return true if this node is left empty
+         */
+        public boolean remove(List<String> labels, int index, PasspointProvider provider) {
+            if (index == labels.size()) {
+                providers.remove(provider);
+            } else {
+                DomainLabel subDomain = subDomains.get(labels.get(index));
+                if (subDomain != null && subDomain.remove(labels, index + 1, provider)) {
+                    subDomains.remove(labels.get(index));
+                }
+            }
+            return providers.isEmpty() && subDomains.isEmpty();
+        }
+
+        /**
+         * Collect the providers indexed under the domain made of |labels| or any of its parent
+         * domains, i.e. the providers the domain is a sub-domain of.
+         */
+        public void collect(List<String> labels, Set<PasspointProvider> out) {
+            DomainLabel node = this;
+            for (String label : labels) {
+                node = node.subDomains.get(label);
+                if (node == null) {
+                    return;
+                }
+                out.addAll(node.providers);
+            }
+        }
+    }
+
+    /**
+     * Add a provider to the index, replacing any provider with the same unique ID.
+     *
+     * @param uniqueId The unique ID of the provider's configuration
+     * @param provider The provider to add
+     */
+    public void addProvider(@NonNull String uniqueId, @NonNull PasspointProvider provider) {
+        removeProvider(uniqueId);
+        IndexedProvider indexed = new IndexedProvider(provider);
+        mProviders.put(uniqueId, indexed);
+        PasspointConfiguration config = provider.getConfig();
+        if (config == null || config.getHomeSp() == null || config.getCredential() == null) {
+            mUnindexedProviders.add(provider);
+            return;
+        }
+
+        HomeSp homeSp = config.getHomeSp();
+        addOis(indexed, homeSp.getMatchAllOis());
+        addOis(indexed, homeSp.getMatchAnyOis());
+        addOis(indexed, homeSp.getRoamingConsortiumOis());
+        for (long oi : indexed.ois) {
+            mProvidersByOi.computeIfAbsent(oi, k -> newProviderSet()).add(provider);
+        }
+
+        addDomain(indexed, homeSp.getFqdn());
+        if (homeSp.getOtherHomePartners() != null) {
+            for (String otherHomePartner : homeSp.getOtherHomePartners()) {
+                addDomain(indexed, otherHomePartner);
+            }
+        }
+        for (String domain : indexed.domains) {
+            mDomainTree.add(Utils.splitDomain(domain), provider);
+        }
+
+        Credential credential = config.getCredential();
+        if (!TextUtils.isEmpty(credential.getRealm())) {
+            indexed.realm = credential.getRealm();
+            mRealmTree.add(Utils.splitDomain(indexed.realm), provider);
+        }
+
+        if (credential.getSimCredential() != null) {
+            indexed.mccMnc = getMccMncKey(credential.getSimCredential().getImsi());
+            if (indexed.mccMnc != null) {
+                mProvidersByMccMnc.computeIfAbsent(indexed.mccMnc, k -> newProviderSet())
+                        .add(provider);
+            }
+        }
+    }
+
+    /**
+     * Remove a provider from the index.
+     *
+     * @param uniqueId The unique ID of the provider's configuration
+     */
+    public void removeProvider(@NonNull String uniqueId) {
+        IndexedProvider indexed = mProviders.remove(uniqueId);
+        if (indexed == null) {
+            return;
+        }
+        PasspointProvider provider = indexed.provider;
+        mUnindexedProviders.remove(provider);
+        for (long oi : indexed.ois) {
+            removeFromMap(mProvidersByOi, oi, provider);
+        }
+        for (String domain : indexed.domains) {
+            mDomainTree.remove(Utils.splitDomain(domain), 0, provider);
+        }
+        if (indexed.realm != null) {
+            mRealmTree.remove(Utils.splitDomain(indexed.realm), 0, provider);
+        }
+        if (indexed.mccMnc != null) {
+            removeFromMap(mProvidersByMccMnc, indexed.mccMnc, provider);
+        }
+    }
+
+    /**
+     * Remove all the providers from the index.
+     */
+    public void clear() {
+        mProviders.clear();
+        mUnindexedProviders.clear();
+        mProvidersByOi.clear();
+        mProvidersByMccMnc.clear();
+        mDomainTree.subDomains.clear();
+        mRealmTree.subDomains.clear();
+    }
+
+    /**
+     * Find the providers which may match an AP with the given ANQP elements and Roaming
+     * Consortium IE.
+     *
+     * @param anqpElements The ANQP elements of the AP
+     * @param roamingConsortiumFromAp The Roaming Consortium IE of the AP
+     * @return the candidate providers, which include all the matching providers
+     */
+    public @NonNull Set<PasspointProvider> getCandidates(
+            @NonNull Map<ANQPElementType, ANQPElement> anqpElements,
+            @Nullable RoamingConsortium roamingConsortiumFromAp) {
+        Set<PasspointProvider> candidates = newProviderSet();
+        candidates.addAll(mUnindexedProviders);
+
+        RoamingConsortiumElement rcElement =
+                (RoamingConsortiumElement) anqpElements.get(ANQPElementType.ANQPRoamingConsortium);
+        if (rcElement != null) {
+            for (long oi : rcElement.getOIs()) {
+                addAll(candidates, mProvidersByOi.get(oi));
+            }
+        }
+        if (roamingConsortiumFromAp != null
+                && roamingConsortiumFromAp.getRoamingConsortiums() != null) {
+            for (long oi : roamingConsortiumFromAp.getRoamingConsortiums()) {
+                addAll(candidates, mProvidersByOi.get(oi));
+            }
+        }
+
+        DomainNameElement domainElement =
+                (DomainNameElement) anqpElements.get(ANQPElementType.ANQPDomName);
+        if (domainElement != null) {
+            for (String domain : domainElement.getDomains()) {
+                if (TextUtils.isEmpty(domain)) continue;
+                List<String> labels = Utils.splitDomain(domain);
+                mDomainTree.collect(labels, candidates);
+                addAll(candidates, mProvidersByMccMnc.get(getMccMncKey(Utils.getMccMnc(labels))));
+            }
+        }
+
+        NAIRealmElement realmElement =
+                (NAIRealmElement) anqpElements.get(ANQPElementType.ANQPNAIRealm);
+        if (realmElement != null) {
+            for (NAIRealmData realmData : realmElement.getRealmDataList()) {
+                for (String realm : realmData.getRealms()) {
+                    if (TextUtils.isEmpty(realm)) continue;
+                    mRealmTree.collect(Utils.splitDomain(realm), candidates);
+                }
+            }
+        }
+
+        ThreeGPPNetworkElement threeGppElement =
+                (ThreeGPPNetworkElement) anqpElements.get(ANQPElementType.ANQP3GPPNetwork);
+        if (threeGppElement != null) {
+            for (CellularNetwork network : threeGppElement.getNetworks()) {
+                for (String plmn : network.getPlmns()) {
+                    addAll(candidates, mProvidersByMccMnc.get(getMccMncKey(plmn)));
+                }
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * @return the number of providers in the index.
+     */
+    public int size() {
+        return mProviders.size();
+    }
+
+    /**
+     * Dump the current state of the index to the provided output stream.
+     *
+     * @param pw The output stream to write to
+     */
+    public void dump(PrintWriter pw) {
+        pw.println("PasspointMatchIndex: providers=" + mProviders.size()
+                + " unindexed=" + mUnindexedProviders.size()
+                + " ois=" + mProvidersByOi.size()
+                + " mccMncs=" + mProvidersByMccMnc.size()
+                + " topLevelDomains=" + mDomainTree.subDomains.size()
+                + " topLevelRealms=" + mRealmTree.subDomains.size());
+    }
+
+    private static Set<PasspointProvider> newProviderSet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    private static void addOis(IndexedProvider indexed, @Nullable long[] ois) {
+        if (ois == null) return;
+        for (long oi : ois) {
+            indexed.ois.add(oi);
+        }
+    }
+
+    private static void addDomain(IndexedProvider indexed, @Nullable String domain) {
+        if (!TextUtils.isEmpty(domain)) {
+            indexed.domains.add(domain);
+        }
+    }
+
+    /**
+     * Get the key under which the providers matching an IMSI or a PLMN are indexed.  A PLMN
+     * matches a provider's IMSI parameter only if the IMSI starts with it, see
+     * {@link com.android.server.wifi.IMSIParameter#matchesMccMnc(String)}, and a PLMN has at least
+     * 5 digits, so matching IMSIs and PLMNs share the same 5 first digits.
+     *
+     * @return the key, or null if the IMSI or PLMN can't match any other
+     */
+    private static @Nullable String getMccMncKey(@Nullable String imsiOrPlmn) {
+        if (imsiOrPlmn == null || imsiOrPlmn.length() < MCC_MNC_KEY_LENGTH) {
+            return null;
+        }
+        return imsiOrPlmn.substring(0, MCC_MNC_KEY_LENGTH);
+    }
+
+    private static void addAll(Set<PasspointProvider> out,
+            @Nullable Set<PasspointProvider> providers) {
+        if (providers != null) {
+            out.addAll(providers);
+        }
+    }
+
+    private static <K> void removeFromMap(Map<K, Set<PasspointProvider>> map, K key,
+            PasspointProvider provider) {
+        Set<PasspointProvider> providers = map.get(key);
+        if (providers == null) return;
+        providers.remove(provider);
+        if (providers.isEmpty()) {
+            map.remove(key);
+        }
+    }
+}
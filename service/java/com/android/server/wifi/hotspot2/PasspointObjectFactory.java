@@ -96,6 +96,15 @@ public class PasspointObjectFactory{
         return new PasspointConfigSharedStoreData(dataSource);
     }
 
+    /**
+     * Create a {@link AnqpCacheStoreData} instance.
+     * @param dataSource ANQP cache data source
+     * @return {@link AnqpCacheStoreData}
+     */
+    public AnqpCacheStoreData makeAnqpCacheStoreData(AnqpCacheStoreData.DataSource dataSource) {
+        return new AnqpCacheStoreData(dataSource);
+    }
+
     /**
      * Create a AnqpCache instance.
      *
@@ -1,10 +1,22 @@
 package com.android.server.wifi.hotspot2.anqp;
 
+import android.annotation.Nullable;
+
+import java.util.Collection;
+
 /**
  * Base class for an IEEE802.11u ANQP element.
  */
 public abstract class ANQPElement {
+    // Estimated memory overhead of an object, and of a reference to it, used by the
+    // getSizeBytes() implementations.
+    public static final int OBJECT_OVERHEAD_BYTES = 16;
+    public static final int REFERENCE_BYTES = 8;
+
     private final Constants.ANQPElementType mID;
+    // Type and raw bytes the element was parsed from by ANQPParser, if any.
+    private Constants.ANQPElementType mPayloadType;
+    private byte[] mPayload;
 
     protected ANQPElement(Constants.ANQPElementType id) {
         mID = id;
@@ -13,4 +25,75 @@ public abstract class ANQPElement {
     public Constants.ANQPElementType getID() {
         return mID;
     }
+
+    void setPayload(Constants.ANQPElementType payloadType, byte[] payload) {
+        mPayloadType = payloadType;
+        mPayload = payload;
+    }
+
+    /**
+     * @return the element type that {@link #getPayload()} is parsed as, or null if the element
+     *         was not created by {@link ANQPParser}.
+     */
+    public @Nullable Constants.ANQPElementType getPayloadType() {
+        return mPayloadType;
+    }
+
+    /**
+     * @return the raw payload the element was parsed from, or null if the element was not
+     *         created by {@link ANQPParser}. Parsing it again with {@link ANQPParser} yields an
+     *         equal element.
+     */
+    public @Nullable byte[] getPayload() {
+        return mPayload;
+    }
+
+    /**
+     * Release the raw payload the element was parsed from, when it does not need to be
+     * persisted. {@link #getPayload()} returns null afterwards.
+     */
+    public void discardPayload() {
+        mPayloadType = null;
+        mPayload = null;
+    }
+
+    /**
+     * @return the estimated memory used by the content of the element, excluding the retained
+     *         payload, see {@link #getPayload()}.
+     */
+    public abstract int getSizeBytes();
+
+    /**
+     * @return the estimated memory used by a string, or 0 if it is null.
+     */
+    public static int sizeOf(@Nullable String s) {
+        return s == null ? 0 : OBJECT_OVERHEAD_BYTES + 2 * s.length();
+    }
+
+    /**
+     * @return the estimated memory used by a byte array, or 0 if it is null.
+     */
+    public static int sizeOf(@Nullable byte[] bytes) {
+        return bytes == null ? 0 : OBJECT_OVERHEAD_BYTES + bytes.length;
+    }
+
+    /**
+     * @return the estimated memory used by a collection of strings, including the strings.
+     */
+    public static int sizeOfStrings(@Nullable Collection<String> strings) {
+        if (strings == null) return 0;
+        int size = sizeOfCollection(strings);
+        for (String s : strings) {
+            size += sizeOf(s);
+        }
+        return size;
+    }
+
+    /**
+     * @return the estimated memory used by a collection, excluding its elements.
+     */
+    public static int sizeOfCollection(@Nullable Collection<?> collection) {
+        return collection == null ? 0
+                : OBJECT_OVERHEAD_BYTES + collection.size() * REFERENCE_BYTES;
+    }
 }
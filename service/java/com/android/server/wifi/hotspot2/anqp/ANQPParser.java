@@ -57,6 +57,14 @@ public class ANQPParser {
      */
     public static ANQPElement parseElement(Constants.ANQPElementType infoID, ByteBuffer payload)
             throws ProtocolException {
+        byte[] rawPayload = getRemainingBytes(payload);
+        ANQPElement element = parseElementInternal(infoID, payload);
+        element.setPayload(infoID, rawPayload);
+        return element;
+    }
+
+    private static ANQPElement parseElementInternal(Constants.ANQPElementType infoID,
+            ByteBuffer payload) throws ProtocolException {
         switch (infoID) {
             case ANQPVenueName:
                 return VenueNameElement.parse(payload);
@@ -90,6 +98,37 @@ public class ANQPParser {
      */
     public static ANQPElement parseHS20Element(Constants.ANQPElementType infoID,
             ByteBuffer payload) throws ProtocolException {
+        byte[] rawPayload = getRemainingBytes(payload);
+        ANQPElement element = parseHS20ElementInternal(infoID, payload);
+        element.setPayload(infoID, rawPayload);
+        return element;
+    }
+
+    /**
+     * Parse an ANQP element from a raw payload retained by a previously parsed element, see
+     * {@link ANQPElement#getPayload()}.
+     *
+     * @param payloadType The element type the payload is parsed as
+     * @param payload The raw payload
+     * @return {@link com.android.server.wifi.hotspot2.anqp.ANQPElement}
+     * @throws BufferUnderflowException
+     * @throws ProtocolException
+     */
+    public static ANQPElement parsePayload(Constants.ANQPElementType payloadType,
+            byte[] payload) throws ProtocolException {
+        return Constants.getANQPElementID(payloadType) != null
+                ? parseElement(payloadType, ByteBuffer.wrap(payload))
+                : parseHS20Element(payloadType, ByteBuffer.wrap(payload));
+    }
+
+    private static byte[] getRemainingBytes(ByteBuffer payload) {
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static ANQPElement parseHS20ElementInternal(Constants.ANQPElementType infoID,
+            ByteBuffer payload) throws ProtocolException {
         switch (infoID) {
             case HSFriendlyName:
                 return HSFriendlyNameElement.parse(payload);
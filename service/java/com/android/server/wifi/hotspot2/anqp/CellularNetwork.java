@@ -111,6 +111,13 @@ public class CellularNetwork {
         return Collections.unmodifiableList(mPlmnList);
     }
 
+    /**
+     * @return the estimated memory used by this network, see {@link ANQPElement#getSizeBytes()}.
+     */
+    int getSizeBytes() {
+        return ANQPElement.OBJECT_OVERHEAD_BYTES + ANQPElement.sizeOfStrings(mPlmnList);
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (this == thatObject) {
@@ -67,6 +67,11 @@ public class DomainNameElement extends ANQPElement {
         return Collections.unmodifiableList(mDomains);
     }
 
+    @Override
+    public int getSizeBytes() {
+        return OBJECT_OVERHEAD_BYTES + sizeOfStrings(mDomains);
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (this == thatObject) {
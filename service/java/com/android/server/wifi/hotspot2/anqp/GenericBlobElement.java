@@ -24,4 +24,9 @@ public class GenericBlobElement extends ANQPElement {
     public String toString() {
         return "Element ID " + getID() + ": " + Utils.toHexString(mData);
     }
+
+    @Override
+    public int getSizeBytes() {
+        return OBJECT_OVERHEAD_BYTES + sizeOf(mData);
+    }
 }
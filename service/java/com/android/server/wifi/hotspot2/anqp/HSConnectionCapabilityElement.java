@@ -61,6 +61,15 @@ public class HSConnectionCapabilityElement extends ANQPElement {
         return Collections.unmodifiableList(mStatusList);
     }
 
+    @Override
+    public int getSizeBytes() {
+        int size = OBJECT_OVERHEAD_BYTES + sizeOfCollection(mStatusList);
+        for (ProtocolPortTuple tuple : mStatusList) {
+            size += tuple.getSizeBytes();
+        }
+        return size;
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (this == thatObject) {
@@ -94,6 +94,11 @@ public class HSIconFileElement extends ANQPElement {
         return new HSIconFileElement(status, iconType, iconData);
     }
 
+    @Override
+    public int getSizeBytes() {
+        return OBJECT_OVERHEAD_BYTES + Integer.BYTES + sizeOf(mIconType) + sizeOf(mIconData);
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (this == thatObject) {
@@ -92,6 +92,20 @@ public class HSOsuProvidersElement extends ANQPElement {
         return Collections.unmodifiableList(mProviders);
     }
 
+    @Override
+    public int getSizeBytes() {
+        int size = OBJECT_OVERHEAD_BYTES + sizeOfCollection(mProviders);
+        if (mOsuSsid != null) {
+            size += OBJECT_OVERHEAD_BYTES + sizeOf(mOsuSsid.getBytes());
+        }
+        if (mProviders != null) {
+            for (OsuProviderInfo provider : mProviders) {
+                size += provider.getSizeBytes();
+            }
+        }
+        return size;
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (this == thatObject) {
@@ -154,6 +154,11 @@ public class HSWanMetricsElement extends ANQPElement {
         return true;
     }
 
+    @Override
+    public int getSizeBytes() {
+        return OBJECT_OVERHEAD_BYTES + 5 * Integer.BYTES + 2 * Long.BYTES + 2;
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (this == thatObject) {
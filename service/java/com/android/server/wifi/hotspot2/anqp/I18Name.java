@@ -99,6 +99,15 @@ public class I18Name {
         return mText;
     }
 
+    /**
+     * @return the estimated memory used by this name, see {@link ANQPElement#getSizeBytes()}.
+     */
+    int getSizeBytes() {
+        // The locale is shared with other names in the same language.
+        return ANQPElement.OBJECT_OVERHEAD_BYTES + ANQPElement.REFERENCE_BYTES
+                + ANQPElement.sizeOf(mLanguage) + ANQPElement.sizeOf(mText);
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (this == thatObject) {
@@ -122,6 +122,11 @@ public class IPAddressTypeAvailabilityElement extends ANQPElement {
         return mV6Availability;
     }
 
+    @Override
+    public int getSizeBytes() {
+        return OBJECT_OVERHEAD_BYTES + 2 * Integer.BYTES;
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (this == thatObject) {
@@ -100,6 +100,16 @@ public class IconInfo {
         return mFileName;
     }
 
+    /**
+     * @return the estimated memory used by this icon info, see
+     *         {@link ANQPElement#getSizeBytes()}.
+     */
+    int getSizeBytes() {
+        return ANQPElement.OBJECT_OVERHEAD_BYTES + 2 * Integer.BYTES
+                + ANQPElement.sizeOf(mLanguage) + ANQPElement.sizeOf(mIconType)
+                + ANQPElement.sizeOf(mFileName);
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (this == thatObject) {
@@ -98,6 +98,19 @@ public class NAIRealmData {
         return Collections.unmodifiableList(mEAPMethods);
     }
 
+    /**
+     * @return the estimated memory used by this realm data, see
+     *         {@link ANQPElement#getSizeBytes()}.
+     */
+    int getSizeBytes() {
+        int size = ANQPElement.OBJECT_OVERHEAD_BYTES + ANQPElement.sizeOfStrings(mRealms)
+                + ANQPElement.sizeOfCollection(mEAPMethods);
+        for (EAPMethod method : mEAPMethods) {
+            size += method.getSizeBytes();
+        }
+        return size;
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (this == thatObject) {
@@ -69,6 +69,15 @@ public class NAIRealmElement extends ANQPElement {
         return Collections.unmodifiableList(mRealmDataList);
     }
 
+    @Override
+    public int getSizeBytes() {
+        int size = OBJECT_OVERHEAD_BYTES + sizeOfCollection(mRealmDataList);
+        for (NAIRealmData realmData : mRealmDataList) {
+            size += realmData.getSizeBytes();
+        }
+        return size;
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (this == thatObject) {
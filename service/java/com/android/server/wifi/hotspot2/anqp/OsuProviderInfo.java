@@ -215,6 +215,40 @@ public class OsuProviderInfo {
         return getI18String(mServiceDescriptions);
     }
 
+    /**
+     * @return the estimated memory used by this provider info, see
+     *         {@link ANQPElement#getSizeBytes()}.
+     */
+    int getSizeBytes() {
+        int size = ANQPElement.OBJECT_OVERHEAD_BYTES
+                + ANQPElement.sizeOf(mNetworkAccessIdentifier)
+                + ANQPElement.sizeOfCollection(mFriendlyNames.entrySet());
+        for (Map.Entry<String, String> name : mFriendlyNames.entrySet()) {
+            size += ANQPElement.OBJECT_OVERHEAD_BYTES + ANQPElement.sizeOf(name.getKey())
+                    + ANQPElement.sizeOf(name.getValue());
+        }
+        if (mServerUri != null) {
+            size += ANQPElement.OBJECT_OVERHEAD_BYTES + ANQPElement.sizeOf(mServerUri.toString());
+        }
+        if (mMethodList != null) {
+            size += ANQPElement.sizeOfCollection(mMethodList)
+                    + mMethodList.size() * (ANQPElement.OBJECT_OVERHEAD_BYTES + Integer.BYTES);
+        }
+        if (mIconInfoList != null) {
+            size += ANQPElement.sizeOfCollection(mIconInfoList);
+            for (IconInfo iconInfo : mIconInfoList) {
+                size += iconInfo.getSizeBytes();
+            }
+        }
+        if (mServiceDescriptions != null) {
+            size += ANQPElement.sizeOfCollection(mServiceDescriptions);
+            for (I18Name description : mServiceDescriptions) {
+                size += description.getSizeBytes();
+            }
+        }
+        return size;
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (this == thatObject) {
@@ -81,6 +81,13 @@ public class ProtocolPortTuple {
         return mStatus;
     }
 
+    /**
+     * @return the estimated memory used by this tuple, see {@link ANQPElement#getSizeBytes()}.
+     */
+    int getSizeBytes() {
+        return ANQPElement.OBJECT_OVERHEAD_BYTES + 3 * Integer.BYTES;
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (this == thatObject) {
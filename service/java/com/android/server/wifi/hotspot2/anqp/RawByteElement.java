@@ -51,6 +51,11 @@ public class RawByteElement extends ANQPElement {
         return mPayload;
     }
 
+    @Override
+    public int getSizeBytes() {
+        return OBJECT_OVERHEAD_BYTES + sizeOf(mPayload);
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (this == thatObject) {
@@ -64,6 +64,12 @@ public class RoamingConsortiumElement extends ANQPElement {
         return Collections.unmodifiableList(mOIs);
     }
 
+    @Override
+    public int getSizeBytes() {
+        return OBJECT_OVERHEAD_BYTES + sizeOfCollection(mOIs)
+                + mOIs.size() * (OBJECT_OVERHEAD_BYTES + Long.BYTES);
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (this == thatObject) {
@@ -90,6 +90,15 @@ public class ThreeGPPNetworkElement extends ANQPElement {
         return Collections.unmodifiableList(mNetworks);
     }
 
+    @Override
+    public int getSizeBytes() {
+        int size = OBJECT_OVERHEAD_BYTES + sizeOfCollection(mNetworks);
+        for (CellularNetwork network : mNetworks) {
+            size += network.getSizeBytes();
+        }
+        return size;
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (this == thatObject) {
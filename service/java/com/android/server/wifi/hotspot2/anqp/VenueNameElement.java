@@ -90,6 +90,15 @@ public class VenueNameElement extends ANQPElement {
         return Collections.unmodifiableList(mNames);
     }
 
+    @Override
+    public int getSizeBytes() {
+        int size = OBJECT_OVERHEAD_BYTES + sizeOfCollection(mNames);
+        for (I18Name name : mNames) {
+            size += name.getSizeBytes();
+        }
+        return size;
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (this == thatObject) {
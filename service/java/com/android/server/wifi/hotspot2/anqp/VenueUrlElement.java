@@ -96,6 +96,16 @@ public class VenueUrlElement extends ANQPElement {
         return mVenueUrls;
     }
 
+    @Override
+    public int getSizeBytes() {
+        int size = OBJECT_OVERHEAD_BYTES + sizeOfCollection(mVenueUrls.entrySet());
+        for (URL url : mVenueUrls.values()) {
+            // Each entry also holds a boxed venue name index.
+            size += 3 * OBJECT_OVERHEAD_BYTES + Integer.BYTES + sizeOf(url.toString());
+        }
+        return size;
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (this == thatObject) {
@@ -16,6 +16,8 @@
 
 package com.android.server.wifi.hotspot2.anqp.eap;
 
+import com.android.server.wifi.hotspot2.anqp.ANQPElement;
+
 /**
  * An Authentication parameter, part of the NAI Realm ANQP element, specified in
  * IEEE802.11-2012 section 8.4.4.10, table 8-188
@@ -38,4 +40,13 @@ public abstract class AuthParam {
     public int getAuthTypeID() {
         return mAuthTypeID;
     }
+
+    /**
+     * @return the estimated memory used by this parameter, see
+     *         {@link ANQPElement#getSizeBytes()}. Parameters are small fixed size objects by
+     *         default.
+     */
+    public int getSizeBytes() {
+        return ANQPElement.OBJECT_OVERHEAD_BYTES + 2 * Long.BYTES;
+    }
 }
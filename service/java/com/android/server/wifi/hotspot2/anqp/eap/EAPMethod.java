@@ -17,6 +17,7 @@
 package com.android.server.wifi.hotspot2.anqp.eap;
 
 import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.wifi.hotspot2.anqp.ANQPElement;
 
 import java.net.ProtocolException;
 import java.nio.BufferUnderflowException;
@@ -130,6 +131,21 @@ public class EAPMethod {
         return mEAPMethodID;
     }
 
+    /**
+     * @return the estimated memory used by this method, see {@link ANQPElement#getSizeBytes()}.
+     */
+    public int getSizeBytes() {
+        int size = ANQPElement.OBJECT_OVERHEAD_BYTES + Integer.BYTES
+                + ANQPElement.sizeOfCollection(mAuthParams.entrySet());
+        for (Set<AuthParam> params : mAuthParams.values()) {
+            size += 2 * ANQPElement.OBJECT_OVERHEAD_BYTES + ANQPElement.sizeOfCollection(params);
+            for (AuthParam param : params) {
+                size += param.getSizeBytes();
+            }
+        }
+        return size;
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (thatObject == this) {
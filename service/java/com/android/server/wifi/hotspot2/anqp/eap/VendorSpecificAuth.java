@@ -17,6 +17,7 @@
 package com.android.server.wifi.hotspot2.anqp.eap;
 
 import com.android.internal.annotations.VisibleForTesting;
+import com.android.server.wifi.hotspot2.anqp.ANQPElement;
 
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
@@ -56,6 +57,11 @@ public class VendorSpecificAuth extends AuthParam {
         return mData;
     }
 
+    @Override
+    public int getSizeBytes() {
+        return ANQPElement.OBJECT_OVERHEAD_BYTES + Integer.BYTES + ANQPElement.sizeOf(mData);
+    }
+
     @Override
     public boolean equals(Object thatObject) {
         if (thatObject == this) {
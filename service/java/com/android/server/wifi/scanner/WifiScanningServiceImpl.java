@@ -60,6 +60,7 @@ import com.android.internal.annotations.VisibleForTesting;
 import com.android.internal.util.Protocol;
 import com.android.internal.util.State;
 import com.android.internal.util.StateMachine;
+import com.android.modules.utils.ParceledListSlice;
 import com.android.modules.utils.build.SdkLevel;
 import com.android.server.wifi.ClientModeImpl;
 import com.android.server.wifi.Clock;
@@ -155,7 +156,7 @@ public class WifiScanningServiceImpl extends IWifiScanner.Stub {
             if (mChannelHelper == null) return new ChannelSpec[0][0];
             mChannelHelper.updateChannels();
             return mChannelHelper.getAvailableScanChannels(band);
-        }, new ChannelSpec[0][0]);
+        }, new ChannelSpec[0][0], TAG + "#getAvailableChannels");
 
         ArrayList<Integer> list = new ArrayList<>();
         for (int i = 0; i < channelSpecs.length; i++) {
@@ -432,7 +433,8 @@ public class WifiScanningServiceImpl extends IWifiScanner.Stub {
     }
 
     @Override
-    public List<ScanResult> getSingleScanResults(String packageName, String featureId) {
+    public ParceledListSlice<ScanResult> getSingleScanResults(String packageName,
+            String featureId) {
         localLog("get single scan result: package " + packageName);
         final int uid = Binder.getCallingUid();
         try {
@@ -442,10 +444,11 @@ public class WifiScanningServiceImpl extends IWifiScanner.Stub {
         } catch (SecurityException e) {
             localLog("getSingleScanResults: failed to authorize app: " + packageName + " uid "
                     + uid);
-            return new ArrayList<>();
+            return new ParceledListSlice<>(new ArrayList<>());
         }
-        return mWifiThreadRunner.call(() -> mSingleScanStateMachine.filterCachedScanResultsByAge(),
-                new ArrayList<ScanResult>());
+        return new ParceledListSlice<>(mWifiThreadRunner.call(
+                () -> mSingleScanStateMachine.filterCachedScanResultsByAge(),
+                new ArrayList<ScanResult>(), TAG + "#getSingleScanResults"));
     }
 
     @Override
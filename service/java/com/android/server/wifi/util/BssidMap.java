@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * A map keyed by BSSID strings, which stores the BSSIDs as 48-bit longs in a {@link LongHashMap}.
+ *
+ * Lookups parse the BSSID in place instead of hashing and comparing strings, and the map does
+ * not retain the key strings. BSSIDs are matched case-insensitively. Keys which are not valid
+ * MAC addresses in the "XX:XX:XX:XX:XX:XX" format are kept in a fallback map.
+ *
+ * Note: This class is not thread-safe.
+ */
+public class BssidMap<V> {
+    /** Value returned by {@link #bssidToLong(String)} for a malformed BSSID. */
+    public static final long INVALID_BSSID = -1;
+
+    private static final int BSSID_STRING_LENGTH = 17;
+
+    private final LongHashMap<V> mMap;
+    // Entries for keys which are not valid MAC addresses, created on first use.
+    private @Nullable HashMap<String, V> mInvalidBssidMap;
+
+    public BssidMap() {
+        mMap = new LongHashMap<>();
+    }
+
+    /**
+     * @param expectedSize number of entries the map can hold without being resized.
+     */
+    public BssidMap(int expectedSize) {
+        mMap = new LongHashMap<>(expectedSize);
+    }
+
+    /**
+     * Convert a BSSID string to a long, without allocating.
+     *
+     * @return the BSSID as a 48-bit value, or {@link #INVALID_BSSID} if it is malformed.
+     */
+    public static long bssidToLong(@Nullable String bssid) {
+        if (bssid == null || bssid.length() != BSSID_STRING_LENGTH) {
+            return INVALID_BSSID;
+        }
+        long value = 0;
+        for (int i = 0; i < BSSID_STRING_LENGTH; i++) {
+            char c = bssid.charAt(i);
+            if (i % 3 == 2) {
+                if (c != ':') return INVALID_BSSID;
+                continue;
+            }
+            int nibble = Character.digit(c, 16);
+            if (nibble < 0) return INVALID_BSSID;
+            value = (value << 4) | nibble;
+        }
+        return value;
+    }
+
+    /**
+     * @return the number of entries.
+     */
+    public int size() {
+        return mMap.size() + (mInvalidBssidMap == null ? 0 : mInvalidBssidMap.size());
+    }
+
+    /**
+     * @return true if the map has no entries.
+     */
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * @return the value for the provided BSSID, or null if there is none.
+     */
+    public @Nullable V get(@Nullable String bssid) {
+        long key = bssidToLong(bssid);
+        if (key != INVALID_BSSID) {
+            return mMap.get(key);
+        }
+        return mInvalidBssidMap == null ? null : mInvalidBssidMap.get(bssid);
+    }
+
+    /**
+     * @return true if the map has a value for the provided BSSID.
+     */
+    public boolean containsKey(@Nullable String bssid) {
+        long key = bssidToLong(bssid);
+        if (key != INVALID_BSSID) {
+            return mMap.containsKey(key);
+        }
+        return mInvalidBssidMap != null && mInvalidBssidMap.containsKey(bssid);
+    }
+
+    /**
+     * Associate the provided value with the BSSID, replacing any previous value.
+     *
+     * @return the previous value for the BSSID, or null if there was none.
+     */
+    public @Nullable V put(@Nullable String bssid, @NonNull V value) {
+        long key = bssidToLong(bssid);
+        if (key != INVALID_BSSID) {
+            return mMap.put(key, value);
+        }
+        if (mInvalidBssidMap == null) {
+            mInvalidBssidMap = new HashMap<>();
+        }
+        return mInvalidBssidMap.put(bssid, value);
+    }
+
+    /**
+     * Remove the value for the provided BSSID.
+     *
+     * @return the removed value, or null if there was none.
+     */
+    public @Nullable V remove(@Nullable String bssid) {
+        long key = bssidToLong(bssid);
+        if (key != INVALID_BSSID) {
+            return mMap.remove(key);
+        }
+        return mInvalidBssidMap == null ? null : mInvalidBssidMap.remove(bssid);
+    }
+
+    /**
+     * Remove all the entries.
+     */
+    public void clear() {
+        mMap.clear();
+        mInvalidBssidMap = null;
+    }
+
+    /**
+     * @return a read-only collection of the values, in no particular order. This is a view of
+     *         the map unless it holds malformed BSSIDs, in which case it is a copy.
+     */
+    public @NonNull Collection<V> values() {
+        if (mInvalidBssidMap == null) {
+            return mMap.values();
+        }
+        List<V> values = new ArrayList<>(size());
+        values.addAll(mMap.values());
+        values.addAll(mInvalidBssidMap.values());
+        return values;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A metrics counter which can be incremented from any thread without taking a lock.
+ *
+ * Increments are striped across cells by {@link LongAdder}, so concurrent callers do not contend
+ * on a single memory location. Reading and clearing are meant to be done by the owner under its
+ * own lock, when the counter is folded into a proto: {@link #get()} reports the increments since
+ * the last {@link #clear()}, and {@link #clear()} only drops the increments reported by the last
+ * {@link #get()}, so increments racing with a dump are never lost.
+ */
+public class ConcurrentCounter {
+    private final LongAdder mTotal = new LongAdder();
+    // Total at the last clear().
+    private long mClearedTotal = 0;
+    // Total at the last get().
+    private long mReportedTotal = 0;
+
+    /**
+     * Increment the counter by one. Can be called from any thread.
+     */
+    public void increment() {
+        mTotal.increment();
+    }
+
+    /**
+     * Add |delta| to the counter. Can be called from any thread.
+     */
+    public void add(long delta) {
+        mTotal.add(delta);
+    }
+
+    /**
+     * @return the increments since the last {@link #clear()}.
+     */
+    public synchronized long get() {
+        mReportedTotal = mTotal.sum();
+        return mReportedTotal - mClearedTotal;
+    }
+
+    /**
+     * @return the value of {@link #get()}, saturated to the int range of the proto fields.
+     */
+    public int getInt() {
+        long value = get();
+        return value > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) value;
+    }
+
+    /**
+     * Clear the increments reported by the last {@link #get()}. Increments made after that call
+     * are kept.
+     */
+    public synchronized void clear() {
+        mClearedTotal = mReportedTotal;
+    }
+}
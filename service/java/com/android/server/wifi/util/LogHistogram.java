@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A histogram of non-negative int values with logarithmically sized buckets, in the spirit of
+ * HdrHistogram. Each power of two is split into {@link #SUB_BUCKET_COUNT} linear sub-buckets, so
+ * the relative error of any reported quantile is bounded by 1 / {@link #SUB_BUCKET_COUNT}.
+ *
+ * Values are tracked up to {@link #MAX_VALUE}, larger values are counted in the last bucket. The
+ * buckets of each power of two are allocated the first time a value falls into them, so a
+ * histogram of small values stays small.
+ *
+ * Recording is lock-free and only allocates when a power of two is first used, so it can be
+ * called from any thread on hot paths. Reads are not atomic with respect to concurrent
+ * recording, which is fine for metrics.
+ */
+public class LogHistogram {
+    private static final int SUB_BUCKET_BITS = 3;
+    public static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int SUB_BUCKET_MASK = SUB_BUCKET_COUNT - 1;
+    private static final int MAX_VALUE_BITS = 20;
+    /** Largest value tracked precisely, about 17 minutes for values in milliseconds. */
+    public static final int MAX_VALUE = (1 << MAX_VALUE_BITS) - 1;
+    /** Values in [0, 2^20) need 20 - SUB_BUCKET_BITS + 1 groups of sub-buckets. */
+    private static final int NUM_GROUPS = MAX_VALUE_BITS - SUB_BUCKET_BITS + 1;
+    public static final int NUM_BUCKETS = NUM_GROUPS * SUB_BUCKET_COUNT;
+
+    // Counts of each group of sub-buckets, allocated on first use.
+    private final AtomicReferenceArray<AtomicLongArray> mGroups =
+            new AtomicReferenceArray<>(NUM_GROUPS);
+
+    /**
+     * Returns the index of the bucket the provided value falls into. Negative values are counted
+     * in the first bucket, and values above {@link #MAX_VALUE} in the last one.
+     */
+    public static int getBucketIndex(int value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return Math.max(value, 0);
+        }
+        value = Math.min(value, MAX_VALUE);
+        int exponent = 31 - Integer.numberOfLeadingZeros(value);
+        int subBucket = (value >>> (exponent - SUB_BUCKET_BITS)) & SUB_BUCKET_MASK;
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * Returns the smallest value that falls into the bucket at the provided index.
+     */
+    public static long getBucketStart(int bucketIndex) {
+        if (bucketIndex < SUB_BUCKET_COUNT) {
+            return bucketIndex;
+        }
+        int shift = bucketIndex / SUB_BUCKET_COUNT - 1;
+        int subBucket = bucketIndex & SUB_BUCKET_MASK;
+        return ((long) (SUB_BUCKET_COUNT + subBucket)) << shift;
+    }
+
+    /**
+     * Returns the smallest value that falls after the bucket at the provided index.
+     */
+    public static long getBucketEnd(int bucketIndex) {
+        if (bucketIndex < SUB_BUCKET_COUNT) {
+            return bucketIndex + 1;
+        }
+        int shift = bucketIndex / SUB_BUCKET_COUNT - 1;
+        int subBucket = bucketIndex & SUB_BUCKET_MASK;
+        return ((long) (SUB_BUCKET_COUNT + subBucket + 1)) << shift;
+    }
+
+    /**
+     * Records a single occurrence of the provided value.
+     */
+    public void record(int value) {
+        int bucketIndex = getBucketIndex(value);
+        int groupIndex = bucketIndex / SUB_BUCKET_COUNT;
+        AtomicLongArray group = mGroups.get(groupIndex);
+        if (group == null) {
+            mGroups.compareAndSet(groupIndex, null, new AtomicLongArray(SUB_BUCKET_COUNT));
+            group = mGroups.get(groupIndex);
+        }
+        group.incrementAndGet(bucketIndex & SUB_BUCKET_MASK);
+    }
+
+    /**
+     * Returns the count of values recorded in the bucket at the provided index.
+     */
+    public long getCount(int bucketIndex) {
+        AtomicLongArray group = mGroups.get(bucketIndex / SUB_BUCKET_COUNT);
+        return group == null ? 0 : group.get(bucketIndex & SUB_BUCKET_MASK);
+    }
+
+    /**
+     * Returns the total number of recorded values.
+     */
+    public long getTotalCount() {
+        long total = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            total += getCount(i);
+        }
+        return total;
+    }
+
+    /**
+     * Returns the highest value equivalent to the value at the provided quantile, i.e. the
+     * inclusive upper bound of the bucket that contains it, or 0 if nothing was recorded.
+     *
+     * @param quantile the quantile to compute, in the range [0, 1].
+     */
+    public int getValueAtQuantile(double quantile) {
+        if (quantile < 0.0 || quantile > 1.0) {
+            throw new IllegalArgumentException("quantile must be in [0, 1]: " + quantile);
+        }
+        long total = getTotalCount();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(total * quantile));
+        long cumulative = 0;
+        int lastNonEmpty = 0;
+        for (int i = 0; i < NUM_BUCKETS; i++) {
+            long count = getCount(i);
+            if (count == 0) continue;
+            lastNonEmpty = i;
+            cumulative += count;
+            if (cumulative >= target) {
+                return (int) Math.min(getBucketEnd(i) - 1, Integer.MAX_VALUE);
+            }
+        }
+        // Values recorded concurrently with this read may leave the target out of reach.
+        return (int) Math.min(getBucketEnd(lastNonEmpty) - 1, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Resets this histogram to the initial state.
+     */
+    public void clear() {
+        for (int i = 0; i < NUM_GROUPS; i++) {
+            mGroups.set(i, null);
+        }
+    }
+
+    /**
+     * Returns a human-readable summary of this histogram, suitable for dump().
+     */
+    @Override
+    public String toString() {
+        return "count=" + getTotalCount()
+                + " p50=" + getValueAtQuantile(0.50)
+                + " p95=" + getValueAtQuantile(0.95)
+                + " p99=" + getValueAtQuantile(0.99);
+    }
+}
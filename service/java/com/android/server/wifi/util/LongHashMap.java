@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A hash map with primitive long keys, using open addressing with linear probing.
+ *
+ * Keys are stored unboxed in a long array and values in a parallel array, so an entry costs
+ * two array slots instead of a boxed key and a node object, and lookups do not allocate. Removal
+ * shifts the following entries of the probe sequence back, so no tombstones are left behind.
+ * Null values are not supported.
+ *
+ * Note: This class is not thread-safe.
+ */
+public class LongHashMap<V> {
+    private static final int MIN_CAPACITY = 8;
+    // Fibonacci hashing multiplier, 2^64 divided by the golden ratio.
+    private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private long[] mKeys;
+    // A null value marks an empty slot.
+    private Object[] mValues;
+    private int mShift;
+    private int mSize = 0;
+    private int mModCount = 0;
+
+    public LongHashMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /**
+     * @param expectedSize number of entries the map can hold without being resized.
+     */
+    public LongHashMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("Invalid size: " + expectedSize);
+        }
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * @return the number of entries.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return true if the map has no entries.
+     */
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * @return the value for the provided key, or null if there is none.
+     */
+    public @Nullable V get(long key) {
+        int slot = findSlot(key);
+        return slot < 0 ? null : valueAt(slot);
+    }
+
+    /**
+     * @return true if the map has a value for the provided key.
+     */
+    public boolean containsKey(long key) {
+        return findSlot(key) >= 0;
+    }
+
+    /**
+     * Associate the provided value with the key, replacing any previous value.
+     *
+     * @return the previous value for the key, or null if there was none.
+     */
+    public @Nullable V put(long key, @NonNull V value) {
+        if (value == null) {
+            throw new NullPointerException("Null values are not supported");
+        }
+        int mask = mKeys.length - 1;
+        for (int slot = hash(key); ; slot = (slot + 1) & mask) {
+            if (mValues[slot] == null) {
+                if (mSize + 1 > maxSize(mKeys.length)) {
+                    resize(mKeys.length * 2);
+                    return put(key, value);
+                }
+                mKeys[slot] = key;
+                mValues[slot] = value;
+                mSize++;
+                mModCount++;
+                return null;
+            }
+            if (mKeys[slot] == key) {
+                V old = valueAt(slot);
+                mValues[slot] = value;
+                return old;
+            }
+        }
+    }
+
+    /**
+     * Remove the value for the provided key.
+     *
+     * @return the removed value, or null if there was none.
+     */
+    public @Nullable V remove(long key) {
+        int slot = findSlot(key);
+        if (slot < 0) {
+            return null;
+        }
+        V old = valueAt(slot);
+        removeSlot(slot);
+        return old;
+    }
+
+    /**
+     * Remove all the entries, keeping the allocated capacity.
+     */
+    public void clear() {
+        if (mSize == 0) {
+            return;
+        }
+        for (int i = 0; i < mValues.length; i++) {
+            mValues[i] = null;
+        }
+        mSize = 0;
+        mModCount++;
+    }
+
+    /**
+     * @return a read-only view of the values, in no particular order.
+     */
+    public @NonNull Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValueIterator();
+            }
+
+            @Override
+            public int size() {
+                return mSize;
+            }
+        };
+    }
+
+    private int hash(long key) {
+        return (int) ((key * HASH_MULTIPLIER) >>> mShift);
+    }
+
+    private int findSlot(long key) {
+        int mask = mKeys.length - 1;
+        for (int slot = hash(key); mValues[slot] != null; slot = (slot + 1) & mask) {
+            if (mKeys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Remove the entry at |slot|, then move back the entries of the probe sequence which follow
+     * it, so that every entry remains reachable from its hash slot.
+     */
+    private void removeSlot(int slot) {
+        int mask = mKeys.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; mValues[next] != null; next = (next + 1) & mask) {
+            int home = hash(mKeys[next]);
+            // The entry at |next| can move to |hole| if its home slot is not within the cyclic
+            // range (hole, next].
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                mKeys[hole] = mKeys[next];
+                mValues[hole] = mValues[next];
+                hole = next;
+            }
+        }
+        mValues[hole] = null;
+        mSize--;
+        mModCount++;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = mKeys;
+        Object[] oldValues = mValues;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] == null) continue;
+            int slot = hash(oldKeys[i]);
+            while (mValues[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            mKeys[slot] = oldKeys[i];
+            mValues[slot] = oldValues[i];
+        }
+    }
+
+    private void allocate(int capacity) {
+        mKeys = new long[capacity];
+        mValues = new Object[capacity];
+        mShift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    // Keep the load factor at or below 3/4.
+    private static int maxSize(int capacity) {
+        return capacity - capacity / 4;
+    }
+
+    private static int capacityFor(int size) {
+        int capacity = MIN_CAPACITY;
+        while (maxSize(capacity) < size) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valueAt(int slot) {
+        return (V) mValues[slot];
+    }
+
+    private class ValueIterator implements Iterator<V> {
+        private final int mExpectedModCount = mModCount;
+        private int mNextSlot = advance(0);
+
+        private int advance(int slot) {
+            while (slot < mValues.length && mValues[slot] == null) {
+                slot++;
+            }
+            return slot;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return mNextSlot < mValues.length;
+        }
+
+        @Override
+        public V next() {
+            if (mModCount != mExpectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            V value = valueAt(mNextSlot);
+            mNextSlot = advance(mNextSlot + 1);
+            return value;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import android.annotation.Nullable;
+
+import java.util.AbstractList;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * A list with a fixed capacity, backed by a circular array allocated up front.
+ *
+ * Appending to a full buffer evicts the oldest element, so appending never allocates. Elements
+ * are indexed from the oldest (0) to the newest (size() - 1), and indexed access is constant
+ * time. Removing an element other than the oldest shifts the elements after it.
+ *
+ * Note: This class is not thread-safe.
+ */
+public class RingBuffer<T> extends AbstractList<T> implements RandomAccess {
+    private final Object[] mElements;
+    // Array index of the oldest element.
+    private int mHead = 0;
+    private int mSize = 0;
+
+    /**
+     * @param capacity maximum number of elements held by the buffer.
+     */
+    public RingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Invalid capacity: " + capacity);
+        }
+        mElements = new Object[capacity];
+    }
+
+    /**
+     * @return the maximum number of elements held by the buffer.
+     */
+    public int capacity() {
+        return mElements.length;
+    }
+
+    @Override
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Append an element, evicting the oldest element if the buffer is full.
+     * @return always true.
+     */
+    @Override
+    public boolean add(T element) {
+        if (mSize == mElements.length) {
+            mElements[mHead] = element;
+            mHead = physicalIndex(1);
+        } else {
+            mElements[physicalIndex(mSize)] = element;
+            mSize++;
+        }
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Remove the oldest element if the buffer is full, so that it can be overwritten and appended
+     * again instead of allocating a new element.
+     *
+     * @return the removed element, or null if the buffer is not full.
+     */
+    public @Nullable T recycle() {
+        if (mSize < mElements.length) {
+            return null;
+        }
+        return remove(0);
+    }
+
+    @Override
+    public T get(int index) {
+        checkIndex(index);
+        return elementAt(physicalIndex(index));
+    }
+
+    @Override
+    public T set(int index, T element) {
+        checkIndex(index);
+        int physicalIndex = physicalIndex(index);
+        T old = elementAt(physicalIndex);
+        mElements[physicalIndex] = element;
+        return old;
+    }
+
+    @Override
+    public T remove(int index) {
+        checkIndex(index);
+        T removed = elementAt(physicalIndex(index));
+        if (index == 0) {
+            mElements[mHead] = null;
+            mHead = physicalIndex(1);
+        } else {
+            for (int i = index; i < mSize - 1; i++) {
+                mElements[physicalIndex(i)] = mElements[physicalIndex(i + 1)];
+            }
+            mElements[physicalIndex(mSize - 1)] = null;
+        }
+        mSize--;
+        modCount++;
+        return removed;
+    }
+
+    /**
+     * @return the oldest element.
+     * @throws NoSuchElementException if the buffer is empty.
+     */
+    public T getFirst() {
+        if (mSize == 0) {
+            throw new NoSuchElementException();
+        }
+        return get(0);
+    }
+
+    /**
+     * @return the newest element.
+     * @throws NoSuchElementException if the buffer is empty.
+     */
+    public T getLast() {
+        if (mSize == 0) {
+            throw new NoSuchElementException();
+        }
+        return get(mSize - 1);
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < mSize; i++) {
+            mElements[physicalIndex(i)] = null;
+        }
+        mHead = 0;
+        mSize = 0;
+        modCount++;
+    }
+
+    private int physicalIndex(int index) {
+        int physicalIndex = mHead + index;
+        return physicalIndex >= mElements.length
+                ? physicalIndex - mElements.length : physicalIndex;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T elementAt(int physicalIndex) {
+        return (T) mElements[physicalIndex];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + mSize);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import android.annotation.NonNull;
+import android.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Container format for the binary encoding of config store files.
+ *
+ * A binary store file is a companion of an XML store file and mirrors its contents, the XML
+ * store file stays the source of truth. The layout of a binary store file is:
+ * <pre>
+ *   int    magic ("WCSB")
+ *   int    format version
+ *   int    config store data version
+ *   int    checksum of the mirrored XML store file, see {@link #computeXmlChecksum(byte[])}
+ *   int    number of sections N
+ *   N x {  UTF section name, int section length  }
+ *   N x    section payload
+ * </pre>
+ * All integers are big endian. Each section holds the data of a single StoreData, so that
+ * sections can be located, skipped or decoded independently without parsing the rest of the file.
+ * The encoding of a section payload is opaque to this class.
+ */
+public class WifiConfigStoreBinaryFormat {
+    /**
+     * Magic number at the start of every binary store file. Cannot collide with XML store files,
+     * which always start with '<'.
+     */
+    public static final int MAGIC = 0x57435342;
+    /**
+     * Current version of the container format.
+     */
+    public static final int FORMAT_VERSION = 1;
+    /**
+     * Minimum size of an entry in the section table: an empty UTF name and the section length.
+     */
+    private static final int MIN_SECTION_ENTRY_SIZE = 6;
+
+    /**
+     * Location of a section in a binary store file.
+     */
+    public static class Section {
+        public final String name;
+        public final int offset;
+        public final int length;
+
+        Section(String name, int offset, int length) {
+            this.name = name;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Parsed header of a binary store file.
+     */
+    public static class Header {
+        public final int version;
+        public final int xmlChecksum;
+        public final List<Section> sections;
+
+        Header(int version, int xmlChecksum, List<Section> sections) {
+            this.version = version;
+            this.xmlChecksum = xmlChecksum;
+            this.sections = Collections.unmodifiableList(sections);
+        }
+    }
+
+    /**
+     * Builds a binary store file section by section.
+     */
+    public static class Writer {
+        private final int mVersion;
+        private final int mXmlChecksum;
+        private final List<String> mNames = new ArrayList<>();
+        private final List<byte[]> mPayloads = new ArrayList<>();
+
+        /**
+         * @param version config store data version to record in the header.
+         * @param xmlChecksum checksum of the XML store file mirrored by this file.
+         */
+        public Writer(int version, int xmlChecksum) {
+            mVersion = version;
+            mXmlChecksum = xmlChecksum;
+        }
+
+        /**
+         * Append a section to the file.
+         */
+        public Writer addSection(@NonNull String name, @NonNull byte[] payload) {
+            mNames.add(name);
+            mPayloads.add(payload);
+            return this;
+        }
+
+        /**
+         * @return the encoded file.
+         */
+        public byte[] toByteArray() throws IOException {
+            ByteArrayOutputStream byteStream = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(byteStream);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(mVersion);
+            out.writeInt(mXmlChecksum);
+            out.writeInt(mNames.size());
+            for (int i = 0; i < mNames.size(); i++) {
+                out.writeUTF(mNames.get(i));
+                out.writeInt(mPayloads.get(i).length);
+            }
+            for (byte[] payload : mPayloads) {
+                out.write(payload);
+            }
+            out.flush();
+            return byteStream.toByteArray();
+        }
+    }
+
+    /**
+     * Check whether the provided store file contents use the binary format.
+     */
+    public static boolean isBinaryFormat(@Nullable byte[] data) {
+        return data != null && data.length >= 4
+                && ((data[0] & 0xFF) << 24 | (data[1] & 0xFF) << 16
+                        | (data[2] & 0xFF) << 8 | (data[3] & 0xFF)) == MAGIC;
+    }
+
+    /**
+     * Compute the checksum recorded in the header of a binary store file for the contents of the
+     * XML store file it mirrors.
+     */
+    public static int computeXmlChecksum(@NonNull byte[] xmlData) {
+        CRC32 crc = new CRC32();
+        crc.update(xmlData);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Parse the header and section table of a binary store file. Section payloads are not
+     * touched, the returned sections reference ranges of the provided array.
+     *
+     * @throws IOException if the data is truncated or not a supported binary store file.
+     */
+    public static @NonNull Header parseHeader(@NonNull byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a binary store file");
+        }
+        int formatVersion = in.readInt();
+        if (formatVersion != FORMAT_VERSION) {
+            throw new IOException("Unsupported binary store format version: " + formatVersion);
+        }
+        int version = in.readInt();
+        int xmlChecksum = in.readInt();
+        int numSections = in.readInt();
+        // Bound the allocations below by the size of the file, the count may be corrupted.
+        if (numSections < 0 || numSections > in.available() / MIN_SECTION_ENTRY_SIZE) {
+            throw new IOException("Invalid number of sections: " + numSections);
+        }
+        List<String> names = new ArrayList<>(numSections);
+        int[] lengths = new int[numSections];
+        for (int i = 0; i < numSections; i++) {
+            names.add(in.readUTF());
+            lengths[i] = in.readInt();
+            if (lengths[i] < 0 || lengths[i] > in.available()) {
+                throw new IOException("Invalid section length: " + names.get(i));
+            }
+        }
+        // Whatever was not consumed by the header is the payload area.
+        int offset = data.length - in.available();
+        List<Section> sections = new ArrayList<>(numSections);
+        for (int i = 0; i < numSections; i++) {
+            if (lengths[i] < 0 || lengths[i] > data.length - offset) {
+                throw new IOException("Truncated section: " + names.get(i));
+            }
+            sections.add(new Section(names.get(i), offset, lengths[i]));
+            offset += lengths[i];
+        }
+        return new Header(version, xmlChecksum, sections);
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.android.server.wifi;
 
+import static android.net.wifi.WifiManager.WIFI_STATE_DISABLED;
 import static android.net.wifi.WifiManager.WIFI_STATE_ENABLED;
 
 import static com.android.server.wifi.ActiveModeManager.ROLE_CLIENT_LOCAL_ONLY;
@@ -34,12 +35,14 @@ import static com.google.common.truth.Truth.assertWithMessage;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assume.assumeTrue;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyInt;
+import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.clearInvocations;
@@ -69,12 +72,14 @@ import android.net.Network;
 import android.net.wifi.ISubsystemRestartCallback;
 import android.net.wifi.IWifiConnectedNetworkScorer;
 import android.net.wifi.IWifiNetworkStateChangedListener;
+import android.net.wifi.IWifiStateListener;
 import android.net.wifi.SoftApCapability;
 import android.net.wifi.SoftApConfiguration;
 import android.net.wifi.SoftApConfiguration.Builder;
 import android.net.wifi.SoftApInfo;
 import android.net.wifi.WifiClient;
 import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
 import android.net.wifi.WifiScanner;
 import android.os.BatteryStatsManager;
@@ -142,6 +147,7 @@ public class ActiveModeWardenTest extends WifiBaseTest {
     private static final int TEST_AP_FREQUENCY = 2412;
     private static final int TEST_AP_BANDWIDTH = SoftApInfo.CHANNEL_WIDTH_20MHZ;
     private static final int TEST_UID = 435546654;
+    private static final int TEST_PID = 4567;
     private static final long TEST_FEATURE_SET = 0xAB3DEF;
     private static final String TEST_PACKAGE = "com.test";
     private static final String TEST_COUNTRYCODE = "US";
@@ -3007,6 +3013,33 @@ public class ActiveModeWardenTest extends WifiBaseTest {
         return additionalClientListener.value;
     }
 
+    /**
+     * Verify that the connection info of the primary CMM is published when it becomes primary,
+     * and is only served while there is no secondary CMM.
+     */
+    @Test
+    public void testGetConnectionInfoIfNoSecondaryClientModeManager() throws Exception {
+        WifiInfo wifiInfo = new WifiInfo();
+        when(mClientModeManager.getConnectionInfo()).thenReturn(wifiInfo);
+        when(mWifiNative.isItPossibleToCreateStaIface(any())).thenReturn(true);
+        when(mResources.getBoolean(R.bool.config_wifiMultiStaLocalOnlyConcurrencyEnabled))
+                .thenReturn(true);
+
+        ConcreteClientModeManager additionalClientModeManager =
+                mock(ConcreteClientModeManager.class);
+        Listener<ConcreteClientModeManager> additionalClientListener =
+                requestAdditionalClientModeManager(ROLE_CLIENT_LOCAL_ONLY,
+                        additionalClientModeManager,
+                        mock(ExternalClientModeManagerRequestListener.class),
+                        TEST_SSID_2, TEST_BSSID_2);
+        assertSame(wifiInfo, mActiveModeWarden.getConnectionInfo());
+        assertNull(mActiveModeWarden.getConnectionInfoIfNoSecondaryClientModeManager());
+
+        additionalClientListener.onStopped(additionalClientModeManager);
+        mLooper.dispatchAll();
+        assertSame(wifiInfo, mActiveModeWarden.getConnectionInfoIfNoSecondaryClientModeManager());
+    }
+
     @Test
     public void testRemoveDefaultClientModeManager() throws Exception {
         // Ensure that we can create more client ifaces.
@@ -4681,6 +4714,52 @@ public class ActiveModeWardenTest extends WifiBaseTest {
         assertEquals(WIFI_STATE_ENABLED, mActiveModeWarden.getWifiState());
     }
 
+    /**
+     * Verify that a wifi state listener is sent the current state, then only the new states,
+     * each with a new sequence number.
+     */
+    @Test
+    public void testWifiStateListener() throws Exception {
+        IWifiStateListener testListener = mock(IWifiStateListener.class);
+        when(testListener.asBinder()).thenReturn(mock(IBinder.class));
+        mActiveModeWarden.setWifiStateForApiCalls(WIFI_STATE_DISABLED);
+        long sequenceNumber = mActiveModeWarden.getWifiStateSequenceNumber();
+
+        mActiveModeWarden.addWifiStateListener(testListener, TEST_PID);
+        verify(testListener).onWifiStateChanged(WIFI_STATE_DISABLED, sequenceNumber);
+
+        mActiveModeWarden.setWifiStateForApiCalls(WIFI_STATE_ENABLED);
+        mActiveModeWarden.setWifiStateForApiCalls(WIFI_STATE_ENABLED);
+        mActiveModeWarden.setWifiStateForApiCalls(5);
+        assertEquals(sequenceNumber + 1, mActiveModeWarden.getWifiStateSequenceNumber());
+        verify(testListener).onWifiStateChanged(WIFI_STATE_ENABLED, sequenceNumber + 1);
+        verify(testListener, times(2)).onWifiStateChanged(anyInt(), anyLong());
+    }
+
+    /**
+     * Verify that a process only keeps its first wifi state listener, and other processes, even
+     * of the same uid, can still add one.
+     */
+    @Test
+    public void testWifiStateListenerLimitedPerProcess() throws Exception {
+        IWifiStateListener testListener = mock(IWifiStateListener.class);
+        when(testListener.asBinder()).thenReturn(mock(IBinder.class));
+        IWifiStateListener samePidListener = mock(IWifiStateListener.class);
+        when(samePidListener.asBinder()).thenReturn(mock(IBinder.class));
+        IWifiStateListener otherPidListener = mock(IWifiStateListener.class);
+        when(otherPidListener.asBinder()).thenReturn(mock(IBinder.class));
+        mActiveModeWarden.setWifiStateForApiCalls(WIFI_STATE_DISABLED);
+
+        mActiveModeWarden.addWifiStateListener(testListener, TEST_PID);
+        mActiveModeWarden.addWifiStateListener(samePidListener, TEST_PID);
+        mActiveModeWarden.addWifiStateListener(otherPidListener, TEST_PID + 1);
+        mActiveModeWarden.setWifiStateForApiCalls(WIFI_STATE_ENABLED);
+
+        verify(testListener).onWifiStateChanged(eq(WIFI_STATE_ENABLED), anyLong());
+        verify(otherPidListener).onWifiStateChanged(eq(WIFI_STATE_ENABLED), anyLong());
+        verify(samePidListener, never()).onWifiStateChanged(anyInt(), anyLong());
+    }
+
     /**
      * Verifies that getSupportedFeatureSet() adds capabilities based on interface
      * combination.
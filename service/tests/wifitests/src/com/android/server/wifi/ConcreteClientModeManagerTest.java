@@ -18,6 +18,7 @@ package com.android.server.wifi;
 
 import static android.net.wifi.WifiManager.EXTRA_PREVIOUS_WIFI_STATE;
 import static android.net.wifi.WifiManager.EXTRA_WIFI_STATE;
+import static android.net.wifi.WifiManager.EXTRA_WIFI_STATE_SEQUENCE_NUMBER;
 import static android.net.wifi.WifiManager.WIFI_STATE_CHANGED_ACTION;
 import static android.net.wifi.WifiManager.WIFI_STATE_DISABLED;
 import static android.net.wifi.WifiManager.WIFI_STATE_DISABLING;
@@ -91,6 +92,7 @@ public class ConcreteClientModeManagerTest extends WifiBaseTest {
     private static final String TEST_ADDED_INTERFACE_NAME = "testif1";
     private static final String OTHER_INTERFACE_NAME = "notTestIf";
     private static final int TEST_WIFI_OFF_DEFERRING_TIME_MS = 4000;
+    private static final long TEST_WIFI_STATE_SEQUENCE_NUMBER = 12;
     private static final int TEST_ACTIVE_SUBSCRIPTION_ID = 1;
     private static final WorkSource TEST_WORKSOURCE = new WorkSource();
     private static final WorkSource TEST_WORKSOURCE2 = new WorkSource();
@@ -253,6 +255,8 @@ public class ConcreteClientModeManagerTest extends WifiBaseTest {
         when(mWifiInjector.getDeviceConfigFacade()).thenReturn(mDeviceConfigFacade);
         when(mWifiInjector.getWifiDiagnostics()).thenReturn(mWifiDiagnostics);
         when(mWifiInjector.getActiveModeWarden()).thenReturn(mActiveModeWarden);
+        when(mActiveModeWarden.getWifiStateSequenceNumber())
+                .thenReturn(TEST_WIFI_STATE_SEQUENCE_NUMBER);
         when(mWifiInjector.getWifiHandlerLocalLog()).thenReturn(mLocalLog);
         mLooper = new TestLooper();
     }
@@ -341,6 +345,8 @@ public class ConcreteClientModeManagerTest extends WifiBaseTest {
         assertEquals(expectedCurrentState, currentState);
         int prevState = intent.getIntExtra(EXTRA_PREVIOUS_WIFI_STATE, WIFI_STATE_UNKNOWN);
         assertEquals(expectedPrevState, prevState);
+        assertEquals(TEST_WIFI_STATE_SEQUENCE_NUMBER,
+                intent.getLongExtra(EXTRA_WIFI_STATE_SEQUENCE_NUMBER, -1));
     }
 
     private void verifyConnectModeNotificationsForCleanShutdown(int fromState) {
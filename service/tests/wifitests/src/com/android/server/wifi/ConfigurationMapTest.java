@@ -19,6 +19,7 @@ package com.android.server.wifi;
 import static com.android.dx.mockito.inline.extended.ExtendedMockito.mockitoSession;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.anyInt;
@@ -427,4 +428,111 @@ public class ConfigurationMapTest extends WifiBaseTest {
         mConfigs.put(config);
         assertNull(mConfigs.getByScanResultForCurrentUser(scanResult));
     }
+
+    /**
+     * Verifies that a network is found by its new profile key once it is put again after a
+     * change of security type.
+     */
+    @Test
+    public void testGetByConfigKeyAfterProfileKeyChange() {
+        WifiConfiguration config = WifiConfigurationTestUtil.createPskNetwork();
+        config.networkId = 0;
+        mConfigs.put(config);
+        String pskKey = config.getProfileKey();
+        assertEquals(config, mConfigs.getByConfigKeyForCurrentUser(pskKey));
+
+        config.setSecurityParams(WifiConfiguration.SECURITY_TYPE_SAE);
+        mConfigs.put(config);
+        assertNull(mConfigs.getByConfigKeyForCurrentUser(pskKey));
+        assertEquals(config, mConfigs.getByConfigKeyForCurrentUser(config.getProfileKey()));
+    }
+
+    /**
+     * Verifies that when several networks have the same profile key, the one with the lowest
+     * network ID is returned, and the others are found once it is removed.
+     */
+    @Test
+    public void testGetByConfigKeyWithDuplicateProfileKeys() {
+        WifiConfiguration config1 = WifiConfigurationTestUtil.createOpenNetwork("\"dup\"");
+        config1.networkId = 1;
+        WifiConfiguration config2 = new WifiConfiguration(config1);
+        config2.networkId = 2;
+        WifiConfiguration config3 = new WifiConfiguration(config1);
+        config3.networkId = 3;
+        String key = config1.getProfileKey();
+
+        mConfigs.put(config2);
+        mConfigs.put(config3);
+        mConfigs.put(config1);
+        assertEquals(config1, mConfigs.getByConfigKeyForCurrentUser(key));
+        mConfigs.remove(config1.networkId);
+        assertEquals(config2, mConfigs.getByConfigKeyForCurrentUser(key));
+        mConfigs.remove(config2.networkId);
+        assertEquals(config3, mConfigs.getByConfigKeyForCurrentUser(key));
+        mConfigs.remove(config3.networkId);
+        assertNull(mConfigs.getByConfigKeyForCurrentUser(key));
+    }
+
+    /**
+     * Verifies profile key lookups with many saved networks, while networks are updated and
+     * removed.
+     */
+    @Test
+    public void testGetByConfigKeyWithManyNetworks() {
+        final int numNetworks = 2000;
+        List<WifiConfiguration> configs = new ArrayList<>();
+        for (int i = 0; i < numNetworks; i++) {
+            WifiConfiguration config = (i % 2 == 0)
+                    ? WifiConfigurationTestUtil.createPskNetwork("\"network" + i + "\"")
+                    : WifiConfigurationTestUtil.createOpenNetwork("\"network" + i + "\"");
+            config.networkId = i;
+            configs.add(config);
+            assertNull(mConfigs.getByConfigKeyForCurrentUser(config.getProfileKey()));
+            mConfigs.put(config);
+        }
+        for (int i = 0; i < numNetworks; i++) {
+            WifiConfiguration config = configs.get(i);
+            if (i % 3 == 0) {
+                WifiConfiguration updatedConfig = new WifiConfiguration(config);
+                mConfigs.remove(config.networkId);
+                mConfigs.put(updatedConfig);
+                configs.set(i, updatedConfig);
+            } else if (i % 3 == 1) {
+                mConfigs.remove(config.networkId);
+            }
+        }
+        for (int i = 0; i < numNetworks; i++) {
+            WifiConfiguration config = configs.get(i);
+            WifiConfiguration expected = (i % 3 == 1) ? null : config;
+            assertEquals(expected, mConfigs.getByConfigKeyForCurrentUser(config.getProfileKey()));
+        }
+    }
+
+    /**
+     * Verifies that the generation changes when the map is modified or hands out a
+     * configuration, but not when a configuration is peeked at.
+     */
+    @Test
+    public void testGeneration() {
+        WifiConfiguration config = WifiConfigurationTestUtil.createOpenNetwork();
+        config.networkId = 0;
+        long generation = mConfigs.getGeneration();
+        mConfigs.put(config);
+        assertNotEquals(generation, mConfigs.getGeneration());
+
+        generation = mConfigs.getGeneration();
+        assertEquals(config, mConfigs.peekForCurrentUser(config.networkId));
+        assertEquals(config, mConfigs.peekByConfigKeyForCurrentUser(config.getProfileKey()));
+        assertEquals(1, mConfigs.peekValuesForCurrentUser().size());
+        assertEquals(generation, mConfigs.getGeneration());
+
+        mConfigs.getForCurrentUser(config.networkId);
+        assertNotEquals(generation, mConfigs.getGeneration());
+        generation = mConfigs.getGeneration();
+        mConfigs.valuesForCurrentUser();
+        assertNotEquals(generation, mConfigs.getGeneration());
+        generation = mConfigs.getGeneration();
+        mConfigs.remove(config.networkId);
+        assertNotEquals(generation, mConfigs.getGeneration());
+    }
 }
@@ -234,6 +234,11 @@ public class DeviceConfigFacadeTest extends WifiBaseTest {
         assertEquals(true, mDeviceConfigFacade.isAdjustPollRssiIntervalEnabled());
         assertEquals(false, mDeviceConfigFacade.includePasspointSsidsInPnoScans());
         assertEquals(true, mDeviceConfigFacade.isHandleRssiOrganicKernelFailuresEnabled());
+        assertEquals(false, mDeviceConfigFacade.isConfigStoreWriteCoalescingEnabled());
+        assertEquals(false, mDeviceConfigFacade.isConfigStoreBinaryFormatEnabled());
+        assertEquals(false, mDeviceConfigFacade.isConfigStoreLazyLoadingEnabled());
+        assertEquals(false, mDeviceConfigFacade.isAnqpCachePersistenceEnabled());
+        assertEquals(false, mDeviceConfigFacade.isPasspointMatchIndexEnabled());
     }
 
     /**
@@ -376,6 +381,16 @@ public class DeviceConfigFacadeTest extends WifiBaseTest {
                 anyBoolean())).thenReturn(true);
         when(DeviceConfig.getBoolean(anyString(), eq("handle_rssi_organic_kernel_failures_enabled"),
                 anyBoolean())).thenReturn(true);
+        when(DeviceConfig.getBoolean(anyString(), eq("config_store_write_coalescing_enabled"),
+                anyBoolean())).thenReturn(true);
+        when(DeviceConfig.getBoolean(anyString(), eq("config_store_binary_format_enabled"),
+                anyBoolean())).thenReturn(true);
+        when(DeviceConfig.getBoolean(anyString(), eq("config_store_lazy_loading_enabled"),
+                anyBoolean())).thenReturn(true);
+        when(DeviceConfig.getBoolean(anyString(), eq("anqp_cache_persistence_enabled"),
+                anyBoolean())).thenReturn(true);
+        when(DeviceConfig.getBoolean(anyString(), eq("passpoint_match_index_enabled"),
+                anyBoolean())).thenReturn(true);
         mOnPropertiesChangedListenerCaptor.getValue().onPropertiesChanged(null);
 
         // Verifying fields are updated to the new values
@@ -449,6 +464,11 @@ public class DeviceConfigFacadeTest extends WifiBaseTest {
         assertEquals(true, mDeviceConfigFacade.isAdjustPollRssiIntervalEnabled());
         assertEquals(true, mDeviceConfigFacade.includePasspointSsidsInPnoScans());
         assertEquals(true, mDeviceConfigFacade.isHandleRssiOrganicKernelFailuresEnabled());
+        assertEquals(true, mDeviceConfigFacade.isConfigStoreWriteCoalescingEnabled());
+        assertEquals(true, mDeviceConfigFacade.isConfigStoreBinaryFormatEnabled());
+        assertEquals(true, mDeviceConfigFacade.isConfigStoreLazyLoadingEnabled());
+        assertEquals(true, mDeviceConfigFacade.isAnqpCachePersistenceEnabled());
+        assertEquals(true, mDeviceConfigFacade.isPasspointMatchIndexEnabled());
 
         when(DeviceConfig.getBoolean(anyString(), eq("oob_pseudonym_enabled"),
                 anyBoolean())).thenReturn(false);
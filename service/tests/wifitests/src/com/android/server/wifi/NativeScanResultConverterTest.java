@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.net.wifi.nl80211.NativeScanResult;
+
+import androidx.test.filters.SmallTest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Unit tests for {@link NativeScanResultConverter}.
+ */
+@SmallTest
+public class NativeScanResultConverterTest extends WifiBaseTest {
+    private static final int TEST_FREQUENCY = 5745;
+    private static final int NUM_WORKERS = 3;
+
+    @Mock private Executor mExecutor;
+
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+    }
+
+    private static NativeScanResult createNativeScanResult(int index) {
+        byte[] ssid = ("ssid" + index).getBytes();
+        NativeScanResult result = new NativeScanResult();
+        result.ssid = ssid;
+        result.bssid = new byte[] {(byte) 0x02, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+                (byte) (index >> 8), (byte) index};
+        result.infoElement = new byte[ssid.length + 2];
+        result.infoElement[0] = 0x00;
+        result.infoElement[1] = (byte) ssid.length;
+        System.arraycopy(ssid, 0, result.infoElement, 2, ssid.length);
+        result.frequency = TEST_FREQUENCY;
+        result.signalMbm = -4500;
+        result.radioChainInfos = new ArrayList<>();
+        return result;
+    }
+
+    private static List<NativeScanResult> createNativeScanResults(int count) {
+        List<NativeScanResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(createNativeScanResult(i));
+        }
+        return results;
+    }
+
+    private static void verifyParsedInOrder(List<NativeScanResult> nativeResults,
+            NativeScanResultConverter.ParsedScanResult[] parsed) {
+        assertEquals(nativeResults.size(), parsed.length);
+        for (int i = 0; i < parsed.length; i++) {
+            assertNotNull(parsed[i]);
+            assertEquals(nativeResults.get(i), parsed[i].nativeResult);
+            assertEquals("ssid" + i, parsed[i].networkDetail.getSSID());
+            assertEquals(nativeResults.get(i).getBssid().toString(), parsed[i].bssid);
+        }
+    }
+
+    /**
+     * Verify that small batches are parsed on the calling thread.
+     */
+    @Test
+    public void testSmallBatchParsedSerially() {
+        NativeScanResultConverter converter =
+                new NativeScanResultConverter(mExecutor, NUM_WORKERS);
+        List<NativeScanResult> nativeResults = createNativeScanResults(
+                NativeScanResultConverter.MIN_RESULTS_FOR_PARALLEL_PARSING - 1);
+
+        verifyParsedInOrder(nativeResults, converter.parse(nativeResults, false));
+        verify(mExecutor, never()).execute(any());
+    }
+
+    /**
+     * Verify that large batches are split across the workers and the input order is preserved.
+     */
+    @Test
+    public void testLargeBatchParsedInParallelInOrder() {
+        ExecutorService executorService = Executors.newFixedThreadPool(NUM_WORKERS);
+        try {
+            NativeScanResultConverter converter =
+                    new NativeScanResultConverter(executorService, NUM_WORKERS);
+            List<NativeScanResult> nativeResults = createNativeScanResults(
+                    NativeScanResultConverter.MIN_RESULTS_FOR_PARALLEL_PARSING * 5 + 3);
+
+            verifyParsedInOrder(nativeResults, converter.parse(nativeResults, false));
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Verify that each worker chunk is dispatched to the executor once.
+     */
+    @Test
+    public void testLargeBatchDispatchesOneTaskPerWorker() {
+        Executor executor = command -> {
+            mExecutor.execute(command);
+            command.run();
+        };
+        NativeScanResultConverter converter =
+                new NativeScanResultConverter(executor, NUM_WORKERS);
+        List<NativeScanResult> nativeResults = createNativeScanResults(
+                NativeScanResultConverter.MIN_RESULTS_FOR_PARALLEL_PARSING * 2);
+
+        verifyParsedInOrder(nativeResults, converter.parse(nativeResults, false));
+        verify(mExecutor, times(NUM_WORKERS)).execute(any());
+    }
+
+    /**
+     * Verify that malformed results are reported as null at their position.
+     */
+    @Test
+    public void testMalformedResultsDropped() {
+        NativeScanResultConverter converter =
+                new NativeScanResultConverter(Runnable::run, NUM_WORKERS);
+        List<NativeScanResult> nativeResults = createNativeScanResults(
+                NativeScanResultConverter.MIN_RESULTS_FOR_PARALLEL_PARSING * 2);
+        nativeResults.get(3).ssid = new byte[33];
+        nativeResults.get(100).ssid = new byte[40];
+
+        NativeScanResultConverter.ParsedScanResult[] parsed =
+                converter.parse(nativeResults, false);
+
+        assertEquals(nativeResults.size(), parsed.length);
+        assertNull(parsed[3]);
+        assertNull(parsed[100]);
+        assertNotNull(parsed[4]);
+        assertEquals("ssid4", parsed[4].networkDetail.getSSID());
+        assertEquals("ssid101", parsed[101].networkDetail.getSSID());
+    }
+
+    /**
+     * Verify that parsing is always done on the calling thread without workers.
+     */
+    @Test
+    public void testNoWorkersParsesSerially() {
+        NativeScanResultConverter converter = new NativeScanResultConverter(mExecutor, 0);
+        List<NativeScanResult> nativeResults = createNativeScanResults(
+                NativeScanResultConverter.MIN_RESULTS_FOR_PARALLEL_PARSING * 2);
+
+        verifyParsedInOrder(nativeResults, converter.parse(nativeResults, false));
+        verify(mExecutor, never()).execute(any());
+    }
+}
@@ -1906,6 +1906,8 @@ public class NetworkSuggestionNominatorTest extends WifiBaseTest {
             Set<ExtendedWifiNetworkSuggestion> matchingSuggestions = Set.of(matchingSuggestion);
             when(mWifiNetworkSuggestionsManager.getNetworkSuggestionsForScanDetail(eq(scanDetail)))
                     .thenReturn(matchingSuggestions);
+            when(mWifiNetworkSuggestionsManager.getNetworkSuggestionsForScanDetail(
+                    eq(scanDetail), any())).thenReturn(matchingSuggestions);
         }
         if (scanDetails.length > suggestions.length) {
             // No match for the remaining scan details.
@@ -1913,6 +1915,8 @@ public class NetworkSuggestionNominatorTest extends WifiBaseTest {
                 ScanDetail scanDetail = scanDetails[i];
                 when(mWifiNetworkSuggestionsManager.getNetworkSuggestionsForScanDetail(
                         eq(scanDetail))).thenReturn(Set.of());
+                when(mWifiNetworkSuggestionsManager.getNetworkSuggestionsForScanDetail(
+                        eq(scanDetail), any())).thenReturn(Set.of());
             }
         } else if (suggestions.length > scanDetails.length) {
             // All the additional suggestions match the last scan detail.
@@ -1921,6 +1925,8 @@ public class NetworkSuggestionNominatorTest extends WifiBaseTest {
             ScanDetail lastScanDetail = scanDetails[minLength - 1];
             when(mWifiNetworkSuggestionsManager.getNetworkSuggestionsForScanDetail(
                     eq(lastScanDetail))).thenReturn(matchingSuggestions);
+            when(mWifiNetworkSuggestionsManager.getNetworkSuggestionsForScanDetail(
+                    eq(lastScanDetail), any())).thenReturn(matchingSuggestions);
         }
     }
 
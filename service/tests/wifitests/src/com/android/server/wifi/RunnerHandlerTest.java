@@ -0,0 +1,186 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import android.os.Message;
+import android.os.test.TestLooper;
+import android.util.LocalLog;
+
+import androidx.test.filters.SmallTest;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+/**
+ * Unit tests for {@link com.android.server.wifi.RunnerHandler}.
+ */
+@SmallTest
+public class RunnerHandlerTest extends WifiBaseTest {
+    private static final int TEST_THRESHOLD_MS = 10000;
+
+    @Mock WifiMetrics mWifiMetrics;
+    @Mock Runnable mRunnable;
+
+    private TestLooper mLooper;
+    private RunnerHandler mRunnerHandler;
+
+    @Before
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        mLooper = new TestLooper();
+        mRunnerHandler = new RunnerHandler(mLooper.getLooper(), TEST_THRESHOLD_MS,
+                new LocalLog(128), mWifiMetrics);
+    }
+
+    /**
+     * Verify that the signature of a Runnable is cached per class and reused.
+     */
+    @Test
+    public void testSignatureIsInternedPerClass() {
+        Runnable r1 = () -> { };
+        String signature = mRunnerHandler.getSignature(r1);
+        assertEquals(RunnerHandler.getClassSignature(r1.getClass().getName()), signature);
+        assertSame(signature, mRunnerHandler.getSignature(r1));
+    }
+
+    /**
+     * Verify that lambdas are named after their declaring class, which is stable across builds.
+     */
+    @Test
+    public void testClassSignatureOfLambdas() {
+        assertEquals("WifiServiceImpl#lambda", RunnerHandler.getClassSignature(
+                "com.android.server.wifi.WifiServiceImpl$$ExternalSyntheticLambda12"));
+        assertEquals("WifiServiceImpl#lambda", RunnerHandler.getClassSignature(
+                "com.android.server.wifi.-$$Lambda$WifiServiceImpl$2d9sTqYzTi0a"));
+        assertEquals("WifiServiceImpl#lambda", RunnerHandler.getClassSignature(
+                "com.android.server.wifi.WifiServiceImpl$$Lambda$14/0x0000000800c03000"));
+        assertEquals("WifiServiceImpl$NetworkUpdater", RunnerHandler.getClassSignature(
+                "com.android.server.wifi.WifiServiceImpl$NetworkUpdater"));
+    }
+
+    /**
+     * Verify that tasks run through WifiThreadRunner#call are reported under their task names,
+     * so that different call sites get different signatures.
+     */
+    @Test
+    public void testWifiThreadRunnerCallSignatures() throws Exception {
+        WifiThreadRunner wifiThreadRunner = new WifiThreadRunner(mRunnerHandler);
+        callOnOtherThread(wifiThreadRunner, "Caller#first");
+        callOnOtherThread(wifiThreadRunner, "Caller#second");
+        callOnOtherThread(wifiThreadRunner, null);
+
+        verify(mWifiMetrics).wifiThreadTaskDispatched(eq("Caller#first"), anyInt(), anyInt());
+        verify(mWifiMetrics).wifiThreadTaskDispatched(eq("Caller#second"), anyInt(), anyInt());
+        // Unnamed tasks are named after the supplier, not the runnable wrapping it.
+        verify(mWifiMetrics).wifiThreadTaskDispatched(eq("RunnerHandlerTest#lambda"), anyInt(),
+                anyInt());
+    }
+
+    /**
+     * Verify that a task posted with a name is reported under that name.
+     */
+    @Test
+    public void testWifiThreadRunnerPostSignature() {
+        WifiThreadRunner wifiThreadRunner = new WifiThreadRunner(mRunnerHandler);
+        wifiThreadRunner.post(mRunnable, "Caller#post");
+        mLooper.dispatchAll();
+
+        verify(mRunnable).run();
+        verify(mWifiMetrics).wifiThreadTaskDispatched(eq("Caller#post"), anyInt(), anyInt());
+    }
+
+    private void callOnOtherThread(WifiThreadRunner wifiThreadRunner, String taskName)
+            throws Exception {
+        Thread thread = new Thread(() -> wifiThreadRunner.call(() -> 1, 0, taskName));
+        thread.start();
+        while (thread.isAlive()) {
+            mLooper.dispatchAll();
+            thread.join(10);
+        }
+    }
+
+    /**
+     * Verify that posting in the default mode does not attach a Bundle to the message.
+     */
+    @Test
+    public void testPostDoesNotAllocateBundleByDefault() {
+        Message msg = Message.obtain(mRunnerHandler, mRunnable);
+        mRunnerHandler.sendMessage(msg);
+        assertNull(msg.peekData());
+        mLooper.dispatchAll();
+        verify(mRunnable).run();
+    }
+
+    /**
+     * Verify that posting in verbose mode attaches the stack trace based signature.
+     */
+    @Test
+    public void testPostAttachesSignatureInVerboseMode() {
+        mRunnerHandler.enableVerboseLogging(true);
+        Message msg = Message.obtain(mRunnerHandler, mRunnable);
+        mRunnerHandler.sendMessage(msg);
+        assertNotNull(msg.peekData());
+        mLooper.dispatchAll();
+        verify(mRunnable).run();
+    }
+
+    /**
+     * Verify that enabling verbose logging does not change the signature metrics are keyed by.
+     */
+    @Test
+    public void testVerboseModeKeepsMetricsSignature() {
+        Runnable runnable = () -> { };
+        String signature = mRunnerHandler.getSignature(runnable);
+        mRunnerHandler.post(runnable);
+        mLooper.dispatchAll();
+        mRunnerHandler.enableVerboseLogging(true);
+        mRunnerHandler.post(runnable);
+        mLooper.dispatchAll();
+
+        verify(mWifiMetrics, times(2)).wifiThreadTaskDispatched(eq(signature), anyInt(),
+                anyInt());
+    }
+
+    /**
+     * Verify that a job posted to the front of the queue reports a sane schedule latency in both
+     * modes.
+     */
+    @Test
+    public void testPostToFrontLatency() {
+        mRunnerHandler.postToFront(mRunnable);
+        mLooper.dispatchAll();
+        mRunnerHandler.enableVerboseLogging(true);
+        mRunnerHandler.postToFront(mRunnable);
+        mLooper.dispatchAll();
+
+        verify(mRunnable, times(2)).run();
+        verify(mWifiMetrics, never()).wifiThreadTaskExecuted(anyString(), anyInt(), anyInt());
+    }
+}
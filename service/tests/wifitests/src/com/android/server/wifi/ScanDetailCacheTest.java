@@ -19,6 +19,7 @@ package com.android.server.wifi;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
+import android.net.wifi.ScanResult;
 import android.net.wifi.WifiConfiguration;
 
 import androidx.test.filters.SmallTest;
@@ -28,6 +29,13 @@ import org.junit.Test;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
 /**
  * Unit tests for {@link com.android.server.wifi.ScanDetailCache}.
  */
@@ -42,6 +50,8 @@ public class ScanDetailCacheTest extends WifiBaseTest {
     private static final int TEST_RSSI = -50;
     private static final int TEST_RSSI_2 = -60;
     private static final int TEST_FREQUENCY = 2412;
+    private static final int TEST_LARGE_MAX_SIZE = 600;
+    private static final int TEST_LARGE_TRIM_SIZE = 500;
     private ScanDetailCache mScanDetailCache;
     WifiConfiguration mWifiConfiguration;
 
@@ -93,6 +103,187 @@ public class ScanDetailCacheTest extends WifiBaseTest {
         assertEquals(s4, mScanDetailCache.getScanDetail(TEST_BSSID_4));
     }
 
+    /**
+     * Verify that putting more than |maxSize| entries evicts the oldest entries down to
+     * |trimSize|.
+     */
+    @Test
+    public void testTrimEvictsOldestEntries() {
+        ScanDetail[] scanDetails = new ScanDetail[TEST_MAX_SIZE + 1];
+        for (int i = 0; i < scanDetails.length; i++) {
+            setClockTime(1000 * (i + 1));
+            scanDetails[i] = createScanDetailForNetwork(mWifiConfiguration,
+                    String.format("0a:08:5c:67:89:%02x", i), TEST_RSSI, TEST_FREQUENCY);
+            mScanDetailCache.put(scanDetails[i]);
+        }
+
+        // The last put triggered a trim down to |TEST_TRIM_SIZE| before being inserted.
+        assertEquals(TEST_TRIM_SIZE + 1, mScanDetailCache.size());
+        for (int i = 0; i < scanDetails.length - TEST_TRIM_SIZE - 1; i++) {
+            assertNull(mScanDetailCache.getScanDetail(scanDetails[i].getBSSIDString()));
+        }
+        for (int i = scanDetails.length - TEST_TRIM_SIZE - 1; i < scanDetails.length; i++) {
+            assertEquals(scanDetails[i],
+                    mScanDetailCache.getScanDetail(scanDetails[i].getBSSIDString()));
+        }
+        assertEquals(scanDetails[scanDetails.length - 1].getScanResult(),
+                mScanDetailCache.getMostRecentScanResult());
+    }
+
+    /**
+     * Verify that updating an existing BSSID in a full cache does not trigger a trim.
+     */
+    @Test
+    public void testPutExistingBssidDoesNotTrim() {
+        for (int i = 0; i < TEST_MAX_SIZE; i++) {
+            setClockTime(1000 * (i + 1));
+            mScanDetailCache.put(createScanDetailForNetwork(mWifiConfiguration,
+                    String.format("0a:08:5c:67:89:%02x", i), TEST_RSSI, TEST_FREQUENCY));
+        }
+        setClockTime(10000);
+        ScanDetail updated = createScanDetailForNetwork(mWifiConfiguration,
+                "0a:08:5c:67:89:00", TEST_RSSI, TEST_FREQUENCY);
+        mScanDetailCache.put(updated);
+
+        assertEquals(TEST_MAX_SIZE, mScanDetailCache.size());
+        assertEquals(updated.getScanResult(), mScanDetailCache.getMostRecentScanResult());
+    }
+
+    /**
+     * Verify that removed entries are no longer returned as the most recent scan result.
+     */
+    @Test
+    public void testRemove() {
+        setClockTime(1000);
+        ScanDetail s1 = createScanDetailForNetwork(mWifiConfiguration, TEST_BSSID_1,
+                TEST_RSSI, TEST_FREQUENCY);
+        setClockTime(2000);
+        ScanDetail s2 = createScanDetailForNetwork(mWifiConfiguration, TEST_BSSID_2,
+                TEST_RSSI, TEST_FREQUENCY);
+        mScanDetailCache.put(s1);
+        mScanDetailCache.put(s2);
+
+        mScanDetailCache.remove(TEST_BSSID_2);
+        assertEquals(s1.getScanResult(), mScanDetailCache.getMostRecentScanResult());
+        mScanDetailCache.remove(TEST_BSSID_1);
+        assertNull(mScanDetailCache.getMostRecentScanResult());
+        assertTrue(mScanDetailCache.isEmpty());
+    }
+
+    /**
+     * Verify that {@link ScanDetailCache#refresh(String)} re-orders an entry whose seen time was
+     * updated in place.
+     */
+    @Test
+    public void testRefreshAfterInPlaceUpdate() {
+        setClockTime(1000);
+        ScanDetail s1 = createScanDetailForNetwork(mWifiConfiguration, TEST_BSSID_1,
+                TEST_RSSI, TEST_FREQUENCY);
+        setClockTime(2000);
+        ScanDetail s2 = createScanDetailForNetwork(mWifiConfiguration, TEST_BSSID_2,
+                TEST_RSSI, TEST_FREQUENCY);
+        mScanDetailCache.put(s1);
+        mScanDetailCache.put(s2);
+        assertEquals(s2.getScanResult(), mScanDetailCache.getMostRecentScanResult());
+
+        // setSeen() uses the current wall clock time which is well past the mocked values.
+        s1.setSeen();
+        mScanDetailCache.refresh(TEST_BSSID_1);
+        assertEquals(s1.getScanResult(), mScanDetailCache.getMostRecentScanResult());
+    }
+
+    /**
+     * Verify that eviction and most recent lookups match the full sort based implementation
+     * with 500+ BSSIDs in random insertion order.
+     */
+    @Test
+    public void testMatchesSortedReferenceWithManyBssids() {
+        ScanDetailCache cache = new ScanDetailCache(
+                mWifiConfiguration, TEST_LARGE_MAX_SIZE, TEST_LARGE_TRIM_SIZE);
+        Random random = new Random(0x5CA7);
+        List<ScanDetail> reference = new ArrayList<>();
+        for (int i = 0; i < TEST_LARGE_MAX_SIZE; i++) {
+            setClockTime(1000 + random.nextInt(100000));
+            ScanDetail scanDetail = createScanDetailForNetwork(mWifiConfiguration,
+                    String.format("0a:08:5c:67:%02x:%02x", i / 256, i % 256),
+                    -40 - random.nextInt(50), TEST_FREQUENCY);
+            cache.put(scanDetail);
+            reference.add(scanDetail);
+            assertEquals(sortedByRecency(reference).get(0).getScanResult(),
+                    cache.getMostRecentScanResult());
+        }
+
+        // One more put triggers a trim of the oldest entries.
+        setClockTime(200000);
+        ScanDetail newest = createScanDetailForNetwork(mWifiConfiguration,
+                "0a:08:5c:67:ff:ff", TEST_RSSI, TEST_FREQUENCY);
+        cache.put(newest);
+
+        List<ScanDetail> evictionOrder = sortedByEviction(reference);
+        List<ScanDetail> survivors = evictionOrder.subList(
+                evictionOrder.size() - TEST_LARGE_TRIM_SIZE, evictionOrder.size());
+        Set<String> expectedBssids = new HashSet<>();
+        for (ScanDetail scanDetail : survivors) {
+            expectedBssids.add(scanDetail.getBSSIDString());
+        }
+        expectedBssids.add(newest.getBSSIDString());
+        assertEquals(expectedBssids, new HashSet<>(cache.keySet()));
+        assertEquals(newest.getScanResult(), cache.getMostRecentScanResult());
+    }
+
+    /**
+     * Verify that entries seen at the same time are evicted in ascending BSSID order, regardless
+     * of their RSSI.
+     */
+    @Test
+    public void testTrimEvictsLowestBssidFirstOnTies() {
+        setClockTime(1000);
+        for (int i = 0; i < TEST_MAX_SIZE; i++) {
+            mScanDetailCache.put(createScanDetailForNetwork(mWifiConfiguration,
+                    String.format("0a:08:5c:67:89:%02x", i), TEST_RSSI - i, TEST_FREQUENCY));
+        }
+        setClockTime(2000);
+        mScanDetailCache.put(createScanDetailForNetwork(mWifiConfiguration,
+                "0a:08:5c:67:89:ff", TEST_RSSI, TEST_FREQUENCY));
+
+        int evicted = TEST_MAX_SIZE - TEST_TRIM_SIZE;
+        for (int i = 0; i < TEST_MAX_SIZE; i++) {
+            String bssid = String.format("0a:08:5c:67:89:%02x", i);
+            if (i < evicted) {
+                assertNull(mScanDetailCache.getScanDetail(bssid));
+            } else {
+                assertNotNull(mScanDetailCache.getScanDetail(bssid));
+            }
+        }
+    }
+
+    /**
+     * Reference eviction ordering: ascending timestamp, then ascending BSSID.
+     */
+    private static List<ScanDetail> sortedByEviction(List<ScanDetail> scanDetails) {
+        List<ScanDetail> list = new ArrayList<>(scanDetails);
+        Collections.sort(list, (a, b) -> {
+            if (a.getSeen() != b.getSeen()) return a.getSeen() > b.getSeen() ? 1 : -1;
+            return a.getBSSIDString().compareTo(b.getBSSIDString());
+        });
+        return list;
+    }
+
+    /**
+     * Reference ordering: descending timestamp, then descending RSSI, then ascending BSSID.
+     */
+    private static List<ScanDetail> sortedByRecency(List<ScanDetail> scanDetails) {
+        List<ScanDetail> list = new ArrayList<>(scanDetails);
+        Collections.sort(list, (o1, o2) -> {
+            ScanResult a = o1.getScanResult();
+            ScanResult b = o2.getScanResult();
+            if (a.seen != b.seen) return a.seen > b.seen ? -1 : 1;
+            if (a.level != b.level) return a.level > b.level ? -1 : 1;
+            return a.BSSID.compareTo(b.BSSID);
+        });
+        return list;
+    }
+
     private void setClockTime(long millis) {
         when(mClock.getUptimeSinceBootMillis()).thenReturn(millis);
         when(mClock.getWallClockMillis()).thenReturn(millis);
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+
+import android.net.MacAddress;
+
+import androidx.test.filters.SmallTest;
+
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * Unit tests for {@link ScanDetailIndex}.
+ */
+@SmallTest
+public class ScanDetailIndexTest extends WifiBaseTest {
+    private static final String[] SSIDS = {"\"test1\"", "\"test2\"", "\"test1\""};
+    private static final String[] BSSIDS =
+            {"6c:f3:7f:ae:8c:f3", "6c:f3:7f:ae:8c:f4", "6c:f3:7f:ae:8c:f5"};
+    private static final int[] FREQUENCIES = {2437, 5180, 5200};
+    private static final String[] CAPS =
+            {"[WPA2-PSK-CCMP][ESS]", "[ESS]", "[WPA2-PSK-CCMP][ESS]"};
+    private static final int[] LEVELS = {-60, -70, -65};
+
+    private List<ScanDetail> buildScanDetails() {
+        return WifiNetworkSelectorTestUtil.buildScanDetails(
+                SSIDS, BSSIDS, FREQUENCIES, CAPS, LEVELS, mock(Clock.class));
+    }
+
+    /**
+     * Verify that the match info and BSSID of each scan detail are indexed.
+     */
+    @Test
+    public void testIndexedScanDetails() {
+        List<ScanDetail> scanDetails = buildScanDetails();
+        ScanDetailIndex index = new ScanDetailIndex(scanDetails);
+
+        assertEquals(scanDetails, index.getScanDetails());
+        assertEquals(3, index.size());
+        for (int i = 0; i < scanDetails.size(); i++) {
+            ScanDetail scanDetail = scanDetails.get(i);
+            assertEquals(ScanResultMatchInfo.fromScanResult(scanDetail.getScanResult()),
+                    index.getScanResultMatchInfo(scanDetail));
+            // The match info is computed once.
+            assertSame(index.getScanResultMatchInfo(scanDetail),
+                    index.getScanResultMatchInfo(scanDetail));
+            assertEquals(MacAddress.fromString(BSSIDS[i]), index.getBssid(scanDetail));
+            assertSame(scanDetail, index.getScanDetailForBssid(BSSIDS[i]));
+        }
+        assertNull(index.getScanDetailForBssid("6c:f3:7f:ae:8c:f6"));
+        assertNull(index.getScanDetailForBssid(null));
+    }
+
+    /**
+     * Verify that scan details which are not indexed are still supported.
+     */
+    @Test
+    public void testScanDetailNotIndexed() {
+        List<ScanDetail> scanDetails = buildScanDetails();
+        ScanDetailIndex index = new ScanDetailIndex(scanDetails.subList(0, 1));
+        ScanDetail notIndexed = scanDetails.get(1);
+
+        assertEquals(ScanResultMatchInfo.fromScanResult(notIndexed.getScanResult()),
+                index.getScanResultMatchInfo(notIndexed));
+        assertEquals(MacAddress.fromString(BSSIDS[1]), index.getBssid(notIndexed));
+        assertNull(index.getScanDetailForBssid(BSSIDS[1]));
+    }
+}
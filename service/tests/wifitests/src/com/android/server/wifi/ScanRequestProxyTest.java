@@ -33,6 +33,7 @@ import android.app.AppOpsManager;
 import android.content.Context;
 import android.content.Intent;
 import android.net.wifi.IScanResultsCallback;
+import android.net.wifi.IScanResultsDeltaCallback;
 import android.net.wifi.ScanResult;
 import android.net.wifi.WifiManager;
 import android.net.wifi.WifiScanner;
@@ -40,6 +41,7 @@ import android.net.wifi.WifiScanner.ScanSettings.HiddenNetwork;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.IBinder;
+import android.os.RemoteException;
 import android.os.UserHandle;
 import android.os.test.TestLooper;
 import android.text.TextUtils;
@@ -61,6 +63,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -95,6 +98,7 @@ public class ScanRequestProxyTest extends WifiBaseTest {
     @Mock private WifiNetworkSuggestionsManager mWifiNetworkSuggestionsManager;
     @Mock private IScanResultsCallback mScanResultsCallback;
     @Mock private IScanResultsCallback mAnotherScanResultsCallback;
+    @Mock private IScanResultsDeltaCallback mScanResultsDeltaCallback;
     @Mock private IBinder mBinder;
     @Mock private IBinder mAnotherBinder;
 
@@ -158,6 +162,7 @@ public class ScanRequestProxyTest extends WifiBaseTest {
         mScanRequestProxy.enableVerboseLogging(true);
         when(mScanResultsCallback.asBinder()).thenReturn(mBinder);
         when(mAnotherScanResultsCallback.asBinder()).thenReturn(mAnotherBinder);
+        when(mScanResultsDeltaCallback.asBinder()).thenReturn(mBinder);
     }
 
     @After
@@ -1206,6 +1211,91 @@ public class ScanRequestProxyTest extends WifiBaseTest {
         verify(mScanResultsCallback, never()).onScanResultsAvailable();
     }
 
+    /**
+     * Verify that a registered delta callback is first told to resync, and then only receives the
+     * changes of the scan results.
+     */
+    @Test
+    public void testScanResultsDeltaCallback() throws Exception {
+        testStartScanSuccess();
+        mGlobalScanListenerArgumentCaptor.getValue().onResults(mTestScanDatas1);
+        mLooper.dispatchAll();
+        long generation = mScanRequestProxy.getScanResultsGeneration();
+
+        // Registration only sends the generation, the client pulls the scan results.
+        assertTrue(mScanRequestProxy.registerScanResultsDeltaCallback(mScanResultsDeltaCallback));
+        verify(mScanResultsDeltaCallback).onScanResultsChanged(eq(generation), eq(true),
+                eq(Collections.emptyList()), eq(Collections.emptyList()),
+                eq(Collections.emptyList()));
+
+        // All the BSSIDs change on the next scan.
+        mGlobalScanListenerArgumentCaptor.getValue().onResults(mTestScanDatas2);
+        mLooper.dispatchAll();
+        ArgumentCaptor<List<ScanResult>> addedCaptor = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<List<String>> removedCaptor = ArgumentCaptor.forClass(List.class);
+        verify(mScanResultsDeltaCallback).onScanResultsChanged(eq(generation + 1), eq(false),
+                addedCaptor.capture(), eq(Collections.emptyList()), removedCaptor.capture());
+        ScanTestUtil.assertScanResultsEqualsAnyOrder(mTestScanDatas2[0].getResults(),
+                addedCaptor.getValue().toArray(new ScanResult[0]));
+        assertEquals(mTestScanDatas1[0].getResults().length, removedCaptor.getValue().size());
+        assertTrue(mScanRequestProxy.getScanResultsChangedSince(generation + 1).isEmpty());
+
+        // No callback once unregistered.
+        mScanRequestProxy.unregisterScanResultsDeltaCallback(mScanResultsDeltaCallback);
+        mGlobalScanListenerArgumentCaptor.getValue().onResults(mTestScanDatas1);
+        mLooper.dispatchAll();
+        verify(mScanResultsDeltaCallback, times(2)).onScanResultsChanged(anyLong(),
+                anyBoolean(), any(), any(), any());
+    }
+
+    /**
+     * Verify that a delta callback which missed a delivery is told to resync on the next change.
+     */
+    @Test
+    public void testScanResultsDeltaCallbackResyncsAfterFailedDelivery() throws Exception {
+        testStartScanSuccess();
+        doThrow(new RemoteException()).when(mScanResultsDeltaCallback).onScanResultsChanged(
+                anyLong(), anyBoolean(), any(), any(), any());
+        assertTrue(mScanRequestProxy.registerScanResultsDeltaCallback(mScanResultsDeltaCallback));
+        mGlobalScanListenerArgumentCaptor.getValue().onResults(mTestScanDatas1);
+        mLooper.dispatchAll();
+        reset(mScanResultsDeltaCallback);
+
+        mGlobalScanListenerArgumentCaptor.getValue().onResults(mTestScanDatas2);
+        mLooper.dispatchAll();
+        long generation = mScanRequestProxy.getScanResultsGeneration();
+        verify(mScanResultsDeltaCallback).onScanResultsChanged(eq(generation), eq(true),
+                eq(Collections.emptyList()), eq(Collections.emptyList()),
+                eq(Collections.emptyList()));
+
+        // Back to inline changes once the resync was delivered.
+        mGlobalScanListenerArgumentCaptor.getValue().onResults(mTestScanDatas1);
+        mLooper.dispatchAll();
+        verify(mScanResultsDeltaCallback).onScanResultsChanged(eq(generation + 1), eq(false),
+                any(), any(), any());
+    }
+
+    /**
+     * Verify that changes larger than {@link ScanRequestProxy#MAX_SCAN_RESULTS_PER_DELTA} are not
+     * sent inline, and the delta callback is told to resync instead.
+     */
+    @Test
+    public void testScanResultsDeltaCallbackResyncsOnLargeChange() throws Exception {
+        testStartScanSuccess();
+        assertTrue(mScanRequestProxy.registerScanResultsDeltaCallback(mScanResultsDeltaCallback));
+        reset(mScanResultsDeltaCallback);
+
+        int[] freqs = new int[ScanRequestProxy.MAX_SCAN_RESULTS_PER_DELTA + 1];
+        Arrays.fill(freqs, 2412);
+        mGlobalScanListenerArgumentCaptor.getValue().onResults(ScanTestUtil.createScanDatas(
+                new int[][]{freqs}, new int[]{0}, new int[]{WifiScanner.WIFI_BAND_ALL}));
+        mLooper.dispatchAll();
+        verify(mScanResultsDeltaCallback).onScanResultsChanged(
+                eq(mScanRequestProxy.getScanResultsGeneration()), eq(true),
+                eq(Collections.emptyList()), eq(Collections.emptyList()),
+                eq(Collections.emptyList()));
+    }
+
     /** Test that modifying the returned scan results list does not change the original. */
     @Test
     public void testGetScanResults_modifyReturnedList_doesNotChangeOriginal() {
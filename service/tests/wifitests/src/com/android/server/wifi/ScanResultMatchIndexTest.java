@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi;
+
+import static android.net.wifi.WifiManager.WIFI_FEATURE_OWE;
+import static android.net.wifi.WifiManager.WIFI_FEATURE_WPA3_SAE;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.validateMockitoUsage;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiConfiguration;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.dx.mockito.inline.extended.ExtendedMockito;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.MockitoSession;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link com.android.server.wifi.ScanResultMatchIndex}.
+ */
+@SmallTest
+public class ScanResultMatchIndexTest extends WifiBaseTest {
+    private static final String TEST_SSID = "\"ScanResultMatchIndexSSID\"";
+    private static final String TEST_OTHER_SSID = "\"OtherSSID\"";
+    private static final int NUM_APPS = 5;
+    private static final int NUM_SUGGESTIONS_PER_APP = 500;
+    private static final int NUM_SCAN_RESULTS = 500;
+    private static final int NUM_SSIDS = 1000;
+
+    @Mock WifiInjector mWifiInjector;
+    @Mock WifiGlobals mWifiGlobals;
+    @Mock ActiveModeWarden mActiveModeWarden;
+    @Mock ClientModeManager mClientModeManager;
+    private MockitoSession mSession;
+
+    /**
+     * Sets up for unit test
+     */
+    @Before
+    public void setUp() throws Exception {
+        MockitoAnnotations.initMocks(this);
+        mSession = ExtendedMockito.mockitoSession()
+                .mockStatic(WifiInjector.class, withSettings().lenient())
+                .startMocking();
+        when(WifiInjector.getInstance()).thenReturn(mWifiInjector);
+        when(mWifiInjector.getWifiGlobals()).thenReturn(mWifiGlobals);
+        when(mWifiInjector.getActiveModeWarden()).thenReturn(mActiveModeWarden);
+        when(mActiveModeWarden.getPrimaryClientModeManager()).thenReturn(mClientModeManager);
+        when(mClientModeManager.getSupportedFeatures()).thenReturn(
+                WIFI_FEATURE_OWE | WIFI_FEATURE_WPA3_SAE);
+        when(mWifiGlobals.isWpa3SaeUpgradeEnabled()).thenReturn(true);
+        when(mWifiGlobals.isOweUpgradeEnabled()).thenReturn(true);
+    }
+
+    /**
+     * Called after each test
+     */
+    @After
+    public void cleanup() {
+        validateMockitoUsage();
+        if (mSession != null) {
+            mSession.finishMocking();
+        }
+    }
+
+    private static ScanResult createScanResult(WifiConfiguration config, String bssid) {
+        return WifiConfigurationTestUtil.createScanDetailForNetwork(config, bssid, 0, 0, 0, 0)
+                .getScanResult();
+    }
+
+    /**
+     * Verify that only the scan results with the SSID and a compatible security type of the
+     * configuration are returned, in the order of the scan result list.
+     */
+    @Test
+    public void getMatchingScanResultsBySsidAndSecurity() {
+        WifiConfiguration pskConfig = WifiConfigurationTestUtil.createPskNetwork(TEST_SSID);
+        ScanResult pskScanResult1 = createScanResult(pskConfig, "AA:AA:AA:AA:AA:01");
+        ScanResult openScanResult = createScanResult(
+                WifiConfigurationTestUtil.createOpenNetwork(TEST_SSID), "AA:AA:AA:AA:AA:02");
+        ScanResult otherSsidScanResult = createScanResult(
+                WifiConfigurationTestUtil.createPskNetwork(TEST_OTHER_SSID), "AA:AA:AA:AA:AA:03");
+        ScanResult pskScanResult2 = createScanResult(pskConfig, "AA:AA:AA:AA:AA:04");
+
+        ScanResultMatchIndex index = new ScanResultMatchIndex(Arrays.asList(pskScanResult1,
+                openScanResult, null, otherSsidScanResult, pskScanResult2));
+        assertEquals(Arrays.asList(pskScanResult1, pskScanResult2),
+                index.getMatchingScanResults(pskConfig));
+        assertEquals(Arrays.asList(openScanResult), index.getMatchingScanResults(
+                WifiConfigurationTestUtil.createOpenNetwork(TEST_SSID)));
+        assertTrue(index.getMatchingScanResults(
+                WifiConfigurationTestUtil.createPskNetwork("\"UnknownSSID\"")).isEmpty());
+    }
+
+    /**
+     * Verify that an index is only reusable for a list of the same scan result objects.
+     */
+    @Test
+    public void isBuiltFromSameScanResults() {
+        WifiConfiguration config = WifiConfigurationTestUtil.createPskNetwork(TEST_SSID);
+        ScanResult scanResult1 = createScanResult(config, "AA:AA:AA:AA:AA:01");
+        ScanResult scanResult2 = createScanResult(config, "AA:AA:AA:AA:AA:02");
+        List<ScanResult> scanResults = new ArrayList<>(Arrays.asList(scanResult1, scanResult2));
+        ScanResultMatchIndex index = new ScanResultMatchIndex(scanResults);
+
+        assertTrue(index.isBuiltFrom(new ArrayList<>(scanResults)));
+        assertFalse(index.isBuiltFrom(Arrays.asList(scanResult2, scanResult1)));
+        assertFalse(index.isBuiltFrom(Arrays.asList(scanResult1)));
+        assertFalse(index.isBuiltFrom(Arrays.asList(scanResult1, new ScanResult(scanResult2))));
+        // Modifying the source list does not affect the index.
+        scanResults.clear();
+        assertEquals(2, index.getMatchingScanResults(config).size());
+    }
+
+    /**
+     * Verify with the suggestions of several apps and many scan results that the index returns
+     * the same scan results as comparing every suggestion with every scan result.
+     */
+    @Test
+    public void manySuggestionsMatchSameAsExhaustiveComparison() {
+        Random random = new Random(42);
+        List<ScanResult> scanResults = new ArrayList<>();
+        for (int i = 0; i < NUM_SCAN_RESULTS; i++) {
+            String ssid = "\"ssid" + random.nextInt(NUM_SSIDS) + "\"";
+            WifiConfiguration config = random.nextBoolean()
+                    ? WifiConfigurationTestUtil.createPskNetwork(ssid)
+                    : WifiConfigurationTestUtil.createOpenNetwork(ssid);
+            scanResults.add(createScanResult(config, String.format("AA:AA:AA:AA:%02X:%02X",
+                    i / 256, i % 256)));
+        }
+        List<ScanResultMatchInfo> scanMatchInfos = new ArrayList<>();
+        for (ScanResult scanResult : scanResults) {
+            scanMatchInfos.add(ScanResultMatchInfo.fromScanResult(scanResult));
+        }
+
+        ScanResultMatchIndex index = new ScanResultMatchIndex(scanResults);
+        int numMatches = 0;
+        for (int app = 0; app < NUM_APPS; app++) {
+            for (int i = 0; i < NUM_SUGGESTIONS_PER_APP; i++) {
+                String ssid = "\"ssid" + random.nextInt(NUM_SSIDS) + "\"";
+                WifiConfiguration config = random.nextBoolean()
+                        ? WifiConfigurationTestUtil.createPskNetwork(ssid)
+                        : WifiConfigurationTestUtil.createOpenNetwork(ssid);
+                ScanResultMatchInfo configMatchInfo =
+                        ScanResultMatchInfo.fromWifiConfiguration(config);
+                List<ScanResult> expected = new ArrayList<>();
+                for (int j = 0; j < NUM_SCAN_RESULTS; j++) {
+                    if (configMatchInfo.equals(scanMatchInfos.get(j))) {
+                        expected.add(scanResults.get(j));
+                    }
+                }
+                List<ScanResult> matchingScanResults = index.getMatchingScanResults(config);
+                assertEquals(expected, matchingScanResults);
+                numMatches += matchingScanResults.size();
+            }
+        }
+        assertTrue(numMatches > 0);
+    }
+}
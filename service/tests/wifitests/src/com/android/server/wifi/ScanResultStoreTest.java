@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import android.net.wifi.ScanResult;
+import android.net.wifi.WifiSsid;
+import android.net.wifi.util.ScanResultUtil;
+
+import androidx.test.filters.SmallTest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link com.android.server.wifi.ScanResultStore}.
+ */
+@SmallTest
+public class ScanResultStoreTest extends WifiBaseTest {
+    private static final String TEST_SSID_1 = "\"ssid1\"";
+    private static final String TEST_SSID_2 = "\"ssid2\"";
+    private static final String TEST_BSSID_1 = "aa:bb:cc:dd:ee:01";
+    private static final String TEST_BSSID_2 = "aa:bb:cc:dd:ee:02";
+    private static final String TEST_BSSID_3 = "aa:bb:cc:dd:ee:03";
+    private static final String PSK_CAPABILITIES = "[WPA2-PSK-CCMP][ESS]";
+    private static final String SAE_CAPABILITIES = "[RSN-SAE-CCMP][ESS]";
+
+    private ScanResultStore mScanResultStore;
+
+    @Before
+    public void setUp() throws Exception {
+        mScanResultStore = new ScanResultStore();
+    }
+
+    private static ScanResult createScanResult(String ssid, String bssid, String capabilities,
+            int level) {
+        return new ScanResult(WifiSsid.fromString(ssid), bssid, 0L, -1, null, capabilities,
+                level, 2412, 0);
+    }
+
+    /**
+     * Verify the delta reported by successive updates.
+     */
+    @Test
+    public void testUpdateReportsDelta() {
+        ScanResult result1 = createScanResult(TEST_SSID_1, TEST_BSSID_1, PSK_CAPABILITIES, -50);
+        ScanResult result2 = createScanResult(TEST_SSID_1, TEST_BSSID_2, PSK_CAPABILITIES, -60);
+        ScanResultStore.Delta delta = mScanResultStore.update(new ScanResult[] {result1, result2});
+        assertEquals(1, delta.generation);
+        assertThat(delta.added).containsExactly(result1, result2);
+        assertTrue(delta.updated.isEmpty());
+        assertTrue(delta.removedBssids.isEmpty());
+
+        ScanResult result1Updated =
+                createScanResult(TEST_SSID_1, TEST_BSSID_1, PSK_CAPABILITIES, -70);
+        ScanResult result3 = createScanResult(TEST_SSID_2, TEST_BSSID_3, SAE_CAPABILITIES, -55);
+        delta = mScanResultStore.update(new ScanResult[] {result1Updated, result3});
+        assertEquals(2, delta.generation);
+        assertThat(delta.added).containsExactly(result3);
+        assertThat(delta.updated).containsExactly(result1Updated);
+        assertThat(delta.removedBssids).containsExactly(TEST_BSSID_2);
+        assertSame(result1Updated, mScanResultStore.get(TEST_BSSID_1));
+        assertNull(mScanResultStore.get(TEST_BSSID_2));
+        assertEquals(2, mScanResultStore.size());
+    }
+
+    /**
+     * Verify that a scan with no meaningful changes does not bump the generation, but the
+     * latest results are still returned.
+     */
+    @Test
+    public void testUnchangedScanKeepsGeneration() {
+        ScanResult result1 = createScanResult(TEST_SSID_1, TEST_BSSID_1, PSK_CAPABILITIES, -50);
+        mScanResultStore.update(new ScanResult[] {result1});
+
+        ScanResult result1Again =
+                createScanResult(TEST_SSID_1, TEST_BSSID_1, PSK_CAPABILITIES, -50);
+        result1Again.timestamp = 1000L;
+        ScanResultStore.Delta delta = mScanResultStore.update(new ScanResult[] {result1Again});
+        assertTrue(delta.isEmpty());
+        assertEquals(1, mScanResultStore.getGeneration());
+        assertThat(mScanResultStore.getScanResults()).containsExactly(result1Again);
+    }
+
+    /**
+     * Verify the changes since an older generation are accumulated.
+     */
+    @Test
+    public void testGetChangesSince() {
+        ScanResult result1 = createScanResult(TEST_SSID_1, TEST_BSSID_1, PSK_CAPABILITIES, -50);
+        ScanResult result2 = createScanResult(TEST_SSID_1, TEST_BSSID_2, PSK_CAPABILITIES, -60);
+        mScanResultStore.update(new ScanResult[] {result1, result2});
+        long generation = mScanResultStore.getGeneration();
+
+        ScanResult result3 = createScanResult(TEST_SSID_2, TEST_BSSID_3, SAE_CAPABILITIES, -55);
+        mScanResultStore.update(new ScanResult[] {result1, result2, result3});
+        ScanResult result1Updated =
+                createScanResult(TEST_SSID_1, TEST_BSSID_1, PSK_CAPABILITIES, -70);
+        mScanResultStore.update(new ScanResult[] {result1Updated, result3});
+
+        ScanResultStore.Delta delta = mScanResultStore.getChangesSince(generation);
+        assertFalse(delta.isFullSnapshot);
+        assertEquals(mScanResultStore.getGeneration(), delta.generation);
+        assertThat(delta.added).containsExactly(result3);
+        assertThat(delta.updated).containsExactly(result1Updated);
+        assertThat(delta.removedBssids).containsExactly(TEST_BSSID_2);
+
+        assertTrue(mScanResultStore.getChangesSince(mScanResultStore.getGeneration()).isEmpty());
+    }
+
+    /**
+     * Verify that changes since an unknown or untracked generation are reported as a full
+     * snapshot.
+     */
+    @Test
+    public void testGetChangesSinceOldGenerationReturnsFullSnapshot() {
+        ScanResult result1 = createScanResult(TEST_SSID_1, TEST_BSSID_1, PSK_CAPABILITIES, -50);
+        for (int i = 0; i <= ScanResultStore.MAX_TRACKED_GENERATIONS; i++) {
+            mScanResultStore.update(new ScanResult[] {createScanResult(TEST_SSID_1, TEST_BSSID_2,
+                    PSK_CAPABILITIES, -60 - (i % 2) * ScanResultStore.RSSI_CHANGE_THRESHOLD_DB)});
+        }
+        mScanResultStore.update(new ScanResult[] {result1});
+
+        ScanResultStore.Delta delta = mScanResultStore.getChangesSince(0);
+        assertTrue(delta.isFullSnapshot);
+        assertThat(delta.added).containsExactly(result1);
+
+        delta = mScanResultStore.getChangesSince(-1);
+        assertTrue(delta.isFullSnapshot);
+        delta = mScanResultStore.getChangesSince(mScanResultStore.getGeneration() + 1);
+        assertTrue(delta.isFullSnapshot);
+    }
+
+    /**
+     * Verify that clearing reports all the BSSIDs as removed.
+     */
+    @Test
+    public void testClear() {
+        ScanResult result1 = createScanResult(TEST_SSID_1, TEST_BSSID_1, PSK_CAPABILITIES, -50);
+        mScanResultStore.update(new ScanResult[] {result1});
+        ScanResultStore.Delta delta = mScanResultStore.clear();
+        assertThat(delta.removedBssids).containsExactly(TEST_BSSID_1);
+        assertTrue(mScanResultStore.getScanResults().isEmpty());
+        assertFalse(mScanResultStore.anyMatch(TEST_SSID_1, r -> true));
+        assertTrue(mScanResultStore.clear().isEmpty());
+    }
+
+    /**
+     * Verify the SSID index follows updates of the cached results.
+     */
+    @Test
+    public void testSsidIndex() {
+        mScanResultStore.update(new ScanResult[] {
+                createScanResult(TEST_SSID_1, TEST_BSSID_1, PSK_CAPABILITIES, -50),
+                createScanResult(TEST_SSID_2, TEST_BSSID_2, SAE_CAPABILITIES, -50)});
+        assertTrue(mScanResultStore.anyMatch(TEST_SSID_1,
+                ScanResultUtil::isScanResultForPskOnlyNetwork));
+        assertFalse(mScanResultStore.anyMatch(TEST_SSID_1,
+                ScanResultUtil::isScanResultForSaeOnlyNetwork));
+        assertTrue(mScanResultStore.anyMatch(TEST_SSID_2,
+                ScanResultUtil::isScanResultForSaeOnlyNetwork));
+
+        // BSSID 1 now advertises SAE, and BSSID 2 is gone.
+        mScanResultStore.update(new ScanResult[] {
+                createScanResult(TEST_SSID_1, TEST_BSSID_1, SAE_CAPABILITIES, -50)});
+        assertFalse(mScanResultStore.anyMatch(TEST_SSID_1,
+                ScanResultUtil::isScanResultForPskOnlyNetwork));
+        assertTrue(mScanResultStore.anyMatch(TEST_SSID_1,
+                ScanResultUtil::isScanResultForSaeOnlyNetwork));
+        assertFalse(mScanResultStore.anyMatch(TEST_SSID_2, r -> true));
+    }
+
+    /**
+     * Verify that RSSI changes are only reported past the threshold, compared to the RSSI last
+     * reported rather than the RSSI of the previous scan.
+     */
+    @Test
+    public void testSmallRssiChangesNotReported() {
+        mScanResultStore.update(new ScanResult[] {
+                createScanResult(TEST_SSID_1, TEST_BSSID_1, PSK_CAPABILITIES, -50)});
+        long generation = mScanResultStore.getGeneration();
+
+        int smallChange = ScanResultStore.RSSI_CHANGE_THRESHOLD_DB - 1;
+        ScanResultStore.Delta delta = mScanResultStore.update(new ScanResult[] {
+                createScanResult(TEST_SSID_1, TEST_BSSID_1, PSK_CAPABILITIES, -50 - smallChange)});
+        assertTrue(delta.isEmpty());
+        assertEquals(generation, mScanResultStore.getGeneration());
+
+        // The drift since the last reported RSSI reaches the threshold.
+        ScanResult result1Updated = createScanResult(TEST_SSID_1, TEST_BSSID_1, PSK_CAPABILITIES,
+                -50 - ScanResultStore.RSSI_CHANGE_THRESHOLD_DB);
+        delta = mScanResultStore.update(new ScanResult[] {result1Updated});
+        assertThat(delta.updated).containsExactly(result1Updated);
+    }
+
+    /**
+     * Verify that a BSSID removed and added again is reported as updated to a receiver which
+     * knew about it, and as added to a receiver which did not.
+     */
+    @Test
+    public void testRemovedAndAddedAgainReportedAsUpdated() {
+        ScanResult result1 = createScanResult(TEST_SSID_1, TEST_BSSID_1, PSK_CAPABILITIES, -50);
+        ScanResult result2 = createScanResult(TEST_SSID_1, TEST_BSSID_2, PSK_CAPABILITIES, -60);
+        mScanResultStore.update(new ScanResult[] {result2});
+        long generationBeforeAdd = mScanResultStore.getGeneration();
+        mScanResultStore.update(new ScanResult[] {result1, result2});
+        long generationWithBssid = mScanResultStore.getGeneration();
+        mScanResultStore.update(new ScanResult[] {result2});
+        long generationWithoutBssid = mScanResultStore.getGeneration();
+        mScanResultStore.update(new ScanResult[] {result1, result2});
+
+        ScanResultStore.Delta delta = mScanResultStore.getChangesSince(generationWithBssid);
+        assertTrue(delta.added.isEmpty());
+        assertThat(delta.updated).containsExactly(result1);
+        assertTrue(delta.removedBssids.isEmpty());
+
+        delta = mScanResultStore.getChangesSince(generationWithoutBssid);
+        assertThat(delta.added).containsExactly(result1);
+        assertTrue(delta.updated.isEmpty());
+
+        delta = mScanResultStore.getChangesSince(generationBeforeAdd);
+        assertThat(delta.added).containsExactly(result1);
+        assertTrue(delta.updated.isEmpty());
+
+        // A BSSID added and removed since the generation is unknown to the receiver.
+        mScanResultStore.update(new ScanResult[] {result2});
+        delta = mScanResultStore.getChangesSince(generationWithoutBssid);
+        assertTrue(delta.removedBssids.isEmpty());
+        assertThat(mScanResultStore.getChangesSince(generationWithBssid).removedBssids)
+                .containsExactly(TEST_BSSID_1);
+    }
+
+    /**
+     * A removed BSSID added again with a different case should be tracked as the same BSSID.
+     */
+    @Test
+    public void testRemovedBssidsAreCaseInsensitive() {
+        ScanResult result1 = createScanResult(TEST_SSID_1, TEST_BSSID_1, PSK_CAPABILITIES, -50);
+        ScanResult result1Upper = createScanResult(TEST_SSID_1, TEST_BSSID_1.toUpperCase(),
+                PSK_CAPABILITIES, -50);
+        ScanResult result2 = createScanResult(TEST_SSID_1, TEST_BSSID_2, PSK_CAPABILITIES, -60);
+        mScanResultStore.update(new ScanResult[] {result1, result2});
+        long generationWithBssid = mScanResultStore.getGeneration();
+        mScanResultStore.update(new ScanResult[] {result2});
+        mScanResultStore.update(new ScanResult[] {result1Upper, result2});
+
+        ScanResultStore.Delta delta = mScanResultStore.getChangesSince(generationWithBssid);
+        assertTrue(delta.added.isEmpty());
+        assertThat(delta.updated).containsExactly(result1Upper);
+        assertTrue(delta.removedBssids.isEmpty());
+    }
+}
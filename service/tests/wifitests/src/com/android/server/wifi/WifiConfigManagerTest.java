@@ -23,6 +23,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.junit.Assume.assumeTrue;
@@ -104,6 +105,7 @@ import org.mockito.stubbing.Answer;
 import org.xmlpull.v1.XmlPullParserException;
 
 import java.io.FileDescriptor;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.security.cert.X509Certificate;
@@ -446,6 +448,25 @@ public class WifiConfigManagerTest extends WifiBaseTest {
         verify(mWifiMetrics).wifiConfigStored(anyInt());
     }
 
+    /**
+     * Verifies that a forced write queued by write coalescing is not recorded as a store write
+     * time, and that {@link WifiConfigManager#flushCoalescedStoreWrites()} flushes it.
+     */
+    @Test
+    public void testSaveToStoreWithWriteCoalescing() throws Exception {
+        assertTrue(mWifiConfigManager.loadFromStore());
+        when(mWifiConfigStore.isWriteCoalescingEnabled()).thenReturn(true);
+
+        assertTrue(mWifiConfigManager.saveToStore(true));
+        verify(mWifiConfigStore).write(true);
+        verify(mWifiMetrics, never()).wifiConfigStored(anyInt());
+
+        assertTrue(mWifiConfigManager.flushCoalescedStoreWrites());
+        verify(mWifiConfigStore).flushCoalescedWrites();
+        doThrow(new IOException()).when(mWifiConfigStore).flushCoalescedWrites();
+        assertFalse(mWifiConfigManager.flushCoalescedStoreWrites());
+    }
+
     /**
      * Verify that a randomized MAC address is generated even if the KeyStore operation fails.
      */
@@ -487,6 +508,42 @@ public class WifiConfigManagerTest extends WifiBaseTest {
         assertEquals(WifiConfiguration.Status.DISABLED, retrievedNetworks.get(0).status);
     }
 
+    /**
+     * Verifies that {@link WifiConfigManager#getConfiguredNetworksSnapshot()} returns masked
+     * configurations, and is only rebuilt after the internal configurations may have changed.
+     */
+    @Test
+    public void testConfiguredNetworksSnapshot() {
+        WifiConfiguration pskNetwork = WifiConfigurationTestUtil.createPskNetwork();
+        NetworkUpdateResult result = verifyAddNetworkToWifiConfigManager(pskNetwork);
+
+        List<WifiConfiguration> snapshot = mWifiConfigManager.getConfiguredNetworksSnapshot();
+        assertEquals(1, snapshot.size());
+        assertEquals(WifiConfigManager.PASSWORD_MASK, snapshot.get(0).preSharedKey);
+        try {
+            snapshot.add(pskNetwork);
+            fail("Snapshot should not be modifiable");
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+
+        // Reading the networks does not invalidate the snapshot.
+        mWifiConfigManager.getConfiguredNetwork(result.getNetworkId());
+        mWifiConfigManager.getConfiguredNetworks();
+        assertSame(snapshot, mWifiConfigManager.getConfiguredNetworksSnapshot());
+
+        // Modifying a network does.
+        assertTrue(mWifiConfigManager.allowAutojoin(result.getNetworkId(), false));
+        List<WifiConfiguration> newSnapshot = mWifiConfigManager.getConfiguredNetworksSnapshot();
+        assertNotEquals(snapshot, newSnapshot);
+        assertFalse(newSnapshot.get(0).allowAutojoin);
+        assertTrue(snapshot.get(0).allowAutojoin);
+
+        // And so does adding a network.
+        verifyAddNetworkToWifiConfigManager(WifiConfigurationTestUtil.createOpenNetwork());
+        assertEquals(2, mWifiConfigManager.getConfiguredNetworksSnapshot().size());
+    }
+
     /**
      * Verifies the addition of a WAPI-PSK network using
      * {@link WifiConfigManager#addOrUpdateNetwork(WifiConfiguration, int)}
@@ -39,6 +39,7 @@ import com.android.server.wifi.WifiConfigStore.StoreData;
 import com.android.server.wifi.WifiConfigStore.StoreFile;
 import com.android.server.wifi.util.ArrayUtils;
 import com.android.server.wifi.util.EncryptedData;
+import com.android.server.wifi.util.WifiConfigStoreBinaryFormat;
 import com.android.server.wifi.util.WifiConfigStoreEncryptionUtil;
 import com.android.server.wifi.util.XmlUtil;
 
@@ -1080,6 +1081,7 @@ public class WifiConfigStoreTest extends WifiBaseTest {
      */
     private class MockStoreFile extends StoreFile {
         private byte[] mStoreBytes;
+        private byte[] mBinaryStoreBytes;
         private boolean mStoreWritten;
 
         MockStoreFile(@WifiConfigStore.StoreFileId int fileId) {
@@ -1092,8 +1094,14 @@ public class WifiConfigStoreTest extends WifiBaseTest {
         }
 
         @Override
-        public void storeRawDataToWrite(byte[] data) {
+        public byte[] readBinaryRawData() {
+            return mBinaryStoreBytes;
+        }
+
+        @Override
+        public void storeRawDataToWrite(byte[] data, byte[] binaryData) {
             mStoreBytes = data;
+            mBinaryStoreBytes = binaryData;
             mStoreWritten = false;
         }
 
@@ -1108,6 +1116,10 @@ public class WifiConfigStoreTest extends WifiBaseTest {
             return mStoreBytes;
         }
 
+        public byte[] getBinaryStoreBytes() {
+            return mBinaryStoreBytes;
+        }
+
         public boolean isStoreWritten() {
             return mStoreWritten;
         }
@@ -1123,6 +1135,7 @@ public class WifiConfigStoreTest extends WifiBaseTest {
         private @WifiConfigStore.StoreFileId int mFileId;
         private String mData;
         private boolean mHasAnyNewData = true;
+        private boolean mSupportsLazyLoading = false;
 
         MockStoreData(@WifiConfigStore.StoreFileId int fileId) {
             mFileId = fileId;
@@ -1164,6 +1177,11 @@ public class WifiConfigStoreTest extends WifiBaseTest {
             return mFileId;
         }
 
+        @Override
+        public boolean supportsLazyLoading() {
+            return mSupportsLazyLoading;
+        }
+
         public String getData() {
             return mData;
         }
@@ -1175,6 +1193,374 @@ public class WifiConfigStoreTest extends WifiBaseTest {
         public void setHasAnyNewData(boolean hasAnyNewData) {
             mHasAnyNewData = hasAnyNewData;
         }
+
+        public void setSupportsLazyLoading(boolean supportsLazyLoading) {
+            mSupportsLazyLoading = supportsLazyLoading;
+        }
+    }
+
+    /**
+     * Tests that a burst of forced writes is coalesced into a single write per store file once
+     * the debounce period expires.
+     */
+    @Test
+    public void testCoalescedForceWrites() throws Exception {
+        mWifiConfigStore.enableWriteCoalescing(true);
+        mWifiConfigStore.registerStoreData(mSharedStoreData);
+        mWifiConfigStore.registerStoreData(mUserStoreData);
+        mWifiConfigStore.switchUserStoresAndRead(mUserStores);
+
+        mSharedStoreData.setData(TEST_SHARE_DATA);
+        mWifiConfigStore.write(true);
+        mWifiConfigStore.write(true);
+        mUserStoreData.setData(TEST_USER_DATA);
+        mWifiConfigStore.write(true);
+
+        assertFalse(mSharedStore.isStoreWritten());
+        assertFalse(mUserStore.isStoreWritten());
+        verify(mWifiMetrics, never()).noteWifiConfigStoreWriteDuration(anyInt());
+
+        moveTimeForward(WifiConfigStore.COALESCED_WRITE_DEBOUNCE_MS);
+        assertTrue(mSharedStore.isStoreWritten());
+        assertTrue(mUserStore.isStoreWritten());
+        assertFalse(mUserNetworkSuggestionsStore.isStoreWritten());
+        verify(mWifiMetrics).noteWifiConfigStoreWriteDuration(anyInt());
+
+        // Verify the latest data was written.
+        mWifiConfigStore.read();
+        assertEquals(TEST_SHARE_DATA, mSharedStoreData.getData());
+        assertEquals(TEST_USER_DATA, mUserStoreData.getData());
+    }
+
+    /**
+     * Tests that a continuous stream of forced writes is still written out after the max
+     * coalescing latency.
+     */
+    @Test
+    public void testCoalescedForceWritesMaxLatency() throws Exception {
+        mWifiConfigStore.enableWriteCoalescing(true);
+        mWifiConfigStore.registerStoreData(mSharedStoreData);
+        mSharedStoreData.setData(TEST_SHARE_DATA);
+
+        int elapsed = 0;
+        while (elapsed < WifiConfigStore.COALESCED_WRITE_MAX_LATENCY_MS) {
+            assertFalse(mSharedStore.isStoreWritten());
+            mWifiConfigStore.write(true);
+            moveTimeForward(WifiConfigStore.COALESCED_WRITE_DEBOUNCE_MS / 2);
+            elapsed += WifiConfigStore.COALESCED_WRITE_DEBOUNCE_MS / 2;
+        }
+        assertTrue(mSharedStore.isStoreWritten());
+        verify(mWifiMetrics).noteWifiConfigStoreWriteDuration(anyInt());
+    }
+
+    /**
+     * Tests that coalesced writes for the current user are flushed out before the user store
+     * files are switched and the user data is reset.
+     */
+    @Test
+    public void testCoalescedWritesFlushedOnUserSwitch() throws Exception {
+        mWifiConfigStore.enableWriteCoalescing(true);
+        mWifiConfigStore.registerStoreData(mUserStoreData);
+        mWifiConfigStore.switchUserStoresAndRead(mUserStores);
+
+        mUserStoreData.setData(TEST_USER_DATA);
+        mWifiConfigStore.write(true);
+        assertFalse(mUserStore.isStoreWritten());
+
+        MockStoreFile newUserStore = new MockStoreFile(WifiConfigStore.STORE_FILE_USER_GENERAL);
+        mWifiConfigStore.switchUserStoresAndRead(Arrays.asList(newUserStore,
+                new MockStoreFile(WifiConfigStore.STORE_FILE_USER_NETWORK_SUGGESTIONS)));
+        assertTrue(mUserStore.isStoreWritten());
+        assertNull(mUserStoreData.getData());
+
+        // Nothing left to write for the old user.
+        moveTimeForward(WifiConfigStore.COALESCED_WRITE_MAX_LATENCY_MS);
+        assertFalse(newUserStore.isStoreWritten());
+    }
+
+    /**
+     * Tests that a failed coalesced write keeps the store file dirty, and that the next write
+     * request retries it.
+     */
+    @Test
+    public void testCoalescedWriteRetriedAfterFailure() throws Exception {
+        MockStoreFile failingStore = new MockStoreFile(WifiConfigStore.STORE_FILE_SHARED_GENERAL) {
+            private boolean mFailNextWrite = true;
+
+            @Override
+            public void writeBufferedRawData() {
+                if (mFailNextWrite) {
+                    mFailNextWrite = false;
+                    throw new IllegalStateException("disk full");
+                }
+                super.writeBufferedRawData();
+            }
+        };
+        mWifiConfigStore = new WifiConfigStore(mContext, new Handler(mLooper.getLooper()), mClock,
+                mWifiMetrics, Arrays.asList(failingStore));
+        mWifiConfigStore.enableWriteCoalescing(true);
+        mWifiConfigStore.registerStoreData(mSharedStoreData);
+        mSharedStoreData.setData(TEST_SHARE_DATA);
+
+        mWifiConfigStore.write(true);
+        try {
+            mWifiConfigStore.flushCoalescedWrites();
+            fail("Expected the write to fail");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertFalse(failingStore.isStoreWritten());
+
+        // The store file remained dirty, so a forced write with no new data retries it.
+        mSharedStoreData.setHasAnyNewData(false);
+        mWifiConfigStore.write(true);
+        moveTimeForward(WifiConfigStore.COALESCED_WRITE_DEBOUNCE_MS);
+        assertTrue(failingStore.isStoreWritten());
+    }
+
+    /**
+     * Verify that binary companion files are written next to the XML store files and are read
+     * back correctly.
+     */
+    @Test
+    public void testBinaryFormatWriteAndRead() throws Exception {
+        mWifiConfigStore.enableBinaryFormat(true);
+        mWifiConfigStore.registerStoreData(mSharedStoreData);
+        mWifiConfigStore.registerStoreData(mUserStoreData);
+        mWifiConfigStore.switchUserStoresAndRead(mUserStores);
+
+        mSharedStoreData.setData(TEST_SHARE_DATA);
+        mUserStoreData.setData(TEST_USER_DATA);
+        mWifiConfigStore.write(true);
+
+        assertFalse(WifiConfigStoreBinaryFormat.isBinaryFormat(mSharedStore.getStoreBytes()));
+        assertFalse(WifiConfigStoreBinaryFormat.isBinaryFormat(mUserStore.getStoreBytes()));
+        assertTrue(WifiConfigStoreBinaryFormat.isBinaryFormat(mSharedStore.getBinaryStoreBytes()));
+        assertTrue(WifiConfigStoreBinaryFormat.isBinaryFormat(mUserStore.getBinaryStoreBytes()));
+
+        mWifiConfigStore.read();
+        assertEquals(TEST_SHARE_DATA, mSharedStoreData.getData());
+        assertEquals(TEST_USER_DATA, mUserStoreData.getData());
+    }
+
+    /**
+     * Verify that real network configurations round trip through the binary format.
+     */
+    @Test
+    public void testBinaryFormatWifiConfigStoreData() throws Exception {
+        mWifiConfigStore.enableBinaryFormat(true);
+        mWifiConfigStore.switchUserStoresAndRead(mUserStores);
+        NetworkListStoreData networkList = new NetworkListUserStoreData(mContext);
+        mWifiConfigStore.registerStoreData(networkList);
+        WifiConfiguration openNetwork = WifiConfigurationTestUtil.createOpenNetwork();
+        openNetwork.creatorName = TEST_CREATOR_NAME;
+        openNetwork.setIpConfiguration(
+                WifiConfigurationTestUtil.createDHCPIpConfigurationWithNoProxy());
+        openNetwork.setRandomizedMacAddress(TEST_RANDOMIZED_MAC);
+        openNetwork.subscriptionId = TEST_SUB_ID;
+        List<WifiConfiguration> userConfigs = new ArrayList<>();
+        userConfigs.add(openNetwork);
+        userConfigs.add(WifiConfigurationTestUtil.createPskNetwork());
+        networkList.setConfigurations(userConfigs);
+
+        mWifiConfigStore.write(true);
+        assertTrue(WifiConfigStoreBinaryFormat.isBinaryFormat(mUserStore.getBinaryStoreBytes()));
+
+        mWifiConfigStore.read();
+        WifiConfigurationTestUtil.assertConfigurationsEqualForConfigStore(
+                userConfigs, networkList.getConfigurations());
+    }
+
+    /**
+     * Verify that an XML store file without a binary companion file is read when the binary
+     * format is enabled, and gets a binary companion file on the next write. Then verify that
+     * disabling the binary format removes the binary companion file.
+     */
+    @Test
+    public void testBinaryFormatMigration() throws Exception {
+        mWifiConfigStore.registerStoreData(mSharedStoreData);
+        mSharedStoreData.setData(TEST_SHARE_DATA);
+        mWifiConfigStore.write(true);
+        assertNull(mSharedStore.getBinaryStoreBytes());
+
+        mWifiConfigStore.enableBinaryFormat(true);
+        mWifiConfigStore.read();
+        assertEquals(TEST_SHARE_DATA, mSharedStoreData.getData());
+        mWifiConfigStore.write(true);
+        assertTrue(WifiConfigStoreBinaryFormat.isBinaryFormat(mSharedStore.getBinaryStoreBytes()));
+
+        mWifiConfigStore.enableBinaryFormat(false);
+        mWifiConfigStore.read();
+        assertEquals(TEST_SHARE_DATA, mSharedStoreData.getData());
+        mWifiConfigStore.write(true);
+        assertNull(mSharedStore.getBinaryStoreBytes());
+        mWifiConfigStore.read();
+        assertEquals(TEST_SHARE_DATA, mSharedStoreData.getData());
+    }
+
+    /**
+     * Verify that a binary companion file left behind by a rollback is ignored: a version which
+     * doesn't know about the binary format only rewrites the XML store file, so the binary
+     * companion file no longer mirrors it.
+     */
+    @Test
+    public void testBinaryFormatStaleFileIgnoredAfterRollback() throws Exception {
+        mWifiConfigStore.enableBinaryFormat(true);
+        mWifiConfigStore.registerStoreData(mSharedStoreData);
+        mSharedStoreData.setData(TEST_SHARE_DATA);
+        mWifiConfigStore.write(true);
+        byte[] staleBinaryData = mSharedStore.getBinaryStoreBytes();
+
+        // The older version reads the XML store file and writes it back with new data.
+        mWifiConfigStore.enableBinaryFormat(false);
+        mWifiConfigStore.read();
+        assertEquals(TEST_SHARE_DATA, mSharedStoreData.getData());
+        mSharedStoreData.setData(TEST_USER_DATA);
+        mWifiConfigStore.write(true);
+        mSharedStore.storeRawDataToWrite(mSharedStore.getStoreBytes(), staleBinaryData);
+
+        mWifiConfigStore.enableBinaryFormat(true);
+        mWifiConfigStore.read();
+        assertEquals(TEST_USER_DATA, mSharedStoreData.getData());
+    }
+
+    /**
+     * Verify that a corrupted binary companion file is ignored and the XML store file is read.
+     */
+    @Test
+    public void testBinaryFormatCorruptedFileIgnored() throws Exception {
+        mWifiConfigStore.enableBinaryFormat(true);
+        mWifiConfigStore.registerStoreData(mSharedStoreData);
+        mSharedStoreData.setData(TEST_SHARE_DATA);
+        mWifiConfigStore.write(true);
+        byte[] binaryData = mSharedStore.getBinaryStoreBytes();
+        mSharedStore.storeRawDataToWrite(mSharedStore.getStoreBytes(),
+                Arrays.copyOf(binaryData, binaryData.length - 1));
+
+        mWifiConfigStore.read();
+        assertEquals(TEST_SHARE_DATA, mSharedStoreData.getData());
+    }
+
+    /**
+     * Verify that sections of a binary store file without a registered StoreData are skipped
+     * and that the registered StoreData are still deserialized.
+     */
+    @Test
+    public void testBinaryFormatUnknownSectionSkipped() throws Exception {
+        mWifiConfigStore.enableBinaryFormat(true);
+        mWifiConfigStore.registerStoreData(mSharedStoreData);
+        mSharedStoreData.setData(TEST_SHARE_DATA);
+        mWifiConfigStore.write(true);
+        byte[] validSection = mSharedStore.getBinaryStoreBytes();
+        WifiConfigStoreBinaryFormat.Header header =
+                WifiConfigStoreBinaryFormat.parseHeader(validSection);
+        WifiConfigStoreBinaryFormat.Section section = header.sections.get(0);
+
+        byte[] data = new WifiConfigStoreBinaryFormat.Writer(header.version, header.xmlChecksum)
+                .addSection("UnknownSection", new byte[] {1, 2, 3})
+                .addSection(section.name, Arrays.copyOfRange(validSection, section.offset,
+                        section.offset + section.length))
+                .toByteArray();
+        mSharedStore.storeRawDataToWrite(mSharedStore.getStoreBytes(), data);
+
+        mWifiConfigStore.read();
+        assertEquals(TEST_SHARE_DATA, mSharedStoreData.getData());
+    }
+
+    /**
+     * Verify that the deserialization of a StoreData supporting lazy loading is deferred until it
+     * is requested, while the other StoreData are deserialized by the read.
+     */
+    @Test
+    public void testLazyLoadingDefersDeserialization() throws Exception {
+        mWifiConfigStore.enableBinaryFormat(true);
+        mWifiConfigStore.enableLazyLoading(true);
+        mUserStoreData.setSupportsLazyLoading(true);
+        mWifiConfigStore.registerStoreData(mSharedStoreData);
+        mWifiConfigStore.registerStoreData(mUserStoreData);
+        mWifiConfigStore.switchUserStoresAndRead(mUserStores);
+        mSharedStoreData.setData(TEST_SHARE_DATA);
+        mUserStoreData.setData(TEST_USER_DATA);
+        mWifiConfigStore.write(true);
+
+        mWifiConfigStore.read();
+        assertEquals(TEST_SHARE_DATA, mSharedStoreData.getData());
+        assertNull(mUserStoreData.getData());
+
+        mWifiConfigStore.loadStoreData(mUserStoreData);
+        assertEquals(TEST_USER_DATA, mUserStoreData.getData());
+
+        // Loading again is a no-op.
+        mUserStoreData.setData(TEST_SHARE_DATA);
+        mWifiConfigStore.loadStoreData(mUserStoreData);
+        assertEquals(TEST_SHARE_DATA, mUserStoreData.getData());
+    }
+
+    /**
+     * Verify that deferred StoreData nobody requested are loaded once the handler runs.
+     */
+    @Test
+    public void testLazyLoadingLoadsPendingDataOnHandler() throws Exception {
+        mWifiConfigStore.enableBinaryFormat(true);
+        mWifiConfigStore.enableLazyLoading(true);
+        mUserStoreData.setSupportsLazyLoading(true);
+        mWifiConfigStore.registerStoreData(mUserStoreData);
+        mWifiConfigStore.switchUserStoresAndRead(mUserStores);
+        mLooper.dispatchAll();
+        mUserStoreData.setData(TEST_USER_DATA);
+        mWifiConfigStore.write(true);
+
+        mWifiConfigStore.switchUserStoresAndRead(mUserStores);
+        assertNull(mUserStoreData.getData());
+        mLooper.dispatchAll();
+        assertEquals(TEST_USER_DATA, mUserStoreData.getData());
+    }
+
+    /**
+     * Verify that deferred StoreData are loaded before their store file is serialized, so that
+     * a write does not drop them.
+     */
+    @Test
+    public void testLazyLoadingLoadsPendingDataBeforeWrite() throws Exception {
+        mWifiConfigStore.enableBinaryFormat(true);
+        mWifiConfigStore.enableLazyLoading(true);
+        mUserStoreData.setSupportsLazyLoading(true);
+        mWifiConfigStore.registerStoreData(mUserStoreData);
+        mWifiConfigStore.switchUserStoresAndRead(mUserStores);
+        mUserStoreData.setData(TEST_USER_DATA);
+        mWifiConfigStore.write(true);
+
+        mWifiConfigStore.read();
+        assertNull(mUserStoreData.getData());
+        mWifiConfigStore.write(true);
+        assertEquals(TEST_USER_DATA, mUserStoreData.getData());
+
+        mWifiConfigStore.enableLazyLoading(false);
+        mWifiConfigStore.read();
+        assertEquals(TEST_USER_DATA, mUserStoreData.getData());
+    }
+
+    /**
+     * Verify that XML store files are always deserialized eagerly.
+     */
+    @Test
+    public void testLazyLoadingIgnoredForXmlFiles() throws Exception {
+        mWifiConfigStore.enableLazyLoading(true);
+        mUserStoreData.setSupportsLazyLoading(true);
+        mWifiConfigStore.registerStoreData(mUserStoreData);
+        mWifiConfigStore.switchUserStoresAndRead(mUserStores);
+        mUserStoreData.setData(TEST_USER_DATA);
+        mWifiConfigStore.write(true);
+
+        mWifiConfigStore.read();
+        assertEquals(TEST_USER_DATA, mUserStoreData.getData());
+    }
+
+    private void moveTimeForward(long timeMs) {
+        long now = mClock.getElapsedSinceBootMillis() + timeMs;
+        when(mClock.getElapsedSinceBootMillis()).thenReturn(now);
+        mLooper.moveTimeForward(timeMs);
+        mLooper.dispatchAll();
     }
 
     /**
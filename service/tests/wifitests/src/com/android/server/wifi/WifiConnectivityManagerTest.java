@@ -4522,7 +4522,7 @@ public class WifiConnectivityManagerTest extends WifiBaseTest {
         verify(mWifiConfigManager).removeAllEphemeralOrPasspointConfiguredNetworks();
         verify(mWifiConfigManager).clearUserTemporarilyDisabledList();
 
-        // Verify ANQP cache is flushed.
+        // Verify ANQP cache is flushed, including its persisted copy.
         verify(mPasspointManager).clearAnqpRequestsAndFlushCache();
         // Verify WifiNetworkSelector is informed of the disable.
         verify(mWifiNS).resetOnDisable();
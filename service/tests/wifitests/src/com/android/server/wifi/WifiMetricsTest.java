@@ -2848,6 +2848,34 @@ public class WifiMetricsTest extends WifiBaseTest {
         assertEquals(WifiMetrics.MAX_STA_EVENTS, mDecodedProto.staEventList.length);
     }
 
+    /**
+     * Verify that the repeated fields serialized in sections by the proto dump keep their order,
+     * in both the tagged and clean dumps.
+     */
+    @Test
+    public void testStaEventOrderPreservedByProtoDump() throws Exception {
+        int[] types = {StaEvent.TYPE_CMD_START_CONNECT, StaEvent.TYPE_CMD_START_ROAM,
+                StaEvent.TYPE_CMD_IP_CONFIGURATION_SUCCESSFUL};
+        int numEvents = 50;
+        for (int i = 0; i < numEvents; i++) {
+            mWifiMetrics.logStaEvent(TEST_IFACE_NAME, types[i % types.length]);
+        }
+        dumpProtoAndDeserialize();
+        assertEquals(numEvents, mDecodedProto.staEventList.length);
+        for (int i = 0; i < numEvents; i++) {
+            assertEquals(types[i % types.length], mDecodedProto.staEventList[i].type);
+        }
+
+        for (int i = 0; i < numEvents; i++) {
+            mWifiMetrics.logStaEvent(TEST_IFACE_NAME, types[i % types.length]);
+        }
+        cleanDumpProtoAndDeserialize();
+        assertEquals(numEvents, mDecodedProto.staEventList.length);
+        for (int i = 0; i < numEvents; i++) {
+            assertEquals(types[i % types.length], mDecodedProto.staEventList[i].type);
+        }
+    }
+
     /**
      * Tests that link probe StaEvents do not exceed
      * {@link WifiMetrics#MAX_LINK_PROBE_STA_EVENTS}.
@@ -6706,6 +6734,45 @@ public class WifiMetricsTest extends WifiBaseTest {
 
     }
 
+    @Test
+    public void testWifiThreadTaskLatencyStats() throws Exception {
+        for (int i = 1; i <= 100; i++) {
+            mWifiMetrics.wifiThreadTaskDispatched("TestTask", i, 2 * i);
+        }
+        mWifiMetrics.wifiThreadTaskDispatched("OtherTask", 0, 1);
+
+        assertTrue(getStateDump().contains("TestTask: scheduleLatency={count=100"));
+        dumpProtoAndDeserialize();
+
+        assertEquals(2, mDecodedProto.wifiThreadTaskLatencyStats.length);
+        WifiMetricsProto.WifiThreadTaskLatencyStats stats = null;
+        for (WifiMetricsProto.WifiThreadTaskLatencyStats s
+                : mDecodedProto.wifiThreadTaskLatencyStats) {
+            if ("TestTask".equals(s.taskName)) stats = s;
+        }
+        assertNotNull(stats);
+        assertEquals(100, stats.count);
+        assertEquals(51, stats.scheduleLatencyP50Ms);
+        assertEquals(95, stats.scheduleLatencyP95Ms);
+        assertEquals(103, stats.scheduleLatencyP99Ms);
+        assertEquals(103, stats.runTimeP50Ms);
+        assertEquals(191, stats.runTimeP95Ms);
+
+        // Stats are cleared after the proto dump.
+        dumpProtoAndDeserialize();
+        assertEquals(0, mDecodedProto.wifiThreadTaskLatencyStats.length);
+    }
+
+    @Test
+    public void testWifiThreadTaskLatencyStatsBounded() throws Exception {
+        for (int i = 0; i < WifiMetrics.MAX_WIFI_THREAD_TASK_SIGNATURES + 10; i++) {
+            mWifiMetrics.wifiThreadTaskDispatched("Task" + i, 1, 1);
+        }
+        dumpProtoAndDeserialize();
+        assertEquals(WifiMetrics.MAX_WIFI_THREAD_TASK_SIGNATURES + 1,
+                mDecodedProto.wifiThreadTaskLatencyStats.length);
+    }
+
     private void testConnectionNetworkTypeByCandidateSecurityParams(
             int candidateSecurityType, int expectedType) throws Exception {
         WifiConfiguration config = null;
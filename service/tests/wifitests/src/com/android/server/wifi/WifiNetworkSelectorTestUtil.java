@@ -425,18 +425,24 @@ public class WifiNetworkSelectorTestUtil {
                 ScanDetail scanDetail = scanDetails.get(i);
                 when(wifiConfigManager.getSavedNetworkForScanDetailAndCache(eq(scanDetail)))
                         .thenReturn(configs[i]);
+                when(wifiConfigManager.getSavedNetworkForScanDetailAndCache(eq(scanDetail),
+                        any())).thenReturn(configs[i]);
             }
         } else {
             for (int i = 0; i < configs.length; i++) {
                 ScanDetail scanDetail = scanDetails.get(i);
                 when(wifiConfigManager.getSavedNetworkForScanDetailAndCache(eq(scanDetail)))
                         .thenReturn(configs[i]);
+                when(wifiConfigManager.getSavedNetworkForScanDetailAndCache(eq(scanDetail),
+                        any())).thenReturn(configs[i]);
             }
 
             // associated the remaining scan details with a NULL config.
             for (int i = configs.length; i < scanDetails.size(); i++) {
                 when(wifiConfigManager.getSavedNetworkForScanDetailAndCache(
                         eq(scanDetails.get(i)))).thenReturn(null);
+                when(wifiConfigManager.getSavedNetworkForScanDetailAndCache(
+                        eq(scanDetails.get(i)), any())).thenReturn(null);
             }
         }
     }
@@ -463,6 +469,8 @@ public class WifiNetworkSelectorTestUtil {
 
         when(wifiConfigManager.getSavedNetworkForScanDetailAndCache(eq(scanDetail)))
                 .thenReturn(new WifiConfiguration(config));
+        when(wifiConfigManager.getSavedNetworkForScanDetailAndCache(eq(scanDetail), any()))
+                .thenReturn(new WifiConfiguration(config));
         when(wifiConfigManager.getConfiguredNetwork(eq(networkId)))
                 .then(new AnswerWithArguments() {
                     public WifiConfiguration answer(int netId) {
@@ -45,6 +45,7 @@ import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.argThat;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.calls;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.inOrder;
@@ -114,6 +115,9 @@ import org.mockito.MockitoSession;
 import org.mockito.quality.Strictness;
 import org.mockito.stubbing.Answer;
 
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -2239,6 +2243,154 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
                 .getNetworkSuggestionsForScanDetail(scanDetail1).isEmpty());
     }
 
+    private WifiNetworkSuggestion mLazyOpenSuggestion;
+    private WifiNetworkSuggestion mLazyPasspointSuggestion;
+    private PasspointConfiguration mLazyPasspointConfiguration;
+
+    /**
+     * Simulate suggestions whose deserialization was deferred by the config store: they are only
+     * deserialized when the manager asks the config store to load them.
+     */
+    private void setUpLazyLoadedSuggestions() {
+        mDataSource.reset();
+        PerAppInfo appInfo = new PerAppInfo(TEST_UID_1, TEST_PACKAGE_1, TEST_FEATURE);
+        appInfo.hasUserApproved = true;
+        WifiConfiguration openNetwork = WifiConfigurationTestUtil.createOpenNetwork();
+        openNetwork.hiddenSSID = true;
+        mLazyOpenSuggestion = createWifiNetworkSuggestion(openNetwork, null, false, false, true,
+                true, DEFAULT_PRIORITY_GROUP);
+        mLazyPasspointConfiguration =
+                createTestConfigWithUserCredential(TEST_FQDN, TEST_FRIENDLY_NAME);
+        mLazyPasspointSuggestion = createWifiNetworkSuggestion(
+                createPlaceholderConfigForPasspoint(TEST_FQDN,
+                        mLazyPasspointConfiguration.getUniqueId()),
+                mLazyPasspointConfiguration, false, false, true, true, DEFAULT_PRIORITY_GROUP);
+        for (WifiNetworkSuggestion suggestion
+                : List.of(mLazyOpenSuggestion, mLazyPasspointSuggestion)) {
+            ExtendedWifiNetworkSuggestion ewns =
+                    ExtendedWifiNetworkSuggestion.fromWns(suggestion, appInfo, true);
+            appInfo.extNetworkSuggestions.put(ewns.hashCode(), ewns);
+        }
+        doAnswer(invocation -> {
+            mDataSource.fromDeserialized(Map.of(TEST_PACKAGE_1, appInfo));
+            return null;
+        }).when(mWifiConfigStore).loadStoreData(mNetworkSuggestionStoreData);
+    }
+
+    /**
+     * Verify that the deferred suggestions were loaded once, with the side effects of their
+     * deserialization.
+     */
+    private void verifyLazyLoadedSuggestionsLoaded() {
+        verify(mWifiConfigStore).loadStoreData(mNetworkSuggestionStoreData);
+        verify(mAppOpsManager).startWatchingMode(eq(OPSTR_CHANGE_WIFI_STATE), eq(TEST_PACKAGE_1),
+                any());
+    }
+
+    private WifiConfiguration createLazyPasspointConnectNetwork() {
+        WifiConfiguration network = WifiConfigurationTestUtil.createPasspointNetwork();
+        network.FQDN = TEST_FQDN;
+        network.providerFriendlyName = TEST_FRIENDLY_NAME;
+        network.setPasspointUniqueId(mLazyPasspointConfiguration.getUniqueId());
+        network.fromWifiNetworkSuggestion = true;
+        network.creatorName = TEST_PACKAGE_1;
+        network.creatorUid = TEST_UID_1;
+        return network;
+    }
+
+    @Test
+    public void testLazyLoadedSuggestionsLoadedByHasUserApprovedForApp() {
+        setUpLazyLoadedSuggestions();
+        assertTrue(mWifiNetworkSuggestionsManager.hasUserApprovedForApp(TEST_PACKAGE_1));
+        verifyLazyLoadedSuggestionsLoaded();
+    }
+
+    @Test
+    public void testLazyLoadedSuggestionsLoadedByGetAllScanOptimizationSuggestionNetworks() {
+        setUpLazyLoadedSuggestions();
+        List<WifiConfiguration> networks =
+                mWifiNetworkSuggestionsManager.getAllScanOptimizationSuggestionNetworks();
+        assertEquals(1, networks.size());
+        assertEquals(mLazyOpenSuggestion.wifiConfiguration.SSID, networks.get(0).SSID);
+        verifyLazyLoadedSuggestionsLoaded();
+    }
+
+    @Test
+    public void testLazyLoadedSuggestionsLoadedByGetAllPasspointScanOptimizationNetworks() {
+        setUpLazyLoadedSuggestions();
+        when(mPasspointManager.getMostRecentSsidForProfile(any()))
+                .thenReturn("my-passpoint-network");
+        assertEquals(1, mWifiNetworkSuggestionsManager
+                .getAllPasspointScanOptimizationSuggestionNetworks().size());
+        verifyLazyLoadedSuggestionsLoaded();
+    }
+
+    @Test
+    public void testLazyLoadedSuggestionsLoadedByGetNetworkSuggestionsForWifiConfiguration() {
+        setUpLazyLoadedSuggestions();
+        Set<ExtendedWifiNetworkSuggestion> matching = mWifiNetworkSuggestionsManager
+                .getNetworkSuggestionsForWifiConfiguration(createLazyPasspointConnectNetwork(),
+                        null);
+        assertSuggestionsEquals(Set.of(mLazyPasspointSuggestion), matching);
+        verifyLazyLoadedSuggestionsLoaded();
+    }
+
+    @Test
+    public void testLazyLoadedSuggestionsLoadedByGetNetworkSuggestionsForFqdn() {
+        setUpLazyLoadedSuggestions();
+        assertSuggestionsEquals(Set.of(mLazyPasspointSuggestion),
+                mWifiNetworkSuggestionsManager.getNetworkSuggestionsForFqdn(TEST_FQDN));
+        verifyLazyLoadedSuggestionsLoaded();
+    }
+
+    @Test
+    public void testLazyLoadedSuggestionsLoadedByIsPasspointSuggestionSharedWithUser() {
+        setUpLazyLoadedSuggestions();
+        assertTrue(mWifiNetworkSuggestionsManager
+                .isPasspointSuggestionSharedWithUser(createLazyPasspointConnectNetwork()));
+        verifyLazyLoadedSuggestionsLoaded();
+    }
+
+    @Test
+    public void testLazyLoadedSuggestionsLoadedByRetrieveHiddenNetworkList() {
+        setUpLazyLoadedSuggestions();
+        List<WifiScanner.ScanSettings.HiddenNetwork> hiddenNetworks =
+                mWifiNetworkSuggestionsManager.retrieveHiddenNetworkList(false);
+        assertEquals(1, hiddenNetworks.size());
+        assertEquals(mLazyOpenSuggestion.wifiConfiguration.SSID, hiddenNetworks.get(0).ssid);
+        verifyLazyLoadedSuggestionsLoaded();
+    }
+
+    @Test
+    public void testLazyLoadedSuggestionsLoadedByGetNetworkSuggestionsForScanDetail() {
+        setUpLazyLoadedSuggestions();
+        ScanDetail scanDetail = createScanDetailForNetwork(mLazyOpenSuggestion.wifiConfiguration);
+        assertSuggestionsEquals(Set.of(mLazyOpenSuggestion),
+                mWifiNetworkSuggestionsManager.getNetworkSuggestionsForScanDetail(scanDetail));
+        verifyLazyLoadedSuggestionsLoaded();
+    }
+
+    @Test
+    public void testLazyLoadedSuggestionsLoadedByDump() {
+        setUpLazyLoadedSuggestions();
+        StringWriter stringWriter = new StringWriter();
+        mWifiNetworkSuggestionsManager.dump(
+                new FileDescriptor(), new PrintWriter(stringWriter), new String[0]);
+        assertTrue(stringWriter.toString().contains("Package Name: " + TEST_PACKAGE_1));
+        verifyLazyLoadedSuggestionsLoaded();
+    }
+
+    @Test
+    public void testLazyLoadedSuggestionsLoadedByUpdateCarrierPrivilegedApps() {
+        assumeTrue(SdkLevel.isAtLeastT());
+        setUpLazyLoadedSuggestions();
+        when(mWifiCarrierInfoManager.getCarrierIdForPackageWithCarrierPrivileges(TEST_PACKAGE_1))
+                .thenReturn(TEST_CARRIER_ID);
+        mWifiNetworkSuggestionsManager.updateCarrierPrivilegedApps(Set.of(TEST_PACKAGE_1));
+        assertEquals(TEST_CARRIER_ID, mLazyOpenSuggestion.wifiConfiguration.carrierId);
+        verifyLazyLoadedSuggestionsLoaded();
+    }
+
     /**
      * Verify that we will disconnect from the network if the only network suggestion matching the
      * connected network is removed.
@@ -3674,7 +3826,7 @@ public class WifiNetworkSuggestionsManagerTest extends WifiBaseTest {
                     .thenReturn(config);
             wcmConfigs.add(config);
         }
-        when(mWifiConfigManager.getConfiguredNetworks()).thenReturn(wcmConfigs);
+        when(mWifiConfigManager.getConfiguredNetworksSnapshot()).thenReturn(wcmConfigs);
     }
 
     /**
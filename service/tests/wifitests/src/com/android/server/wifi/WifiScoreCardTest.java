@@ -38,6 +38,8 @@ import static com.android.server.wifi.WifiScoreCard.CNT_SHORT_CONNECTION_NONLOCA
 import static com.android.server.wifi.WifiScoreCard.LINK_BANDWIDTH_INIT_KBPS;
 import static com.android.server.wifi.WifiScoreCard.LINK_RX;
 import static com.android.server.wifi.WifiScoreCard.LINK_TX;
+import static com.android.server.wifi.WifiScoreCard.PER_BSSID_DATA_NAME;
+import static com.android.server.wifi.WifiScoreCard.PER_NETWORK_DATA_NAME;
 import static com.android.server.wifi.util.NativeUtil.hexStringFromByteArray;
 
 import static org.junit.Assert.*;
@@ -49,6 +51,8 @@ import android.net.MacAddress;
 import android.net.wifi.SupplicantState;
 import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiSsid;
+import android.os.Handler;
+import android.os.test.TestLooper;
 import android.util.Base64;
 import android.util.Pair;
 
@@ -109,6 +113,7 @@ public class WifiScoreCardTest extends WifiBaseTest {
     @Mock Context mContext;
     @Mock Resources mResources;
     @Mock WifiGlobals mWifiGlobals;
+    private TestLooper mLooper;
 
     private WifiLinkLayerStats mOldLlStats;
     private WifiLinkLayerStats mNewLlStats;
@@ -150,8 +155,9 @@ public class WifiScoreCardTest extends WifiBaseTest {
         mWifiInfo.setMaxSupportedTxLinkSpeedMbps(866);
         mWifiInfo.setMaxSupportedRxLinkSpeedMbps(866);
         millisecondsPass(0);
+        mLooper = new TestLooper();
         mWifiScoreCard = new WifiScoreCard(mClock, "some seed", mDeviceConfigFacade,
-                mContext, mWifiGlobals);
+                mContext, mWifiGlobals, new Handler(mLooper.getLooper()));
         mWifiScoreCard.mPersistentHistograms = true; // TODO - remove when ready
         when(mDeviceConfigFacade.getConnectionFailureHighThrPercent()).thenReturn(
                 DeviceConfigFacade.DEFAULT_CONNECTION_FAILURE_HIGH_THR_PERCENT);
@@ -814,6 +820,69 @@ public class WifiScoreCardTest extends WifiBaseTest {
         assertEquals(beforeSize, mKeys.size());
     }
 
+    /**
+     * Event-triggered writes should be batched within a time window.
+     */
+    @Test
+    public void testScheduledWritesAreBatched() throws Exception {
+        mWifiScoreCard.installMemoryStore(mMemoryStore);
+        mWifiInfo.setRssi(-55);
+        mWifiInfo.setFrequency(5805);
+        mWifiScoreCard.noteConnectionAttempt(mWifiInfo, -55, mWifiInfo.getSSID());
+        millisecondsPass(100);
+        mWifiScoreCard.noteIpConfiguration(mWifiInfo);
+        verify(mMemoryStore, times(1)).write(any(), eq(PER_BSSID_DATA_NAME), any());
+        verify(mMemoryStore, times(1)).write(any(), eq(PER_NETWORK_DATA_NAME), any());
+
+        // Validation within the batch window does not write yet
+        millisecondsPass(1000);
+        mWifiScoreCard.noteValidationSuccess(mWifiInfo);
+        verify(mMemoryStore, times(1)).write(any(), eq(PER_BSSID_DATA_NAME), any());
+
+        // The deferred batch is written by the first signal poll after the window
+        millisecondsPass(WifiScoreCard.WRITE_BATCH_WINDOW_MILLIS);
+        mWifiScoreCard.noteSignalPoll(mWifiInfo);
+        verify(mMemoryStore, times(2)).write(any(), eq(PER_BSSID_DATA_NAME), any());
+        assertEquals(mockingDetails(mMemoryStore).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("write"))
+                .count(), mWifiScoreCard.getWritesInLastHour());
+
+        // Nothing left to write
+        assertEquals(0, mWifiScoreCard.doWrites());
+
+        // The write counts age out after an hour
+        secondsPass(3600);
+        assertEquals(0, mWifiScoreCard.getWritesInLastHour());
+    }
+
+    /**
+     * A deferred batch should be written once the window has passed, even without further events.
+     */
+    @Test
+    public void testDeferredWritesFlushedWithoutSignalPoll() throws Exception {
+        mWifiScoreCard.installMemoryStore(mMemoryStore);
+        mWifiInfo.setRssi(-55);
+        mWifiInfo.setFrequency(5805);
+        mWifiScoreCard.noteConnectionAttempt(mWifiInfo, -55, mWifiInfo.getSSID());
+        millisecondsPass(100);
+        mWifiScoreCard.noteIpConfiguration(mWifiInfo);
+        verify(mMemoryStore, times(1)).write(any(), eq(PER_BSSID_DATA_NAME), any());
+
+        // Validation within the batch window is deferred
+        millisecondsPass(1000);
+        mLooper.moveTimeForward(1000);
+        mWifiScoreCard.noteValidationSuccess(mWifiInfo);
+        mLooper.dispatchAll();
+        verify(mMemoryStore, times(1)).write(any(), eq(PER_BSSID_DATA_NAME), any());
+
+        // The delayed flush writes it once the window has passed
+        millisecondsPass(WifiScoreCard.WRITE_BATCH_WINDOW_MILLIS);
+        mLooper.moveTimeForward(WifiScoreCard.WRITE_BATCH_WINDOW_MILLIS);
+        mLooper.dispatchAll();
+        verify(mMemoryStore, times(2)).write(any(), eq(PER_BSSID_DATA_NAME), any());
+        assertEquals(0, mWifiScoreCard.doWrites());
+    }
+
     /**
      * Calling doWrites before installing a MemoryStore should do nothing.
      */
@@ -156,6 +156,7 @@ import android.net.wifi.IOnWifiDriverCountryCodeChangedListener;
 import android.net.wifi.IOnWifiUsabilityStatsListener;
 import android.net.wifi.IPnoScanResultsCallback;
 import android.net.wifi.IScanResultsCallback;
+import android.net.wifi.IScanResultsDeltaCallback;
 import android.net.wifi.ISoftApCallback;
 import android.net.wifi.IStringListener;
 import android.net.wifi.ISubsystemRestartCallback;
@@ -167,6 +168,7 @@ import android.net.wifi.IWifiConnectedNetworkScorer;
 import android.net.wifi.IWifiLowLatencyLockListener;
 import android.net.wifi.IWifiNetworkSelectionConfigListener;
 import android.net.wifi.IWifiNetworkStateChangedListener;
+import android.net.wifi.IWifiStateListener;
 import android.net.wifi.IWifiVerboseLoggingStatusChangedListener;
 import android.net.wifi.QosPolicyParams;
 import android.net.wifi.ScanResult;
@@ -413,6 +415,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
     @Mock ILocalOnlyHotspotCallback mLohsCallback;
     @Mock ICoexCallback mCoexCallback;
     @Mock IScanResultsCallback mScanResultsCallback;
+    @Mock IScanResultsDeltaCallback mScanResultsDeltaCallback;
     @Mock ISuggestionConnectionStatusListener mSuggestionConnectionStatusListener;
     @Mock ILocalOnlyConnectionStatusListener mLocalOnlyConnectionStatusListener;
     @Mock ISuggestionUserApprovalStatusListener mSuggestionUserApprovalStatusListener;
@@ -736,7 +739,11 @@ public class WifiServiceImplTest extends WifiBaseTest {
         when(mockRunner.call(any(), any())).then(returnsSecondArg());
         when(mockRunner.call(any(), any(int.class))).then(returnsSecondArg());
         when(mockRunner.call(any(), any(boolean.class))).then(returnsSecondArg());
+        when(mockRunner.call(any(), any(), any())).then(returnsSecondArg());
+        when(mockRunner.call(any(), any(int.class), any())).then(returnsSecondArg());
+        when(mockRunner.call(any(), any(boolean.class), any())).then(returnsSecondArg());
         when(mockRunner.post(any())).thenReturn(false);
+        when(mockRunner.post(any(), any())).thenReturn(false);
 
         when(mWifiInjector.getWifiThreadRunner()).thenReturn(mockRunner);
         // Reset mWifiCountryCode to avoid verify failure in makeWifiServiceImpl.
@@ -2865,6 +2872,28 @@ public class WifiServiceImplTest extends WifiBaseTest {
         assertEquals(TEST_FRIENDLY_NAME, connectionInfo.getPasspointProviderFriendlyName());
     }
 
+    /**
+     * Test that the connection info published by ActiveModeWarden is returned without posting
+     * to the wifi thread when there is no secondary CMM.
+     */
+    @Test
+    public void testGetConnectionInfoWithoutSecondaryCmmDoesNotUseWifiThread() throws Exception {
+        WifiInfo wifiInfo = setupForGetConnectionInfo();
+        when(mActiveModeWarden.getConnectionInfoIfNoSecondaryClientModeManager())
+                .thenReturn(wifiInfo);
+
+        // The looper is not dispatched, so this would time out if posted to the wifi thread.
+        WifiInfo connectionInfo = parcelingRoundTrip(
+                mWifiServiceImpl.getConnectionInfo(TEST_PACKAGE, TEST_FEATURE_ID));
+
+        assertEquals(TEST_SSID_WITH_QUOTES, connectionInfo.getSSID());
+        assertEquals(TEST_BSSID, connectionInfo.getBSSID());
+        assertEquals(TEST_NETWORK_ID, connectionInfo.getNetworkId());
+        verify(mClientModeManager, never()).getConnectionInfo();
+        // The published info is shared by all callers and must not be redacted in place.
+        assertEquals(TEST_BSSID, wifiInfo.getBSSID());
+    }
+
     /**
      * Test that connected SSID and BSSID for secondary CMM are exposed to an app that requests
      * the second STA on a device that supports STA + STA.
@@ -3186,7 +3215,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
         String featureId = "test.com.featureId";
         mLooper.startAutoDispatch();
         List<ScanResult> retrievedScanResultList = mWifiServiceImpl.getScanResults(packageName,
-                featureId);
+                featureId).getList();
         mLooper.stopAutoDispatchAndIgnoreExceptions();
         verify(mScanRequestProxy).getScanResults();
 
@@ -3194,6 +3223,46 @@ public class WifiServiceImplTest extends WifiBaseTest {
                 retrievedScanResultList.toArray(new ScanResult[retrievedScanResultList.size()]));
     }
 
+    /**
+     * Test that scan results too large for a single binder transaction are sent completely.
+     */
+    @Test
+    public void testGetScanResultsLargeList() {
+        List<ScanResult> scanResultList = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            ScanResult scanResult = ScanTestUtil.createScanResult(5180);
+            scanResult.BSSID = String.format("02:00:00:00:%02x:%02x", i / 256, i % 256);
+            scanResult.informationElements = new ScanResult.InformationElement[] {
+                    new ScanResult.InformationElement(ScanResult.InformationElement.EID_VSA, 0,
+                            new byte[250])};
+            scanResultList.add(scanResult);
+        }
+        when(mScanRequestProxy.getScanResults()).thenReturn(scanResultList);
+
+        mLooper.startAutoDispatch();
+        ParceledListSlice<ScanResult> slice = mWifiServiceImpl.getScanResults(TEST_PACKAGE_NAME,
+                TEST_FEATURE_ID);
+        mLooper.stopAutoDispatchAndIgnoreExceptions();
+
+        Parcel parcel = Parcel.obtain();
+        slice.writeToParcel(parcel, 0);
+        // Only the first chunk of the results is written inline.
+        assertTrue(parcel.dataSize() < 256 * 1024);
+        parcel.setDataPosition(0);
+        ParceledListSlice<ScanResult> retrievedSlice =
+                ParceledListSlice.CREATOR.createFromParcel(parcel);
+        List<ScanResult> retrievedScanResultList = retrievedSlice.getList();
+        parcel.recycle();
+
+        assertEquals(scanResultList.size(), retrievedScanResultList.size());
+        for (int i = 0; i < scanResultList.size(); i++) {
+            assertEquals(scanResultList.get(i).BSSID, retrievedScanResultList.get(i).BSSID);
+            assertEquals(250,
+                    retrievedScanResultList.get(i).getInformationElements().get(0).getBytes()
+                            .limit());
+        }
+    }
+
     /**
      * Ensure that we handle scan results failure when posting the runnable to handler fails.
      */
@@ -3212,7 +3281,7 @@ public class WifiServiceImplTest extends WifiBaseTest {
         String featureId = "test.com.featureId";
         mLooper.startAutoDispatch();
         List<ScanResult> retrievedScanResultList = mWifiServiceImpl.getScanResults(packageName,
-                featureId);
+                featureId).getList();
         mLooper.stopAutoDispatchAndIgnoreExceptions();
         verify(mScanRequestProxy, never()).getScanResults();
 
@@ -5052,6 +5121,29 @@ public class WifiServiceImplTest extends WifiBaseTest {
         }
     }
 
+    /**
+     * Verify that a wifi state listener is added to ActiveModeWarden on the wifi thread, and
+     * only for callers with the access permission.
+     */
+    @Test
+    public void testAddWifiStateListener() throws Exception {
+        IWifiStateListener listener = mock(IWifiStateListener.class);
+        mWifiServiceImpl.addWifiStateListener(listener);
+        verify(mActiveModeWarden, never()).addWifiStateListener(any(), anyInt());
+        mLooper.dispatchAll();
+        verify(mActiveModeWarden).addWifiStateListener(listener, Binder.getCallingPid());
+
+        doThrow(new SecurityException()).when(mContext)
+                .enforceCallingOrSelfPermission(eq(ACCESS_WIFI_STATE), eq("WifiService"));
+        try {
+            mWifiServiceImpl.addWifiStateListener(listener);
+            fail("expected SecurityException");
+        } catch (SecurityException e) {
+        }
+        mLooper.dispatchAll();
+        verify(mActiveModeWarden).addWifiStateListener(any(), anyInt());
+    }
+
     /**
      * Verify that a call to {@link WifiServiceImpl#enableVerboseLogging(int)} is allowed from
      * callers with the signature only NETWORK_SETTINGS permission.
@@ -5815,6 +5907,24 @@ public class WifiServiceImplTest extends WifiBaseTest {
         verify(mClientModeManager, never()).disconnect();
     }
 
+    /**
+     * Verify that config store writes delayed by write coalescing are flushed on shutdown.
+     */
+    @Test
+    public void testShutdownFlushesCoalescedConfigStoreWrites() throws Exception {
+        mWifiServiceImpl.checkAndStartWifi();
+        mLooper.dispatchAll();
+        verify(mContext).registerReceiver(mBroadcastReceiverCaptor.capture(),
+                argThat((IntentFilter filter) -> filter.hasAction(Intent.ACTION_SHUTDOWN)),
+                isNull(),
+                any(Handler.class));
+
+        mBroadcastReceiverCaptor.getValue().onReceive(mContext,
+                new Intent(Intent.ACTION_SHUTDOWN));
+        mLooper.dispatchAll();
+        verify(mWifiConfigManager).flushCoalescedStoreWrites();
+    }
+
     @Test
     public void testPackageFullyRemovedBroadcastHandling() throws Exception {
         mWifiServiceImpl.checkAndStartWifi();
@@ -8403,6 +8513,29 @@ public class WifiServiceImplTest extends WifiBaseTest {
         verify(mScanRequestProxy).unregisterScanResultsCallback(mScanResultsCallback);
     }
 
+    /**
+     * Test register scan results delta callback without a privileged permission.
+     */
+    @Test(expected = SecurityException.class)
+    public void testRegisterScanResultsDeltaCallbackWithMissingPermission() throws Exception {
+        mWifiServiceImpl.registerScanResultsDeltaCallback(mScanResultsDeltaCallback);
+    }
+
+    /**
+     * Test register and unregister scan results delta callback will go to ScanRequestProxy.
+     */
+    @Test
+    public void testRegisterUnregisterScanResultsDeltaCallback() throws Exception {
+        when(mContext.checkPermission(eq(android.Manifest.permission.NETWORK_SETTINGS),
+                anyInt(), anyInt())).thenReturn(PackageManager.PERMISSION_GRANTED);
+        mWifiServiceImpl.registerScanResultsDeltaCallback(mScanResultsDeltaCallback);
+        mLooper.dispatchAll();
+        verify(mScanRequestProxy).registerScanResultsDeltaCallback(mScanResultsDeltaCallback);
+        mWifiServiceImpl.unregisterScanResultsDeltaCallback(mScanResultsDeltaCallback);
+        mLooper.dispatchAll();
+        verify(mScanRequestProxy).unregisterScanResultsDeltaCallback(mScanResultsDeltaCallback);
+    }
+
     /**
      * Test register callback without ACCESS_WIFI_STATE permission.
      */
@@ -20,6 +20,7 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Mockito.anyLong;
+import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyObject;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
@@ -37,8 +38,11 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Unit tests for {@link com.android.server.wifi.hotspot2.ANQPRequestManager}.
@@ -48,6 +52,7 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
     private static final long TEST_BSSID = 0x123456L;
     private static final ANQPNetworkKey TEST_ANQP_KEY =
             new ANQPNetworkKey("TestSSID", TEST_BSSID, 0, 0);
+    private static final int TEST_RSSI = -60;
 
     private static final List<Constants.ANQPElementType> R1_ANQP_WITHOUT_RC = Arrays.asList(
             Constants.ANQPElementType.ANQPVenueName,
@@ -119,7 +124,7 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
     public void requestR1ANQPElementsWithoutRC() throws Exception {
         when(mHandler.requestANQP(TEST_BSSID, R1_ANQP_WITHOUT_RC)).thenReturn(true);
         assertTrue(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, false,
-                NetworkDetail.HSRelease.R1));
+                NetworkDetail.HSRelease.R1, TEST_RSSI));
     }
 
     /**
@@ -133,7 +138,7 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
     public void requestR1ANQPElementsWithRC() throws Exception {
         when(mHandler.requestANQP(TEST_BSSID, R1_ANQP_WITH_RC)).thenReturn(true);
         assertTrue(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, true,
-                NetworkDetail.HSRelease.R1));
+                NetworkDetail.HSRelease.R1, TEST_RSSI));
     }
 
     /**
@@ -147,7 +152,7 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
     public void requestR1R2ANQPElementsWithoutRC() throws Exception {
         when(mHandler.requestANQP(TEST_BSSID, R1R2_ANQP_WITHOUT_RC)).thenReturn(true);
         assertTrue(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, false,
-                NetworkDetail.HSRelease.R2));
+                NetworkDetail.HSRelease.R2, TEST_RSSI));
     }
 
     /**
@@ -161,7 +166,7 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
     public void requestR1R2ANQPElementsWithRC() throws Exception {
         when(mHandler.requestANQP(TEST_BSSID, R1R2_ANQP_WITH_RC)).thenReturn(true);
         assertTrue(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, true,
-                NetworkDetail.HSRelease.R2));
+                NetworkDetail.HSRelease.R2, TEST_RSSI));
     }
 
     /**
@@ -177,14 +182,14 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
         when(mHandler.requestANQP(TEST_BSSID, R1_ANQP_WITHOUT_RC)).thenReturn(true);
         when(mClock.getElapsedSinceBootMillis()).thenReturn(startTime);
         assertTrue(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, false,
-                NetworkDetail.HSRelease.R1));
+                NetworkDetail.HSRelease.R1, TEST_RSSI));
         reset(mHandler);
 
         // Attempt another request will fail while one is still pending and hold off time is not up
         // yet.
         when(mClock.getElapsedSinceBootMillis()).thenReturn(startTime + 1);
         assertFalse(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, false,
-                NetworkDetail.HSRelease.R1));
+                NetworkDetail.HSRelease.R1, TEST_RSSI));
         verify(mHandler, never()).requestANQP(anyLong(), anyObject());
         reset(mHandler);
 
@@ -193,7 +198,7 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
         when(mClock.getElapsedSinceBootMillis())
                 .thenReturn(startTime + ANQPRequestManager.BASE_HOLDOFF_TIME_MILLISECONDS);
         assertTrue(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, false,
-                NetworkDetail.HSRelease.R1));
+                NetworkDetail.HSRelease.R1, TEST_RSSI));
     }
 
     /**
@@ -209,14 +214,14 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
         when(mHandler.requestANQP(TEST_BSSID, R1_ANQP_WITHOUT_RC)).thenReturn(false);
         when(mClock.getElapsedSinceBootMillis()).thenReturn(startTime);
         assertFalse(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, false,
-                NetworkDetail.HSRelease.R1));
+                NetworkDetail.HSRelease.R1, TEST_RSSI));
         reset(mHandler);
 
         // Verify that new request is not being held off after previous send failure.
         when(mHandler.requestANQP(TEST_BSSID, R1_ANQP_WITHOUT_RC)).thenReturn(true);
         when(mClock.getElapsedSinceBootMillis()).thenReturn(startTime);
         assertTrue(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, false,
-                NetworkDetail.HSRelease.R1));
+                NetworkDetail.HSRelease.R1, TEST_RSSI));
     }
 
     /**
@@ -232,7 +237,7 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
         when(mHandler.requestANQP(TEST_BSSID, R1_ANQP_WITHOUT_RC)).thenReturn(true);
         when(mClock.getElapsedSinceBootMillis()).thenReturn(startTime);
         assertTrue(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, false,
-                NetworkDetail.HSRelease.R1));
+                NetworkDetail.HSRelease.R1, TEST_RSSI));
         reset(mHandler);
 
         // Request completed with success. Verify that the key associated with the request
@@ -242,7 +247,7 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
         when(mHandler.requestANQP(TEST_BSSID, R1_ANQP_WITHOUT_RC)).thenReturn(true);
         when(mClock.getElapsedSinceBootMillis()).thenReturn(startTime + 1);
         assertTrue(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, false,
-                NetworkDetail.HSRelease.R1));
+                NetworkDetail.HSRelease.R1, TEST_RSSI));
     }
 
     /**
@@ -259,7 +264,7 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
         when(mHandler.requestANQP(TEST_BSSID, R1_ANQP_WITHOUT_RC)).thenReturn(true);
         when(mClock.getElapsedSinceBootMillis()).thenReturn(startTime);
         assertTrue(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, false,
-                NetworkDetail.HSRelease.R1));
+                NetworkDetail.HSRelease.R1, TEST_RSSI));
         reset(mHandler);
 
         // Request completed with failure.  Verify that the key associated with the request
@@ -269,7 +274,7 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
         // Attempt another request will fail since the hold off time is not up yet.
         when(mClock.getElapsedSinceBootMillis()).thenReturn(startTime + 1);
         assertFalse(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, false,
-                NetworkDetail.HSRelease.R1));
+                NetworkDetail.HSRelease.R1, TEST_RSSI));
         verify(mHandler, never()).requestANQP(anyLong(), anyObject());
 
         // Attempt another request will succeed after the hold off time is up.
@@ -277,7 +282,7 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
         when(mClock.getElapsedSinceBootMillis())
                 .thenReturn(startTime + ANQPRequestManager.BASE_HOLDOFF_TIME_MILLISECONDS);
         assertTrue(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, false,
-                NetworkDetail.HSRelease.R1));
+                NetworkDetail.HSRelease.R1, TEST_RSSI));
     }
 
     /**
@@ -294,7 +299,7 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
         when(mHandler.requestANQP(TEST_BSSID, R1_ANQP_WITHOUT_RC)).thenReturn(true);
         when(mClock.getElapsedSinceBootMillis()).thenReturn(currentTime);
         assertTrue(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, false,
-                NetworkDetail.HSRelease.R1));
+                NetworkDetail.HSRelease.R1, TEST_RSSI));
         reset(mHandler);
 
         // Sending the request with the hold off time based on the current hold off count.
@@ -305,7 +310,7 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
             // Request will fail before the hold off time is up.
             when(mClock.getElapsedSinceBootMillis()).thenReturn(currentTime);
             assertFalse(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, false,
-                    NetworkDetail.HSRelease.R1));
+                    NetworkDetail.HSRelease.R1, TEST_RSSI));
             verify(mHandler, never()).requestANQP(anyLong(), anyObject());
 
             // Request will succeed when the hold off time is up.
@@ -313,7 +318,7 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
             when(mHandler.requestANQP(TEST_BSSID, R1_ANQP_WITHOUT_RC)).thenReturn(true);
             when(mClock.getElapsedSinceBootMillis()).thenReturn(currentTime);
             assertTrue(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, false,
-                    NetworkDetail.HSRelease.R1));
+                    NetworkDetail.HSRelease.R1, TEST_RSSI));
             reset(mHandler);
         }
 
@@ -323,14 +328,14 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
 
         when(mClock.getElapsedSinceBootMillis()).thenReturn(currentTime);
         assertFalse(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, false,
-                NetworkDetail.HSRelease.R1));
+                NetworkDetail.HSRelease.R1, TEST_RSSI));
         verify(mHandler, never()).requestANQP(anyLong(), anyObject());
 
         currentTime += 1;
         when(mHandler.requestANQP(TEST_BSSID, R1_ANQP_WITHOUT_RC)).thenReturn(true);
         when(mClock.getElapsedSinceBootMillis()).thenReturn(currentTime);
         assertTrue(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, false,
-                NetworkDetail.HSRelease.R1));
+                NetworkDetail.HSRelease.R1, TEST_RSSI));
         reset(mHandler);
     }
 
@@ -345,7 +350,7 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
     public void requestR1R2ANQPElementsWithoutRCForR3() throws Exception {
         when(mHandler.requestANQP(TEST_BSSID, R1R2_ANQP_WITHOUT_RC)).thenReturn(true);
         assertTrue(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, false,
-                NetworkDetail.HSRelease.R3));
+                NetworkDetail.HSRelease.R3, TEST_RSSI));
     }
 
     /**
@@ -359,7 +364,7 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
     public void requestR1R2ANQPElementsWithRCForR3() throws Exception {
         when(mHandler.requestANQP(TEST_BSSID, R1R2_ANQP_WITH_RC)).thenReturn(true);
         assertTrue(mManager.requestANQPElements(TEST_BSSID, TEST_ANQP_KEY, true,
-                NetworkDetail.HSRelease.R3));
+                NetworkDetail.HSRelease.R3, TEST_RSSI));
     }
 
     /**
@@ -372,4 +377,115 @@ public class ANQPRequestManagerTest extends WifiBaseTest {
         when(mHandler.requestVenueUrlAnqp(TEST_BSSID)).thenReturn(true);
         assertTrue(mManager.requestVenueUrlAnqpElement(TEST_BSSID, TEST_ANQP_KEY));
     }
+
+    /**
+     * Stand-in for the supplicant, which accepts all the ANQP requests and records the BSSIDs
+     * they were sent to, in order.
+     */
+    private List<Long> acceptAllRequests() {
+        List<Long> sentRequests = new ArrayList<>();
+        when(mHandler.requestANQP(anyLong(), any())).thenAnswer(invocation -> {
+            sentRequests.add(invocation.getArgument(0));
+            return true;
+        });
+        return sentRequests;
+    }
+
+    private static ANQPNetworkKey createDomainKey(int anqpDomainId) {
+        return new ANQPNetworkKey("TestSSID", 0, TEST_BSSID, anqpDomainId);
+    }
+
+    /**
+     * Verify that requests beyond {@link ANQPRequestManager#MAX_OUTSTANDING_REQUESTS} are queued,
+     * and sent in decreasing RSSI order when outstanding requests complete.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void requestsBeyondMaxOutstandingAreQueuedAndSentByRssi() throws Exception {
+        List<Long> sentRequests = acceptAllRequests();
+        for (int i = 0; i < ANQPRequestManager.MAX_OUTSTANDING_REQUESTS; i++) {
+            assertTrue(mManager.requestANQPElements(i, createDomainKey(i + 1), false,
+                    NetworkDetail.HSRelease.R1, TEST_RSSI));
+        }
+        long weakBssid = 100;
+        long strongBssid = 101;
+        assertFalse(mManager.requestANQPElements(weakBssid, createDomainKey(100), false,
+                NetworkDetail.HSRelease.R1, -80));
+        assertFalse(mManager.requestANQPElements(strongBssid, createDomainKey(101), false,
+                NetworkDetail.HSRelease.R1, -50));
+        assertEquals(ANQPRequestManager.MAX_OUTSTANDING_REQUESTS, sentRequests.size());
+
+        // Each completed request lets the queued request with the highest RSSI be sent.
+        assertEquals(createDomainKey(1), mManager.onRequestCompleted(0, true));
+        assertEquals(Long.valueOf(strongBssid), sentRequests.get(sentRequests.size() - 1));
+        assertEquals(createDomainKey(2), mManager.onRequestCompleted(1, false));
+        assertEquals(Long.valueOf(weakBssid), sentRequests.get(sentRequests.size() - 1));
+        assertEquals(ANQPRequestManager.MAX_OUTSTANDING_REQUESTS + 2, sentRequests.size());
+    }
+
+    /**
+     * Verify that only one request is sent for APs sharing the same ANQP network key, and that a
+     * queued request is dropped once a response for its key is received.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void requestsForSameKeyAreDeduplicated() throws Exception {
+        List<Long> sentRequests = acceptAllRequests();
+        assertTrue(mManager.requestANQPElements(0, createDomainKey(1), false,
+                NetworkDetail.HSRelease.R1, TEST_RSSI));
+        assertFalse(mManager.requestANQPElements(1, createDomainKey(1), false,
+                NetworkDetail.HSRelease.R1, TEST_RSSI));
+        assertEquals(Arrays.asList(0L), sentRequests);
+
+        // Once the first request timed out, fill the outstanding requests and queue another
+        // request for the first key.
+        when(mClock.getElapsedSinceBootMillis())
+                .thenReturn((long) ANQPRequestManager.OUTSTANDING_REQUEST_TIMEOUT_MILLISECONDS);
+        for (int i = 0; i < ANQPRequestManager.MAX_OUTSTANDING_REQUESTS; i++) {
+            assertTrue(mManager.requestANQPElements(10 + i, createDomainKey(10 + i), false,
+                    NetworkDetail.HSRelease.R1, TEST_RSSI));
+        }
+        assertFalse(mManager.requestANQPElements(2, createDomainKey(1), false,
+                NetworkDetail.HSRelease.R1, TEST_RSSI));
+
+        // The late response for the first key covers the queued request, which is not sent when
+        // an outstanding request completes.
+        int numSent = sentRequests.size();
+        assertEquals(createDomainKey(1), mManager.onRequestCompleted(0, true));
+        assertEquals(createDomainKey(10), mManager.onRequestCompleted(10, true));
+        assertEquals(numSent, sentRequests.size());
+    }
+
+    /**
+     * Verify that full ANQP coverage of many APs in a few ANQP domains is reached with a single
+     * request per domain, with the supplicant answering the outstanding requests in order.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void fullCoverageWithOneRequestPerKey() throws Exception {
+        final int numBssids = 100;
+        final int numDomains = 20;
+        List<Long> sentRequests = acceptAllRequests();
+        Set<ANQPNetworkKey> answeredKeys = new HashSet<>();
+        int numAnswered = 0;
+        while (answeredKeys.size() < numDomains) {
+            // Scan results come in, and the APs without ANQP data are queried.
+            for (int i = 0; i < numBssids; i++) {
+                ANQPNetworkKey key = createDomainKey(i % numDomains + 1);
+                if (!answeredKeys.contains(key)) {
+                    mManager.requestANQPElements(i, key, false, NetworkDetail.HSRelease.R1,
+                            -40 - i / 2);
+                }
+            }
+            assertTrue(numAnswered < sentRequests.size());
+            while (numAnswered < sentRequests.size()) {
+                answeredKeys.add(mManager.onRequestCompleted(sentRequests.get(numAnswered++),
+                        true));
+            }
+        }
+        assertEquals(numDomains, sentRequests.size());
+    }
 }
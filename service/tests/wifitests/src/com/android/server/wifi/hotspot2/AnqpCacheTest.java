@@ -16,6 +16,8 @@
 
 package com.android.server.wifi.hotspot2;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -28,8 +30,10 @@ import androidx.test.filters.SmallTest;
 import com.android.server.wifi.Clock;
 import com.android.server.wifi.WifiBaseTest;
 import com.android.server.wifi.hotspot2.anqp.ANQPElement;
+import com.android.server.wifi.hotspot2.anqp.ANQPParser;
 import com.android.server.wifi.hotspot2.anqp.Constants;
 import com.android.server.wifi.hotspot2.anqp.I18Name;
+import com.android.server.wifi.hotspot2.anqp.RawByteElement;
 import com.android.server.wifi.hotspot2.anqp.VenueNameElement;
 import com.android.server.wifi.hotspot2.anqp.VenueUrlElement;
 
@@ -37,8 +41,13 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mock;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -119,6 +128,91 @@ public class AnqpCacheTest extends WifiBaseTest {
         assertNull(mCache.getEntry(ENTRY_KEY));
     }
 
+    /**
+     * Verify that updating an entry extends its lifetime in the sweep schedule.
+     */
+    @Test
+    public void sweepKeepsUpdatedEntry() throws Exception {
+        mCache.addEntry(ENTRY_KEY, null);
+
+        long updateTime = ANQPData.DATA_LIFETIME_MILLISECONDS / 2;
+        when(mClock.getElapsedSinceBootMillis()).thenReturn(updateTime);
+        mCache.addOrUpdateEntry(ENTRY_KEY, new HashMap<>());
+
+        when(mClock.getElapsedSinceBootMillis()).thenReturn(ANQPData.DATA_LIFETIME_MILLISECONDS);
+        mCache.sweep();
+        assertNotNull(mCache.getEntry(ENTRY_KEY));
+
+        when(mClock.getElapsedSinceBootMillis())
+                .thenReturn(updateTime + ANQPData.DATA_LIFETIME_MILLISECONDS);
+        mCache.sweep();
+        assertNull(mCache.getEntry(ENTRY_KEY));
+    }
+
+    /**
+     * Verify that expired entries are removed after the device was idle for a long time.
+     */
+    @Test
+    public void sweepAfterLongIdleRemovesExpiredEntries() throws Exception {
+        mCache.addEntry(ENTRY_KEY, null);
+        when(mClock.getElapsedSinceBootMillis())
+                .thenReturn(100 * ANQPData.DATA_LIFETIME_MILLISECONDS);
+        mCache.addEntry(new ANQPNetworkKey("other", 0L, 0L, 2), null);
+        mCache.sweep();
+        assertNull(mCache.getEntry(ENTRY_KEY));
+        assertNotNull(mCache.getEntry(new ANQPNetworkKey("other", 0L, 0L, 2)));
+    }
+
+    /**
+     * Verify that the least recently used entries are evicted once the estimated size of the
+     * cache exceeds its cap.
+     */
+    @Test
+    public void evictLeastRecentlyUsedEntriesOverSizeCap() throws Exception {
+        char[] longName = new char[1000];
+        Arrays.fill(longName, 'a');
+        List<I18Name> nameList = new ArrayList<>();
+        nameList.add(new I18Name(TEST_LANGUAGE, TEST_LOCALE, new String(longName)));
+        Map<Constants.ANQPElementType, ANQPElement> elements = new HashMap<>();
+        elements.put(Constants.ANQPElementType.ANQPVenueName, new VenueNameElement(nameList));
+
+        int numEntries = AnqpCache.MAX_CACHE_SIZE_BYTES / longName.length;
+        for (int i = 0; i < numEntries; i++) {
+            mCache.addEntry(new ANQPNetworkKey("ssid" + i, 0L, 0L, 1), elements);
+            // Keep the first entry recently used.
+            assertNotNull(mCache.getEntry(new ANQPNetworkKey("ssid0", 0L, 0L, 1)));
+        }
+
+        assertNotNull(mCache.getEntry(new ANQPNetworkKey("ssid0", 0L, 0L, 1)));
+        assertNull(mCache.getEntry(new ANQPNetworkKey("ssid1", 0L, 0L, 1)));
+        assertNotNull(mCache.getEntry(
+                new ANQPNetworkKey("ssid" + (numEntries - 1), 0L, 0L, 1)));
+
+        StringWriter sw = new StringWriter();
+        mCache.dump(new PrintWriter(sw));
+        assertTrue(sw.toString().contains("evictions: "));
+    }
+
+    /**
+     * Verify that the size of elements without a string representation, such as raw payloads,
+     * counts towards the cap.
+     */
+    @Test
+    public void evictEntriesOverSizeCapWithRawByteElements() throws Exception {
+        Map<Constants.ANQPElementType, ANQPElement> elements = new HashMap<>();
+        elements.put(Constants.ANQPElementType.HSOSUProviders, new RawByteElement(
+                Constants.ANQPElementType.HSOSUProviders, new byte[1000]));
+
+        int numEntries = AnqpCache.MAX_CACHE_SIZE_BYTES / 1000;
+        for (int i = 0; i < numEntries; i++) {
+            mCache.addEntry(new ANQPNetworkKey("ssid" + i, 0L, 0L, 1), elements);
+        }
+
+        assertNull(mCache.getEntry(new ANQPNetworkKey("ssid0", 0L, 0L, 1)));
+        assertNotNull(mCache.getEntry(
+                new ANQPNetworkKey("ssid" + (numEntries - 1), 0L, 0L, 1)));
+    }
+
     /**
      * Verify the expectation for the flush function (all entries will be removed).
      *
@@ -178,4 +272,78 @@ public class AnqpCacheTest extends WifiBaseTest {
         assertTrue(data.getElements().get(Constants.ANQPElementType.ANQPVenueUrl)
                 .equals(venueUrlElement));
     }
+
+    /**
+     * Verify that entries parsed from ANQP payloads are restored from the persisted data, with
+     * their remaining lifetime, and that expired entries are not restored.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void persistAndRestoreEntries() throws Exception {
+        ANQPNetworkKey otherKey = new ANQPNetworkKey("other", 0L, 0L, 2);
+        byte[] name = "test.com".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] payload = new byte[name.length + 1];
+        payload[0] = (byte) name.length;
+        System.arraycopy(name, 0, payload, 1, name.length);
+        ANQPElement domainName = ANQPParser.parseElement(
+                Constants.ANQPElementType.ANQPDomName, ByteBuffer.wrap(payload));
+        Map<Constants.ANQPElementType, ANQPElement> elements = new HashMap<>();
+        elements.put(Constants.ANQPElementType.ANQPDomName, domainName);
+
+        when(mClock.getWallClockMillis()).thenReturn(1_000_000L);
+        mCache.addEntry(ENTRY_KEY, elements);
+        when(mClock.getElapsedSinceBootMillis())
+                .thenReturn(ANQPData.DATA_LIFETIME_MILLISECONDS / 2);
+        mCache.addEntry(otherKey, elements);
+        assertTrue(mCache.hasChangesToPersist());
+        byte[] data = mCache.toPersistedData();
+        assertFalse(mCache.hasChangesToPersist());
+
+        // Restore after a reboot, once the first entry has expired.
+        when(mClock.getElapsedSinceBootMillis()).thenReturn(0L);
+        when(mClock.getWallClockMillis())
+                .thenReturn(1_000_000L + ANQPData.DATA_LIFETIME_MILLISECONDS / 2);
+        AnqpCache restoredCache = new AnqpCache(mClock);
+        restoredCache.restoreFromPersistedData(data);
+        assertNull(restoredCache.getEntry(ENTRY_KEY));
+        ANQPData restored = restoredCache.getEntry(otherKey);
+        assertNotNull(restored);
+        assertEquals(domainName, restored.getElements().get(Constants.ANQPElementType.ANQPDomName));
+        assertEquals(ANQPData.DATA_LIFETIME_MILLISECONDS / 2, restored.getExpiryTime());
+
+        // Malformed data is ignored.
+        restoredCache.restoreFromPersistedData(new byte[] {0, 0, 0, 1, 0, 0, 0, 1, 5});
+        assertNotNull(restoredCache.getEntry(otherKey));
+    }
+
+    /**
+     * Verify that flushing the cache keeps its persisted copy, and that the copy is only replaced
+     * once it is discarded.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void flushKeepsPersistedData() throws Exception {
+        byte[] name = "test.com".getBytes(StandardCharsets.ISO_8859_1);
+        byte[] payload = new byte[name.length + 1];
+        payload[0] = (byte) name.length;
+        System.arraycopy(name, 0, payload, 1, name.length);
+        Map<Constants.ANQPElementType, ANQPElement> elements = new HashMap<>();
+        elements.put(Constants.ANQPElementType.ANQPDomName, ANQPParser.parseElement(
+                Constants.ANQPElementType.ANQPDomName, ByteBuffer.wrap(payload)));
+        mCache.addEntry(ENTRY_KEY, elements);
+        byte[] data = mCache.toPersistedData();
+
+        mCache.flush();
+        assertNull(mCache.getEntry(ENTRY_KEY));
+        assertFalse(mCache.hasChangesToPersist());
+        assertArrayEquals(data, mCache.toPersistedData());
+
+        mCache.discardPersistedData();
+        assertTrue(mCache.hasChangesToPersist());
+        AnqpCache restoredCache = new AnqpCache(mClock);
+        restoredCache.restoreFromPersistedData(mCache.toPersistedData());
+        assertNull(restoredCache.getEntry(ENTRY_KEY));
+    }
 }
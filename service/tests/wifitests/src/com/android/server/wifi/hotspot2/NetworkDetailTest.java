@@ -26,10 +26,12 @@ import android.net.wifi.ScanResult.InformationElement;
 import android.text.TextUtils;
 
 import com.android.server.wifi.WifiBaseTest;
+import com.android.server.wifi.util.InformationElementUtil;
 
 import org.junit.Before;
 import org.junit.Test;
 
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 
 /**
@@ -197,5 +199,69 @@ public class NetworkDetailTest extends WifiBaseTest {
                     TextUtils.equals(bssidStr1, bssidStr2));
         }
     }
-}
 
+    private static InformationElement createIe(int id, byte[] bytes) {
+        InformationElement ie = new InformationElement();
+        ie.id = id;
+        ie.bytes = bytes;
+        return ie;
+    }
+
+    /**
+     * Verify that the lazily parsed elements are decoded on access, and shared with copies.
+     */
+    @Test
+    public void verifyLazilyParsedElements() throws Exception {
+        InformationElement[] ies = new InformationElement[] {
+                createIe(InformationElement.EID_SSID,
+                        "TestSsid".getBytes(StandardCharsets.UTF_8)),
+                createIe(InformationElement.EID_TIM,
+                        new byte[] {(byte) 0x03, (byte) 0x05, (byte) 0x00, (byte) 0x00}),
+                createIe(InformationElement.EID_BSS_LOAD,
+                        new byte[] {(byte) 0x07, (byte) 0x00, (byte) 0x80, (byte) 0x10,
+                                (byte) 0x00}),
+                createIe(InformationElement.EID_COUNTRY,
+                        new byte[] {(byte) 'U', (byte) 'S', (byte) ' '}),
+        };
+        NetworkDetail networkDetail = new NetworkDetail(TEST_BSSID, ies,
+                Collections.emptyList(), 5745);
+        NetworkDetail copy = networkDetail.complete(Collections.emptyMap());
+
+        assertEquals("TestSsid", networkDetail.getSSID());
+        assertEquals(5, networkDetail.getDtimInterval());
+        assertTrue(networkDetail.isBeaconFrame());
+        assertEquals(7, networkDetail.getStationCount());
+        assertEquals(128, networkDetail.getChannelUtilization());
+        assertEquals(16, networkDetail.getCapacity());
+        assertEquals("US", networkDetail.getCountryCode());
+        assertNull(networkDetail.getRoamingConsortiums());
+        assertEquals(0, networkDetail.getAnqpOICount());
+
+        assertEquals(5, copy.getDtimInterval());
+        assertEquals(7, copy.getStationCount());
+        assertEquals("US", copy.getCountryCode());
+    }
+
+    /**
+     * Verify that a malformed lazily parsed element is treated as absent instead of failing the
+     * whole NetworkDetail.
+     */
+    @Test
+    public void verifyMalformedLazilyParsedElementIsIgnored() throws Exception {
+        InformationElement[] ies = new InformationElement[] {
+                createIe(InformationElement.EID_BSS_LOAD,
+                        new byte[] {(byte) 0x07, (byte) 0x00}),
+                createIe(InformationElement.EID_SSID,
+                        "TestSsid".getBytes(StandardCharsets.UTF_8)),
+        };
+        NetworkDetail networkDetail = new NetworkDetail(TEST_BSSID, ies,
+                Collections.emptyList(), 5745);
+
+        assertEquals("TestSsid", networkDetail.getSSID());
+        assertEquals(InformationElementUtil.BssLoad.INVALID, networkDetail.getStationCount());
+        assertEquals(InformationElementUtil.BssLoad.INVALID,
+                networkDetail.getChannelUtilization());
+        assertEquals(-1, networkDetail.getDtimInterval());
+        assertNull(networkDetail.getCountryCode());
+    }
+}
@@ -101,6 +101,7 @@ import com.android.server.wifi.WifiNetworkSuggestionsManager;
 import com.android.server.wifi.WifiPseudonymManager;
 import com.android.server.wifi.WifiSettingsStore;
 import com.android.server.wifi.hotspot2.anqp.ANQPElement;
+import com.android.server.wifi.hotspot2.anqp.ANQPParser;
 import com.android.server.wifi.hotspot2.anqp.Constants.ANQPElementType;
 import com.android.server.wifi.hotspot2.anqp.DomainNameElement;
 import com.android.server.wifi.hotspot2.anqp.HSOsuProvidersElement;
@@ -121,6 +122,7 @@ import org.mockito.Mock;
 import org.mockito.MockitoSession;
 
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyStore;
 import java.security.cert.Certificate;
@@ -530,6 +532,31 @@ public class PasspointManagerTest extends WifiBaseTest {
                 any(String.class));
     }
 
+    /**
+     * Verify that the raw payloads of the ANQP elements are only kept when ANQP cache persistence
+     * is enabled.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void anqpResponsePayloadsKeptOnlyWithPersistence() throws Exception {
+        byte[] payload = new byte[] {8, 't', 'e', 's', 't', '.', 'c', 'o', 'm'};
+        when(mAnqpRequestManager.onRequestCompleted(TEST_BSSID, true)).thenReturn(TEST_ANQP_KEY);
+
+        Map<ANQPElementType, ANQPElement> anqpElementMap = new HashMap<>();
+        anqpElementMap.put(ANQPElementType.ANQPDomName, ANQPParser.parseElement(
+                ANQPElementType.ANQPDomName, ByteBuffer.wrap(payload)));
+        when(mDeviceConfigFacade.isAnqpCachePersistenceEnabled()).thenReturn(false);
+        mCallbacks.onANQPResponse(TEST_BSSID, anqpElementMap);
+        assertNull(anqpElementMap.get(ANQPElementType.ANQPDomName).getPayload());
+
+        anqpElementMap.put(ANQPElementType.ANQPDomName, ANQPParser.parseElement(
+                ANQPElementType.ANQPDomName, ByteBuffer.wrap(payload)));
+        when(mDeviceConfigFacade.isAnqpCachePersistenceEnabled()).thenReturn(true);
+        mCallbacks.onANQPResponse(TEST_BSSID, anqpElementMap);
+        assertNotNull(anqpElementMap.get(ANQPElementType.ANQPDomName).getPayload());
+    }
+
     /**
      * Verify that no ANQP elements will be added to the ANQP cache on receiving a successful
      * response for a request that's not sent by us.
@@ -1078,7 +1105,7 @@ public class PasspointManagerTest extends WifiBaseTest {
             // Verify that a request for ANQP elements is initiated.
             verify(mAnqpRequestManager).requestANQPElements(eq(TEST_BSSID),
                     any(ANQPNetworkKey.class),
-                    anyBoolean(), any(NetworkDetail.HSRelease.class));
+                    anyBoolean(), any(NetworkDetail.HSRelease.class), anyInt());
         } finally {
             session.finishMocking();
         }
@@ -2641,7 +2668,8 @@ public class PasspointManagerTest extends WifiBaseTest {
         reset(mWifiConfigManager);
         when(mAnqpCache.getEntry(TEST_ANQP_KEY2)).thenReturn(null);
         verify(mAnqpRequestManager, never()).requestANQPElements(any(long.class),
-                any(ANQPNetworkKey.class), any(boolean.class), any(NetworkDetail.HSRelease.class));
+                any(ANQPNetworkKey.class), any(boolean.class), any(NetworkDetail.HSRelease.class),
+                anyInt());
     }
 
     /**
@@ -3100,9 +3128,44 @@ public class PasspointManagerTest extends WifiBaseTest {
         mManager.clearAnqpRequestsAndFlushCache();
         verify(mAnqpRequestManager).clear();
         verify(mAnqpCache).flush();
+        verify(mAnqpCache).discardPersistedData();
         verify(provider).clearProviderBlock();
     }
 
+    /**
+     * Verify that flushing the ANQP cache, e.g. when Wi-Fi is toggled off, also discards its
+     * persisted copy, so that the flushed entries do not come back.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testFlushCacheDiscardsPersistedCopy() throws Exception {
+        AnqpCache anqpCache = new AnqpCache(mClock);
+        when(mObjectFactory.makeAnqpCache(mClock)).thenReturn(anqpCache);
+        PasspointManager manager = new PasspointManager(mContext, mWifiInjector, mHandler,
+                mWifiNative, mWifiKeyStore, mClock, mObjectFactory, mWifiConfigManager,
+                mWifiConfigStore, mWifiSettingsStore, mWifiMetrics, mWifiCarrierInfoManager,
+                mMacAddressUtil, mWifiPermissionsUtil);
+        ArgumentCaptor<AnqpCacheStoreData.DataSource> dataSource =
+                ArgumentCaptor.forClass(AnqpCacheStoreData.DataSource.class);
+        verify(mObjectFactory, times(2)).makeAnqpCacheStoreData(dataSource.capture());
+        when(mDeviceConfigFacade.isAnqpCachePersistenceEnabled()).thenReturn(true);
+
+        Map<ANQPElementType, ANQPElement> anqpElementMap = new HashMap<>();
+        anqpElementMap.put(ANQPElementType.ANQPDomName, ANQPParser.parseElement(
+                ANQPElementType.ANQPDomName,
+                ByteBuffer.wrap(new byte[] {8, 't', 'e', 's', 't', '.', 'c', 'o', 'm'})));
+        anqpCache.addOrUpdateEntry(TEST_ANQP_KEY, anqpElementMap);
+        assertNotNull(dataSource.getValue().getData());
+
+        manager.clearAnqpRequestsAndFlushCache();
+        assertNull(anqpCache.getEntry(TEST_ANQP_KEY));
+        assertTrue(dataSource.getValue().hasNewData());
+        AnqpCache restoredCache = new AnqpCache(mClock);
+        restoredCache.restoreFromPersistedData(dataSource.getValue().getData());
+        assertNull(restoredCache.getEntry(TEST_ANQP_KEY));
+    }
+
     /**
      * Verify that when Passpoint manager is enabled/disabled the WifiSettingsStore is updated
      * with correct value.
@@ -3150,7 +3213,8 @@ public class PasspointManagerTest extends WifiBaseTest {
         when(mAnqpCache.getEntry(TEST_ANQP_KEY)).thenReturn(null);
         assertTrue(mManager.getAllMatchedProviders(createTestScanResult()).isEmpty());
         verify(mAnqpRequestManager, never()).requestANQPElements(any(long.class),
-                any(ANQPNetworkKey.class), any(boolean.class), any(NetworkDetail.HSRelease.class));
+                any(ANQPNetworkKey.class), any(boolean.class), any(NetworkDetail.HSRelease.class),
+                anyInt());
 
         // Enable the Wifi Passpoint and expect the matchProvider to return matched result.
         when(mAnqpCache.getEntry(TEST_ANQP_KEY)).thenReturn(entry);
@@ -3167,7 +3231,7 @@ public class PasspointManagerTest extends WifiBaseTest {
         // ANQP cache misses, still no result.
         assertTrue(mManager.getAllMatchedProviders(createTestScanResult()).isEmpty());
         verify(mAnqpRequestManager).requestANQPElements(eq(TEST_BSSID),
-                any(ANQPNetworkKey.class), anyBoolean(), any());
+                any(ANQPNetworkKey.class), anyBoolean(), any(), anyInt());
     }
 }
 
@@ -0,0 +1,262 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.hotspot2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+import android.net.wifi.hotspot2.PasspointConfiguration;
+import android.net.wifi.hotspot2.pps.Credential;
+import android.net.wifi.hotspot2.pps.HomeSp;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.wifi.WifiBaseTest;
+import com.android.server.wifi.hotspot2.anqp.ANQPElement;
+import com.android.server.wifi.hotspot2.anqp.CellularNetwork;
+import com.android.server.wifi.hotspot2.anqp.Constants.ANQPElementType;
+import com.android.server.wifi.hotspot2.anqp.DomainNameElement;
+import com.android.server.wifi.hotspot2.anqp.NAIRealmData;
+import com.android.server.wifi.hotspot2.anqp.NAIRealmElement;
+import com.android.server.wifi.hotspot2.anqp.RoamingConsortiumElement;
+import com.android.server.wifi.hotspot2.anqp.ThreeGPPNetworkElement;
+import com.android.server.wifi.util.InformationElementUtil.RoamingConsortium;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Unit tests for {@link com.android.server.wifi.hotspot2.PasspointMatchIndex}.
+ */
+@SmallTest
+public class PasspointMatchIndexTest extends WifiBaseTest {
+    private static final String TEST_FQDN = "example.com";
+    private static final String TEST_REALM = "realm.example.org";
+    private static final String TEST_IMSI = "310410*";
+    private static final long TEST_OI = 0x1122L;
+    private static final int NUM_PROVIDERS = 500;
+    private static final int NUM_SCAN_RESULTS = 300;
+
+    @Mock RoamingConsortium mRoamingConsortium;
+    private PasspointMatchIndex mIndex;
+    private Map<ANQPElementType, ANQPElement> mAnqpElements;
+
+    /**
+     * Sets up test.
+     */
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        mIndex = new PasspointMatchIndex();
+        mAnqpElements = new HashMap<>();
+    }
+
+    private static PasspointProvider createProvider(String fqdn, long[] ois, String realm,
+            String imsi) {
+        PasspointConfiguration config = new PasspointConfiguration();
+        HomeSp homeSp = new HomeSp();
+        homeSp.setFqdn(fqdn);
+        homeSp.setRoamingConsortiumOis(ois);
+        config.setHomeSp(homeSp);
+        Credential credential = new Credential();
+        credential.setRealm(realm);
+        if (imsi != null) {
+            Credential.SimCredential simCredential = new Credential.SimCredential();
+            simCredential.setImsi(imsi);
+            credential.setSimCredential(simCredential);
+        }
+        config.setCredential(credential);
+        PasspointProvider provider = mock(PasspointProvider.class);
+        when(provider.getConfig()).thenReturn(config);
+        return provider;
+    }
+
+    /**
+     * Verify that a provider is a candidate for the sub-domains of its FQDN and other home
+     * partners, and only for those.
+     */
+    @Test
+    public void matchByDomainName() {
+        PasspointProvider provider = createProvider(TEST_FQDN, null, null, null);
+        provider.getConfig().getHomeSp().setOtherHomePartners(new String[] {"partner.net"});
+        mIndex.addProvider("id", provider);
+
+        mAnqpElements.put(ANQPElementType.ANQPDomName,
+                new DomainNameElement(Arrays.asList("hotspot.Example.COM")));
+        assertTrue(mIndex.getCandidates(mAnqpElements, mRoamingConsortium).contains(provider));
+        mAnqpElements.put(ANQPElementType.ANQPDomName,
+                new DomainNameElement(Arrays.asList("partner.net")));
+        assertTrue(mIndex.getCandidates(mAnqpElements, mRoamingConsortium).contains(provider));
+        mAnqpElements.put(ANQPElementType.ANQPDomName,
+                new DomainNameElement(Arrays.asList("com", "example.org", "otherexample.com")));
+        assertTrue(mIndex.getCandidates(mAnqpElements, mRoamingConsortium).isEmpty());
+    }
+
+    /**
+     * Verify that a provider is a candidate when one of its OIs is in the Roaming Consortium
+     * ANQP element or IE.
+     */
+    @Test
+    public void matchByRoamingConsortium() {
+        PasspointProvider provider = createProvider(TEST_FQDN, new long[] {TEST_OI}, null, null);
+        mIndex.addProvider("id", provider);
+
+        mAnqpElements.put(ANQPElementType.ANQPRoamingConsortium,
+                new RoamingConsortiumElement(Arrays.asList(0x1L, TEST_OI)));
+        assertTrue(mIndex.getCandidates(mAnqpElements, mRoamingConsortium).contains(provider));
+        mAnqpElements.clear();
+        assertTrue(mIndex.getCandidates(mAnqpElements, mRoamingConsortium).isEmpty());
+        when(mRoamingConsortium.getRoamingConsortiums()).thenReturn(new long[] {TEST_OI});
+        assertTrue(mIndex.getCandidates(mAnqpElements, mRoamingConsortium).contains(provider));
+    }
+
+    /**
+     * Verify that a provider is a candidate when a realm of the NAI Realm ANQP element is a
+     * sub-domain of its credential realm.
+     */
+    @Test
+    public void matchByNaiRealm() {
+        PasspointProvider provider = createProvider(TEST_FQDN, null, TEST_REALM, null);
+        mIndex.addProvider("id", provider);
+
+        mAnqpElements.put(ANQPElementType.ANQPNAIRealm, new NAIRealmElement(Arrays.asList(
+                new NAIRealmData(Arrays.asList("other.org", TEST_REALM), new ArrayList<>()))));
+        assertTrue(mIndex.getCandidates(mAnqpElements, mRoamingConsortium).contains(provider));
+        mAnqpElements.put(ANQPElementType.ANQPNAIRealm, new NAIRealmElement(Arrays.asList(
+                new NAIRealmData(Arrays.asList("example.org"), new ArrayList<>()))));
+        assertTrue(mIndex.getCandidates(mAnqpElements, mRoamingConsortium).isEmpty());
+    }
+
+    /**
+     * Verify that a provider with a SIM credential is a candidate for the PLMNs of the 3GPP
+     * Network ANQP element and the 3GPP domains of the Domain Name ANQP element.
+     */
+    @Test
+    public void matchByPlmn() {
+        PasspointProvider provider = createProvider(TEST_FQDN, null, null, TEST_IMSI);
+        mIndex.addProvider("id", provider);
+
+        mAnqpElements.put(ANQPElementType.ANQP3GPPNetwork, new ThreeGPPNetworkElement(
+                Arrays.asList(new CellularNetwork(Arrays.asList("310410")))));
+        assertTrue(mIndex.getCandidates(mAnqpElements, mRoamingConsortium).contains(provider));
+        mAnqpElements.put(ANQPElementType.ANQP3GPPNetwork, new ThreeGPPNetworkElement(
+                Arrays.asList(new CellularNetwork(Arrays.asList("123456")))));
+        assertTrue(mIndex.getCandidates(mAnqpElements, mRoamingConsortium).isEmpty());
+        mAnqpElements.put(ANQPElementType.ANQPDomName, new DomainNameElement(
+                Arrays.asList("wlan.mnc410.mcc310.3gppnetwork.org")));
+        assertTrue(mIndex.getCandidates(mAnqpElements, mRoamingConsortium).contains(provider));
+    }
+
+    /**
+     * Verify that removed and replaced providers are no longer candidates.
+     */
+    @Test
+    public void removeAndReplaceProvider() {
+        PasspointProvider provider1 = createProvider(TEST_FQDN, new long[] {TEST_OI}, null, null);
+        PasspointProvider provider2 = createProvider("other.com", null, null, null);
+        mAnqpElements.put(ANQPElementType.ANQPDomName,
+                new DomainNameElement(Arrays.asList(TEST_FQDN, "other.com")));
+
+        mIndex.addProvider("id1", provider1);
+        mIndex.addProvider("id2", provider2);
+        assertEquals(2, mIndex.getCandidates(mAnqpElements, mRoamingConsortium).size());
+        mIndex.removeProvider("id1");
+        assertEquals(Collections.singleton(provider2),
+                mIndex.getCandidates(mAnqpElements, mRoamingConsortium));
+        mIndex.addProvider("id2", provider1);
+        assertEquals(Collections.singleton(provider1),
+                mIndex.getCandidates(mAnqpElements, mRoamingConsortium));
+        assertEquals(1, mIndex.size());
+        mIndex.clear();
+        assertTrue(mIndex.getCandidates(mAnqpElements, mRoamingConsortium).isEmpty());
+    }
+
+    /**
+     * Verify that providers without a configuration are always candidates.
+     */
+    @Test
+    public void providerWithoutConfigIsAlwaysCandidate() {
+        PasspointProvider provider = mock(PasspointProvider.class);
+        mIndex.addProvider("id", provider);
+        assertTrue(mIndex.getCandidates(mAnqpElements, mRoamingConsortium).contains(provider));
+        mIndex.removeProvider("id");
+        assertTrue(mIndex.getCandidates(mAnqpElements, mRoamingConsortium).isEmpty());
+    }
+
+    /**
+     * Verify with many providers and scan results that the candidates include every provider
+     * matched by {@link ANQPMatcher}, while being a small fraction of all providers.
+     */
+    @Test
+    public void candidatesIncludeAllMatchingProviders() {
+        Random random = new Random(42);
+        List<PasspointProvider> providers = new ArrayList<>();
+        for (int i = 0; i < NUM_PROVIDERS; i++) {
+            PasspointProvider provider = createProvider("operator" + i + ".com",
+                    new long[] {random.nextInt(NUM_PROVIDERS)}, "realm" + i + ".net",
+                    String.format("%06d*", 310000 + i));
+            providers.add(provider);
+            mIndex.addProvider("id" + i, provider);
+        }
+
+        int numCandidates = 0;
+        for (int i = 0; i < NUM_SCAN_RESULTS; i++) {
+            int operator = random.nextInt(NUM_PROVIDERS);
+            DomainNameElement domainElement = new DomainNameElement(
+                    Arrays.asList("hotspot.operator" + operator + ".com"));
+            RoamingConsortiumElement rcElement = new RoamingConsortiumElement(
+                    Arrays.asList((long) random.nextInt(NUM_PROVIDERS)));
+            NAIRealmElement realmElement = new NAIRealmElement(Arrays.asList(new NAIRealmData(
+                    Arrays.asList("realm" + random.nextInt(NUM_PROVIDERS) + ".net"),
+                    new ArrayList<>())));
+            mAnqpElements.put(ANQPElementType.ANQPDomName, domainElement);
+            mAnqpElements.put(ANQPElementType.ANQPRoamingConsortium, rcElement);
+            mAnqpElements.put(ANQPElementType.ANQPNAIRealm, realmElement);
+
+            Set<PasspointProvider> candidates =
+                    mIndex.getCandidates(mAnqpElements, mRoamingConsortium);
+            numCandidates += candidates.size();
+            for (PasspointProvider provider : providers) {
+                PasspointConfiguration config = provider.getConfig();
+                boolean matches = ANQPMatcher.matchDomainName(domainElement,
+                        config.getHomeSp().getFqdn(), null, null)
+                        || ANQPMatcher.matchRoamingConsortium(rcElement,
+                                config.getHomeSp().getRoamingConsortiumOis(), false) != 0
+                        || ANQPMatcher.matchNAIRealm(realmElement,
+                                config.getCredential().getRealm());
+                if (matches) {
+                    assertTrue(candidates.contains(provider));
+                }
+            }
+        }
+        // About one candidate per domain, OI and realm of each scan result.
+        assertTrue(numCandidates <= NUM_SCAN_RESULTS * 10);
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.android.server.wifi.hotspot2.anqp;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 import android.net.wifi.WifiSsid;
@@ -321,6 +322,23 @@ public class ANQPParserTest extends WifiBaseTest {
                 ANQPParser.parseElement(Constants.ANQPElementType.ANQPDomName, buffer));
     }
 
+    /**
+     * Verify that a parsed element retains the payload it was parsed from, and that parsing the
+     * payload again yields an equal element.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void parsedElementRetainsPayload() throws Exception {
+        byte[] payload = getDomainNamePayload(new String[] {"test.com"});
+        ANQPElement element = ANQPParser.parseElement(
+                Constants.ANQPElementType.ANQPDomName, ByteBuffer.wrap(payload));
+        assertEquals(Constants.ANQPElementType.ANQPDomName, element.getPayloadType());
+        assertArrayEquals(payload, element.getPayload());
+        assertEquals(element, ANQPParser.parsePayload(element.getPayloadType(),
+                element.getPayload()));
+    }
+
     /**
      * Verify that an expected RoamingConsortiumElement will be returned when parsing a buffer that
      * contained a Roaming Consortium ANQP element.
@@ -17,6 +17,7 @@
 package com.android.server.wifi.hotspot2.anqp;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import androidx.test.filters.SmallTest;
 
@@ -61,4 +62,15 @@ public class RawByteElementTest extends WifiBaseTest {
         RawByteElement expected = new RawByteElement(TEST_ELEMENT_ID, data);
         assertEquals(expected, actual);
     }
+
+    /**
+     * Verify that the estimated size of a RawByteElement accounts for its payload.
+     */
+    @Test
+    public void sizeIncludesPayload() throws Exception {
+        RawByteElement small = new RawByteElement(TEST_ELEMENT_ID, new byte[10]);
+        RawByteElement large = new RawByteElement(TEST_ELEMENT_ID, new byte[1000]);
+        assertEquals(990, large.getSizeBytes() - small.getSizeBytes());
+        assertTrue(small.getSizeBytes() > 10);
+    }
 }
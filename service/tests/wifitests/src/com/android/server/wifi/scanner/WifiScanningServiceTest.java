@@ -1918,7 +1918,7 @@ public class WifiScanningServiceTest extends WifiBaseTest {
 
         mLooper.startAutoDispatch();
         List<ScanResult> results = mWifiScanningServiceImpl.getSingleScanResults(TEST_PACKAGE_NAME,
-                null);
+                null).getList();
         mLooper.stopAutoDispatchAndIgnoreExceptions();
         assertEquals(results.size(), expectedResults.getRawScanResults().length);
 
@@ -1942,7 +1942,7 @@ public class WifiScanningServiceTest extends WifiBaseTest {
 
         mLooper.startAutoDispatch();
         List<ScanResult> results = mWifiScanningServiceImpl.getSingleScanResults(TEST_PACKAGE_NAME,
-                null);
+                null).getList();
         mLooper.stopAutoDispatchAndIgnoreExceptions();
         assertEquals(results.size(), 0);
     }
@@ -1957,7 +1957,7 @@ public class WifiScanningServiceTest extends WifiBaseTest {
 
         mLooper.startAutoDispatch();
         List<ScanResult> results = mWifiScanningServiceImpl.getSingleScanResults(TEST_PACKAGE_NAME,
-                null);
+                null).getList();
         mLooper.stopAutoDispatchAndIgnoreExceptions();
         assertEquals(results.size(), 0);
     }
@@ -1979,7 +1979,7 @@ public class WifiScanningServiceTest extends WifiBaseTest {
         InOrder order = inOrder(client.listener, mWifiScannerImpl0);
         mLooper.startAutoDispatch();
         List<ScanResult> results = mWifiScanningServiceImpl.getSingleScanResults(TEST_PACKAGE_NAME,
-                null);
+                null).getList();
         mLooper.stopAutoDispatchAndIgnoreExceptions();
         assertEquals(results.size(), expectedResults.getRawScanResults().length);
 
@@ -2003,7 +2003,7 @@ public class WifiScanningServiceTest extends WifiBaseTest {
 
         mLooper.startAutoDispatch();
         List<ScanResult> results2 = mWifiScanningServiceImpl.getSingleScanResults(TEST_PACKAGE_NAME,
-                null);
+                null).getList();
         mLooper.stopAutoDispatchAndIgnoreExceptions();
         assertEquals(results2.size(), expectedSingleResult.getRawScanResults().length);
     }
@@ -2028,7 +2028,7 @@ public class WifiScanningServiceTest extends WifiBaseTest {
         verifyStartSingleScan(order, computeSingleScanNativeSettings(fullRequestSettings));
         mLooper.startAutoDispatch();
         List<ScanResult> results = mWifiScanningServiceImpl.getSingleScanResults(TEST_PACKAGE_NAME,
-                TEST_FEATURE_ID);
+                TEST_FEATURE_ID).getList();
         mLooper.stopAutoDispatchAndIgnoreExceptions();
         assertEquals(results.size(), expectedFullResults.getRawScanResults().length);
 
@@ -2055,7 +2055,7 @@ public class WifiScanningServiceTest extends WifiBaseTest {
         client.verifySingleScanCompletedReceived();
         mLooper.startAutoDispatch();
         List<ScanResult> results2 = mWifiScanningServiceImpl.getSingleScanResults(TEST_PACKAGE_NAME,
-                null);
+                null).getList();
         mLooper.stopAutoDispatchAndIgnoreExceptions();
         assertEquals(results2.size(), expectedFullResults.getRawScanResults().length);
     }
@@ -2089,7 +2089,7 @@ public class WifiScanningServiceTest extends WifiBaseTest {
 
         mLooper.startAutoDispatch();
         List<ScanResult> results = mWifiScanningServiceImpl.getSingleScanResults(TEST_PACKAGE_NAME,
-                null);
+                null).getList();
         mLooper.stopAutoDispatchAndIgnoreExceptions();
 
         assertScanResultsEquals(expectedResults.toArray(new ScanResult[expectedResults.size()]),
@@ -2111,7 +2111,7 @@ public class WifiScanningServiceTest extends WifiBaseTest {
                                expectedResults);
         mLooper.startAutoDispatch();
         List<ScanResult> results = mWifiScanningServiceImpl.getSingleScanResults(TEST_PACKAGE_NAME,
-                null);
+                null).getList();
         mLooper.stopAutoDispatchAndIgnoreExceptions();
         assertEquals(results.size(), expectedResults.getRawScanResults().length);
 
@@ -2123,7 +2123,7 @@ public class WifiScanningServiceTest extends WifiBaseTest {
         // clear the cache when exiting the DriverLoaded state.
         mLooper.startAutoDispatch();
         List<ScanResult> results2 = mWifiScanningServiceImpl.getSingleScanResults(TEST_PACKAGE_NAME,
-                TEST_FEATURE_ID);
+                TEST_FEATURE_ID).getList();
         mLooper.stopAutoDispatchAndIgnoreExceptions();
         assertEquals(0, results2.size());
     }
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.wifi.WifiBaseTest;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Unit tests for {@link com.android.server.wifi.util.BssidMap}.
+ */
+@SmallTest
+public class BssidMapTest extends WifiBaseTest {
+    private static final String TEST_BSSID_1 = "0a:08:5c:67:89:01";
+    private static final String TEST_BSSID_2 = "0a:08:5c:67:89:02";
+
+    @Test
+    public void bssidToLong() {
+        assertEquals(0x0a085c678901L, BssidMap.bssidToLong(TEST_BSSID_1));
+        assertEquals(0xffffffffffffL, BssidMap.bssidToLong("FF:ff:FF:ff:FF:ff"));
+        assertEquals(BssidMap.INVALID_BSSID, BssidMap.bssidToLong(null));
+        assertEquals(BssidMap.INVALID_BSSID, BssidMap.bssidToLong(""));
+        assertEquals(BssidMap.INVALID_BSSID, BssidMap.bssidToLong("0a:08:5c:67:89:0g"));
+        assertEquals(BssidMap.INVALID_BSSID, BssidMap.bssidToLong("0a-08-5c-67-89-01"));
+        assertEquals(BssidMap.INVALID_BSSID, BssidMap.bssidToLong("0a:08:5c:67:89:01:"));
+    }
+
+    @Test
+    public void bssidsAreMatchedCaseInsensitively() {
+        BssidMap<String> map = new BssidMap<>();
+        map.put("AA:BB:CC:DD:EE:FF", "first");
+        assertEquals("first", map.get("aa:bb:cc:dd:ee:ff"));
+        assertEquals("first", map.put("aa:bb:cc:dd:ee:ff", "second"));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void malformedBssidsAreSupported() {
+        BssidMap<String> map = new BssidMap<>();
+        map.put(TEST_BSSID_1, "valid");
+        map.put("any", "malformed");
+        map.put(null, "null");
+        assertEquals(3, map.size());
+        assertEquals("malformed", map.get("any"));
+        assertEquals("null", map.get(null));
+        assertTrue(map.containsKey("any"));
+        assertFalse(map.containsKey(TEST_BSSID_2));
+        assertEquals(new HashSet<>(Arrays.asList("valid", "malformed", "null")),
+                new HashSet<>(map.values()));
+
+        assertEquals("malformed", map.remove("any"));
+        assertNull(map.get("any"));
+        assertEquals(2, map.size());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(null));
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import static org.junit.Assert.assertEquals;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.wifi.WifiBaseTest;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link com.android.server.wifi.util.ConcurrentCounter}.
+ */
+@SmallTest
+public class ConcurrentCounterTest extends WifiBaseTest {
+    private static final int NUM_THREADS = 8;
+    private static final int NUM_INCREMENTS_PER_THREAD = 10000;
+
+    @Test
+    public void incrementAndAdd() {
+        ConcurrentCounter counter = new ConcurrentCounter();
+        assertEquals(0, counter.get());
+        counter.increment();
+        counter.add(4);
+        assertEquals(5, counter.get());
+        assertEquals(5, counter.getInt());
+    }
+
+    @Test
+    public void clearDropsOnlyReportedIncrements() {
+        ConcurrentCounter counter = new ConcurrentCounter();
+        counter.add(3);
+        assertEquals(3, counter.get());
+        // Increment racing with a dump, after the value was reported.
+        counter.increment();
+        counter.clear();
+        assertEquals(1, counter.get());
+        counter.clear();
+        assertEquals(0, counter.get());
+    }
+
+    @Test
+    public void getIntSaturates() {
+        ConcurrentCounter counter = new ConcurrentCounter();
+        counter.add(Integer.MAX_VALUE + 10L);
+        assertEquals(Integer.MAX_VALUE, counter.getInt());
+    }
+
+    @Test
+    public void concurrentIncrementsAreNotLost() throws Exception {
+        ConcurrentCounter counter = new ConcurrentCounter();
+        Thread[] threads = new Thread[NUM_THREADS];
+        for (int i = 0; i < NUM_THREADS; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < NUM_INCREMENTS_PER_THREAD; j++) {
+                    counter.increment();
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals((long) NUM_THREADS * NUM_INCREMENTS_PER_THREAD, counter.get());
+    }
+}
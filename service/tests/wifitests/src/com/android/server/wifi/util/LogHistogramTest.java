@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.wifi.WifiBaseTest;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for LogHistogram.
+ */
+@SmallTest
+public class LogHistogramTest extends WifiBaseTest {
+
+    private LogHistogram mHistogram;
+
+    @Before
+    public void setUp() throws Exception {
+        mHistogram = new LogHistogram();
+    }
+
+    /**
+     * Verify that small values get their own bucket and that every value falls within the
+     * bounds of its bucket.
+     */
+    @Test
+    public void testBucketBounds() {
+        for (int value = 0; value < LogHistogram.SUB_BUCKET_COUNT; value++) {
+            assertEquals(value, LogHistogram.getBucketIndex(value));
+        }
+        int[] values = {8, 9, 15, 16, 17, 100, 1000, 65535, 65536, LogHistogram.MAX_VALUE};
+        for (int value : values) {
+            int index = LogHistogram.getBucketIndex(value);
+            assertTrue(index < LogHistogram.NUM_BUCKETS);
+            assertTrue(LogHistogram.getBucketStart(index) <= value);
+            assertTrue(value < LogHistogram.getBucketEnd(index));
+        }
+        assertEquals(LogHistogram.NUM_BUCKETS - 1,
+                LogHistogram.getBucketIndex(LogHistogram.MAX_VALUE));
+        assertEquals(LogHistogram.NUM_BUCKETS - 1,
+                LogHistogram.getBucketIndex(Integer.MAX_VALUE));
+        assertEquals(0, LogHistogram.getBucketIndex(-5));
+    }
+
+    /**
+     * Verify that consecutive buckets are contiguous.
+     */
+    @Test
+    public void testBucketsAreContiguous() {
+        for (int i = 0; i < LogHistogram.NUM_BUCKETS - 1; i++) {
+            assertEquals(LogHistogram.getBucketEnd(i), LogHistogram.getBucketStart(i + 1));
+        }
+    }
+
+    /**
+     * Verify quantiles over a uniform distribution are within the bucket precision.
+     */
+    @Test
+    public void testQuantiles() {
+        assertEquals(0, mHistogram.getValueAtQuantile(0.5));
+        for (int value = 1; value <= 1000; value++) {
+            mHistogram.record(value);
+        }
+        assertEquals(1000, mHistogram.getTotalCount());
+        assertWithinPrecision(500, mHistogram.getValueAtQuantile(0.50));
+        assertWithinPrecision(950, mHistogram.getValueAtQuantile(0.95));
+        assertWithinPrecision(990, mHistogram.getValueAtQuantile(0.99));
+        assertWithinPrecision(1000, mHistogram.getValueAtQuantile(1.0));
+    }
+
+    /**
+     * Verify that values above the tracked range are counted in the last bucket.
+     */
+    @Test
+    public void testValuesAboveMaxAreCountedInLastBucket() {
+        mHistogram.record(1 << 30);
+        mHistogram.record(Integer.MAX_VALUE);
+        assertEquals(2, mHistogram.getCount(LogHistogram.NUM_BUCKETS - 1));
+        assertEquals(LogHistogram.getBucketEnd(LogHistogram.NUM_BUCKETS - 1) - 1,
+                mHistogram.getValueAtQuantile(1.0));
+    }
+
+    /**
+     * Verify that clear() resets all the counts.
+     */
+    @Test
+    public void testClear() {
+        mHistogram.record(5);
+        mHistogram.record(500);
+        mHistogram.clear();
+        assertEquals(0, mHistogram.getTotalCount());
+        assertEquals(0, mHistogram.getCount(LogHistogram.getBucketIndex(500)));
+    }
+
+    private static void assertWithinPrecision(int expected, int actual) {
+        assertTrue("expected ~" + expected + " but was " + actual,
+                actual >= expected
+                        && actual <= expected + expected / LogHistogram.SUB_BUCKET_COUNT);
+    }
+}
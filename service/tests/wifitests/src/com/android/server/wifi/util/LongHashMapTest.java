@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.wifi.WifiBaseTest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Unit tests for {@link com.android.server.wifi.util.LongHashMap}.
+ */
+@SmallTest
+public class LongHashMapTest extends WifiBaseTest {
+    private static final int NUM_BSSIDS = 10_000;
+
+    @Test
+    public void canPutGetAndRemove() {
+        LongHashMap<String> map = new LongHashMap<>();
+        assertTrue(map.isEmpty());
+        assertNull(map.put(1L, "one"));
+        assertNull(map.put(-5L, "minus five"));
+        assertEquals("one", map.put(1L, "uno"));
+        assertEquals(2, map.size());
+        assertEquals("uno", map.get(1L));
+        assertEquals("minus five", map.get(-5L));
+        assertTrue(map.containsKey(-5L));
+        assertFalse(map.containsKey(2L));
+        assertNull(map.get(2L));
+
+        assertEquals("uno", map.remove(1L));
+        assertNull(map.remove(1L));
+        assertEquals(1, map.size());
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertNull(map.get(-5L));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void putRejectsNullValues() {
+        new LongHashMap<String>().put(1L, null);
+    }
+
+    /**
+     * Verify the map against a HashMap with random insertions and removals of MAC addresses,
+     * which exercises resizing and the backward shift of colliding entries on removal.
+     */
+    @Test
+    public void matchesHashMapWithRandomOperations() {
+        Random random = new Random(0x5eed);
+        LongHashMap<Long> map = new LongHashMap<>();
+        Map<Long, Long> reference = new HashMap<>();
+        List<Long> keys = new ArrayList<>();
+        for (int i = 0; i < NUM_BSSIDS; i++) {
+            // Sequential BSSIDs of a few vendors, as seen in large deployments.
+            keys.add(((long) random.nextInt(4) << 40) | random.nextInt(NUM_BSSIDS));
+        }
+        for (int i = 0; i < 4 * NUM_BSSIDS; i++) {
+            long key = keys.get(random.nextInt(keys.size()));
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(key), map.remove(key));
+            } else {
+                assertEquals(reference.put(key, (long) i), map.put(key, (long) i));
+            }
+            assertEquals(reference.size(), map.size());
+        }
+        for (long key : keys) {
+            assertEquals(reference.get(key), map.get(key));
+        }
+        List<Long> values = new ArrayList<>(map.values());
+        List<Long> expectedValues = new ArrayList<>(reference.values());
+        Collections.sort(values);
+        Collections.sort(expectedValues);
+        assertEquals(expectedValues, values);
+    }
+
+    @Test(expected = ConcurrentModificationException.class)
+    public void valuesIteratorDetectsModification() {
+        LongHashMap<String> map = new LongHashMap<>();
+        map.put(1L, "one");
+        map.put(2L, "two");
+        Iterator<String> it = map.values().iterator();
+        it.next();
+        map.put(3L, "three");
+        it.next();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.wifi.WifiBaseTest;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Unit tests for {@link com.android.server.wifi.util.RingBuffer}.
+ */
+@SmallTest
+public class RingBufferTest extends WifiBaseTest {
+    private static final int CAPACITY = 3;
+
+    @Test
+    public void ctorCreatesEmptyRingBuffer() {
+        final RingBuffer<Integer> rb = new RingBuffer<>(CAPACITY);
+        assertEquals(0, rb.size());
+        assertTrue(rb.isEmpty());
+        assertEquals(CAPACITY, rb.capacity());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void ctorRejectsInvalidCapacity() {
+        new RingBuffer<Integer>(0);
+    }
+
+    @Test
+    public void canAddAndRetrieveElementsInOrder() {
+        final RingBuffer<Integer> rb = new RingBuffer<>(CAPACITY);
+        rb.add(1);
+        rb.add(2);
+        assertEquals(Arrays.asList(1, 2), rb);
+        assertEquals(1, (int) rb.getFirst());
+        assertEquals(2, (int) rb.getLast());
+    }
+
+    @Test
+    public void addingToFullBufferEvictsOldest() {
+        final RingBuffer<Integer> rb = new RingBuffer<>(CAPACITY);
+        for (int i = 1; i <= 5; i++) {
+            rb.add(i);
+        }
+        assertEquals(CAPACITY, rb.size());
+        assertEquals(Arrays.asList(3, 4, 5), rb);
+        assertEquals(Arrays.asList(3, 4, 5), new ArrayList<>(rb));
+    }
+
+    @Test
+    public void recycleReturnsOldestOnlyWhenFull() {
+        final RingBuffer<Integer> rb = new RingBuffer<>(CAPACITY);
+        final Integer first = 1000;
+        rb.add(first);
+        rb.add(2);
+        assertNull(rb.recycle());
+        rb.add(3);
+        assertSame(first, rb.recycle());
+        assertEquals(Arrays.asList(2, 3), rb);
+    }
+
+    @Test
+    public void canRemoveAtAnyIndexAfterWrapping() {
+        final RingBuffer<Integer> rb = new RingBuffer<>(CAPACITY);
+        for (int i = 1; i <= 4; i++) {
+            rb.add(i);
+        }
+        assertEquals(3, (int) rb.remove(1));
+        assertEquals(Arrays.asList(2, 4), rb);
+        rb.add(5);
+        rb.add(6);
+        assertEquals(Arrays.asList(4, 5, 6), rb);
+        assertEquals(6, (int) rb.remove(2));
+        assertEquals(4, (int) rb.remove(0));
+        assertEquals(Arrays.asList(5), rb);
+    }
+
+    @Test
+    public void clearRemovesAllElements() {
+        final RingBuffer<Integer> rb = new RingBuffer<>(CAPACITY);
+        for (int i = 1; i <= 4; i++) {
+            rb.add(i);
+        }
+        rb.clear();
+        assertTrue(rb.isEmpty());
+        rb.add(7);
+        assertEquals(Arrays.asList(7), rb);
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void getLastThrowsWhenEmpty() {
+        new RingBuffer<Integer>(CAPACITY).getLast();
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void getThrowsForInvalidIndex() {
+        final RingBuffer<Integer> rb = new RingBuffer<>(CAPACITY);
+        rb.add(1);
+        rb.get(1);
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.android.server.wifi.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import androidx.test.filters.SmallTest;
+
+import com.android.server.wifi.WifiBaseTest;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Unit tests for {@link com.android.server.wifi.util.WifiConfigStoreBinaryFormat}.
+ */
+@SmallTest
+public class WifiConfigStoreBinaryFormatTest extends WifiBaseTest {
+    private static final int TEST_VERSION = 3;
+    private static final int TEST_XML_CHECKSUM = 0x12345678;
+    private static final byte[] TEST_PAYLOAD_1 = {1, 2, 3, 4, 5};
+    private static final byte[] TEST_PAYLOAD_2 = {};
+    private static final byte[] TEST_PAYLOAD_3 = {42};
+
+    /**
+     * Verify that the section table points at the payloads of each section.
+     */
+    @Test
+    public void testWriteAndParseHeader() throws Exception {
+        byte[] data = new WifiConfigStoreBinaryFormat.Writer(TEST_VERSION, TEST_XML_CHECKSUM)
+                .addSection("Section1", TEST_PAYLOAD_1)
+                .addSection("Section2", TEST_PAYLOAD_2)
+                .addSection("Section3", TEST_PAYLOAD_3)
+                .toByteArray();
+        assertTrue(WifiConfigStoreBinaryFormat.isBinaryFormat(data));
+
+        WifiConfigStoreBinaryFormat.Header header = WifiConfigStoreBinaryFormat.parseHeader(data);
+        assertEquals(TEST_VERSION, header.version);
+        assertEquals(TEST_XML_CHECKSUM, header.xmlChecksum);
+        assertEquals(3, header.sections.size());
+        assertSectionEquals("Section1", TEST_PAYLOAD_1, data, header.sections.get(0));
+        assertSectionEquals("Section2", TEST_PAYLOAD_2, data, header.sections.get(1));
+        assertSectionEquals("Section3", TEST_PAYLOAD_3, data, header.sections.get(2));
+    }
+
+    /**
+     * Verify that XML store files are not detected as binary.
+     */
+    @Test
+    public void testXmlIsNotBinaryFormat() {
+        assertFalse(WifiConfigStoreBinaryFormat.isBinaryFormat(
+                "<?xml version='1.0' encoding='utf-8' standalone='yes' ?>"
+                        .getBytes(StandardCharsets.UTF_8)));
+        assertFalse(WifiConfigStoreBinaryFormat.isBinaryFormat(null));
+        assertFalse(WifiConfigStoreBinaryFormat.isBinaryFormat(new byte[2]));
+    }
+
+    /**
+     * Verify that a truncated file is rejected.
+     */
+    @Test
+    public void testTruncatedFile() throws Exception {
+        byte[] data = new WifiConfigStoreBinaryFormat.Writer(TEST_VERSION, TEST_XML_CHECKSUM)
+                .addSection("Section1", TEST_PAYLOAD_1)
+                .toByteArray();
+        try {
+            WifiConfigStoreBinaryFormat.parseHeader(Arrays.copyOf(data, data.length - 1));
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Verify that a corrupted number of sections is rejected before the section table is
+     * allocated.
+     */
+    @Test
+    public void testInvalidNumberOfSections() throws Exception {
+        byte[] data = new WifiConfigStoreBinaryFormat.Writer(TEST_VERSION, TEST_XML_CHECKSUM)
+                .addSection("Section1", TEST_PAYLOAD_1)
+                .toByteArray();
+        // The number of sections follows the magic, format version, version and checksum.
+        ByteBuffer.wrap(data).putInt(16, Integer.MAX_VALUE);
+        try {
+            WifiConfigStoreBinaryFormat.parseHeader(data);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Verify that a corrupted section length is rejected.
+     */
+    @Test
+    public void testInvalidSectionLength() throws Exception {
+        byte[] data = new WifiConfigStoreBinaryFormat.Writer(TEST_VERSION, TEST_XML_CHECKSUM)
+                .addSection("S", TEST_PAYLOAD_1)
+                .toByteArray();
+        // The section length follows the number of sections and the UTF encoded name.
+        ByteBuffer.wrap(data).putInt(23, Integer.MAX_VALUE);
+        try {
+            WifiConfigStoreBinaryFormat.parseHeader(data);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+        ByteBuffer.wrap(data).putInt(23, -1);
+        try {
+            WifiConfigStoreBinaryFormat.parseHeader(data);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Verify that the XML checksum depends on the contents of the XML store file.
+     */
+    @Test
+    public void testComputeXmlChecksum() {
+        byte[] xml1 = "<a/>".getBytes(StandardCharsets.UTF_8);
+        byte[] xml2 = "<b/>".getBytes(StandardCharsets.UTF_8);
+        assertEquals(WifiConfigStoreBinaryFormat.computeXmlChecksum(xml1),
+                WifiConfigStoreBinaryFormat.computeXmlChecksum(xml1.clone()));
+        assertNotEquals(WifiConfigStoreBinaryFormat.computeXmlChecksum(xml1),
+                WifiConfigStoreBinaryFormat.computeXmlChecksum(xml2));
+    }
+
+    private static void assertSectionEquals(String expectedName, byte[] expected, byte[] data,
+            WifiConfigStoreBinaryFormat.Section section) {
+        assertEquals(expectedName, section.name);
+        assertArrayEquals(expected,
+                Arrays.copyOfRange(data, section.offset, section.offset + section.length));
+    }
+}